@@ -0,0 +1,107 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package net.luckperms.api.event.node;
+
+import net.luckperms.api.event.LuckPermsEvent;
+import net.luckperms.api.event.util.Param;
+import net.luckperms.api.model.PermissionHolder;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Called when the nodes of a user/group have been changed.
+ *
+ * <p>Changes made to the same holder within a short window of each other are
+ * combined into a single event, so this event is better suited than
+ * {@link NodeAddEvent} and {@link NodeRemoveEvent} to listeners which only need
+ * to react to the overall change, especially during bulk operations.</p>
+ *
+ * <p>The individual {@link NodeMutateEvent}s are still called as normal.</p>
+ *
+ * @since 5.5
+ */
+public interface NodeMutateBatchEvent extends LuckPermsEvent {
+
+    /**
+     * Gets the target of the event
+     *
+     * @return the event target
+     */
+    @Param(0)
+    @NonNull PermissionHolder getTarget();
+
+    /**
+     * Gets the data type that was mutated.
+     *
+     * @return the data type
+     */
+    @Param(1)
+    @NonNull DataType getDataType();
+
+    /**
+     * Gets an immutable copy of the holders data after the changes
+     *
+     * @return the data after the changes
+     */
+    @Param(2)
+    @NonNull @Unmodifiable Set<Node> getDataAfter();
+
+    /**
+     * Gets the nodes that were added
+     *
+     * @return the added nodes
+     */
+    @Param(3)
+    @NonNull @Unmodifiable Set<Node> getAddedNodes();
+
+    /**
+     * Gets the nodes that were removed
+     *
+     * @return the removed nodes
+     */
+    @Param(4)
+    @NonNull @Unmodifiable Set<Node> getRemovedNodes();
+
+    /**
+     * Gets an immutable copy of the holders data before the changes
+     *
+     * @return the data before the changes
+     */
+    default @NonNull @Unmodifiable Set<Node> getDataBefore() {
+        // Get data after, then reverse the changes
+        Set<Node> nodes = new HashSet<>(this.getDataAfter());
+        nodes.removeAll(this.getAddedNodes());
+        nodes.addAll(this.getRemovedNodes());
+        return Collections.unmodifiableSet(nodes);
+    }
+
+}
@@ -41,6 +41,14 @@ public class BukkitEventBus extends AbstractEventBus<Plugin> implements Listener
         bootstrap.getServer().getPluginManager().registerEvents(this, bootstrap.getLoader());
     }
 
+    @Override
+    public String getPluginName(Object plugin) {
+        if (plugin instanceof Plugin) {
+            return ((Plugin) plugin).getName();
+        }
+        return super.getPluginName(plugin);
+    }
+
     @Override
     protected Plugin checkPlugin(Object plugin) throws IllegalArgumentException {
         if (plugin instanceof Plugin) {
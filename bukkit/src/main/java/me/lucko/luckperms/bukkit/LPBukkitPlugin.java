@@ -38,6 +38,7 @@ import me.lucko.luckperms.bukkit.inject.server.InjectorSubscriptionMap;
 import me.lucko.luckperms.bukkit.inject.server.LuckPermsDefaultsMap;
 import me.lucko.luckperms.bukkit.inject.server.LuckPermsPermissionMap;
 import me.lucko.luckperms.bukkit.inject.server.LuckPermsSubscriptionMap;
+import me.lucko.luckperms.bukkit.inject.server.PermissionSubscriberIndex;
 import me.lucko.luckperms.bukkit.listeners.BukkitAutoOpListener;
 import me.lucko.luckperms.bukkit.listeners.BukkitCommandListUpdater;
 import me.lucko.luckperms.bukkit.listeners.BukkitConnectionListener;
@@ -91,6 +92,7 @@ public class LPBukkitPlugin extends AbstractLuckPermsPlugin {
     private StandardTrackManager trackManager;
     private BukkitContextManager contextManager;
     private LuckPermsSubscriptionMap subscriptionMap;
+    private PermissionSubscriberIndex permissionSubscriberIndex;
     private LuckPermsPermissionMap permissionMap;
     private LuckPermsDefaultsMap defaultPermissionMap;
     private VaultHookManager vaultHookManager = null;
@@ -193,6 +195,10 @@ public class LPBukkitPlugin extends AbstractLuckPermsPlugin {
 
     @Override
     protected void setupPlatformHooks() {
+        // index the players subscribed to each permission, for the subscription map
+        this.permissionSubscriberIndex = new PermissionSubscriberIndex(this);
+        this.bootstrap.getServer().getPluginManager().registerEvents(this.permissionSubscriberIndex, this.bootstrap.getLoader());
+
         // inject our own custom permission maps
         Runnable[] injectors = new Runnable[]{
                 new InjectorSubscriptionMap(this)::inject,
@@ -275,6 +281,9 @@ public class LPBukkitPlugin extends AbstractLuckPermsPlugin {
             });
         }
 
+        // keep the permission subscriber index up to date
+        getApiProvider().getEventBus().subscribe(this.permissionSubscriberIndex);
+
         // register autoop listener
         if (getConfiguration().get(ConfigKeys.AUTO_OP)) {
             getApiProvider().getEventBus().subscribe(new BukkitAutoOpListener(this));
@@ -365,6 +374,14 @@ public class LPBukkitPlugin extends AbstractLuckPermsPlugin {
         return this.bootstrap.getPlayer(user.getUniqueId()).map(player -> this.contextManager.getQueryOptions(player));
     }
 
+    @Override
+    public void onUserDataInvalidated(User user) {
+        // update the user's entries in the subscriber index
+        if (this.permissionSubscriberIndex != null) {
+            this.permissionSubscriberIndex.invalidate(user.getUniqueId());
+        }
+    }
+
     @Override
     public Stream<Sender> getOnlineSenders() {
         List<Player> players = new ArrayList<>(this.bootstrap.getServer().getOnlinePlayers());
@@ -421,6 +438,10 @@ public class LPBukkitPlugin extends AbstractLuckPermsPlugin {
         this.subscriptionMap = subscriptionMap;
     }
 
+    public PermissionSubscriberIndex getPermissionSubscriberIndex() {
+        return this.permissionSubscriberIndex;
+    }
+
     public LuckPermsPermissionMap getPermissionMap() {
         return this.permissionMap;
     }
@@ -26,25 +26,24 @@
 package me.lucko.luckperms.bukkit.calculator;
 
 import me.lucko.luckperms.bukkit.LPBukkitPlugin;
+import me.lucko.luckperms.bukkit.inject.server.LuckPermsPermissionMap.ParentPermission;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
 import me.lucko.luckperms.common.calculator.processor.AbstractSourceBasedProcessor;
 import me.lucko.luckperms.common.calculator.processor.PermissionProcessor;
+import net.luckperms.api.node.Node;
 import net.luckperms.api.util.Tristate;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
-
 /**
  * Permission Processor for Bukkits "child" permission system.
+ *
+ * <p>Child permissions are looked up from the parent permissions resolved by the
+ * permission map, which are shared between all permission holders, so nothing
+ * needs to be recalculated when the source permissions change.</p>
  */
 public class ChildProcessor extends AbstractSourceBasedProcessor implements PermissionProcessor {
     private static final TristateResult.Factory RESULT_FACTORY = new TristateResult.Factory(ChildProcessor.class);
 
     private final LPBukkitPlugin plugin;
-    private final AtomicBoolean needsRefresh = new AtomicBoolean(false);
-    private Map<String, TristateResult> childPermissions = Collections.emptyMap();
 
     public ChildProcessor(LPBukkitPlugin plugin) {
         this.plugin = plugin;
@@ -52,27 +51,12 @@ public class ChildProcessor extends AbstractSourceBasedProcessor implements Perm
 
     @Override
     public TristateResult hasPermission(String permission) {
-        if (this.needsRefresh.compareAndSet(true, false)) {
-            refresh();
+        for (ParentPermission parent : this.plugin.getPermissionMap().getParentPermissions(permission)) {
+            Node node = this.sourceMap.get(parent.getPermission());
+            if (node != null && node.getValue() == parent.getValue()) {
+                return RESULT_FACTORY.resultWithOverride(node, Tristate.of(parent.getChildValue()));
+            }
         }
-        return this.childPermissions.getOrDefault(permission, TristateResult.UNDEFINED);
-    }
-
-    @Override
-    public void refresh() {
-        Map<String, TristateResult> childPermissions = new HashMap<>();
-        this.sourceMap.forEach((key, node) -> {
-            Map<String, Boolean> children = this.plugin.getPermissionMap().getChildPermissions(key, node.getValue());
-            children.forEach((childKey, childValue) -> {
-                childPermissions.put(childKey, RESULT_FACTORY.resultWithOverride(node, Tristate.of(childValue)));
-            });
-        });
-        this.childPermissions = childPermissions;
-        this.needsRefresh.set(false);
-    }
-
-    @Override
-    public void invalidate() {
-        this.needsRefresh.set(true);
+        return TristateResult.UNDEFINED;
     }
 }
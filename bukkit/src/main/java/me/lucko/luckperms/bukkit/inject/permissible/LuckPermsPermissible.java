@@ -294,6 +294,7 @@ public class LuckPermsPermissible extends PermissibleBase {
         // (#invalidate is a fast call)
         if (this.queryOptionsSupplier != null) { // this method is called by the super class constructor, before this class has fully initialised
             this.queryOptionsSupplier.invalidate();
+            this.plugin.getPermissionSubscriberIndex().invalidate(this.player.getUniqueId());
         }
 
         // but we don't need to do anything else in this method, unlike the CB impl.
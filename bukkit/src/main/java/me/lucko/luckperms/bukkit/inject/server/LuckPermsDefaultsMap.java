@@ -96,6 +96,7 @@ public final class LuckPermsDefaultsMap implements Map<Boolean, Set<Permission>>
         getCache(op).invalidate();
         this.plugin.getUserManager().invalidateAllPermissionCalculators();
         this.plugin.getGroupManager().invalidateAllPermissionCalculators();
+        this.plugin.getPermissionSubscriberIndex().invalidateAll();
     }
 
     /**
@@ -25,7 +25,9 @@
 
 package me.lucko.luckperms.bukkit.inject.server;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import me.lucko.luckperms.common.cache.LoadingMap;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
@@ -38,11 +40,13 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import java.lang.reflect.Field;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * A replacement map for the 'permissions' instance in Bukkit's SimplePluginManager.
@@ -76,6 +80,9 @@ public final class LuckPermsPermissionMap extends ForwardingMap<String, Permissi
     private final Map<String, Map<String, Boolean>> trueChildPermissions = LoadingMap.of(new ChildPermissionResolver(true));
     private final Map<String, Map<String, Boolean>> falseChildPermissions = LoadingMap.of(new ChildPermissionResolver(false));
 
+    // cache from child permission --> the permissions which grant it, resolved when first requested
+    private volatile Supplier<Map<String, List<ParentPermission>>> parentPermissions = Suppliers.memoize(this::resolveParentPermissions);
+
     /**
      * The plugin instance
      */
@@ -90,11 +97,44 @@ public final class LuckPermsPermissionMap extends ForwardingMap<String, Permissi
         return value ? this.trueChildPermissions.get(permission) : this.falseChildPermissions.get(permission);
     }
 
+    /**
+     * Gets the permissions which grant the given permission as a child, shared between
+     * all permission holders.
+     *
+     * @param permission the child permission, in lowercase
+     * @return the parent permissions
+     */
+    public List<ParentPermission> getParentPermissions(String permission) {
+        return this.parentPermissions.get().getOrDefault(permission, Collections.emptyList());
+    }
+
+    private Map<String, List<ParentPermission>> resolveParentPermissions() {
+        Map<String, ImmutableList.Builder<ParentPermission>> parents = new HashMap<>();
+        for (Map.Entry<String, Permission> entry : this.delegate.entrySet()) {
+            if (entry.getValue().getChildren().isEmpty()) {
+                continue;
+            }
+
+            String key = entry.getKey();
+            for (boolean value : new boolean[]{true, false}) {
+                getChildPermissions(key, value).forEach((childKey, childValue) -> {
+                    parents.computeIfAbsent(childKey, x -> ImmutableList.builder()).add(new ParentPermission(key, value, childValue));
+                });
+            }
+        }
+
+        ImmutableMap.Builder<String, List<ParentPermission>> map = ImmutableMap.builder();
+        parents.forEach((childKey, builder) -> map.put(childKey, builder.build()));
+        return map.build();
+    }
+
     private void update() {
         this.trueChildPermissions.clear();
         this.falseChildPermissions.clear();
+        this.parentPermissions = Suppliers.memoize(this::resolveParentPermissions);
         this.plugin.getUserManager().invalidateAllPermissionCalculators();
         this.plugin.getGroupManager().invalidateAllPermissionCalculators();
+        this.plugin.getPermissionSubscriberIndex().invalidateAll();
     }
 
     @Override
@@ -155,6 +195,33 @@ public final class LuckPermsPermissionMap extends ForwardingMap<String, Permissi
         return super.get(key);
     }
 
+    /**
+     * A permission which grants a child permission when it is set to a given value.
+     */
+    public static final class ParentPermission {
+        private final String permission;
+        private final boolean value;
+        private final boolean childValue;
+
+        ParentPermission(String permission, boolean value, boolean childValue) {
+            this.permission = permission;
+            this.value = value;
+            this.childValue = childValue;
+        }
+
+        public String getPermission() {
+            return this.permission;
+        }
+
+        public boolean getValue() {
+            return this.value;
+        }
+
+        public boolean getChildValue() {
+            return this.childValue;
+        }
+    }
+
     private final class ChildPermissionResolver implements Function<String, Map<String, Boolean>> {
         private final boolean value;
 
@@ -38,6 +38,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A replacement map for the 'permSubs' instance in Bukkit's SimplePluginManager.
@@ -66,8 +67,12 @@ public final class LuckPermsSubscriptionMap implements Map<String, Map<Permissib
     // the plugin instance
     final LPBukkitPlugin plugin;
 
+    // non-player permissible --> subscribed permissions
     private final Map<Permissible, Set<String>> subscriptions = Collections.synchronizedMap(new WeakHashMap<>());
 
+    // permission --> subscribed non-player permissibles
+    private final Map<String, Set<Permissible>> subscribers = new ConcurrentHashMap<>();
+
     public LuckPermsSubscriptionMap(LPBukkitPlugin plugin, Map<String, Map<Permissible, Boolean>> existingData) {
         this.plugin = plugin;
         for (Entry<String, Map<Permissible, Boolean>> entry : existingData.entrySet()) {
@@ -94,6 +99,9 @@ public final class LuckPermsSubscriptionMap implements Map<String, Map<Permissib
 
         Set<String> perms = this.subscriptions.computeIfAbsent(permissible, x -> Collections.synchronizedSet(new HashSet<>()));
         perms.add(permission);
+
+        Set<Permissible> permissibles = this.subscribers.computeIfAbsent(permission, x -> Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>())));
+        permissibles.add(permissible);
     }
 
     public boolean unsubscribe(Permissible permissible, String permission) {
@@ -101,6 +109,11 @@ public final class LuckPermsSubscriptionMap implements Map<String, Map<Permissib
             return false; // ignore calls for players
         }
 
+        Set<Permissible> permissibles = this.subscribers.get(permission);
+        if (permissibles != null) {
+            permissibles.remove(permissible);
+        }
+
         Set<String> perms = this.subscriptions.get(permissible);
 
         if (perms == null) {
@@ -111,23 +124,21 @@ public final class LuckPermsSubscriptionMap implements Map<String, Map<Permissib
     }
 
     public @NonNull Set<Permissible> subscribers(String permission) {
-        Collection<? extends Player> onlinePlayers = this.plugin.getBootstrap().getServer().getOnlinePlayers();
-        Set<Permissible> set = new HashSet<>(onlinePlayers.size() + this.subscriptions.size());
-
-        // add permissibles from the subscriptions map
-        this.subscriptions.forEach((permissible, perms) -> {
-            if (perms.contains(permission)) {
-                set.add(permissible);
-            }
-        });
+        // online players who meet requirements are looked up from the index
+        Set<Player> players = this.plugin.getPermissionSubscriberIndex().getSubscribers(permission);
 
-        // add any online players who meet requirements
-        for (Player player : onlinePlayers) {
-            if (player.hasPermission(permission) || player.isPermissionSet(permission)) {
-                set.add(player);
-            }
+        // other permissibles are looked up from the subscriptions made for the permission
+        Set<Permissible> permissibles = this.subscribers.get(permission);
+        if (permissibles == null) {
+            return new HashSet<>(players);
         }
 
+        Set<Permissible> set;
+        synchronized (permissibles) {
+            set = new HashSet<>(players.size() + permissibles.size());
+            set.addAll(permissibles);
+        }
+        set.addAll(players);
         return set;
     }
 
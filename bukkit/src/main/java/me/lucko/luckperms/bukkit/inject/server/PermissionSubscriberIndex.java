@@ -0,0 +1,225 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.bukkit.inject.server;
+
+import me.lucko.luckperms.bukkit.LPBukkitPlugin;
+import me.lucko.luckperms.common.event.LuckPermsEventListener;
+import me.lucko.luckperms.common.inheritance.InheritanceGraph;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.event.EventBus;
+import net.luckperms.api.event.context.ContextUpdateEvent;
+import net.luckperms.api.event.group.GroupDataRecalculateEvent;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A reverse index from permissions to the online players who are subscribed to them,
+ * used by {@link LuckPermsSubscriptionMap}.
+ *
+ * <p>A player is subscribed to a permission if they have it, or if it is explicitly set.
+ * Each permission is indexed the first time it is queried. After that, the entries are
+ * kept up to date by recomputing them for a player whenever their data, contexts or
+ * op status change, so reading the subscribers never has to check every online player.</p>
+ *
+ * <p>Updates are queued and applied off-thread in batches, so a burst of changes for the
+ * same player is only recomputed once.</p>
+ */
+public final class PermissionSubscriberIndex implements LuckPermsEventListener, Listener {
+
+    private final LPBukkitPlugin plugin;
+
+    // permission --> subscribed online players
+    private final Map<String, Set<Player>> index = new ConcurrentHashMap<>();
+
+    // the players whose entries need to be recomputed
+    private final Set<UUID> pendingUpdates = ConcurrentHashMap.newKeySet();
+
+    // if a task has been scheduled to process the pending updates
+    private final AtomicBoolean updateScheduled = new AtomicBoolean(false);
+
+    public PermissionSubscriberIndex(LPBukkitPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void bind(EventBus bus) {
+        bus.subscribe(GroupDataRecalculateEvent.class, e -> invalidateMembers(e.getGroup().getName()));
+        bus.subscribe(ContextUpdateEvent.class, e -> e.getSubject(Player.class).ifPresent(p -> invalidate(p.getUniqueId())));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent e) {
+        invalidate(e.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent e) {
+        Player player = e.getPlayer();
+        remove(player.getUniqueId());
+
+        // the player is still online until the quit event has finished, so an update which
+        // is applied in the meantime could add them back - check again on the next tick
+        this.plugin.getBootstrap().getScheduler().sync(() -> invalidate(player.getUniqueId()));
+    }
+
+    /**
+     * Gets the online players subscribed to the given permission.
+     *
+     * @param permission the permission
+     * @return the subscribed players
+     */
+    public Set<Player> getSubscribers(String permission) {
+        Set<Player> subscribers = this.index.get(permission);
+        if (subscribers != null) {
+            return subscribers;
+        }
+
+        // index the permission under the lock, so it can't miss an update
+        // which is being applied concurrently
+        synchronized (this) {
+            return this.index.computeIfAbsent(permission, this::calculate);
+        }
+    }
+
+    /**
+     * Marks the entries for the given player as out of date.
+     *
+     * @param uniqueId the unique id of the player
+     */
+    public void invalidate(UUID uniqueId) {
+        this.pendingUpdates.add(uniqueId);
+        scheduleUpdate();
+    }
+
+    /**
+     * Marks the entries for every online player as out of date.
+     *
+     * <p>Used when something which affects every player changes, e.g. the
+     * registered permission defaults.</p>
+     */
+    public void invalidateAll() {
+        for (Player player : this.plugin.getBootstrap().getServer().getOnlinePlayers()) {
+            this.pendingUpdates.add(player.getUniqueId());
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * Marks the entries for the online players who inherit the given group as out of date.
+     *
+     * @param groupName the name of the group
+     */
+    private void invalidateMembers(String groupName) {
+        if (this.index.isEmpty()) {
+            return;
+        }
+
+        InheritanceGraph graph = this.plugin.getInheritanceGraphFactory().getGraph(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL);
+        for (Player player : this.plugin.getBootstrap().getServer().getOnlinePlayers()) {
+            User user = this.plugin.getUserManager().getIfLoaded(player.getUniqueId());
+            if (user != null && inherits(graph, user, groupName)) {
+                this.pendingUpdates.add(player.getUniqueId());
+            }
+        }
+        scheduleUpdate();
+    }
+
+    private static boolean inherits(InheritanceGraph graph, User user, String groupName) {
+        for (PermissionHolder inherited : graph.traverse(user)) {
+            if (inherited instanceof Group && ((Group) inherited).getName().equals(groupName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleUpdate() {
+        if (!this.pendingUpdates.isEmpty() && this.updateScheduled.compareAndSet(false, true)) {
+            this.plugin.getBootstrap().getScheduler().async(this::processPendingUpdates);
+        }
+    }
+
+    private void processPendingUpdates() {
+        this.updateScheduled.set(false);
+
+        for (Iterator<UUID> it = this.pendingUpdates.iterator(); it.hasNext(); ) {
+            UUID uniqueId = it.next();
+            it.remove();
+
+            Player player = this.plugin.getBootstrap().getServer().getPlayer(uniqueId);
+            if (player != null) {
+                update(player);
+            } else {
+                remove(uniqueId);
+            }
+        }
+    }
+
+    private synchronized void remove(UUID uniqueId) {
+        for (Set<Player> subscribers : this.index.values()) {
+            subscribers.removeIf(p -> p.getUniqueId().equals(uniqueId));
+        }
+    }
+
+    private synchronized void update(Player player) {
+        this.index.forEach((permission, subscribers) -> {
+            if (isSubscribed(player, permission)) {
+                subscribers.add(player);
+            } else {
+                subscribers.remove(player);
+            }
+        });
+    }
+
+    private Set<Player> calculate(String permission) {
+        Set<Player> subscribers = ConcurrentHashMap.newKeySet();
+        for (Player player : this.plugin.getBootstrap().getServer().getOnlinePlayers()) {
+            if (isSubscribed(player, permission)) {
+                subscribers.add(player);
+            }
+        }
+        return subscribers;
+    }
+
+    private static boolean isSubscribed(Player player, String permission) {
+        return player.hasPermission(permission) || player.isPermissionSet(permission);
+    }
+
+}
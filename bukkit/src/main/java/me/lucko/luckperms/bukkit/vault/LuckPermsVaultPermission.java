@@ -80,8 +80,16 @@ public class LuckPermsVaultPermission extends AbstractVaultPermission {
     // the plugin instance
     private final LPBukkitPlugin plugin;
 
+    // keeps offline players looked up via vault loaded
+    private final VaultOfflineUserCache offlineUserCache;
+
     public LuckPermsVaultPermission(LPBukkitPlugin plugin) {
         this.plugin = plugin;
+        this.offlineUserCache = new VaultOfflineUserCache(plugin);
+    }
+
+    public VaultOfflineUserCache getOfflineUserCache() {
+        return this.offlineUserCache;
     }
 
     @Override
@@ -132,6 +140,7 @@ public class LuckPermsVaultPermission extends AbstractVaultPermission {
         // loaded already?
         User user = this.plugin.getUserManager().getIfLoaded(uuid);
         if (user != null) {
+            this.offlineUserCache.recordLookup(uuid);
             return user;
         }
 
@@ -150,11 +159,13 @@ public class LuckPermsVaultPermission extends AbstractVaultPermission {
 
         // are we on the main thread?
         if (!this.plugin.getBootstrap().isServerStarting() && this.plugin.getBootstrap().getServer().isPrimaryThread() && !this.plugin.getConfiguration().get(ConfigKeys.VAULT_UNSAFE_LOOKUPS)) {
+            // load the user in the background, so the next lookup can be answered from memory
+            this.offlineUserCache.loadInBackground(uuid);
             throw new ServerThreadLookupException(uuid);
         }
 
         // load an instance from the DB
-        return this.plugin.getStorage().loadUser(uuid, null).join();
+        return this.offlineUserCache.load(uuid);
     }
 
     @Override
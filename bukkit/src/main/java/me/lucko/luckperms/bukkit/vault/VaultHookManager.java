@@ -75,6 +75,7 @@ public class VaultHookManager {
 
         if (this.permission != null) {
             servicesManager.unregister(Permission.class, this.permission);
+            this.permission.getOfflineUserCache().invalidateAll();
             this.permission = null;
         }
 
@@ -0,0 +1,150 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.bukkit.vault;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import me.lucko.luckperms.bukkit.LPBukkitPlugin;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.util.CaffeineFactory;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the data of offline players loaded after they have been looked up via Vault.
+ *
+ * <p>Users in the cache are retained by the {@link me.lucko.luckperms.common.model.manager.user.UserHousekeeper},
+ * so they stay in the user manager and are refreshed by sync tasks and messaging updates in the same way
+ * as online players. This allows repeated lookups to be answered from memory, including from the main thread.</p>
+ */
+public class VaultOfflineUserCache {
+    private final LPBukkitPlugin plugin;
+
+    /**
+     * The players currently being retained, or null if the cache is disabled
+     */
+    private final Cache<UUID, Boolean> retained;
+
+    /**
+     * The players currently being loaded in the background
+     */
+    private final Set<UUID> loading = ConcurrentHashMap.newKeySet();
+
+    public VaultOfflineUserCache(LPBukkitPlugin plugin) {
+        this.plugin = plugin;
+
+        int size = plugin.getConfiguration().get(ConfigKeys.VAULT_OFFLINE_CACHE_SIZE);
+        if (size <= 0) {
+            this.retained = null;
+        } else {
+            this.retained = CaffeineFactory.newBuilder()
+                    .maximumSize(size)
+                    .expireAfterAccess(plugin.getConfiguration().get(ConfigKeys.VAULT_OFFLINE_CACHE_EXPIRY), TimeUnit.MINUTES)
+                    .removalListener(this::onRemoval)
+                    .build();
+        }
+    }
+
+    /**
+     * Records that a loaded user has been looked up, extending the time it is retained for.
+     *
+     * @param uuid the uuid of the user
+     */
+    public void recordLookup(UUID uuid) {
+        if (this.retained != null) {
+            this.retained.getIfPresent(uuid);
+        }
+    }
+
+    /**
+     * Loads a user, blocking until the load is complete, and retains the result.
+     *
+     * @param uuid the uuid of the user
+     * @return the user
+     */
+    public User load(UUID uuid) {
+        retain(uuid);
+        return this.plugin.getStorage().loadUser(uuid, null).join();
+    }
+
+    /**
+     * Starts loading a user in the background, so that subsequent lookups can be answered from memory.
+     *
+     * @param uuid the uuid of the user
+     */
+    public void loadInBackground(UUID uuid) {
+        if (this.retained == null || !this.loading.add(uuid)) {
+            return;
+        }
+
+        retain(uuid);
+        this.plugin.getStorage().loadUser(uuid, null).whenComplete((user, ex) -> {
+            this.loading.remove(uuid);
+            if (ex != null) {
+                this.plugin.getLogger().warn("Unable to load offline user data for " + uuid + " requested via Vault", ex);
+            }
+        });
+    }
+
+    private void retain(UUID uuid) {
+        if (this.retained != null) {
+            // retain before loading, so the housekeeper doesn't unload the user in the meantime.
+            // this is done while holding the entry, so it can't interleave with a pending release
+            this.retained.asMap().compute(uuid, (k, v) -> {
+                this.plugin.getUserManager().getHouseKeeper().retain(k);
+                return Boolean.TRUE;
+            });
+        }
+    }
+
+    private void onRemoval(UUID uuid, Boolean value, RemovalCause cause) {
+        if (uuid == null || cause == RemovalCause.REPLACED) {
+            return;
+        }
+
+        // removal notifications are delivered asynchronously, so only release the user
+        // if it hasn't been retained again in the meantime. the check and release are
+        // done atomically with respect to #retain
+        this.retained.asMap().computeIfAbsent(uuid, k -> {
+            this.plugin.getUserManager().getHouseKeeper().release(k);
+            return null;
+        });
+    }
+
+    /**
+     * Releases all retained users.
+     */
+    public void invalidateAll() {
+        if (this.retained != null) {
+            this.retained.invalidateAll();
+        }
+    }
+
+}
@@ -41,6 +41,14 @@ public class BungeeEventBus extends AbstractEventBus<Plugin> implements Listener
         this.bootstrap = plugin.getBootstrap();
     }
 
+    @Override
+    public String getPluginName(Object plugin) {
+        if (plugin instanceof Plugin) {
+            return ((Plugin) plugin).getDescription().getName();
+        }
+        return super.getPluginName(plugin);
+    }
+
     @Override
     protected Plugin checkPlugin(Object plugin) throws IllegalArgumentException {
         if (plugin instanceof Plugin) {
@@ -0,0 +1,131 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.actionlog;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.util.Paginated;
+
+import java.util.List;
+
+/**
+ * A single page of results read from the action log.
+ *
+ * <p>Entries are ordered oldest first, and are numbered by their position in
+ * the full (filtered) log, so that page {@code n} of a log contains entries
+ * {@code (n - 1) * pageSize + 1} to {@code n * pageSize}.</p>
+ */
+public final class LogPage {
+
+    /**
+     * Page number which can be requested to obtain the last (most recent) page.
+     */
+    public static final int LAST_PAGE = Integer.MIN_VALUE;
+
+    /**
+     * Paginates an already filtered and sorted list of actions in memory.
+     *
+     * @param content the content, ordered oldest first
+     * @param pageSize the page size
+     * @param pageNumber the page number, or {@link #LAST_PAGE}
+     * @return the page
+     */
+    public static LogPage paginate(List<LoggedAction> content, int pageSize, int pageNumber) {
+        int totalEntries = content.size();
+        int pageNo = resolvePageNumber(totalEntries, pageSize, pageNumber);
+        if (!isInRange(totalEntries, pageSize, pageNo)) {
+            return new LogPage(ImmutableList.of(), pageNo, pageSize, totalEntries);
+        }
+        return new LogPage(new Paginated<>(content).getPage(pageNo, pageSize), pageNo, pageSize, totalEntries);
+    }
+
+    /**
+     * Resolves {@link #LAST_PAGE} into a real page number.
+     *
+     * @param totalEntries the total number of entries
+     * @param pageSize the page size
+     * @param pageNumber the requested page number
+     * @return the resolved page number
+     */
+    public static int resolvePageNumber(int totalEntries, int pageSize, int pageNumber) {
+        return pageNumber == LAST_PAGE ? maxPages(totalEntries, pageSize) : pageNumber;
+    }
+
+    /**
+     * Gets if the given (resolved) page number exists.
+     *
+     * @param totalEntries the total number of entries
+     * @param pageSize the page size
+     * @param pageNumber the page number
+     * @return true if the page exists
+     */
+    public static boolean isInRange(int totalEntries, int pageSize, int pageNumber) {
+        return pageNumber >= 1 && pageNumber <= maxPages(totalEntries, pageSize);
+    }
+
+    private static int maxPages(int totalEntries, int pageSize) {
+        return (totalEntries + pageSize - 1) / pageSize;
+    }
+
+    private final List<Paginated.Entry<LoggedAction>> content;
+    private final int pageNumber;
+    private final int pageSize;
+    private final int totalEntries;
+
+    public LogPage(List<Paginated.Entry<LoggedAction>> content, int pageNumber, int pageSize, int totalEntries) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize cannot be less than 1: " + pageSize);
+        }
+        this.content = ImmutableList.copyOf(content);
+        this.pageNumber = pageNumber;
+        this.pageSize = pageSize;
+        this.totalEntries = totalEntries;
+    }
+
+    /**
+     * Gets the entries on this page. Empty if the page is out of range.
+     *
+     * @return the entries
+     */
+    public List<Paginated.Entry<LoggedAction>> getContent() {
+        return this.content;
+    }
+
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    public int getTotalEntries() {
+        return this.totalEntries;
+    }
+
+    public int getMaxPages() {
+        return maxPages(this.totalEntries, this.pageSize);
+    }
+}
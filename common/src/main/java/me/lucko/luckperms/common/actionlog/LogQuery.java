@@ -0,0 +1,223 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.actionlog;
+
+import net.luckperms.api.actionlog.Action;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Describes a subset of the action log to be read from storage.
+ *
+ * <p>Queries are deliberately simple so that storage implementations are
+ * able to push the filtering down to their backing store.</p>
+ */
+public final class LogQuery {
+    private static final LogQuery ALL = new LogQuery(null, null, null, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    /**
+     * Returns a query matching all entries.
+     *
+     * @return the query
+     */
+    public static LogQuery all() {
+        return ALL;
+    }
+
+    /**
+     * Returns a query matching entries performed by the given actor.
+     *
+     * @param actor the actor
+     * @return the query
+     */
+    public static LogQuery actor(UUID actor) {
+        Objects.requireNonNull(actor, "actor");
+        return new LogQuery(actor, null, null, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns a query matching entries which target the given user.
+     *
+     * @param uniqueId the user
+     * @return the query
+     */
+    public static LogQuery user(UUID uniqueId) {
+        Objects.requireNonNull(uniqueId, "uniqueId");
+        return new LogQuery(null, Action.Target.Type.USER, uniqueId, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns a query matching entries which target the given group.
+     *
+     * @param name the group name
+     * @return the query
+     */
+    public static LogQuery group(String name) {
+        Objects.requireNonNull(name, "name");
+        return new LogQuery(null, Action.Target.Type.GROUP, null, name, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns a query matching entries which target the given track.
+     *
+     * @param name the track name
+     * @return the query
+     */
+    public static LogQuery track(String name) {
+        Objects.requireNonNull(name, "name");
+        return new LogQuery(null, Action.Target.Type.TRACK, null, name, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns a query matching entries which contain the given text, using
+     * the same rules as {@link LoggedAction#matchesSearch(String)}.
+     *
+     * @param search the text to search for
+     * @return the query
+     */
+    public static LogQuery search(String search) {
+        Objects.requireNonNull(search, "search");
+        return new LogQuery(null, null, null, null, search.toLowerCase(Locale.ROOT), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private final @Nullable UUID actor;
+    private final Action.Target.@Nullable Type targetType;
+    private final @Nullable UUID targetUniqueId;
+    private final @Nullable String targetName;
+    private final @Nullable String search;
+    private final long minTime;
+    private final long maxTime;
+
+    private LogQuery(@Nullable UUID actor, Action.Target.@Nullable Type targetType, @Nullable UUID targetUniqueId, @Nullable String targetName, @Nullable String search, long minTime, long maxTime) {
+        this.actor = actor;
+        this.targetType = targetType;
+        this.targetUniqueId = targetUniqueId;
+        this.targetName = targetName;
+        this.search = search;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Returns a copy of this query which only matches entries logged within
+     * the given time range.
+     *
+     * @param minTime the earliest timestamp to match, in epoch seconds (inclusive)
+     * @param maxTime the latest timestamp to match, in epoch seconds (inclusive)
+     * @return the query
+     */
+    public LogQuery between(long minTime, long maxTime) {
+        if (minTime > maxTime) {
+            throw new IllegalArgumentException("minTime > maxTime: " + minTime + " > " + maxTime);
+        }
+        return new LogQuery(this.actor, this.targetType, this.targetUniqueId, this.targetName, this.search, minTime, maxTime);
+    }
+
+    public @Nullable UUID getActor() {
+        return this.actor;
+    }
+
+    public Action.Target.@Nullable Type getTargetType() {
+        return this.targetType;
+    }
+
+    public @Nullable UUID getTargetUniqueId() {
+        return this.targetUniqueId;
+    }
+
+    public @Nullable String getTargetName() {
+        return this.targetName;
+    }
+
+    /**
+     * Gets the (lowercase) text to search for.
+     *
+     * @return the search text
+     */
+    public @Nullable String getSearch() {
+        return this.search;
+    }
+
+    public long getMinTime() {
+        return this.minTime;
+    }
+
+    public long getMaxTime() {
+        return this.maxTime;
+    }
+
+    public boolean hasTimeRange() {
+        return this.minTime != Long.MIN_VALUE || this.maxTime != Long.MAX_VALUE;
+    }
+
+    /**
+     * Tests whether the given action matches this query.
+     *
+     * @param action the action
+     * @return if the action matches
+     */
+    public boolean matches(Action action) {
+        if (this.actor != null && !action.getSource().getUniqueId().equals(this.actor)) {
+            return false;
+        }
+        if (this.targetType != null && action.getTarget().getType() != this.targetType) {
+            return false;
+        }
+        if (this.targetUniqueId != null && !action.getTarget().getUniqueId().filter(this.targetUniqueId::equals).isPresent()) {
+            return false;
+        }
+        if (this.targetName != null && !action.getTarget().getName().equals(this.targetName)) {
+            return false;
+        }
+        if (this.search != null && !matchesSearch(action, this.search)) {
+            return false;
+        }
+
+        long time = action.getTimestamp().getEpochSecond();
+        return time >= this.minTime && time <= this.maxTime;
+    }
+
+    private static boolean matchesSearch(Action action, String search) {
+        return action.getSource().getName().toLowerCase(Locale.ROOT).contains(search) ||
+                action.getTarget().getName().toLowerCase(Locale.ROOT).contains(search) ||
+                action.getDescription().toLowerCase(Locale.ROOT).contains(search);
+    }
+
+    @Override
+    public String toString() {
+        return "LogQuery(" +
+                "actor=" + this.actor + ", " +
+                "targetType=" + this.targetType + ", " +
+                "targetUniqueId=" + this.targetUniqueId + ", " +
+                "targetName=" + this.targetName + ", " +
+                "search=" + this.search + ", " +
+                "minTime=" + this.minTime + ", " +
+                "maxTime=" + this.maxTime + ")";
+    }
+}
@@ -26,6 +26,7 @@
 package me.lucko.luckperms.common.backup;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import me.lucko.luckperms.common.http.AbstractHttpClient;
 import me.lucko.luckperms.common.http.UnsuccessfulRequestException;
 import me.lucko.luckperms.common.locale.Message;
@@ -37,7 +38,6 @@ import me.lucko.luckperms.common.node.utils.NodeJsonSerializer;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.storage.Storage;
-import me.lucko.luckperms.common.util.CompletableFutures;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import me.lucko.luckperms.common.util.gson.JArray;
 import me.lucko.luckperms.common.util.gson.JObject;
@@ -46,29 +46,21 @@ import net.kyori.adventure.text.Component;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
 
@@ -78,12 +70,21 @@ import java.util.zip.GZIPOutputStream;
 public abstract class Exporter implements Runnable {
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z");
 
+    /**
+     * The number of users to load from storage at a time
+     */
+    private static final int USER_BATCH_SIZE = 128;
+
     protected final LuckPermsPlugin plugin;
     private final Sender executor;
     private final boolean includeUsers;
     private final boolean includeGroups;
     protected final ProgressLogger log;
 
+    private int userCount;
+    private int failedUserCount;
+    private long lastProgressReport;
+
     protected Exporter(LuckPermsPlugin plugin, Sender executor, boolean includeUsers, boolean includeGroups) {
         this.plugin = plugin;
         this.executor = executor;
@@ -97,29 +98,53 @@ public abstract class Exporter implements Runnable {
 
     @Override
     public void run() {
-        JsonObject json = new JsonObject();
-        json.add("metadata", new JObject()
-                .add("generatedBy", this.executor.getNameWithLocation())
-                .add("generatedAt", DATE_FORMAT.format(new Date(System.currentTimeMillis())))
-                .toJson());
-
-        if (this.includeGroups) {
-            this.log.log("Gathering group data...");
-            json.add("groups", exportGroups());
-
-            this.log.log("Gathering track data...");
-            json.add("tracks", exportTracks());
-        }
+        try (JsonWriter writer = GsonProvider.normal().newJsonWriter(new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(openOutput()), StandardCharsets.UTF_8)))) {
+            writer.beginObject();
+
+            writer.name("metadata");
+            GsonProvider.normal().toJson(new JObject()
+                    .add("generatedBy", this.executor.getNameWithLocation())
+                    .add("generatedAt", DATE_FORMAT.format(new Date(System.currentTimeMillis())))
+                    .toJson(), writer);
+
+            if (this.includeGroups) {
+                this.log.log("Gathering group data...");
+                writer.name("groups");
+                GsonProvider.normal().toJson(exportGroups(), writer);
+
+                this.log.log("Gathering track data...");
+                writer.name("tracks");
+                GsonProvider.normal().toJson(exportTracks(), writer);
+            }
 
-        if (this.includeUsers) {
-            this.log.log("Gathering user data...");
-            json.add("users", exportUsers());
+            if (this.includeUsers) {
+                this.log.log("Gathering user data...");
+                writer.name("users");
+                exportUsers(writer);
+            }
+
+            writer.endObject();
+        } catch (IOException e) {
+            this.plugin.getLogger().severe("Error whilst writing export data", e);
+            this.log.getListeners().forEach(Message.EXPORT_FILE_FAILURE::send);
+            return;
         }
 
-        processOutput(json);
+        processOutput();
     }
 
-    protected abstract void processOutput(JsonObject json);
+    /**
+     * Opens the stream the (compressed) export data should be written to.
+     *
+     * @return the output stream
+     * @throws IOException if an error occurs
+     */
+    protected abstract OutputStream openOutput() throws IOException;
+
+    /**
+     * Called once all of the export data has been written to the output.
+     */
+    protected abstract void processOutput();
 
     private JsonObject exportGroups() {
         JsonObject out = new JsonObject();
@@ -151,73 +176,68 @@ public abstract class Exporter implements Runnable {
         return out;
     }
 
-    private JsonObject exportUsers() {
-        // Users are migrated in separate threads.
-        // This is because there are likely to be a lot of them, and because we can.
-        // It's a big speed improvement, since the database/files are split up and can handle concurrent reads.
+    private void exportUsers(JsonWriter writer) throws IOException {
+        // Users are loaded in batches by the storage implementation, which pages
+        // through its data in whichever way is most efficient. Each batch is
+        // written out and released before the next one is loaded.
+        // Users are sorted within each batch, but the order of the batches is
+        // decided by the storage, so the output isn't sorted as a whole.
 
-        this.log.log("Finding a list of unique users to export.");
+        this.log.log("Exporting users in batches of " + USER_BATCH_SIZE + ".");
 
-        // Find all of the unique users we need to export
         Storage ds = this.plugin.getStorage();
-        Set<UUID> users = ds.getUniqueUsers().join();
-        this.log.log("Found " + users.size() + " unique users to export.");
-
-        // create a threadpool to process the users concurrently
-        ExecutorService executor = Executors.newFixedThreadPool(32);
-
-        // A set of futures, which are really just the processes we need to wait for.
-        Set<CompletableFuture<Void>> futures = new HashSet<>();
-
-        AtomicInteger userCount = new AtomicInteger(0);
-        Map<UUID, JsonObject> out = Collections.synchronizedMap(new TreeMap<>());
-
-        // iterate through each user.
-        for (UUID uuid : users) {
-            // register a task for the user, and schedule it's execution with the pool
-            futures.add(CompletableFuture.runAsync(() -> {
-                User user = this.plugin.getStorage().loadUser(uuid, null).join();
-                out.put(user.getUniqueId(), new JObject()
-                        .consume(obj -> {
-                            user.getUsername().ifPresent(username -> obj.add("username", username));
-                            if (!user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME).equalsIgnoreCase(GroupManager.DEFAULT_GROUP_NAME)) {
-                                obj.add("primaryGroup", user.getPrimaryGroup().getStoredValue().get());
-                            }
-                        })
-                        .add("nodes", NodeJsonSerializer.serializeNodes(user.normalData().asSet()))
-                        .toJson());
-                this.plugin.getUserManager().getHouseKeeper().cleanup(user.getUniqueId());
-                userCount.incrementAndGet();
-            }, executor));
-        }
-
-        // all of the threads have been scheduled now and are running. we just need to wait for them all to complete
-        CompletableFuture<Void> overallFuture = CompletableFutures.allOf(futures);
-
-        while (true) {
-            try {
-                overallFuture.get(5, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException e) {
-                // abnormal error - just break
-                e.printStackTrace();
-                break;
-            } catch (TimeoutException e) {
-                // still executing - send a progress report and continue waiting
-                this.log.logProgress("Exported " + userCount.get() + " users so far.");
-                continue;
+        this.userCount = 0;
+        this.failedUserCount = 0;
+        this.lastProgressReport = System.currentTimeMillis();
+
+        writer.beginObject();
+        try {
+            ds.streamUsers(USER_BATCH_SIZE, users -> {
+                List<User> batch = new ArrayList<>(users.values());
+                batch.sort(Comparator.comparing(User::getUniqueId));
+
+                for (User user : batch) {
+                    writer.name(user.getUniqueId().toString());
+                    GsonProvider.normal().toJson(exportUser(user), writer);
+                    this.plugin.getUserManager().getHouseKeeper().cleanup(user.getUniqueId());
+                }
+                this.userCount += batch.size();
+
+                long now = System.currentTimeMillis();
+                if (now - this.lastProgressReport >= TimeUnit.SECONDS.toMillis(5)) {
+                    // send a progress report and continue
+                    this.log.logProgress("Exported " + this.userCount + " users so far.");
+                    this.lastProgressReport = now;
+                }
+            }, (uniqueId, e) -> {
+                this.plugin.getLogger().warn("Unable to load user " + uniqueId + " for export - skipping", e);
+                this.failedUserCount++;
+            }).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
-
-            // process is complete
-            break;
+            throw new IOException("Error whilst loading users", cause);
         }
+        writer.endObject();
 
-        executor.shutdown();
-
-        JsonObject outJson = new JsonObject();
-        for (Map.Entry<UUID, JsonObject> entry : out.entrySet()) {
-            outJson.add(entry.getKey().toString(), entry.getValue());
+        this.log.log("Exported " + this.userCount + " users.");
+        if (this.failedUserCount != 0) {
+            this.log.log("Skipped " + this.failedUserCount + " users which could not be loaded - see the console for details.");
         }
-        return outJson;
+    }
+
+    private static JsonObject exportUser(User user) {
+        return new JObject()
+                .consume(obj -> {
+                    user.getUsername().ifPresent(username -> obj.add("username", username));
+                    if (!user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME).equalsIgnoreCase(GroupManager.DEFAULT_GROUP_NAME)) {
+                        obj.add("primaryGroup", user.getPrimaryGroup().getStoredValue().get());
+                    }
+                })
+                .add("nodes", NodeJsonSerializer.serializeNodes(user.normalData().asSet()))
+                .toJson();
     }
 
     public static final class SaveFile extends Exporter {
@@ -229,21 +249,19 @@ public abstract class Exporter implements Runnable {
         }
 
         @Override
-        protected void processOutput(JsonObject json) {
-            this.log.log("Finished gathering data, writing file...");
-
-            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(this.filePath)), StandardCharsets.UTF_8))) {
-                GsonProvider.normal().toJson(json, out);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        protected OutputStream openOutput() throws IOException {
+            return Files.newOutputStream(this.filePath);
+        }
 
+        @Override
+        protected void processOutput() {
             this.log.getListeners().forEach(l -> Message.EXPORT_FILE_SUCCESS.send(l, this.filePath.toFile().getAbsolutePath()));
         }
     }
 
     public static final class WebUpload extends Exporter {
         private final String label;
+        private final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
 
         public WebUpload(LuckPermsPlugin plugin, Sender executor, boolean includeUsers, boolean includeGroups, String label) {
             super(plugin, executor, includeUsers, includeGroups);
@@ -251,18 +269,17 @@ public abstract class Exporter implements Runnable {
         }
 
         @Override
-        protected void processOutput(JsonObject json) {
-            this.log.log("Finished gathering data, uploading data...");
+        protected OutputStream openOutput() {
+            // bytebin needs the full content up front, so it is buffered (compressed) in memory
+            return this.bytesOut;
+        }
 
-            ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytesOut), StandardCharsets.UTF_8)) {
-                GsonProvider.normal().toJson(json, writer);
-            } catch (IOException e) {
-                this.plugin.getLogger().severe("Error compressing data", e);
-            }
+        @Override
+        protected void processOutput() {
+            this.log.log("Finished gathering data, uploading data...");
 
             try {
-                String pasteId = this.plugin.getBytebin().postContent(bytesOut.toByteArray(), AbstractHttpClient.JSON_TYPE).key();
+                String pasteId = this.plugin.getBytebin().postContent(this.bytesOut.toByteArray(), AbstractHttpClient.JSON_TYPE).key();
                 this.log.getListeners().forEach(l -> Message.EXPORT_WEB_SUCCESS.send(l, pasteId, this.label));
             } catch (UnsuccessfulRequestException e) {
                 this.log.getListeners().forEach(l -> Message.HTTP_REQUEST_FAILURE.send(l, e.getResponse().code(), e.getResponse().message()));
@@ -30,6 +30,8 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
@@ -38,40 +40,65 @@ import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.node.utils.NodeJsonSerializer;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
-import me.lucko.luckperms.common.util.CompletableFutures;
 import me.lucko.luckperms.common.util.Uuids;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.luckperms.api.event.cause.CreationCause;
 import net.luckperms.api.model.data.DataType;
 import net.luckperms.api.node.Node;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Handles import operations
+ *
+ * <p>Data is applied as it is read: users are grouped into batches, and the
+ * number of batches waiting to be applied is bounded, so the amount of data
+ * held in memory doesn't depend on the size of the import.</p>
  */
-public class Importer implements Runnable {
+public abstract class Importer implements Runnable {
+
+    /**
+     * The number of users loaded from and saved to storage together
+     */
+    private static final int USER_BATCH_SIZE = 100;
+
+    /**
+     * The maximum number of tasks which can be waiting to be applied before reading is paused
+     */
+    private static final int MAX_PENDING_TASKS = 64;
 
-    private final LuckPermsPlugin plugin;
-    private final Set<Sender> notify;
-    private final JsonObject data;
+    protected final LuckPermsPlugin plugin;
+    protected final Set<Sender> notify;
     private final boolean merge;
 
-    public Importer(LuckPermsPlugin plugin, Sender executor, JsonObject data, boolean merge) {
+    // processing state
+    private final Semaphore pendingTasks = new Semaphore(MAX_PENDING_TASKS);
+    private final AtomicInteger processedCount = new AtomicInteger(0);
+    private final AtomicInteger totalCount = new AtomicInteger(0);
+    private final Map<UUID, UserData> userBatch = new HashMap<>();
+    private ExecutorService executor;
+
+    protected Importer(LuckPermsPlugin plugin, Sender executor, boolean merge) {
         this.plugin = plugin;
 
         if (executor.isConsole()) {
@@ -79,7 +106,6 @@ public class Importer implements Runnable {
         } else {
             this.notify = ImmutableSet.of(executor, plugin.getConsoleSender());
         }
-        this.data = data;
         this.merge = merge;
     }
 
@@ -95,24 +121,64 @@ public class Importer implements Runnable {
         }
     }
 
-    private void processGroup(String groupName, Set<Node> nodes) {
-        Group group = this.plugin.getStorage().createAndLoadGroup(groupName, CreationCause.INTERNAL).join();
-        if (this.merge) {
-            group.mergeNodes(DataType.NORMAL, nodes);
-        } else {
-            group.setNodes(DataType.NORMAL, nodes, false);
-        }
-        this.plugin.getStorage().saveGroup(group);
+    /**
+     * Reads the data to be imported, passing it to the process methods as it is read.
+     *
+     * @throws IOException if an error occurs whilst reading
+     */
+    protected abstract void readData() throws IOException;
+
+    protected void processGroup(String groupName, Set<Node> nodes) {
+        schedule(1, () -> {
+            Group group = this.plugin.getStorage().createAndLoadGroup(groupName, CreationCause.INTERNAL).join();
+            if (this.merge) {
+                group.mergeNodes(DataType.NORMAL, nodes);
+            } else {
+                group.setNodes(DataType.NORMAL, nodes, false);
+            }
+            this.plugin.getStorage().saveGroup(group);
+        });
     }
 
-    private void processTrack(String trackName, List<String> groups) {
-        Track track = this.plugin.getStorage().createAndLoadTrack(trackName, CreationCause.INTERNAL).join();
-        track.setGroups(groups);
-        this.plugin.getStorage().saveTrack(track).join();
+    protected void processTrack(String trackName, List<String> groups) {
+        schedule(1, () -> {
+            Track track = this.plugin.getStorage().createAndLoadTrack(trackName, CreationCause.INTERNAL).join();
+            track.setGroups(groups);
+            this.plugin.getStorage().saveTrack(track).join();
+        });
     }
 
     private void processUser(UUID uuid, UserData userData) {
-        User user = this.plugin.getStorage().loadUser(uuid, userData.username).join();
+        this.userBatch.put(uuid, userData);
+        if (this.userBatch.size() >= USER_BATCH_SIZE) {
+            flushUserBatch();
+        }
+    }
+
+    private void flushUserBatch() {
+        if (this.userBatch.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, UserData> batch = new HashMap<>(this.userBatch);
+        this.userBatch.clear();
+
+        schedule(batch.size(), () -> {
+            Map<UUID, User> users = this.plugin.getStorage().loadUsers(batch.keySet()).join();
+            for (Map.Entry<UUID, UserData> entry : batch.entrySet()) {
+                User user = users.get(entry.getKey());
+                if (user == null) {
+                    user = this.plugin.getStorage().loadUser(entry.getKey(), null).join();
+                }
+                importUser(user, entry.getValue());
+            }
+        });
+    }
+
+    private void importUser(User user, UserData userData) {
+        if (userData.username != null) {
+            user.setUsername(userData.username, false);
+        }
         if (userData.primaryGroup != null) {
             user.getPrimaryGroup().setStoredValue(userData.primaryGroup);
         }
@@ -125,45 +191,127 @@ public class Importer implements Runnable {
         this.plugin.getUserManager().getHouseKeeper().cleanup(user.getUniqueId());
     }
 
-    private Set<Map.Entry<String, JsonElement>> getDataSection(String id) {
-        if (this.data.has(id)) {
-            return this.data.get(id).getAsJsonObject().entrySet();
-        } else {
-            return Collections.emptySet();
+    private void schedule(int entries, Runnable task) {
+        // wait for space in the queue - this stops the reader from getting too far ahead of the storage
+        try {
+            while (!this.pendingTasks.tryAcquire(2, TimeUnit.SECONDS)) {
+                sendProgress();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
         }
+
+        this.totalCount.addAndGet(entries);
+        CompletableFuture.runAsync(task, this.executor).whenComplete((result, ex) -> {
+            if (ex != null) {
+                this.plugin.getLogger().warn("Error whilst importing data", ex);
+            }
+            this.processedCount.addAndGet(entries);
+            this.pendingTasks.release();
+        });
     }
 
-    private void parseExportData(Map<String, Set<Node>> groups, Map<String, List<String>> tracks, Map<UUID, UserData> users) {
-        for (Map.Entry<String, JsonElement> group : getDataSection("groups")) {
-            groups.put(group.getKey(), NodeJsonSerializer.deserializeNodes(group.getValue().getAsJsonObject().get("nodes").getAsJsonArray()));
+    protected void parseExportData(JsonObject data) {
+        for (Map.Entry<String, JsonElement> group : getDataSection(data, "groups")) {
+            parseGroup(group.getKey(), group.getValue().getAsJsonObject());
         }
-        for (Map.Entry<String, JsonElement> track : getDataSection("tracks")) {
-            JsonArray trackGroups = track.getValue().getAsJsonObject().get("groups").getAsJsonArray();
-            List<String> trackGroupsList = new ArrayList<>();
-            trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
-            tracks.put(track.getKey(), trackGroupsList);
+        for (Map.Entry<String, JsonElement> track : getDataSection(data, "tracks")) {
+            parseTrack(track.getKey(), track.getValue().getAsJsonObject());
         }
-        for (Map.Entry<String, JsonElement> user : getDataSection("users")) {
-            JsonObject jsonData = user.getValue().getAsJsonObject();
-
-            UUID uuid = UUID.fromString(user.getKey());
-            String username = null;
-            String primaryGroup = null;
-            Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
+        for (Map.Entry<String, JsonElement> user : getDataSection(data, "users")) {
+            parseUser(user.getKey(), user.getValue().getAsJsonObject());
+        }
+    }
 
-            if (jsonData.has("username")) {
-                username = jsonData.get("username").getAsString();
-            }
-            if (jsonData.has("primaryGroup")) {
-                primaryGroup = jsonData.get("primaryGroup").getAsString();
+    /**
+     * Reads data in the export format from a stream, one entry at a time.
+     *
+     * @param reader the reader
+     * @return false if the data turned out to be in another format, and nothing was read
+     * @throws IOException if an error occurs whilst reading
+     */
+    protected boolean parseExportData(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String section = reader.nextName();
+            switch (section) {
+                case "groups":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        parseGroup(name, GsonProvider.normal().fromJson(reader, JsonObject.class));
+                    }
+                    reader.endObject();
+                    break;
+                case "tracks":
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        return false; // web editor data
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        parseTrack(name, GsonProvider.normal().fromJson(reader, JsonObject.class));
+                    }
+                    reader.endObject();
+                    break;
+                case "users":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String uuid = reader.nextName();
+                        parseUser(uuid, GsonProvider.normal().fromJson(reader, JsonObject.class));
+                    }
+                    reader.endObject();
+                    break;
+                case "permissionHolders":
+                case "knownPermissions":
+                    return false; // web editor data
+                default:
+                    reader.skipValue();
+                    break;
             }
+        }
+        reader.endObject();
+        return true;
+    }
+
+    private static Set<Map.Entry<String, JsonElement>> getDataSection(JsonObject data, String id) {
+        if (data.has(id)) {
+            return data.get(id).getAsJsonObject().entrySet();
+        } else {
+            return ImmutableSet.of();
+        }
+    }
+
+    private void parseGroup(String name, JsonObject jsonData) {
+        processGroup(name, NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray()));
+    }
+
+    private void parseTrack(String name, JsonObject jsonData) {
+        JsonArray trackGroups = jsonData.get("groups").getAsJsonArray();
+        List<String> trackGroupsList = new ArrayList<>();
+        trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
+        processTrack(name, trackGroupsList);
+    }
+
+    private void parseUser(String id, JsonObject jsonData) {
+        UUID uuid = UUID.fromString(id);
+        String username = null;
+        String primaryGroup = null;
+        Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
 
-            users.put(uuid, new UserData(username, primaryGroup, nodes));
+        if (jsonData.has("username")) {
+            username = jsonData.get("username").getAsString();
         }
+        if (jsonData.has("primaryGroup")) {
+            primaryGroup = jsonData.get("primaryGroup").getAsString();
+        }
+
+        processUser(uuid, new UserData(username, primaryGroup, nodes));
     }
 
-    private void parseWebEditorData(Map<String, Set<Node>> groups, Map<String, List<String>> tracks, Map<UUID, UserData> users) {
-        JsonArray holdersArray = this.data.get("permissionHolders").getAsJsonArray();
+    protected void parseWebEditorData(JsonObject data) {
+        JsonArray holdersArray = data.get("permissionHolders").getAsJsonArray();
         for (JsonElement holderElement : holdersArray) {
             JsonObject jsonData = holderElement.getAsJsonObject();
 
@@ -171,7 +319,7 @@ public class Importer implements Runnable {
             String id = jsonData.get("id").getAsString();
 
             if (type == HolderType.GROUP) {
-                groups.put(id, NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray()));
+                processGroup(id, NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray()));
             } else {
                 UUID uuid = UUID.fromString(id);
                 String username = null;
@@ -182,11 +330,11 @@ public class Importer implements Runnable {
                 }
 
                 Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
-                users.put(uuid, new UserData(username, null, nodes));
+                processUser(uuid, new UserData(username, null, nodes));
             }
         }
 
-        JsonArray tracksArray = this.data.get("tracks").getAsJsonArray();
+        JsonArray tracksArray = data.get("tracks").getAsJsonArray();
         for (JsonElement trackElement : tracksArray) {
             JsonObject jsonData = trackElement.getAsJsonObject();
 
@@ -195,7 +343,16 @@ public class Importer implements Runnable {
 
             List<String> trackGroupsList = new ArrayList<>();
             trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
-            tracks.put(name, trackGroupsList);
+            processTrack(name, trackGroupsList);
+        }
+    }
+
+    protected void parseData(JsonObject data) {
+        if (data.has("knownPermissions")) {
+            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "The data appears to be from a web editor upload - attempting to recover from it"));
+            parseWebEditorData(data);
+        } else {
+            parseExportData(data);
         }
     }
 
@@ -204,93 +361,108 @@ public class Importer implements Runnable {
         long startTime = System.currentTimeMillis();
         this.notify.forEach(Message.IMPORT_START::send);
 
-        // start an update task in the background - we'll #join this later
-        CompletableFuture<Void> updateTask = CompletableFuture.runAsync(() -> this.plugin.getSyncTaskBuffer().requestDirectly());
+        // make sure we're up to date before applying any changes
+        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Waiting for initial update task to complete..."));
+        this.plugin.getSyncTaskBuffer().requestDirectly();
 
-        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Reading data..."));
+        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Setting up data processor..."));
 
-        Map<String, Set<Node>> groups = new HashMap<>();
-        Map<String, List<String>> tracks = new HashMap<>();
-        Map<UUID, UserData> users = new HashMap<>();
+        // create a threadpool for the processing
+        this.executor = Executors.newFixedThreadPool(16, new ThreadFactoryBuilder().setNameFormat("luckperms-importer-%d").build());
 
-        if (this.data.has("knownPermissions")) {
-            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "The data appears to be from a web editor upload - attempting to recover from it"));
-            parseWebEditorData(groups, tracks, users);
+        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Reading data..."));
+        boolean readFailed = false;
+        try {
+            readData();
+            flushUserBatch();
+        } catch (Exception e) {
+            readFailed = true;
+            this.plugin.getLogger().warn("Error whilst reading the import data", e);
+            this.notify.forEach(Message.IMPORT_FILE_READ_FAILURE::send);
+        }
+
+        // the data is read as a stream, so entries read before the failure have already
+        // been scheduled - they still need to finish, but the import is only partial
+        if (readFailed) {
+            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Waiting for the entries read before the error to be imported"));
         } else {
-            parseExportData(groups, tracks, users);
+            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "All data entries have been read and scheduled for import - now waiting for the execution to complete."));
         }
 
-        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Waiting for initial update task to complete..."));
+        // wait for all of the scheduled tasks to complete
+        try {
+            while (!this.pendingTasks.tryAcquire(MAX_PENDING_TASKS, 2, TimeUnit.SECONDS)) {
+                sendProgress();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-        // join the update task future before scheduling command executions
-        updateTask.join();
+        this.executor.shutdown();
 
-        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Setting up data processor..."));
+        long endTime = System.currentTimeMillis();
+        double seconds = (endTime - startTime) / 1000.0;
 
-        // create a threadpool for the processing
-        ExecutorService executor = Executors.newFixedThreadPool(16, new ThreadFactoryBuilder().setNameFormat("luckperms-importer-%d").build());
+        if (readFailed) {
+            int entries = this.totalCount.get();
+            this.notify.forEach(s -> Message.IMPORT_END_PARTIAL.send(s, entries, seconds));
+        } else {
+            this.notify.forEach(s -> Message.IMPORT_END_COMPLETE.send(s, seconds));
+        }
+    }
 
-        // A set of futures, which are really just the processes we need to wait for.
-        Set<CompletableFuture<Void>> futures = new HashSet<>();
+    private void sendProgress() {
+        int processedCount = this.processedCount.get();
+        int total = this.totalCount.get();
+        int percent = total == 0 ? 0 : processedCount * 100 / total;
+        this.notify.forEach(s -> Message.IMPORT_PROGRESS.send(s, percent, processedCount, total));
+    }
 
-        int total = 0;
-        AtomicInteger processedCount = new AtomicInteger(0);
+    /**
+     * Imports data which has already been read into memory, e.g. from a web upload
+     */
+    public static final class ReadJson extends Importer {
+        private final JsonObject data;
 
-        for (Map.Entry<String, Set<Node>> group : groups.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(group).thenAcceptAsync(ent -> {
-                processGroup(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
-        }
-        for (Map.Entry<String, List<String>> track : tracks.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(track).thenAcceptAsync(ent -> {
-                processTrack(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
+        public ReadJson(LuckPermsPlugin plugin, Sender executor, JsonObject data, boolean merge) {
+            super(plugin, executor, merge);
+            this.data = data;
         }
-        for (Map.Entry<UUID, UserData> user : users.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(user).thenAcceptAsync(ent -> {
-                processUser(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
+
+        @Override
+        protected void readData() {
+            parseData(this.data);
         }
+    }
 
-        // all of the threads have been scheduled now and are running. we just need to wait for them all to complete
-        CompletableFuture<Void> overallFuture = CompletableFutures.allOf(futures);
-
-        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "All data entries have been processed and scheduled for import - now waiting for the execution to complete."));
-
-        while (true) {
-            try {
-                overallFuture.get(2, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException e) {
-                // abnormal error - just break
-                e.printStackTrace();
-                break;
-            } catch (TimeoutException e) {
-                // still executing - send a progress report and continue waiting
-                sendProgress(processedCount.get(), total);
-                continue;
-            }
+    /**
+     * Imports data from a (gzipped) file, reading it as a stream
+     */
+    public static final class ReadFile extends Importer {
+        private final Path filePath;
 
-            // process is complete
-            break;
+        public ReadFile(LuckPermsPlugin plugin, Sender executor, Path filePath, boolean merge) {
+            super(plugin, executor, merge);
+            this.filePath = filePath;
         }
 
-        executor.shutdown();
-
-        long endTime = System.currentTimeMillis();
-        double seconds = (endTime - startTime) / 1000.0;
+        private BufferedReader openReader() throws IOException {
+            return new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(this.filePath)), StandardCharsets.UTF_8));
+        }
 
-        this.notify.forEach(s -> Message.IMPORT_END_COMPLETE.send(s, seconds));
-    }
+        @Override
+        protected void readData() throws IOException {
+            try (JsonReader reader = GsonProvider.normal().newJsonReader(openReader())) {
+                if (parseExportData(reader)) {
+                    return;
+                }
+            }
 
-    private void sendProgress(int processedCount, int total) {
-        int percent = processedCount * 100 / total;
-        this.notify.forEach(s -> Message.IMPORT_PROGRESS.send(s, percent, processedCount, total));
+            // not in the export format, fall back to reading the whole file
+            try (BufferedReader reader = openReader()) {
+                parseData(GsonProvider.normal().fromJson(reader, JsonObject.class));
+            }
+        }
     }
 
 }
@@ -55,11 +55,18 @@ public final class BulkUpdate {
     private final BulkUpdateStatistics statistics = new BulkUpdateStatistics();
     private final boolean trackStatistics;
 
-    public BulkUpdate(DataType dataType, Action action, List<Query> queries, boolean trackStatistics) {
+    // if the operation should only count the data which would be affected, without changing it
+    private final boolean dryRun;
+
+    // if the operation has been asked to stop
+    private volatile boolean cancelled = false;
+
+    public BulkUpdate(DataType dataType, Action action, List<Query> queries, boolean trackStatistics, boolean dryRun) {
         this.dataType = dataType;
         this.action = action;
         this.queries = queries;
-        this.trackStatistics = trackStatistics;
+        this.trackStatistics = trackStatistics || dryRun;
+        this.dryRun = dryRun;
     }
 
     /**
@@ -147,6 +154,36 @@ public final class BulkUpdate {
         return appendConstraintsAsSql(builder);
     }
 
+    /**
+     * Converts this {@link BulkUpdate} to SQL syntax, limited to rows with an id
+     * in the given range.
+     *
+     * @param fromId the lowest id to include
+     * @param toId the id to stop at (exclusive)
+     * @return this query in SQL form
+     */
+    public PreparedStatementBuilder buildAsSql(long fromId, long toId) {
+        PreparedStatementBuilder builder = new PreparedStatementBuilder();
+        this.action.appendSql(builder);
+        return appendConstraintsAsSql(builder, fromId, toId);
+    }
+
+    /**
+     * Appends the constraints of this {@link BulkUpdate} to the provided statement builder in SQL syntax,
+     * limited to rows with an id in the given range.
+     *
+     * @param builder the statement builder to append the constraints to
+     * @param fromId the lowest id to include
+     * @param toId the id to stop at (exclusive)
+     * @return the same statement builder provided as input
+     */
+    public PreparedStatementBuilder appendConstraintsAsSql(PreparedStatementBuilder builder, long fromId, long toId) {
+        appendConstraintsAsSql(builder);
+        builder.append(this.queries.isEmpty() ? " WHERE" : " AND");
+        builder.append(" id >= " + fromId + " AND id < " + toId);
+        return builder;
+    }
+
     /**
      * Appends the constraints of this {@link BulkUpdate} to the provided statement builder in SQL syntax
      *
@@ -192,6 +229,22 @@ public final class BulkUpdate {
         return this.trackStatistics;
     }
 
+    public boolean isDryRun() {
+        return this.dryRun;
+    }
+
+    /**
+     * Asks the operation to stop. Storage implementations check this between
+     * batches, so changes which have already been made are kept.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
     public BulkUpdateStatistics getStatistics() {
         return this.statistics;
     }
@@ -204,12 +257,13 @@ public final class BulkUpdate {
 
         return this.getDataType() == that.getDataType() &&
                 Objects.equals(this.getAction(), that.getAction()) &&
-                Objects.equals(this.getQueries(), that.getQueries());
+                Objects.equals(this.getQueries(), that.getQueries()) &&
+                this.isDryRun() == that.isDryRun();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getDataType(), getAction(), getQueries(), isTrackingStatistics());
+        return Objects.hash(getDataType(), getAction(), getQueries(), isTrackingStatistics(), isDryRun());
     }
 
     @Override
@@ -218,6 +272,7 @@ public final class BulkUpdate {
                 "dataType=" + this.getDataType() + ", " +
                 "action=" + this.getAction() + ", " +
                 "constraints=" + this.getQueries() + ", " +
-                "trackStatistics=" + this.isTrackingStatistics() + ")";
+                "trackStatistics=" + this.isTrackingStatistics() + ", " +
+                "dryRun=" + this.isDryRun() + ")";
     }
 }
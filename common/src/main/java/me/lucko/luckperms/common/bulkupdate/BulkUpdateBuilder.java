@@ -50,6 +50,9 @@ public class BulkUpdateBuilder {
     // should the operation count the number of affected nodes, users and groups
     private boolean trackStatistics = false;
 
+    // should the operation only count the affected data, without changing it
+    private boolean dryRun = false;
+
     // a set of constraints which data must match to be acted upon
     private final Set<Query> queries = new LinkedHashSet<>();
 
@@ -71,6 +74,11 @@ public class BulkUpdateBuilder {
         return this;
     }
 
+    public BulkUpdateBuilder dryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+        return this;
+    }
+
     public BulkUpdateBuilder query(Query query) {
         this.queries.add(query);
         return this;
@@ -81,7 +89,7 @@ public class BulkUpdateBuilder {
             throw new IllegalStateException("no action specified");
         }
 
-        return new BulkUpdate(this.dataType, this.action, ImmutableList.copyOf(this.queries), this.trackStatistics);
+        return new BulkUpdate(this.dataType, this.action, ImmutableList.copyOf(this.queries), this.trackStatistics, this.dryRun);
     }
 
     @Override
@@ -90,6 +98,7 @@ public class BulkUpdateBuilder {
                 "dataType=" + this.dataType + ", " +
                 "action=" + this.action + ", " +
                 "constraints=" + this.queries + ", " +
-                "trackStatistics=" + this.trackStatistics + ")";
+                "trackStatistics=" + this.trackStatistics + ", " +
+                "dryRun=" + this.dryRun + ")";
     }
 }
@@ -27,34 +27,54 @@ package me.lucko.luckperms.common.bulkupdate;
 
 import me.lucko.luckperms.common.model.HolderType;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Keeps track of the number of nodes, users and groups that were affected in a BulkUpdate operation.
+ *
+ * <p>Also tracks the progress of the operation, for storage types which
+ * process the data in steps. What counts as a unit of progress depends on
+ * the storage type. All counters are safe to update from multiple threads.</p>
  */
 public final class BulkUpdateStatistics {
 
     // the number of users that had their nodes updated/deleted due to the bulk update
-    private int affectedUsers = 0;
+    private final AtomicInteger affectedUsers = new AtomicInteger();
 
     // the number of groups that had their nodes updated/deleted
-    private int affectedGroups = 0;
+    private final AtomicInteger affectedGroups = new AtomicInteger();
 
     // the total number of affected nodes
-    private int affectedNodes = 0;
+    private final AtomicInteger affectedNodes = new AtomicInteger();
+
+    // the amount of data which has been processed so far
+    private final AtomicInteger processed = new AtomicInteger();
+
+    // the amount of data which is known to need processing
+    private final AtomicInteger total = new AtomicInteger();
 
     public BulkUpdateStatistics() {
 
     }
 
     public int getAffectedNodes() {
-        return this.affectedNodes;
+        return this.affectedNodes.get();
     }
 
     public int getAffectedUsers() {
-        return this.affectedUsers;
+        return this.affectedUsers.get();
     }
 
     public int getAffectedGroups() {
-        return this.affectedGroups;
+        return this.affectedGroups.get();
+    }
+
+    public int getProcessed() {
+        return this.processed.get();
+    }
+
+    public int getTotal() {
+        return this.total.get();
     }
 
     public void incrementAffectedNodes() {
@@ -74,15 +94,15 @@ public final class BulkUpdateStatistics {
     }
 
     public void incrementAffectedNodes(int delta) {
-        this.affectedNodes += delta;
+        this.affectedNodes.addAndGet(delta);
     }
 
     public void incrementAffectedUsers(int delta) {
-        this.affectedUsers += delta;
+        this.affectedUsers.addAndGet(delta);
     }
 
     public void incrementAffectedGroups(int delta) {
-        this.affectedGroups += delta;
+        this.affectedGroups.addAndGet(delta);
     }
 
     public void incrementAffected(HolderType type, int delta) {
@@ -97,4 +117,12 @@ public final class BulkUpdateStatistics {
                 throw new AssertionError();
         }
     }
+
+    public void incrementProcessed(int delta) {
+        this.processed.addAndGet(delta);
+    }
+
+    public void incrementTotal(int delta) {
+        this.total.addAndGet(delta);
+    }
 }
@@ -25,6 +25,7 @@
 
 package me.lucko.luckperms.common.cacheddata;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import me.lucko.luckperms.common.cache.LoadingMap;
 import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
 import me.lucko.luckperms.common.cacheddata.type.MonitoredMetaCache;
@@ -148,12 +149,24 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
      * @param queryOptions the query options
      */
     protected abstract void resolveMeta(MetaAccumulator accumulator, QueryOptions queryOptions);
+
+    /**
+     * Resolves the map of permissions backing the {@link PermissionCache} for the given {@link QueryOptions}.
+     *
+     * <p>The returned map is not modified after it has been passed to the cache.</p>
+     *
+     * @param queryOptions the query options
+     * @return the resolved permissions
+     */
+    protected Map<String, Node> resolvePermissionMap(QueryOptions queryOptions) {
+        return resolvePermissions(ConcurrentHashMap::new, queryOptions);
+    }
     
     private PermissionCache calculatePermissions(QueryOptions queryOptions) {
         Objects.requireNonNull(queryOptions, "queryOptions");
         CacheMetadata metadata = getMetadataForQueryOptions(queryOptions);
 
-        ConcurrentHashMap<String, Node> sourcePermissions = resolvePermissions(ConcurrentHashMap::new, queryOptions);
+        Map<String, Node> sourcePermissions = resolvePermissionMap(queryOptions);
         return new PermissionCache(queryOptions, metadata, getCalculatorFactory(), sourcePermissions);
     }
     
@@ -168,7 +181,7 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
     }
 
     @Override
-    public final void invalidate() {
+    public void invalidate() {
         this.permission.invalidate();
         this.meta.invalidate();
     }
@@ -178,6 +191,21 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         this.permission.cache.values().forEach(PermissionCache::invalidateCache);
     }
 
+    /**
+     * Gets the combined lookup cache statistics of the permission calculators
+     * currently held by this manager.
+     *
+     * @return the combined statistics
+     * @see PermissionCalculator#getCacheStats()
+     */
+    public final CacheStats getPermissionCalculatorStats() {
+        CacheStats stats = CacheStats.empty();
+        for (PermissionCache cache : this.permission.cache.values()) {
+            stats = stats.plus(cache.getCalculator().getCacheStats());
+        }
+        return stats;
+    }
+
     public final void performCacheCleanup() {
         this.permission.cleanup();
         this.meta.cleanup();
@@ -25,17 +25,42 @@
 
 package me.lucko.luckperms.common.cacheddata;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import me.lucko.luckperms.common.cacheddata.type.PermissionLayer;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.inheritance.InheritanceGraph;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.verbose.VerboseCheckTarget;
 import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.node.types.InheritanceNode;
 import net.luckperms.api.query.QueryOptions;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Holds an easily accessible cache of a groups's data in a number of contexts
  */
 public class GroupCachedDataManager extends HolderCachedDataManager<Group> implements CachedDataManager {
 
+    /**
+     * Incremented each time the cached data is invalidated
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The resolved permission layers for the group, shared by the permission caches of inheriting users
+     */
+    private final Cache<QueryOptions, SharedPermissionLayer> permissionLayers = CaffeineFactory.newBuilder()
+            .expireAfterAccess(2, TimeUnit.MINUTES)
+            .build();
+
     public GroupCachedDataManager(Group holder) {
         super(holder);
     }
@@ -45,4 +70,83 @@ public class GroupCachedDataManager extends HolderCachedDataManager<Group> imple
         return new CacheMetadata(HolderType.GROUP, VerboseCheckTarget.group(this.holder), queryOptions);
     }
 
+    @Override
+    public void invalidate() {
+        this.version.incrementAndGet();
+        this.permissionLayers.invalidateAll();
+        super.invalidate();
+    }
+
+    /**
+     * Gets the resolved permissions of the group (including those it inherits) as
+     * an immutable {@link PermissionLayer}.
+     *
+     * <p>The layer is cached until the data of the group, or any of the groups
+     * it inherits from, is invalidated.</p>
+     *
+     * @param queryOptions the query options
+     * @return the permission layer
+     */
+    public PermissionLayer getPermissionLayer(QueryOptions queryOptions) {
+        SharedPermissionLayer layer = this.permissionLayers.getIfPresent(queryOptions);
+        if (layer != null && layer.isCurrent(getPlugin().getGroupManager())) {
+            return layer.layer;
+        }
+
+        // record the state of the groups we depend on *before* resolving
+        InheritanceGraph graph = getPlugin().getInheritanceGraphFactory().getGraph(queryOptions);
+        GroupManager<?> groupManager = getPlugin().getGroupManager();
+
+        List<Group> dependencies = new ArrayList<>();
+        List<Long> versions = new ArrayList<>();
+        boolean complete = true;
+
+        for (PermissionHolder holder : graph.traverse(this.holder)) {
+            Group group = (Group) holder;
+            dependencies.add(group);
+            versions.add(group.getCachedData().version.get());
+
+            // if an inherited group isn't loaded, the layer will be out of date once it is
+            for (InheritanceNode node : group.getOwnInheritanceNodes(queryOptions)) {
+                if (groupManager.getIfLoaded(node.getGroupName()) == null) {
+                    complete = false;
+                }
+            }
+        }
+
+        PermissionLayer resolved = this.holder.exportPermissionLayer(queryOptions, true, true, getPlugin().getConfiguration().get(ConfigKeys.APPLYING_SHORTHAND));
+        if (complete) {
+            this.permissionLayers.put(queryOptions, new SharedPermissionLayer(resolved, dependencies, versions));
+        }
+        return resolved;
+    }
+
+    /**
+     * A {@link PermissionLayer} along with the state of the groups it was resolved from.
+     */
+    private static final class SharedPermissionLayer {
+        private final PermissionLayer layer;
+        private final Group[] dependencies;
+        private final long[] versions;
+
+        SharedPermissionLayer(PermissionLayer layer, List<Group> dependencies, List<Long> versions) {
+            this.layer = layer;
+            this.dependencies = dependencies.toArray(new Group[0]);
+            this.versions = new long[versions.size()];
+            for (int i = 0; i < this.versions.length; i++) {
+                this.versions[i] = versions.get(i);
+            }
+        }
+
+        boolean isCurrent(GroupManager<?> groupManager) {
+            for (int i = 0; i < this.dependencies.length; i++) {
+                Group group = this.dependencies[i];
+                if (groupManager.getIfLoaded(group.getName()) != group || group.getCachedData().version.get() != this.versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
 }
@@ -25,12 +25,25 @@
 
 package me.lucko.luckperms.common.cacheddata;
 
+import me.lucko.luckperms.common.cacheddata.type.PermissionLayer;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.graph.TraversalAlgorithm;
+import me.lucko.luckperms.common.inheritance.InheritanceGraph;
+import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.model.PermissionHolder;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.verbose.VerboseCheckTarget;
 import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.query.Flag;
 import net.luckperms.api.query.QueryOptions;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Holds an easily accessible cache of a user's data in a number of contexts
  */
@@ -40,9 +53,45 @@ public class UserCachedDataManager extends HolderCachedDataManager<User> impleme
         super(holder);
     }
 
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        getPlugin().onUserDataInvalidated(this.holder);
+    }
+
     @Override
     protected CacheMetadata getMetadataForQueryOptions(QueryOptions queryOptions) {
         return new CacheMetadata(HolderType.USER, VerboseCheckTarget.user(this.holder), queryOptions);
     }
 
+    @Override
+    protected Map<String, Node> resolvePermissionMap(QueryOptions queryOptions) {
+        if (!canUseSharedPermissionLayers(queryOptions)) {
+            return super.resolvePermissionMap(queryOptions);
+        }
+
+        boolean resolveShorthand = getPlugin().getConfiguration().get(ConfigKeys.APPLYING_SHORTHAND);
+
+        // a depth-first pre-order traversal of the user is equivalent to the user's own nodes,
+        // followed by a traversal of each parent group in turn. any groups visited more than once
+        // are shadowed by their first occurrence, so the layers of the parents can be reused as-is.
+        List<PermissionLayer> layers = new ArrayList<>();
+        layers.add(this.holder.exportPermissionLayer(queryOptions, false, true, resolveShorthand));
+
+        InheritanceGraph graph = getPlugin().getInheritanceGraphFactory().getGraph(queryOptions);
+        for (PermissionHolder parent : graph.successors(this.holder)) {
+            layers.add(((Group) parent).getCachedData().getPermissionLayer(queryOptions));
+        }
+
+        return PermissionLayer.compose(layers);
+    }
+
+    private boolean canUseSharedPermissionLayers(QueryOptions queryOptions) {
+        LuckPermsConfiguration configuration = getPlugin().getConfiguration();
+        return configuration.get(ConfigKeys.SHARED_GROUP_PERMISSION_LAYERS) &&
+                queryOptions.flag(Flag.RESOLVE_INHERITANCE) &&
+                configuration.get(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM) == TraversalAlgorithm.DEPTH_FIRST_PRE_ORDER &&
+                !configuration.get(ConfigKeys.POST_TRAVERSAL_INHERITANCE_SORT);
+    }
+
 }
@@ -0,0 +1,155 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata.type;
+
+import com.google.common.collect.AbstractIterator;
+import net.luckperms.api.node.Node;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only view of a stack of permission maps.
+ *
+ * <p>Lookups return the value from the first map containing the key.</p>
+ */
+final class LayeredPermissionMap extends AbstractMap<String, Node> {
+    private final Map<String, Node>[] layers;
+    private final EntrySet entrySet = new EntrySet();
+    private int size = -1;
+
+    @SuppressWarnings("unchecked")
+    LayeredPermissionMap(List<Map<String, Node>> layers) {
+        this.layers = layers.toArray(new Map[0]);
+    }
+
+    @Override
+    public Node get(Object key) {
+        for (Map<String, Node> layer : this.layers) {
+            Node node = layer.get(key);
+            if (node != null) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Map<String, Node> layer : this.layers) {
+            if (!layer.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        int size = this.size;
+        if (size == -1) {
+            size = 0;
+            for (Iterator<Entry<String, Node>> it = this.entrySet.iterator(); it.hasNext(); it.next()) {
+                size++;
+            }
+            this.size = size;
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Node>> entrySet() {
+        return this.entrySet;
+    }
+
+    /**
+     * Gets if a key is present in any of the layers before the given index.
+     *
+     * @param key the key
+     * @param index the index of the layer
+     * @return if the key is shadowed
+     */
+    private boolean isShadowed(String key, int index) {
+        for (int i = 0; i < index; i++) {
+            if (this.layers[i].containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, Node>> {
+        @Override
+        public Iterator<Entry<String, Node>> iterator() {
+            return new AbstractIterator<Entry<String, Node>>() {
+                private int index = 0;
+                private Iterator<Entry<String, Node>> current = null;
+
+                @Override
+                protected Entry<String, Node> computeNext() {
+                    Map<String, Node>[] layers = LayeredPermissionMap.this.layers;
+                    while (true) {
+                        if (this.current != null && this.current.hasNext()) {
+                            Entry<String, Node> entry = this.current.next();
+                            if (!isShadowed(entry.getKey(), this.index - 1)) {
+                                return entry;
+                            }
+                        } else if (this.index < layers.length) {
+                            this.current = layers[this.index++].entrySet().iterator();
+                        } else {
+                            return endOfData();
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return LayeredPermissionMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            Node node = get(entry.getKey());
+            return node != null && node.equals(entry.getValue());
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata.type;
+
+import net.luckperms.api.node.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable "layer" of resolved permissions, exported from a permission holder.
+ *
+ * <p>Permissions resolved via shorthand are held separately from the rest, so that
+ * layers can be stacked without changing the priority of the entries.</p>
+ */
+public final class PermissionLayer {
+
+    /**
+     * The resolved permissions
+     */
+    private final Map<String, Node> permissions;
+
+    /**
+     * The additional permissions resolved via shorthand
+     */
+    private final Map<String, Node> shorthand;
+
+    public PermissionLayer(Map<String, Node> permissions, Map<String, Node> shorthand) {
+        this.permissions = Collections.unmodifiableMap(permissions);
+        this.shorthand = shorthand.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(shorthand);
+    }
+
+    public Map<String, Node> getPermissions() {
+        return this.permissions;
+    }
+
+    public Map<String, Node> getShorthand() {
+        return this.shorthand;
+    }
+
+    /**
+     * Composes the given layers into a single read-only map.
+     *
+     * <p>Entries in earlier layers take priority over those in later layers, and
+     * shorthand entries are only used if no layer holds a normal entry for the key.
+     * This matches the behaviour of exporting the permissions of each layer in turn
+     * into a single map using {@link Map#putIfAbsent(Object, Object)}.</p>
+     *
+     * <p>The layers themselves are not copied.</p>
+     *
+     * @param layers the layers, in priority order
+     * @return a map view of the layers
+     */
+    public static Map<String, Node> compose(List<PermissionLayer> layers) {
+        List<Map<String, Node>> maps = new ArrayList<>(layers.size() * 2);
+        for (PermissionLayer layer : layers) {
+            maps.add(layer.permissions);
+        }
+        for (PermissionLayer layer : layers) {
+            if (!layer.shorthand.isEmpty()) {
+                maps.add(layer.shorthand);
+            }
+        }
+        return new LayeredPermissionMap(maps);
+    }
+
+}
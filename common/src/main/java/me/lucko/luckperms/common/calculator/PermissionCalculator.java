@@ -25,11 +25,15 @@
 
 package me.lucko.luckperms.common.calculator;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import me.lucko.luckperms.common.cache.LoadingMap;
 import me.lucko.luckperms.common.cacheddata.CacheMetadata;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
 import me.lucko.luckperms.common.calculator.processor.PermissionProcessor;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.verbose.event.CheckOrigin;
 import net.luckperms.api.node.Node;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -54,12 +58,29 @@ public class PermissionCalculator implements Function<String, TristateResult> {
     private final PermissionProcessor[] processors;
 
     /** Loading cache for permission checks */
-    private final LoadingMap<String, TristateResult> lookupCache = LoadingMap.of(this);
+    private final LoadingMap<String, TristateResult> lookupCache;
+
+    /** The bounded cache backing the lookup cache, or null if the lookup cache is unbounded */
+    private final Cache<String, TristateResult> boundedLookupCache;
 
     public PermissionCalculator(LuckPermsPlugin plugin, CacheMetadata metadata, Collection<PermissionProcessor> processors) {
         this.plugin = plugin;
         this.metadata = metadata;
         this.processors = processors.toArray(new PermissionProcessor[0]);
+
+        int maximumSize = plugin.getConfiguration().get(ConfigKeys.PERMISSION_CALCULATOR_CACHE_SIZE);
+        if (maximumSize <= 0) {
+            this.boundedLookupCache = null;
+            this.lookupCache = LoadingMap.of(this);
+        } else {
+            // bounded using caffeine's W-TinyLFU eviction policy, so frequently checked
+            // permissions are retained over one-off dynamic permissions
+            this.boundedLookupCache = CaffeineFactory.newBuilder()
+                    .maximumSize(maximumSize)
+                    .recordStats()
+                    .build();
+            this.lookupCache = LoadingMap.of(this.boundedLookupCache.asMap(), this);
+        }
     }
 
     /**
@@ -72,8 +93,10 @@ public class PermissionCalculator implements Function<String, TristateResult> {
      * @return the result
      */
     public TristateResult checkPermission(String permission, CheckOrigin origin) {
-        // get the result
-        TristateResult result = this.lookupCache.get(permission);
+        // get the result - lookups against the bounded cache go via Cache#get so they are recorded in its stats
+        TristateResult result = this.boundedLookupCache != null
+                ? this.boundedLookupCache.get(permission, this)
+                : this.lookupCache.get(permission);
 
         // log this permission lookup to the verbose handler
         this.plugin.getVerboseHandler().offerPermissionCheckEvent(origin, this.metadata.getVerboseCheckInfo(), this.metadata.getQueryOptions(), permission, result);
@@ -113,6 +136,25 @@ public class PermissionCalculator implements Function<String, TristateResult> {
         }
     }
 
+    /**
+     * Gets the hit, miss and eviction counts of the lookup cache.
+     *
+     * <p>Statistics are only recorded when the lookup cache is bounded by
+     * {@link ConfigKeys#PERMISSION_CALCULATOR_CACHE_SIZE}, otherwise
+     * {@link CacheStats#empty()} is returned.</p>
+     *
+     * @return the lookup cache statistics
+     */
+    public CacheStats getCacheStats() {
+        if (this.boundedLookupCache == null) {
+            return CacheStats.empty();
+        }
+
+        // perform any pending evictions so they are included in the counts
+        this.boundedLookupCache.cleanUp();
+        return this.boundedLookupCache.stats();
+    }
+
     public void invalidateCache() {
         for (PermissionProcessor processor : this.processors) {
             processor.invalidate();
@@ -0,0 +1,247 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.calculator.processor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An ordered collection of regex patterns, indexed by the literal prefix
+ * that any string matching each pattern must start with.
+ *
+ * <p>Patterns which cannot possibly match a given input (because it doesn't
+ * start with the pattern's literal prefix) are skipped without running
+ * the regex engine. Patterns are otherwise tested in the order they were
+ * added, and the first to match wins.</p>
+ *
+ * @param <V> the value type
+ */
+final class RegexPatternIndex<V> {
+    private static final int[] EMPTY_INDICES = new int[0];
+
+    @SuppressWarnings("rawtypes")
+    private static final RegexPatternIndex EMPTY = new RegexPatternIndex<>(new ArrayList<>());
+
+    @SuppressWarnings("unchecked")
+    public static <V> RegexPatternIndex<V> empty() {
+        return EMPTY;
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    /** All entries, in priority order */
+    private final Entry<V>[] entries;
+
+    /** Indices of the entries without a literal prefix - these must always be tested */
+    private final int[] unprefixed;
+
+    /** Indices of the entries with a literal prefix, keyed by the first char of the prefix */
+    private final Map<Character, int[]> prefixed;
+
+    @SuppressWarnings("unchecked")
+    private RegexPatternIndex(List<Entry<V>> entries) {
+        this.entries = entries.toArray(new Entry[0]);
+
+        List<Integer> unprefixed = new ArrayList<>();
+        Map<Character, List<Integer>> prefixed = new HashMap<>();
+        for (int i = 0; i < this.entries.length; i++) {
+            String prefix = this.entries[i].prefix;
+            if (prefix.isEmpty()) {
+                unprefixed.add(i);
+            } else {
+                prefixed.computeIfAbsent(prefix.charAt(0), c -> new ArrayList<>()).add(i);
+            }
+        }
+
+        this.unprefixed = toArray(unprefixed);
+        this.prefixed = new HashMap<>(prefixed.size());
+        for (Map.Entry<Character, List<Integer>> e : prefixed.entrySet()) {
+            this.prefixed.put(e.getKey(), toArray(e.getValue()));
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Gets the value of the first pattern which matches the given input.
+     *
+     * @param input the input
+     * @return the value, or null if no pattern matched
+     */
+    public V match(String input) {
+        int[] unprefixed = this.unprefixed;
+        int[] prefixed = EMPTY_INDICES;
+        if (!input.isEmpty()) {
+            int[] indices = this.prefixed.get(input.charAt(0));
+            if (indices != null) {
+                prefixed = indices;
+            }
+        }
+
+        // merge the two (ascending) lists of candidates, to preserve priority order
+        int i = 0;
+        int j = 0;
+        while (i < unprefixed.length || j < prefixed.length) {
+            Entry<V> entry;
+            if (j == prefixed.length || (i < unprefixed.length && unprefixed[i] < prefixed[j])) {
+                entry = this.entries[unprefixed[i++]];
+            } else {
+                entry = this.entries[prefixed[j++]];
+                if (!input.startsWith(entry.prefix)) {
+                    continue;
+                }
+            }
+
+            if (entry.pattern.matcher(input).matches()) {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determines the literal prefix which all strings matching the given
+     * regex must start with.
+     *
+     * <p>The result is conservative - an empty string is returned if the
+     * prefix cannot be easily determined.</p>
+     *
+     * @param regex the regex
+     * @return the literal prefix
+     */
+    static String literalPrefix(String regex) {
+        if (hasTopLevelAlternation(regex)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal;
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    break;
+                }
+                literal = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(literal)) {
+                    // character classes (\d), quoting (\Q), backreferences (\1), etc
+                    break;
+                }
+                i += 2;
+            } else if ("[](){}.*+?^$|".indexOf(c) != -1) {
+                break;
+            } else {
+                literal = c;
+                i++;
+            }
+
+            // if the literal is followed by a quantifier, it isn't required
+            if (i < regex.length() && "*+?{".indexOf(regex.charAt(i)) != -1) {
+                break;
+            }
+            prefix.append(literal);
+        }
+        return prefix.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int groupDepth = 0;
+        int classDepth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    // quoted sections could contain anything - give up
+                    return true;
+                }
+                i++;
+            } else if (classDepth > 0) {
+                if (c == '[') {
+                    classDepth++;
+                } else if (c == ']') {
+                    classDepth--;
+                }
+            } else if (c == '[') {
+                classDepth++;
+                // a ']' at the start of a class is a literal
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == '(') {
+                groupDepth++;
+            } else if (c == ')') {
+                groupDepth--;
+            } else if (c == '|' && groupDepth <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry<V> {
+        private final Pattern pattern;
+        private final String prefix;
+        private final V value;
+
+        Entry(Pattern pattern, V value) {
+            this.pattern = pattern;
+            this.prefix = pattern.flags() == 0 ? literalPrefix(pattern.pattern()) : "";
+            this.value = value;
+        }
+    }
+
+    public static final class Builder<V> {
+        private final List<Entry<V>> entries = new ArrayList<>();
+
+        private Builder() {
+
+        }
+
+        public Builder<V> add(Pattern pattern, V value) {
+            this.entries.add(new Entry<>(pattern, value));
+            return this;
+        }
+
+        public RegexPatternIndex<V> build() {
+            return new RegexPatternIndex<>(this.entries);
+        }
+    }
+}
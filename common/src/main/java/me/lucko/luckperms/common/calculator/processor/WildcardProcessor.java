@@ -25,13 +25,10 @@
 
 package me.lucko.luckperms.common.calculator.processor;
 
-import com.google.common.collect.ImmutableMap;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
-import me.lucko.luckperms.common.node.AbstractNode;
 import net.luckperms.api.node.Node;
 import net.luckperms.api.util.Tristate;
 
-import java.util.Collections;
 import java.util.Map;
 
 public class WildcardProcessor extends AbstractSourceBasedProcessor implements PermissionProcessor {
@@ -49,34 +46,21 @@ public class WildcardProcessor extends AbstractSourceBasedProcessor implements P
         return isRootWildcard(permission) || permission.endsWith(WILDCARD_SUFFIX) && permission.length() > 2;
     }
 
-    private Map<String, TristateResult> wildcardPermissions = Collections.emptyMap();
+    private WildcardTrie<TristateResult> wildcardPermissions = WildcardTrie.empty();
     private TristateResult rootWildcardState = TristateResult.UNDEFINED;
 
     @Override
     public TristateResult hasPermission(String permission) {
-        String node = permission;
-
-        while (true) {
-            int endIndex = node.lastIndexOf(AbstractNode.NODE_SEPARATOR);
-            if (endIndex == -1) {
-                break;
-            }
-
-            node = node.substring(0, endIndex);
-            if (!node.isEmpty()) {
-                TristateResult match = this.wildcardPermissions.get(node);
-                if (match != null && match.result() != Tristate.UNDEFINED) {
-                    return match;
-                }
-            }
+        TristateResult match = this.wildcardPermissions.getLongestPrefix(permission);
+        if (match != null) {
+            return match;
         }
-
         return this.rootWildcardState;
     }
 
     @Override
     public void refresh() {
-        ImmutableMap.Builder<String, TristateResult> builder = ImmutableMap.builder();
+        WildcardTrie.Builder<TristateResult> builder = WildcardTrie.builder();
         for (Map.Entry<String, Node> e : this.sourceMap.entrySet()) {
             String key = e.getKey();
             if (!key.endsWith(WILDCARD_SUFFIX) || key.length() <= 2) {
@@ -85,7 +69,9 @@ public class WildcardProcessor extends AbstractSourceBasedProcessor implements P
             key = key.substring(0, key.length() - 2);
 
             TristateResult value = RESULT_FACTORY.result(e.getValue());
-            builder.put(key, value);
+            if (value.result() != Tristate.UNDEFINED) {
+                builder.put(key, value);
+            }
         }
         this.wildcardPermissions = builder.build();
 
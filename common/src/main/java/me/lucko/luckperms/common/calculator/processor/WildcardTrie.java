@@ -0,0 +1,207 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.calculator.processor;
+
+import me.lucko.luckperms.common.node.AbstractNode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A trie of permission prefixes, split into segments on the
+ * {@link AbstractNode#NODE_SEPARATOR node separator}.
+ *
+ * <p>Used by the {@link WildcardProcessor} to find the longest matching wildcard
+ * prefix of a permission in a single left-to-right scan, without creating any
+ * intermediate strings.</p>
+ *
+ * <p>Instances are immutable once built, and are therefore safe to share between threads.</p>
+ *
+ * @param <V> the value type
+ */
+final class WildcardTrie<V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final WildcardTrie EMPTY = new WildcardTrie<>(new Node<>(null, new HashMap<>()));
+
+    @SuppressWarnings("unchecked")
+    public static <V> WildcardTrie<V> empty() {
+        return EMPTY;
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    private final Node<V> root;
+
+    private WildcardTrie(Node<V> root) {
+        this.root = root;
+    }
+
+    /**
+     * Finds the value mapped to the longest prefix of the given permission
+     * which ends immediately before a node separator.
+     *
+     * <p>For example, given the permission {@code a.b.c}, the prefixes
+     * {@code a.b} and {@code a} are checked (in that order of priority).</p>
+     *
+     * @param permission the permission
+     * @return the value, or null if no prefix matched
+     */
+    public V getLongestPrefix(String permission) {
+        V match = null;
+        Node<V> node = this.root;
+
+        int start = 0;
+        int hash = 0;
+        for (int i = 0, len = permission.length(); i < len; i++) {
+            char c = permission.charAt(i);
+            if (c != AbstractNode.NODE_SEPARATOR) {
+                hash = 31 * hash + c;
+                continue;
+            }
+
+            node = node.child(permission, start, i, hash);
+            if (node == null) {
+                return match;
+            }
+            if (node.value != null) {
+                match = node.value;
+            }
+
+            start = i + 1;
+            hash = 0;
+        }
+
+        return match;
+    }
+
+    private static final class Node<V> {
+        private static final String[] EMPTY_KEYS = new String[0];
+
+        private final V value;
+
+        // open-addressed hash table of child segments, indexed using String#hashCode
+        private final String[] keys;
+        private final Node<V>[] children;
+
+        @SuppressWarnings("unchecked")
+        Node(V value, Map<String, Node<V>> children) {
+            this.value = value;
+
+            if (children.isEmpty()) {
+                this.keys = EMPTY_KEYS;
+                this.children = new Node[0];
+                return;
+            }
+
+            int capacity = Integer.highestOneBit(children.size() * 2 - 1) << 1;
+            this.keys = new String[capacity];
+            this.children = new Node[capacity];
+
+            int mask = capacity - 1;
+            for (Map.Entry<String, Node<V>> e : children.entrySet()) {
+                int idx = spread(e.getKey().hashCode()) & mask;
+                while (this.keys[idx] != null) {
+                    idx = (idx + 1) & mask;
+                }
+                this.keys[idx] = e.getKey();
+                this.children[idx] = e.getValue();
+            }
+        }
+
+        Node<V> child(String permission, int start, int end, int hash) {
+            String[] keys = this.keys;
+            if (keys.length == 0) {
+                return null;
+            }
+
+            int length = end - start;
+            int mask = keys.length - 1;
+            for (int idx = spread(hash) & mask; ; idx = (idx + 1) & mask) {
+                String key = keys[idx];
+                if (key == null) {
+                    return null;
+                }
+                if (key.length() == length && permission.regionMatches(start, key, 0, length)) {
+                    return this.children[idx];
+                }
+            }
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    public static final class Builder<V> {
+        private final BuilderNode<V> root = new BuilderNode<>();
+
+        private Builder() {
+
+        }
+
+        /**
+         * Adds a prefix to the trie.
+         *
+         * @param prefix the prefix, excluding the trailing wildcard
+         * @param value the value
+         * @return this builder
+         */
+        public Builder<V> put(String prefix, V value) {
+            BuilderNode<V> node = this.root;
+
+            int start = 0;
+            int end;
+            while ((end = prefix.indexOf(AbstractNode.NODE_SEPARATOR, start)) != -1) {
+                node = node.children.computeIfAbsent(prefix.substring(start, end), s -> new BuilderNode<>());
+                start = end + 1;
+            }
+            node = node.children.computeIfAbsent(prefix.substring(start), s -> new BuilderNode<>());
+
+            node.value = value;
+            return this;
+        }
+
+        public WildcardTrie<V> build() {
+            return new WildcardTrie<>(this.root.build());
+        }
+    }
+
+    private static final class BuilderNode<V> {
+        private final Map<String, BuilderNode<V>> children = new HashMap<>();
+        private V value;
+
+        Node<V> build() {
+            Map<String, Node<V>> children = new HashMap<>(this.children.size());
+            for (Map.Entry<String, BuilderNode<V>> e : this.children.entrySet()) {
+                children.put(e.getKey(), e.getValue().build());
+            }
+            return new Node<>(this.value, children);
+        }
+    }
+}
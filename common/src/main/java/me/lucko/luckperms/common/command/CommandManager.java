@@ -42,6 +42,7 @@ import me.lucko.luckperms.common.commands.log.LogParentCommand;
 import me.lucko.luckperms.common.commands.misc.ApplyEditsCommand;
 import me.lucko.luckperms.common.commands.misc.BulkUpdateCommand;
 import me.lucko.luckperms.common.commands.misc.EditorCommand;
+import me.lucko.luckperms.common.commands.misc.EventStatsCommand;
 import me.lucko.luckperms.common.commands.misc.ExportCommand;
 import me.lucko.luckperms.common.commands.misc.ImportCommand;
 import me.lucko.luckperms.common.commands.misc.InfoCommand;
@@ -128,6 +129,7 @@ public class CommandManager {
                 .add(new TranslationsCommand())
                 .add(new ApplyEditsCommand())
                 .add(new TrustEditorCommand())
+                .add(new EventStatsCommand())
                 .add(new CreateGroup())
                 .add(new DeleteGroup())
                 .add(new ListGroups())
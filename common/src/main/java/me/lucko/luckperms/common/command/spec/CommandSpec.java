@@ -81,11 +81,16 @@ public enum CommandSpec {
             arg("action", true),
             arg("action field", false),
             arg("action value", false),
-            arg("constraint...", false)
+            arg("constraint...", false),
+            arg("dry-run", "--dry-run", false),
+            arg("cancel", false)
     ),
     TRANSLATIONS("/%s translations",
             arg("install", false)
     ),
+    EVENT_STATS("/%s eventstats",
+            arg("reset", false)
+    ),
     APPLY_EDITS("/%s applyedits <code>",
             arg("code", true)
     ),
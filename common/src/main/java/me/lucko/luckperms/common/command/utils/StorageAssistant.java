@@ -36,6 +36,8 @@ import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -98,7 +100,7 @@ public final class StorageAssistant {
             return failedFuture(e);
         }
 
-        return invalidateCachesAndPushUpdates(plugin);
+        return invalidateCachesAndPushUpdates(plugin, Collections.singleton(group.getName()), Collections.emptySet());
     }
 
     public static CompletableFuture<Void> save(Track track, Sender sender, LuckPermsPlugin plugin) {
@@ -110,7 +112,7 @@ public final class StorageAssistant {
             return failedFuture(e);
         }
 
-        return invalidateCachesAndPushUpdates(plugin);
+        return invalidateCachesAndPushUpdates(plugin, Collections.emptySet(), Collections.singleton(track.getName()));
     }
 
     public static void save(PermissionHolder holder, Sender sender, LuckPermsPlugin plugin) {
@@ -125,13 +127,13 @@ public final class StorageAssistant {
         }
     }
 
-    public static CompletableFuture<Void> invalidateCachesAndPushUpdates(LuckPermsPlugin plugin) {
+    public static CompletableFuture<Void> invalidateCachesAndPushUpdates(LuckPermsPlugin plugin, Collection<String> groups, Collection<String> tracks) {
         plugin.getGroupManager().invalidateAllGroupCaches();
         plugin.getUserManager().invalidateAllUserCaches();
 
         Optional<InternalMessagingService> messagingService = plugin.getMessagingService();
         if (messagingService.isPresent() && plugin.getConfiguration().get(ConfigKeys.AUTO_PUSH_UPDATES)) {
-            return messagingService.get().getUpdateBuffer().request();
+            return messagingService.get().pushTargetedUpdate(groups, tracks);
         } else {
             return CompletableFuture.completedFuture(null);
         }
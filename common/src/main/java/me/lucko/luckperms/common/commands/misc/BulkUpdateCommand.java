@@ -46,16 +46,22 @@ import me.lucko.luckperms.common.command.utils.ArgumentList;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.util.Predicates;
 
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 public class BulkUpdateCommand extends SingleCommand {
+    private static final int PROGRESS_REPORT_INTERVAL_SECONDS = 5;
+
     private final Cache<String, BulkUpdate> pendingOperations = CaffeineFactory.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
+    private final Set<BulkUpdate> runningOperations = ConcurrentHashMap.newKeySet();
 
     public BulkUpdateCommand() {
         super(CommandSpec.BULK_UPDATE, "BulkUpdate", CommandPermission.BULK_UPDATE, Predicates.alwaysFalse());
@@ -73,6 +79,17 @@ public class BulkUpdateCommand extends SingleCommand {
             return;
         }
 
+        if (args.size() == 1 && args.get(0).equalsIgnoreCase("cancel")) {
+            if (this.runningOperations.isEmpty()) {
+                Message.BULK_UPDATE_NOT_RUNNING.send(sender);
+                return;
+            }
+
+            Message.BULK_UPDATE_CANCELLING.send(sender, this.runningOperations.size());
+            this.runningOperations.forEach(BulkUpdate::cancel);
+            return;
+        }
+
         if (args.size() == 2 && args.get(0).equalsIgnoreCase("confirm")) {
             String id = args.get(1);
             BulkUpdate operation = this.pendingOperations.asMap().remove(id);
@@ -94,6 +111,9 @@ public class BulkUpdateCommand extends SingleCommand {
 
         bulkUpdateBuilder.trackStatistics(!args.remove("-s"));
 
+        boolean dryRun = args.remove("--dry-run");
+        bulkUpdateBuilder.dryRun(dryRun);
+
         try {
             bulkUpdateBuilder.dataType(DataType.valueOf(args.remove(0).toUpperCase(Locale.ROOT)));
         } catch (IllegalArgumentException e) {
@@ -149,7 +169,8 @@ public class BulkUpdateCommand extends SingleCommand {
 
         BulkUpdate bulkUpdate = bulkUpdateBuilder.build();
 
-        if (plugin.getConfiguration().get(ConfigKeys.SKIP_BULKUPDATE_CONFIRMATION)) {
+        // dry runs don't change any data, so there's nothing to confirm
+        if (dryRun || plugin.getConfiguration().get(ConfigKeys.SKIP_BULKUPDATE_CONFIRMATION)) {
             runOperation(bulkUpdate, plugin, sender);
         } else {
             String id = String.format("%04d", ThreadLocalRandom.current().nextInt(10000));
@@ -160,14 +181,36 @@ public class BulkUpdateCommand extends SingleCommand {
         }
     }
 
-    private static void runOperation(BulkUpdate operation, LuckPermsPlugin plugin, Sender sender) {
+    private void runOperation(BulkUpdate operation, LuckPermsPlugin plugin, Sender sender) {
         Message.BULK_UPDATE_STARTING.send(sender);
+
+        // report progress for storage types which know how much data they have to process
+        BulkUpdateStatistics stats = operation.getStatistics();
+        SchedulerTask progressTask = plugin.getBootstrap().getScheduler().asyncRepeating(() -> {
+            int total = stats.getTotal();
+            if (total != 0) {
+                int processed = stats.getProcessed();
+                Message.BULK_UPDATE_PROGRESS.send(sender, (int) (processed * 100L / total), processed, total);
+            }
+        }, PROGRESS_REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        this.runningOperations.add(operation);
         plugin.getStorage().applyBulkUpdate(operation).whenCompleteAsync((v, ex) -> {
+            this.runningOperations.remove(operation);
+            progressTask.cancel();
             if (ex == null) {
-                plugin.getSyncTaskBuffer().requestDirectly();
-                Message.BULK_UPDATE_SUCCESS.send(sender);
+                if (operation.isCancelled()) {
+                    if (!operation.isDryRun()) {
+                        plugin.getSyncTaskBuffer().requestDirectly();
+                    }
+                    Message.BULK_UPDATE_CANCELLED.send(sender);
+                } else if (operation.isDryRun()) {
+                    Message.BULK_UPDATE_DRY_RUN_SUCCESS.send(sender);
+                } else {
+                    plugin.getSyncTaskBuffer().requestDirectly();
+                    Message.BULK_UPDATE_SUCCESS.send(sender);
+                }
                 if (operation.isTrackingStatistics()) {
-                    BulkUpdateStatistics stats = operation.getStatistics();
                     Message.BULK_UPDATE_STATISTICS.send(sender, stats.getAffectedNodes(), stats.getAffectedUsers(), stats.getAffectedGroups());
                 }
             } else {
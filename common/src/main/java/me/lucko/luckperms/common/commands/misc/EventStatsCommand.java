@@ -0,0 +1,76 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.commands.misc;
+
+import me.lucko.luckperms.common.command.abstraction.SingleCommand;
+import me.lucko.luckperms.common.command.access.CommandPermission;
+import me.lucko.luckperms.common.command.spec.CommandSpec;
+import me.lucko.luckperms.common.command.utils.ArgumentList;
+import me.lucko.luckperms.common.event.LuckPermsEventSubscription;
+import me.lucko.luckperms.common.locale.Message;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.util.Predicates;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class EventStatsCommand extends SingleCommand {
+    private static final int MAX_ENTRIES = 15;
+
+    public EventStatsCommand() {
+        super(CommandSpec.EVENT_STATS, "EventStats", CommandPermission.EVENT_STATS, Predicates.notInRange(0, 1));
+    }
+
+    @Override
+    public void execute(LuckPermsPlugin plugin, Sender sender, ArgumentList args, String label) {
+        List<LuckPermsEventSubscription<?>> subscriptions = plugin.getEventDispatcher().getEventBus().getAllSubscriptions();
+
+        if (args.size() >= 1 && args.get(0).equalsIgnoreCase("reset")) {
+            subscriptions.forEach(subscription -> subscription.getStatistics().reset());
+            Message.EVENT_STATS_RESET.send(sender);
+            return;
+        }
+
+        List<LuckPermsEventSubscription<?>> entries = subscriptions.stream()
+                .filter(subscription -> subscription.getStatistics().getInvocations() != 0)
+                .sorted(Comparator.comparingLong((LuckPermsEventSubscription<?> subscription) -> subscription.getStatistics().getTotalNanos()).reversed())
+                .limit(MAX_ENTRIES)
+                .collect(Collectors.toList());
+
+        if (entries.isEmpty()) {
+            Message.EVENT_STATS_NONE.send(sender);
+            return;
+        }
+
+        Message.EVENT_STATS_HEADER.send(sender);
+        for (LuckPermsEventSubscription<?> subscription : entries) {
+            Message.EVENT_STATS_ENTRY.send(sender, subscription.getOwnerName(), subscription.getEventClass().getSimpleName(), subscription.getStatistics());
+        }
+    }
+
+}
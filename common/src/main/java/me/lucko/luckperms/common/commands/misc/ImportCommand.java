@@ -36,16 +36,11 @@ import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.util.Predicates;
-import me.lucko.luckperms.common.util.gson.GsonProvider;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.GZIPInputStream;
 
 public class ImportCommand extends SingleCommand {
     private final AtomicBoolean running = new AtomicBoolean(false);
@@ -62,8 +57,9 @@ public class ImportCommand extends SingleCommand {
         }
 
         boolean fromFile = !args.remove("--upload");
+        boolean merge = !args.contains("--replace");
 
-        JsonObject data;
+        Importer importer;
         if (fromFile) {
             String fileName = args.get(0);
             Path dataDirectory = plugin.getBootstrap().getDataDirectory();
@@ -97,14 +93,8 @@ public class ImportCommand extends SingleCommand {
                 return;
             }
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
-                data = GsonProvider.normal().fromJson(reader, JsonObject.class);
-            } catch (IOException e) {
-                plugin.getLogger().warn("Error whilst reading from the import file", e);
-                Message.IMPORT_FILE_READ_FAILURE.send(sender);
-                this.running.set(false);
-                return;
-            }
+            // the file is read as a stream by the importer
+            importer = new Importer.ReadFile(plugin, sender, path, merge);
         } else {
             String code = args.get(0);
 
@@ -113,6 +103,7 @@ public class ImportCommand extends SingleCommand {
                 return;
             }
 
+            JsonObject data;
             try {
                 data = plugin.getBytebin().getJsonContent(code).getAsJsonObject();
             } catch (UnsuccessfulRequestException e) {
@@ -128,9 +119,9 @@ public class ImportCommand extends SingleCommand {
                 Message.IMPORT_UNABLE_TO_READ.send(sender, code);
                 return;
             }
-        }
 
-        Importer importer = new Importer(plugin, sender, data, !args.contains("--replace"));
+            importer = new Importer.ReadJson(plugin, sender, data, merge);
+        }
 
         // Run the importer in its own thread.
         plugin.getBootstrap().getScheduler().async(() -> {
@@ -68,6 +68,7 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import static me.lucko.luckperms.common.config.generic.key.ConfigKeyFactory.booleanKey;
+import static me.lucko.luckperms.common.config.generic.key.ConfigKeyFactory.integerKey;
 import static me.lucko.luckperms.common.config.generic.key.ConfigKeyFactory.key;
 import static me.lucko.luckperms.common.config.generic.key.ConfigKeyFactory.lowercaseStringKey;
 import static me.lucko.luckperms.common.config.generic.key.ConfigKeyFactory.mapKey;
@@ -166,6 +167,11 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> DEBUG_LOGINS = booleanKey("debug-logins", false);
 
+    /**
+     * The time in milliseconds after which an API event handler is considered slow, or 0 to disable warnings.
+     */
+    public static final ConfigKey<Integer> SLOW_EVENT_HANDLER_THRESHOLD = integerKey("slow-event-handler-threshold", 0);
+
     /**
      * If LP should cancel login attempts for players whose permission data could not be loaded.
      */
@@ -313,6 +319,44 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> APPLY_SPONGE_DEFAULT_SUBJECTS = notReloadable(booleanKey("apply-sponge-default-subjects", true));
 
+    /**
+     * The maximum number of permission lookup results to cache per permission calculator.
+     * A value <= 0 means the cache is unbounded.
+     */
+    public static final ConfigKey<Integer> PERMISSION_CALCULATOR_CACHE_SIZE = notReloadable(integerKey("permission-calculator-cache-size", 0));
+
+    /**
+     * If the resolved permissions of groups should be shared between the permission caches
+     * of the users who inherit them, instead of being copied into each cache.
+     */
+    public static final ConfigKey<Boolean> SHARED_GROUP_PERMISSION_LAYERS = notReloadable(booleanKey("shared-group-permission-layers", false));
+
+    /**
+     * The number of milliseconds to wait for other logins, so they can be loaded from storage together.
+     * A value <= 0 disables batching.
+     */
+    public static final ConfigKey<Integer> LOGIN_BATCH_WINDOW = notReloadable(integerKey("login-batch-window", 0));
+
+    /**
+     * The maximum number of logins to load from storage together
+     */
+    public static final ConfigKey<Integer> LOGIN_BATCH_MAX_SIZE = notReloadable(integerKey("login-batch-max-size", 100));
+
+    /**
+     * The rate at which checks are sampled by verbose. A value of n means one in every n checks is recorded.
+     */
+    public static final ConfigKey<Integer> VERBOSE_SAMPLE_RATE = notReloadable(integerKey("verbose-sample-rate", 1));
+
+    /**
+     * If verbose should capture a stack trace for each recorded check
+     */
+    public static final ConfigKey<Boolean> VERBOSE_CAPTURE_STACK_TRACES = notReloadable(booleanKey("verbose-capture-stack-traces", true));
+
+    /**
+     * The maximum number of verbose events to buffer before they are processed. Events over the limit are dropped.
+     */
+    public static final ConfigKey<Integer> VERBOSE_QUEUE_SIZE = notReloadable(integerKey("verbose-queue-size", 10000));
+
     /**
      * The algorithm LuckPerms should use when traversing the "inheritance tree"
      */
@@ -472,6 +516,17 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> VAULT_UNSAFE_LOOKUPS = booleanKey("vault-unsafe-lookups", false);
 
+    /**
+     * The maximum number of offline players whose data should be kept in memory after a Vault lookup.
+     * A value <= 0 disables the cache.
+     */
+    public static final ConfigKey<Integer> VAULT_OFFLINE_CACHE_SIZE = notReloadable(integerKey("vault-offline-cache-size", 250));
+
+    /**
+     * The number of minutes the data of an offline player should be kept in memory after their last Vault lookup
+     */
+    public static final ConfigKey<Integer> VAULT_OFFLINE_CACHE_EXPIRY = notReloadable(integerKey("vault-offline-cache-expiry", 10));
+
     /**
      * If LuckPerms should use the 'display name' of a group when returning groups in Vault API calls.
      */
@@ -565,6 +620,21 @@ public final class ConfigKeys {
         return c.getString("data.table-prefix", c.getString("data.table_prefix", "luckperms_"));
     }));
 
+    /**
+     * The version of the SQL schema to use for storing user permissions
+     */
+    public static final ConfigKey<Integer> SQL_SCHEMA_VERSION = notReloadable(integerKey("data.sql-schema-version", 1));
+
+    /**
+     * If SQL storage should keep version stamps for users, so syncs only reload modified users
+     */
+    public static final ConfigKey<Boolean> SQL_USER_VERSION_STAMPS = notReloadable(booleanKey("data.user-version-stamps", false));
+
+    /**
+     * The number of rows covered by each statement when SQL storage applies a bulk update
+     */
+    public static final ConfigKey<Integer> SQL_BULK_UPDATE_BATCH_SIZE = notReloadable(integerKey("data.bulkupdate-batch-size", 1000));
+
     /**
      * The prefix for any MongoDB collections
      */
@@ -619,6 +689,13 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> AUTO_PUSH_UPDATES = notReloadable(booleanKey("auto-push-updates", true));
 
+    /**
+     * If updates to groups and tracks should be pushed as targeted updates naming the objects which changed,
+     * instead of as a regular update which triggers a full sync. Servers running older versions don't
+     * understand targeted updates and ignore them, so this is disabled by default.
+     */
+    public static final ConfigKey<Boolean> PUSH_TARGETED_UPDATES = notReloadable(booleanKey("push-targeted-updates", false));
+
     /**
      * If LuckPerms should push logging entries to connected servers via the messaging service
      */
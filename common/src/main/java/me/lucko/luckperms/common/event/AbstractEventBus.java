@@ -34,6 +34,7 @@ import net.luckperms.api.event.EventSubscription;
 import net.luckperms.api.event.LuckPermsEvent;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -78,6 +79,16 @@ public abstract class AbstractEventBus<P> implements EventBus, AutoCloseable {
      */
     protected abstract P checkPlugin(Object plugin) throws IllegalArgumentException;
 
+    /**
+     * Gets a readable name for the given plugin instance
+     *
+     * @param plugin the plugin
+     * @return a name for the plugin
+     */
+    public String getPluginName(Object plugin) {
+        return plugin.getClass().getName();
+    }
+
     public void post(LuckPermsEvent event) {
         this.bus.post(event);
     }
@@ -124,6 +135,15 @@ public abstract class AbstractEventBus<P> implements EventBus, AutoCloseable {
         return this.bus.getHandlers(eventClass);
     }
 
+    /**
+     * Gets all of the handlers currently registered to the bus
+     *
+     * @return the handlers
+     */
+    public List<LuckPermsEventSubscription<?>> getAllSubscriptions() {
+        return this.bus.getAllHandlers();
+    }
+
     /**
      * Removes a specific handler from the bus
      *
@@ -164,5 +184,13 @@ public abstract class AbstractEventBus<P> implements EventBus, AutoCloseable {
                     .map(s -> (EventSubscription<T>) s)
                     .collect(Collectors.toSet());
         }
+
+        public List<LuckPermsEventSubscription<?>> getAllHandlers() {
+            return super.subscribers().values().stream()
+                    .filter(s -> s instanceof LuckPermsEventSubscription)
+                    .map(s -> (LuckPermsEventSubscription<?>) s)
+                    .distinct()
+                    .collect(Collectors.toList());
+        }
     }
 }
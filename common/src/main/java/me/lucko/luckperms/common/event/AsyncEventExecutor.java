@@ -0,0 +1,200 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import net.luckperms.api.event.LuckPermsEvent;
+import net.luckperms.api.event.node.NodeMutateBatchEvent;
+import net.luckperms.api.event.node.NodeMutateEvent;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the handlers for events which are posted asynchronously.
+ *
+ * <p>Events are posted by a small pool of threads, separate from the plugin's
+ * worker pool, so slow handlers can't hold up storage or other plugin tasks.
+ * Events of the same type are queued in their own lane, so they are posted
+ * in the order they were dispatched, and a slow handler for one type of event
+ * only holds up that type.</p>
+ *
+ * <p>The number of events waiting to be posted is bounded. Once the limit is
+ * reached, new events are dropped (and a warning logged) instead of being run
+ * on the posting thread, which may be the server's main thread.</p>
+ */
+public class AsyncEventExecutor implements AutoCloseable {
+
+    /** The maximum number of threads used to post events */
+    private static final int MAX_THREADS = 4;
+
+    /** The maximum number of events which can be waiting to be posted */
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    /** How long an idle thread is kept alive for */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /** How often to log a warning while events are being dropped */
+    private static final int DROPPED_WARNING_INTERVAL = 1000;
+
+    private final LuckPermsPlugin plugin;
+    private final ThreadPoolExecutor executor;
+    private final Map<Class<?>, Lane> lanes = new ConcurrentHashMap<>();
+
+    /** The number of events queued across all lanes */
+    private final AtomicInteger queued = new AtomicInteger(0);
+    /** The number of events dropped because the queue was full */
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    public AsyncEventExecutor(LuckPermsPlugin plugin) {
+        this.plugin = plugin;
+
+        // each lane only has one task in the executor at a time, so its
+        // queue is bounded by the number of event types
+        this.executor = new ThreadPoolExecutor(
+                MAX_THREADS, MAX_THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("luckperms-event-%d")
+                        .build()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs a task which posts an event of the given type.
+     *
+     * @param eventClass the type of event the task posts
+     * @param task the task
+     */
+    public void execute(Class<? extends LuckPermsEvent> eventClass, Runnable task) {
+        Runnable wrapped = () -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                this.plugin.getLogger().warn("Exception thrown whilst posting " + eventClass.getSimpleName(), e);
+            }
+        };
+
+        if (this.executor.isShutdown()) {
+            // the executor has been closed - post on the calling thread instead
+            wrapped.run();
+            return;
+        }
+
+        if (this.queued.incrementAndGet() > QUEUE_CAPACITY) {
+            this.queued.decrementAndGet();
+
+            long dropped = this.dropped.incrementAndGet();
+            if (dropped % DROPPED_WARNING_INTERVAL == 1) {
+                this.plugin.getLogger().warn("Event handlers are unable to keep up, dropped " + eventClass.getSimpleName() +
+                        " (" + dropped + " events dropped in total)");
+            }
+            return;
+        }
+
+        this.lanes.computeIfAbsent(executorKey(eventClass), k -> new Lane()).submit(wrapped);
+    }
+
+    /**
+     * Gets the number of events which have been dropped because the queue was full.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    // node events share a lane, so they are always posted in order
+    private static Class<?> executorKey(Class<? extends LuckPermsEvent> eventClass) {
+        if (NodeMutateEvent.class.isAssignableFrom(eventClass) || eventClass == NodeMutateBatchEvent.class) {
+            return NodeMutateEvent.class;
+        }
+        return eventClass;
+    }
+
+    @Override
+    public void close() {
+        // tasks which have already been queued are still posted
+        this.executor.shutdown();
+    }
+
+    /**
+     * A queue of tasks which are run one at a time, in order, using the shared executor.
+     */
+    private final class Lane implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        void submit(Runnable task) {
+            this.tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (this.tasks.isEmpty() || !this.scheduled.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                AsyncEventExecutor.this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // the executor has been closed - post the remaining tasks on the calling thread
+                for (Runnable task; (task = this.tasks.poll()) != null; ) {
+                    AsyncEventExecutor.this.queued.decrementAndGet();
+                    task.run();
+                }
+                this.scheduled.set(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            // run a single task, then go to the back of the executor's queue so other lanes get a turn
+            Runnable task = this.tasks.poll();
+            if (task != null) {
+                AsyncEventExecutor.this.queued.decrementAndGet();
+                task.run();
+            }
+
+            this.scheduled.set(false);
+            schedule();
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.event;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import me.lucko.luckperms.common.api.implementation.ApiPermissionHolder;
 import me.lucko.luckperms.common.cacheddata.GroupCachedDataManager;
 import me.lucko.luckperms.common.cacheddata.UserCachedDataManager;
@@ -60,6 +61,7 @@ import net.luckperms.api.event.log.LogPublishEvent;
 import net.luckperms.api.event.log.LogReceiveEvent;
 import net.luckperms.api.event.node.NodeAddEvent;
 import net.luckperms.api.event.node.NodeClearEvent;
+import net.luckperms.api.event.node.NodeMutateBatchEvent;
 import net.luckperms.api.event.node.NodeMutateEvent;
 import net.luckperms.api.event.node.NodeRemoveEvent;
 import net.luckperms.api.event.player.PlayerDataSaveEvent;
@@ -95,17 +97,31 @@ import net.luckperms.api.model.data.DataType;
 import net.luckperms.api.node.Node;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
-public final class EventDispatcher {
+public final class EventDispatcher implements AutoCloseable {
+
+    /** How long node changes to the same holder are collected for before they are posted */
+    private static final long NODE_CHANGE_BATCH_WINDOW_MILLIS = 50;
+
     private final AbstractEventBus<?> eventBus;
+    private final AsyncEventExecutor asyncExecutor;
+
+    // node changes which are waiting to be posted, keyed by holder & data type
+    private final Map<Map.Entry<PermissionHolder, DataType>, NodeChangeBatch> pendingNodeChanges = new ConcurrentHashMap<>();
 
     public EventDispatcher(AbstractEventBus<?> eventBus) {
         this.eventBus = eventBus;
+        this.asyncExecutor = new AsyncEventExecutor(eventBus.getPlugin());
     }
 
     public AbstractEventBus<?> getEventBus() {
@@ -137,7 +153,13 @@ public final class EventDispatcher {
         }
 
         // async: generate an event class and post it
-        this.eventBus.getPlugin().getBootstrap().getScheduler().async(() -> post(eventClass, params));
+        this.asyncExecutor.execute(eventClass, () -> post(eventClass, params));
+    }
+
+    private void postIfSubscribed(Class<? extends LuckPermsEvent> eventClass, Object... params) {
+        if (this.eventBus.shouldPost(eventClass)) {
+            post(eventClass, params);
+        }
     }
 
     private void postSync(Class<? extends LuckPermsEvent> eventClass, Object... params) {
@@ -224,7 +246,7 @@ public final class EventDispatcher {
     }
 
     public void dispatchNodeChanges(PermissionHolder target, DataType dataType, Difference<Node> changes) {
-        if (!this.eventBus.shouldPost(NodeAddEvent.class) && !this.eventBus.shouldPost(NodeRemoveEvent.class)) {
+        if (!this.eventBus.shouldPost(NodeAddEvent.class) && !this.eventBus.shouldPost(NodeRemoveEvent.class) && !this.eventBus.shouldPost(NodeMutateBatchEvent.class)) {
             return;
         }
 
@@ -232,16 +254,57 @@ public final class EventDispatcher {
             return;
         }
 
-        ApiPermissionHolder proxy = proxy(target);
+        // capture the state now, as the holder may have changed again by the time the batch is posted
         ImmutableSet<Node> state = target.getData(dataType).asImmutableSet();
 
-        // call an event for each recorded change
-        for (Difference.Change<Node> change : changes.getChanges()) {
-            Class<? extends NodeMutateEvent> type = change.type() == Difference.ChangeType.ADD ?
-                    NodeAddEvent.class : NodeRemoveEvent.class;
+        // collect the changes, and post them together once the window has passed
+        Map.Entry<PermissionHolder, DataType> key = Maps.immutableEntry(target, dataType);
+        AtomicBoolean created = new AtomicBoolean(false);
+        this.pendingNodeChanges.compute(key, (k, batch) -> {
+            if (batch == null) {
+                batch = new NodeChangeBatch(target, dataType);
+                created.set(true);
+            }
+            for (Difference.Change<Node> change : changes.getChanges()) {
+                batch.orderedChanges.add(new RecordedChange(change, state));
+            }
+            batch.changes.mergeFrom(changes);
+            batch.state = state;
+            return batch;
+        });
+
+        if (created.get()) {
+            try {
+                this.eventBus.getPlugin().getBootstrap().getScheduler().asyncLater(() -> flushNodeChanges(key), NODE_CHANGE_BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the scheduler has been shutdown
+                flushNodeChanges(key);
+            }
+        }
+    }
 
-            postAsync(type, proxy, dataType, state, change.value());
+    private void flushNodeChanges(Map.Entry<PermissionHolder, DataType> key) {
+        NodeChangeBatch batch = this.pendingNodeChanges.remove(key);
+        if (batch == null || batch.orderedChanges.isEmpty()) {
+            return;
         }
+
+        ApiPermissionHolder proxy = proxy(batch.target);
+
+        // post all of the events for the batch from a single task
+        this.asyncExecutor.execute(NodeMutateEvent.class, () -> {
+            // call an event for each recorded change, in the order they were made,
+            // with the state of the holder just after the change
+            for (RecordedChange recorded : batch.orderedChanges) {
+                Class<? extends NodeMutateEvent> type = recorded.change.type() == Difference.ChangeType.ADD ?
+                        NodeAddEvent.class : NodeRemoveEvent.class;
+
+                postIfSubscribed(type, proxy, batch.dataType, recorded.state, recorded.change.value());
+            }
+
+            // then a single event for the whole batch
+            postIfSubscribed(NodeMutateBatchEvent.class, proxy, batch.dataType, batch.state, ImmutableSet.copyOf(batch.changes.getAdded()), ImmutableSet.copyOf(batch.changes.getRemoved()));
+        });
     }
 
     public void dispatchNodeClear(PermissionHolder target, DataType dataType, Difference<Node> changes) {
@@ -253,17 +316,22 @@ public final class EventDispatcher {
             return;
         }
 
+        // post any earlier changes first, so the events stay in order
+        flushNodeChanges(Maps.immutableEntry(target, dataType));
+
         ApiPermissionHolder proxy = proxy(target);
         ImmutableSet<Node> state = target.getData(dataType).asImmutableSet();
 
         // call clear event
         ImmutableSet<Node> nodes = ImmutableSet.copyOf(changes.getRemoved());
-        postAsync(NodeClearEvent.class, proxy, dataType, state, nodes);
+        this.asyncExecutor.execute(NodeClearEvent.class, () -> {
+            post(NodeClearEvent.class, proxy, dataType, state, nodes);
 
-        // call add event if needed for any nodes that were added
-        for (Node added : changes.getAdded()) {
-            postAsync(NodeAddEvent.class, proxy, dataType, state, added);
-        }
+            // call add event if needed for any nodes that were added
+            for (Node added : changes.getAdded()) {
+                postIfSubscribed(NodeAddEvent.class, proxy, dataType, state, added);
+            }
+        });
     }
 
     public void dispatchConfigReload() {
@@ -378,6 +446,15 @@ public final class EventDispatcher {
         postAsync(UserPromoteEvent.class, source, track.getApiProxy(), user.getApiProxy(), Optional.ofNullable(from), Optional.ofNullable(to));
     }
 
+    @Override
+    public void close() {
+        // post any changes which are still waiting, then stop the executor threads
+        for (Map.Entry<PermissionHolder, DataType> key : this.pendingNodeChanges.keySet()) {
+            flushNodeChanges(key);
+        }
+        this.asyncExecutor.close();
+    }
+
     private static ApiPermissionHolder proxy(PermissionHolder holder) {
         if (holder instanceof Group) {
             return ((Group) holder).getApiProxy();
@@ -406,6 +483,7 @@ public final class EventDispatcher {
                 LogReceiveEvent.class,
                 NodeAddEvent.class,
                 NodeClearEvent.class,
+                NodeMutateBatchEvent.class,
                 NodeRemoveEvent.class,
                 PlayerDataSaveEvent.class,
                 PlayerLoginProcessEvent.class,
@@ -434,4 +512,31 @@ public final class EventDispatcher {
         };
     }
 
+    private static final class NodeChangeBatch {
+        private final PermissionHolder target;
+        private final DataType dataType;
+        // every change, in order - a node added and then removed again within the
+        // window gets both events, although it cancels out of the merged difference
+        private final List<RecordedChange> orderedChanges = new ArrayList<>();
+        private final Difference<Node> changes = new Difference<>();
+        // the state of the holder after the most recent change
+        private ImmutableSet<Node> state;
+
+        NodeChangeBatch(PermissionHolder target, DataType dataType) {
+            this.target = target;
+            this.dataType = dataType;
+        }
+    }
+
+    private static final class RecordedChange {
+        private final Difference.Change<Node> change;
+        // the state of the holder just after the change was made
+        private final ImmutableSet<Node> state;
+
+        RecordedChange(Difference.Change<Node> change, ImmutableSet<Node> state) {
+            this.change = change;
+            this.state = state;
+        }
+    }
+
 }
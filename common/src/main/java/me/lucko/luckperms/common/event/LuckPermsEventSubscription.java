@@ -25,12 +25,14 @@
 
 package me.lucko.luckperms.common.event;
 
+import me.lucko.luckperms.common.config.ConfigKeys;
 import net.kyori.event.EventSubscriber;
 import net.luckperms.api.event.EventSubscription;
 import net.luckperms.api.event.LuckPermsEvent;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
@@ -66,6 +68,16 @@ public class LuckPermsEventSubscription<T extends LuckPermsEvent> implements Eve
      */
     private final AtomicBoolean active = new AtomicBoolean(true);
 
+    /**
+     * Execution time statistics for this handler
+     */
+    private final SubscriptionStatistics statistics = new SubscriptionStatistics();
+
+    /**
+     * The time when a slow handler warning was last logged for this handler
+     */
+    private volatile long lastSlowWarning = 0;
+
     public LuckPermsEventSubscription(AbstractEventBus<?> eventBus, Class<T> eventClass, Consumer<? super T> consumer, @Nullable Object plugin) {
         this.eventBus = eventBus;
         this.eventClass = eventClass;
@@ -90,11 +102,34 @@ public class LuckPermsEventSubscription<T extends LuckPermsEvent> implements Eve
 
     @Override
     public void invoke(@NonNull T event) throws Throwable {
+        long start = System.nanoTime();
         try {
             this.consumer.accept(event);
         } catch (Throwable t) {
             this.eventBus.getPlugin().getLogger().warn("Unable to pass event " + event.getEventType().getSimpleName() + " to handler " + this.consumer.getClass().getName(), t);
+        } finally {
+            long duration = System.nanoTime() - start;
+            this.statistics.record(duration);
+            checkSlow(event, duration);
+        }
+    }
+
+    private void checkSlow(T event, long durationNanos) {
+        int thresholdMillis = this.eventBus.getPlugin().getConfiguration().get(ConfigKeys.SLOW_EVENT_HANDLER_THRESHOLD);
+        if (thresholdMillis <= 0 || durationNanos < TimeUnit.MILLISECONDS.toNanos(thresholdMillis)) {
+            return;
+        }
+
+        // only warn once a minute per handler to avoid flooding the console
+        long now = System.currentTimeMillis();
+        if (now - this.lastSlowWarning < TimeUnit.MINUTES.toMillis(1)) {
+            return;
         }
+        this.lastSlowWarning = now;
+
+        this.eventBus.getPlugin().getLogger().warn("Event handler " + this.consumer.getClass().getName() + " (owned by " + getOwnerName() + ") " +
+                "took " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms to handle " + event.getEventType().getSimpleName() +
+                " on thread " + Thread.currentThread().getName());
     }
 
     @Override
@@ -110,4 +145,26 @@ public class LuckPermsEventSubscription<T extends LuckPermsEvent> implements Eve
     public @Nullable Object getPlugin() {
         return this.plugin;
     }
+
+    public SubscriptionStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Gets a readable name for the owner of this handler.
+     *
+     * <p>If the handler was registered without a plugin, the name of the
+     * handler class is used instead.</p>
+     *
+     * @return the owner name
+     */
+    public String getOwnerName() {
+        if (this.plugin != null) {
+            return this.eventBus.getPluginName(this.plugin);
+        }
+
+        String className = this.consumer.getClass().getName();
+        int lambdaIndex = className.indexOf("$$Lambda");
+        return lambdaIndex == -1 ? className : className.substring(0, lambdaIndex);
+    }
 }
@@ -35,9 +35,13 @@ import net.luckperms.api.node.types.InheritanceNode;
 import net.luckperms.api.query.QueryOptions;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A {@link Graph} which represents an "inheritance tree".
@@ -50,6 +54,16 @@ public class InheritanceGraph implements Graph<PermissionHolder> {
      */
     private final QueryOptions queryOptions;
 
+    /**
+     * Cache of the resolved & sorted successors of groups in the graph, keyed by group name.
+     */
+    private final Map<String, List<Group>> groupSuccessors = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on each invalidation, used to detect invalidations that occur mid-resolution
+     */
+    private final AtomicLong version = new AtomicLong();
+
     public InheritanceGraph(LuckPermsPlugin plugin, QueryOptions queryOptions) {
         this.plugin = plugin;
         this.queryOptions = queryOptions;
@@ -57,17 +71,99 @@ public class InheritanceGraph implements Graph<PermissionHolder> {
 
     @Override
     public Iterable<? extends PermissionHolder> successors(PermissionHolder holder) {
-        Set<Group> successors = new LinkedHashSet<>();
+        if (!(holder instanceof Group)) {
+            List<Group> successors = new ArrayList<>();
+            resolveSuccessors(holder, successors);
+            return successors;
+        }
+
+        String name = ((Group) holder).getName();
+        List<Group> cached = this.groupSuccessors.get(name);
+        if (cached != null && isCurrent(cached)) {
+            return cached;
+        }
+
+        long version = this.version.get();
+        List<Group> successors = new ArrayList<>();
+        boolean complete = resolveSuccessors(holder, successors);
+        successors = Collections.unmodifiableList(successors);
+
+        // only cache the result if all of the inherited groups were loaded,
+        // otherwise it will become out of date once they are
+        if (complete) {
+            this.groupSuccessors.put(name, successors);
+
+            // if an invalidation happened whilst we were resolving, the result may be stale
+            if (this.version.get() != version) {
+                this.groupSuccessors.remove(name, successors);
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * Resolves the successors of a holder, sorted according to inheritance rules.
+     *
+     * @param holder the holder
+     * @param successors the list to add the successors to
+     * @return true if all of the groups inherited by the holder are loaded
+     */
+    private boolean resolveSuccessors(PermissionHolder holder, List<Group> successors) {
+        boolean complete = true;
+
+        Set<Group> groups = new LinkedHashSet<>();
         for (InheritanceNode n : holder.getOwnInheritanceNodes(this.queryOptions)) {
             Group g = this.plugin.getGroupManager().getIfLoaded(n.getGroupName());
             if (g != null) {
-                successors.add(g);
+                groups.add(g);
+            } else {
+                complete = false;
             }
         }
 
-        List<Group> successorsSorted = new ArrayList<>(successors);
-        successorsSorted.sort(holder.getInheritanceComparator());
-        return successorsSorted;
+        successors.addAll(groups);
+        successors.sort(holder.getInheritanceComparator());
+        return complete;
+    }
+
+    /**
+     * Checks that the groups in a cached successor list are all still loaded.
+     *
+     * @param successors the successors
+     * @return true if the list is still current
+     */
+    private boolean isCurrent(List<Group> successors) {
+        for (Group group : successors) {
+            if (this.plugin.getGroupManager().getIfLoaded(group.getName()) != group) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Invalidates the cached successors of the given group.
+     *
+     * <p>Should be called when the inheritance nodes held by the group change.</p>
+     *
+     * @param group the group
+     */
+    public void invalidateSuccessors(Group group) {
+        this.version.incrementAndGet();
+        this.groupSuccessors.remove(group.getName());
+    }
+
+    /**
+     * Invalidates any cached successor lists which contain the given group.
+     *
+     * <p>Should be called when the weight of the group changes, as this
+     * affects the order it is sorted into.</p>
+     *
+     * @param group the group
+     */
+    public void invalidatePredecessors(Group group) {
+        this.version.incrementAndGet();
+        this.groupSuccessors.values().removeIf(successors -> successors.contains(group));
     }
 
     /**
@@ -25,12 +25,21 @@
 
 package me.lucko.luckperms.common.inheritance;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import me.lucko.luckperms.common.util.CaffeineFactory;
 import net.luckperms.api.query.QueryOptions;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 /**
  * Provides {@link InheritanceGraph}s.
+ *
+ * <p>Graphs cache the resolved successors of each group, so instances are
+ * retained and shared between lookups with equal {@link QueryOptions}.</p>
  */
 public class InheritanceGraphFactory {
     private final LuckPermsPlugin plugin;
@@ -38,6 +47,13 @@ public class InheritanceGraphFactory {
     private final InheritanceGraph nonContextualGraph;
     private final InheritanceGraph defaultContextualGraph;
 
+    /**
+     * Graphs for all other query options, expiring when no longer used.
+     */
+    private final Cache<QueryOptions, InheritanceGraph> graphs = CaffeineFactory.newBuilder()
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
     public InheritanceGraphFactory(LuckPermsPlugin plugin) {
         this.plugin = plugin;
         this.nonContextualGraph = new InheritanceGraph(plugin, QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL);
@@ -50,8 +66,32 @@ public class InheritanceGraphFactory {
         } else if (queryOptions == QueryOptionsImpl.DEFAULT_CONTEXTUAL) {
             return this.defaultContextualGraph;
         } else {
-            return new InheritanceGraph(this.plugin, queryOptions);
+            return this.graphs.get(queryOptions, q -> new InheritanceGraph(this.plugin, q));
         }
     }
 
+    /**
+     * Called when the inheritance nodes held by a group change.
+     *
+     * @param group the group
+     */
+    public void invalidateSuccessors(Group group) {
+        forEachGraph(graph -> graph.invalidateSuccessors(group));
+    }
+
+    /**
+     * Called when the weight of a group changes.
+     *
+     * @param group the group
+     */
+    public void invalidatePredecessors(Group group) {
+        forEachGraph(graph -> graph.invalidatePredecessors(group));
+    }
+
+    private void forEachGraph(Consumer<InheritanceGraph> action) {
+        action.accept(this.nonContextualGraph);
+        action.accept(this.defaultContextualGraph);
+        this.graphs.asMap().values().forEach(action);
+    }
+
 }
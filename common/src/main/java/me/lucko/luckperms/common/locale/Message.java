@@ -25,16 +25,21 @@
 
 package me.lucko.luckperms.common.locale;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.common.collect.Maps;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.event.SubscriptionStatistics;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.model.PermissionHolder;
 import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.node.NodeInterner;
 import me.lucko.luckperms.common.node.factory.NodeCommandFactory;
 import me.lucko.luckperms.common.plugin.AbstractLuckPermsPlugin;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.util.LoginBatcher;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.util.DurationFormatter;
 import net.kyori.adventure.text.Component;
@@ -1549,7 +1554,9 @@ public interface Message {
             // "     &3Static contexts: &f{}"
             // "     &3Online Players: &a{} &7(&a{}&7 unique)"
             // "     &3Uptime: &7{}"
-            // "     &3Local Data: &a{} &7users, &a{} &7groups, &a{} &7tracks",
+            // "     &3Local Data: &a{} &7users, &a{} &7groups, &a{} &7tracks"
+            // "     &3Interned Data: &a{} &7deduplicated, ~&a{} &7saved",
+            // "     &3Permission Cache: &a{} &7hits, &a{} &7misses, &a{} &7evictions"
             prefixed(translatable()
                     .key("luckperms.command.info.running-plugin")
                     .color(DARK_GREEN)
@@ -1606,6 +1613,28 @@ public interface Message {
                                     .append(metaEntry.getValue())
                             ));
                         }
+
+                        LoginBatcher loginBatcher = plugin.getConnectionListener().getLoginBatcher();
+                        if (loginBatcher != null) {
+                            builder.append(newline());
+                            builder.append(prefixed(text()
+                                    .color(DARK_AQUA)
+                                    .append(text("     "))
+                                    .append(translatable("luckperms.command.info.login-batches-key"))
+                                    .append(text(": "))
+                                    .append(translatable()
+                                            .key("luckperms.command.info.login-batches")
+                                            .color(GRAY)
+                                            .args(
+                                                    text(loginBatcher.getBatchCount(), GREEN),
+                                                    text(loginBatcher.getLoginCount(), GREEN),
+                                                    text(String.format(Locale.ROOT, "%.1f", loginBatcher.getAverageBatchSize()), GREEN),
+                                                    text(loginBatcher.getLargestBatchSize(), GREEN),
+                                                    text(String.format(Locale.ROOT, "%.1fms", loginBatcher.getAverageBatchTime()), GREEN)
+                                            )
+                                    )
+                            ));
+                        }
                     })),
             prefixed(text()
                     .color(AQUA)
@@ -1670,7 +1699,47 @@ public interface Message {
                                     text(plugin.getGroupManager().getAll().size(), GREEN),
                                     text(plugin.getTrackManager().getAll().size(), GREEN)
                             )
-                    ))
+                    )),
+            prefixed(text()
+                    .color(DARK_AQUA)
+                    .append(text("     "))
+                    .append(translatable("luckperms.command.info.interned-data-key"))
+                    .append(text(": "))
+                    .append(translatable()
+                            .key("luckperms.command.info.interned-data")
+                            .color(GRAY)
+                            .args(
+                                    text(Math.round(NodeInterner.getDeduplicationRatio() * 100) + "%", GREEN),
+                                    text(NodeInterner.getHitCount(), GREEN)
+                            )
+                    )
+                    .apply(builder -> {
+                        if (plugin.getConfiguration().get(ConfigKeys.PERMISSION_CALCULATOR_CACHE_SIZE) <= 0) {
+                            return;
+                        }
+
+                        CacheStats stats = CacheStats.empty();
+                        for (User user : plugin.getUserManager().getAll().values()) {
+                            stats = stats.plus(user.getCachedData().getPermissionCalculatorStats());
+                        }
+
+                        builder.append(newline());
+                        builder.append(prefixed(text()
+                                .color(DARK_AQUA)
+                                .append(text("     "))
+                                .append(translatable("luckperms.command.info.permission-cache-key"))
+                                .append(text(": "))
+                                .append(translatable()
+                                        .key("luckperms.command.info.permission-cache")
+                                        .color(GRAY)
+                                        .args(
+                                                text(stats.hitCount(), GREEN),
+                                                text(stats.missCount(), GREEN),
+                                                text(stats.evictionCount(), GREEN)
+                                        )
+                                )
+                        ));
+                    }))
     );
 
     Args1<Component> CREATE_ERROR = name -> prefixed(translatable()
@@ -2987,6 +3056,32 @@ public interface Message {
             .append(FULL_STOP)
     );
 
+    Args0 BULK_UPDATE_DRY_RUN_SUCCESS = () -> prefixed(translatable()
+            // "&bBulk update dry run completed successfully, no data was changed."
+            .key("luckperms.command.bulkupdate.dry-run-success")
+            .color(AQUA)
+            .append(FULL_STOP)
+    );
+
+    Args3<Integer, Integer, Integer> BULK_UPDATE_PROGRESS = (percent, processed, total) -> prefixed(text()
+            // "&b(Bulk Update) &b-> &f{}&f% complete &7- &b{}&f/&b{} &fentries processed."
+            .append(text()
+                    .color(AQUA)
+                    .append(OPEN_BRACKET)
+                    .append(translatable("luckperms.command.bulkupdate.term"))
+                    .append(CLOSE_BRACKET)
+            )
+            .append(text(" -> ", AQUA))
+            .append(translatable("luckperms.command.import.progress.percent", WHITE, text(percent)))
+            .append(text(" - ", GRAY))
+            .append(translatable()
+                    .key("luckperms.command.bulkupdate.progress.entries")
+                    .color(WHITE)
+                    .args(text(processed, AQUA), text(total, AQUA))
+                    .append(FULL_STOP)
+            )
+    );
+
     Args3<Integer, Integer, Integer> BULK_UPDATE_STATISTICS = (nodes, users, groups) -> join(newline(),
             // "&bTotal affected nodes: &a{}"
             // "&bTotal affected users: &a{}"
@@ -3008,6 +3103,28 @@ public interface Message {
                      .append(text(groups, GREEN)))
     );
 
+    Args0 BULK_UPDATE_CANCELLED = () -> prefixed(translatable()
+            // "&cBulk update was cancelled, changes made before it stopped have been kept."
+            .key("luckperms.command.bulkupdate.cancelled")
+            .color(RED)
+            .append(FULL_STOP)
+    );
+
+    Args1<Integer> BULK_UPDATE_CANCELLING = count -> prefixed(translatable()
+            // "&bCancelling {} running bulk update operation(s)."
+            .key("luckperms.command.bulkupdate.cancelling")
+            .color(AQUA)
+            .args(text(count, GREEN))
+            .append(FULL_STOP)
+    );
+
+    Args0 BULK_UPDATE_NOT_RUNNING = () -> prefixed(translatable()
+            // "&cThere are no bulk update operations running."
+            .key("luckperms.command.bulkupdate.not-running")
+            .color(RED)
+            .append(FULL_STOP)
+    );
+
     Args0 BULK_UPDATE_FAILURE = () -> prefixed(translatable()
             // "&cBulk update failed, check the console for errors."
             .key("luckperms.command.bulkupdate.failure")
@@ -3113,6 +3230,66 @@ public interface Message {
             .append(FULL_STOP)
     );
 
+    Args0 EVENT_STATS_HEADER = () -> prefixed(translatable()
+            // "&aEvent handlers by total execution time:"
+            .key("luckperms.command.eventstats.header")
+            .color(GREEN)
+            .append(text(':'))
+    );
+
+    Args3<String, String, SubscriptionStatistics> EVENT_STATS_ENTRY = (owner, eventName, stats) -> prefixed(text()
+            // - {} ({}) - {} calls - avg {}ms - max {}ms - total {}ms
+            .color(GRAY)
+            .append(text('-'))
+            .append(space())
+            .append(text(owner, AQUA))
+            .append(space())
+            .append(OPEN_BRACKET)
+            .append(text(eventName, WHITE))
+            .append(CLOSE_BRACKET)
+            .append(text(" - "))
+            .append(translatable("luckperms.command.eventstats.calls", text(stats.getInvocations(), GREEN)))
+            .append(text(" - "))
+            .append(translatable("luckperms.command.eventstats.average", text(formatNanos(stats.getAverageNanos()), GREEN)))
+            .append(text(" - "))
+            .append(translatable("luckperms.command.eventstats.max", text(formatNanos(stats.getMaxNanos()), GREEN)))
+            .append(text(" - "))
+            .append(translatable("luckperms.command.eventstats.total", text(formatNanos(stats.getTotalNanos()), GREEN)))
+            .apply(builder -> {
+                long[] bounds = SubscriptionStatistics.getBucketBoundsNanos();
+                long[] histogram = stats.getHistogram();
+
+                TextComponent.Builder hover = text()
+                        .append(translatable("luckperms.command.eventstats.histogram", AQUA))
+                        .append(text(':', AQUA));
+                for (int i = 0; i < histogram.length; i++) {
+                    String range = i < bounds.length
+                            ? "<= " + formatNanos(bounds[i])
+                            : "> " + formatNanos(bounds[bounds.length - 1]);
+                    hover.append(newline())
+                            .append(text(range, GRAY))
+                            .append(text(": ", GRAY))
+                            .append(text(histogram[i], WHITE));
+                }
+
+                builder.hoverEvent(HoverEvent.showText(hover.build()));
+            })
+    );
+
+    Args0 EVENT_STATS_NONE = () -> prefixed(translatable()
+            // "&bNo event handlers have been called yet."
+            .key("luckperms.command.eventstats.none")
+            .color(AQUA)
+            .append(FULL_STOP)
+    );
+
+    Args0 EVENT_STATS_RESET = () -> prefixed(translatable()
+            // "&bEvent handler statistics have been reset."
+            .key("luckperms.command.eventstats.reset")
+            .color(AQUA)
+            .append(FULL_STOP)
+    );
+
     Args4<String, String, Component, Boolean> USER_INFO_GENERAL = (username, uuid, uuidType, online) -> join(newline(),
             // "&b&l> &bUser Info: &f{}"
             // "&f- &3UUID: &f{}"
@@ -4133,6 +4310,24 @@ public interface Message {
             .append(FULL_STOP)
     );
 
+    Args2<Integer, Double> IMPORT_END_PARTIAL = (entries, seconds) -> prefixed(text()
+            // "&b(Import) &c&lPARTIALLY COMPLETED &7- only &b{} &7entries were read before the error - took &b{} &7seconds."
+            .color(GRAY)
+            .append(text()
+                    .color(AQUA)
+                    .append(OPEN_BRACKET)
+                    .append(translatable("luckperms.command.import.term"))
+                    .append(CLOSE_BRACKET)
+            )
+            .append(space())
+            .append(translatable("luckperms.command.import.partial", RED, BOLD))
+            .append(text(" - "))
+            .append(translatable("luckperms.command.import.partial-entries", text(entries, AQUA)))
+            .append(text(" - "))
+            .append(translatable("luckperms.command.import.duration", text(seconds, AQUA)))
+            .append(FULL_STOP)
+    );
+
     Args1<Double> IMPORT_END_COMPLETE = seconds -> prefixed(text()
             // "&b(Import) &a&lCOMPLETED &7- took &b{} &7seconds."
             .color(GRAY)
@@ -4221,6 +4416,10 @@ public interface Message {
         return builder.build();
     }
 
+    static String formatNanos(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000D);
+    }
+
     static Component formatTrackPath(Collection<String> groups)  {
         Iterator<String> it = groups.iterator();
         if (!it.hasNext()) {
@@ -31,6 +31,9 @@ import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.messenger.Messenger;
 import net.luckperms.api.messenger.MessengerProvider;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
 public interface InternalMessagingService {
 
     /**
@@ -62,6 +65,19 @@ public interface InternalMessagingService {
      */
     void pushUpdate();
 
+    /**
+     * Uses the messaging service to inform other servers about a change to
+     * specific groups and/or tracks.
+     *
+     * <p>Requests are buffered, and the names of all groups/tracks passed
+     * within the buffer window are sent together as a single message.</p>
+     *
+     * @param groups the names of the groups which changed
+     * @param tracks the names of the tracks which changed
+     * @return a future which completes when the update has been pushed
+     */
+    CompletableFuture<Void> pushTargetedUpdate(Collection<String> groups, Collection<String> tracks);
+
     /**
      * Pushes an update for a specific user.
      *
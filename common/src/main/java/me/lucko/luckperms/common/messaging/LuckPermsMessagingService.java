@@ -25,16 +25,19 @@
 
 package me.lucko.luckperms.common.messaging;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.cache.BufferedRequest;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.messaging.message.ActionLogMessageImpl;
+import me.lucko.luckperms.common.messaging.message.TargetedUpdateMessageImpl;
 import me.lucko.luckperms.common.messaging.message.UpdateMessageImpl;
 import me.lucko.luckperms.common.messaging.message.UserUpdateMessageImpl;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.tasks.TargetedSyncTask;
 import me.lucko.luckperms.common.util.ExpiringSet;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import me.lucko.luckperms.common.util.gson.JObject;
@@ -49,14 +52,19 @@ import net.luckperms.api.messenger.message.type.UserUpdateMessage;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Collection;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class LuckPermsMessagingService implements InternalMessagingService, IncomingMessageConsumer {
     private final LuckPermsPlugin plugin;
     private final ExpiringSet<UUID> receivedMessages;
     private final PushUpdateBuffer updateBuffer;
+    private final PushTargetedUpdateBuffer targetedUpdateBuffer;
 
     private final MessengerProvider messengerProvider;
     private final Messenger messenger;
@@ -70,6 +78,7 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
 
         this.receivedMessages = new ExpiringSet<>(1, TimeUnit.HOURS);
         this.updateBuffer = new PushUpdateBuffer(plugin);
+        this.targetedUpdateBuffer = new PushTargetedUpdateBuffer(plugin);
     }
 
     @Override
@@ -112,6 +121,14 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
         });
     }
 
+    @Override
+    public CompletableFuture<Void> pushTargetedUpdate(Collection<String> groups, Collection<String> tracks) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.PUSH_TARGETED_UPDATES)) {
+            return this.updateBuffer.request();
+        }
+        return this.targetedUpdateBuffer.request(groups, tracks);
+    }
+
     @Override
     public void pushUserUpdate(User user) {
         this.plugin.getBootstrap().getScheduler().async(() -> {
@@ -202,6 +219,9 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
             case UpdateMessageImpl.TYPE:
                 decoded = UpdateMessageImpl.decode(content, id);
                 break;
+            case TargetedUpdateMessageImpl.TYPE:
+                decoded = TargetedUpdateMessageImpl.decode(content, id);
+                break;
             case UserUpdateMessageImpl.TYPE:
                 decoded = UserUpdateMessageImpl.decode(content, id);
                 break;
@@ -233,7 +253,17 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
     }
 
     private void processIncomingMessage(Message message) {
-        if (message instanceof UpdateMessage) {
+        if (message instanceof TargetedUpdateMessageImpl) {
+            TargetedUpdateMessageImpl msg = (TargetedUpdateMessageImpl) message;
+
+            this.plugin.getLogger().info("[Messaging] Received targeted update ping for groups " + msg.getGroups() + " and tracks " + msg.getTracks() + " with id: " + msg.getId());
+
+            if (this.plugin.getEventDispatcher().dispatchNetworkPreSync(false, msg.getId())) {
+                return;
+            }
+
+            this.plugin.getBootstrap().getScheduler().async(new TargetedSyncTask(this.plugin, msg.getGroups(), msg.getTracks()));
+        } else if (message instanceof UpdateMessage) {
             UpdateMessage msg = (UpdateMessage) message;
 
             this.plugin.getLogger().info("[Messaging] Received update ping with id: " + msg.getId());
@@ -279,4 +309,43 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
             return null;
         }
     }
+
+    private final class PushTargetedUpdateBuffer extends BufferedRequest<Void> {
+        private final Set<String> groups = ConcurrentHashMap.newKeySet();
+        private final Set<String> tracks = ConcurrentHashMap.newKeySet();
+
+        PushTargetedUpdateBuffer(LuckPermsPlugin plugin) {
+            super(2, TimeUnit.SECONDS, plugin.getBootstrap().getScheduler());
+        }
+
+        CompletableFuture<Void> request(Collection<String> groups, Collection<String> tracks) {
+            this.groups.addAll(groups);
+            this.tracks.addAll(tracks);
+            return request();
+        }
+
+        private Set<String> drain(Set<String> set) {
+            ImmutableSet.Builder<String> drained = ImmutableSet.builder();
+            for (String name : set) {
+                if (set.remove(name)) {
+                    drained.add(name);
+                }
+            }
+            return drained.build();
+        }
+
+        @Override
+        protected Void perform() {
+            Set<String> groups = drain(this.groups);
+            Set<String> tracks = drain(this.tracks);
+            if (groups.isEmpty() && tracks.isEmpty()) {
+                return null;
+            }
+
+            UUID requestId = generatePingId();
+            LuckPermsMessagingService.this.plugin.getLogger().info("[Messaging] Sending targeted ping for groups " + groups + " and tracks " + tracks + " with id: " + requestId);
+            LuckPermsMessagingService.this.messenger.sendOutgoingMessage(new TargetedUpdateMessageImpl(requestId, groups, tracks));
+            return null;
+        }
+    }
 }
@@ -25,6 +25,7 @@
 
 package me.lucko.luckperms.common.model;
 
+import com.google.common.collect.ImmutableSet;
 import me.lucko.luckperms.common.api.implementation.ApiGroup;
 import me.lucko.luckperms.common.cache.Cache;
 import me.lucko.luckperms.common.cacheddata.GroupCachedDataManager;
@@ -36,6 +37,7 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.luckperms.api.node.NodeType;
 import net.luckperms.api.node.types.DisplayNameNode;
+import net.luckperms.api.node.types.InheritanceNode;
 import net.luckperms.api.node.types.WeightNode;
 import net.luckperms.api.query.QueryOptions;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -66,6 +68,12 @@ public class Group extends PermissionHolder {
      */
     private final GroupCachedDataManager cachedData;
 
+    /**
+     * The inheritance nodes held by the group when the cache was last invalidated,
+     * used to determine whether the inheritance graph needs to be refreshed.
+     */
+    private ImmutableSet<InheritanceNode> inheritanceSnapshot = ImmutableSet.of();
+
     public Group(String name, LuckPermsPlugin plugin) {
         super(plugin, name.toLowerCase(Locale.ROOT));
         this.name = getIdentifier().getName();
@@ -79,8 +87,29 @@ public class Group extends PermissionHolder {
         super.invalidateCache();
 
         // invalidate our caches
+        Optional<IntegerResult<WeightNode>> previousWeight = this.weightCache.getIfPresent();
         this.weightCache.invalidate();
         this.displayNameCache.invalidate();
+
+        // refresh the inheritance graphs if necessary
+        ImmutableSet.Builder<InheritanceNode> inheritance = ImmutableSet.builder();
+        normalData().copyInheritanceNodesTo(inheritance);
+        transientData().copyInheritanceNodesTo(inheritance);
+        ImmutableSet<InheritanceNode> inheritanceSnapshot = inheritance.build();
+
+        if (!inheritanceSnapshot.equals(this.inheritanceSnapshot)) {
+            this.inheritanceSnapshot = inheritanceSnapshot;
+            getPlugin().getInheritanceGraphFactory().invalidateSuccessors(this);
+        }
+
+        // if the weight was never calculated, it can't have been used to sort anything
+        if (previousWeight.isPresent() && !isSameWeight(previousWeight.get(), getWeightResult())) {
+            getPlugin().getInheritanceGraphFactory().invalidatePredecessors(this);
+        }
+    }
+
+    private static boolean isSameWeight(IntegerResult<WeightNode> a, IntegerResult<WeightNode> b) {
+        return a.isNull() ? b.isNull() : !b.isNull() && a.intResult() == b.intResult();
     }
 
     // name getters
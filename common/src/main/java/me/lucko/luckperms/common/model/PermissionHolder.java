@@ -29,6 +29,7 @@ import com.google.common.collect.Iterables;
 import me.lucko.luckperms.common.cacheddata.HolderCachedDataManager;
 import me.lucko.luckperms.common.cacheddata.result.IntegerResult;
 import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
+import me.lucko.luckperms.common.cacheddata.type.PermissionLayer;
 import me.lucko.luckperms.common.inheritance.InheritanceComparator;
 import me.lucko.luckperms.common.inheritance.InheritanceGraph;
 import me.lucko.luckperms.common.model.nodemap.NodeMap;
@@ -60,6 +61,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -355,11 +357,19 @@ public abstract class PermissionHolder {
     public <M extends Map<String, Node>> M exportPermissions(IntFunction<M> mapFactory, QueryOptions queryOptions, boolean convertToLowercase, boolean resolveShorthand) {
         List<Node> entries = resolveInheritedNodes(queryOptions);
         M map = mapFactory.apply(entries.size());
-        processExportedPermissions(map, entries, convertToLowercase, resolveShorthand);
+        processExportedPermissions(map, map, entries, convertToLowercase, resolveShorthand);
         return map;
     }
 
-    private static void processExportedPermissions(Map<String, Node> accumulator, List<Node> entries, boolean convertToLowercase, boolean resolveShorthand) {
+    public PermissionLayer exportPermissionLayer(QueryOptions queryOptions, boolean resolveInheritance, boolean convertToLowercase, boolean resolveShorthand) {
+        List<Node> entries = resolveInheritance ? resolveInheritedNodes(queryOptions) : getOwnNodes(queryOptions);
+        Map<String, Node> permissions = new HashMap<>(entries.size());
+        Map<String, Node> shorthand = new HashMap<>();
+        processExportedPermissions(permissions, shorthand, entries, convertToLowercase, resolveShorthand);
+        return new PermissionLayer(permissions, shorthand);
+    }
+
+    private static void processExportedPermissions(Map<String, Node> accumulator, Map<String, Node> shorthandAccumulator, List<Node> entries, boolean convertToLowercase, boolean resolveShorthand) {
         for (Node node : entries) {
             if (convertToLowercase) {
                 accumulator.putIfAbsent(node.getKey().toLowerCase(Locale.ROOT), node);
@@ -372,10 +382,9 @@ public abstract class PermissionHolder {
             for (Node node : entries) {
                 Collection<String> shorthand = node.resolveShorthand();
                 for (String s : shorthand) {
-                    if (convertToLowercase) {
-                        accumulator.putIfAbsent(s.toLowerCase(Locale.ROOT), node);
-                    } else {
-                        accumulator.putIfAbsent(s, node);
+                    String key = convertToLowercase ? s.toLowerCase(Locale.ROOT) : s;
+                    if (!accumulator.containsKey(key)) {
+                        shorthandAccumulator.putIfAbsent(key, node);
                     }
                 }
             }
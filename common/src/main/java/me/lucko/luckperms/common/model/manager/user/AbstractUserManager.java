@@ -32,7 +32,6 @@ import me.lucko.luckperms.common.model.manager.AbstractManager;
 import me.lucko.luckperms.common.model.manager.group.GroupManager;
 import me.lucko.luckperms.common.node.types.Inheritance;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
-import me.lucko.luckperms.common.util.CompletableFutures;
 import me.lucko.luckperms.common.verbose.event.CheckOrigin;
 import net.luckperms.api.model.data.DataType;
 import net.luckperms.api.node.Node;
@@ -162,12 +161,34 @@ public abstract class AbstractUserManager<T extends User> extends AbstractManage
 
     @Override
     public CompletableFuture<Void> loadAllUsers() {
-        Set<UUID> ids = new HashSet<>(getAll().keySet());
+        Set<UUID> loaded = new HashSet<>(getAll().keySet());
+        Set<UUID> ids = new HashSet<>(loaded);
         ids.addAll(this.plugin.getBootstrap().getOnlinePlayers());
 
-        return ids.stream()
-                .map(id -> this.plugin.getStorage().loadUser(id, null))
-                .collect(CompletableFutures.collector());
+        // if the storage tracks modifications, only reload the users that have changed
+        return this.plugin.getStorage().getModifiedUsers(ids)
+                .exceptionally(e -> {
+                    this.plugin.getLogger().warn("Unable to determine modified users, reloading all", e);
+                    return null;
+                })
+                .thenCompose(modified -> {
+                    Set<UUID> toLoad = ids;
+                    if (modified != null) {
+                        toLoad = new HashSet<>(modified);
+                        for (UUID id : ids) {
+                            if (!loaded.contains(id)) {
+                                toLoad.add(id);
+                            }
+                        }
+                    }
+
+                    if (toLoad.isEmpty()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+
+                    // load the users together, so the sync only makes a single round trip to storage
+                    return this.plugin.getStorage().loadUsers(toLoad).thenAccept(users -> {});
+                });
     }
 
     @Override
@@ -30,7 +30,9 @@ import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.util.ExpiringSet;
 
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -46,6 +48,9 @@ public class UserHousekeeper implements Runnable {
     // contains the uuids of users who have recently been retrieved from the API
     private final ExpiringSet<UUID> recentlyUsedApi;
 
+    // contains the uuids of users whose data is being retained in memory by another component
+    private final Set<UUID> retained = ConcurrentHashMap.newKeySet();
+
     public UserHousekeeper(LuckPermsPlugin plugin, UserManager<?> userManager, TimeoutSettings timeoutSettings) {
         this.plugin = plugin;
         this.userManager = userManager;
@@ -66,6 +71,15 @@ public class UserHousekeeper implements Runnable {
         this.recentlyUsedApi.remove(uuid);
     }
 
+    // called when another component wants a user to stay loaded until it is released
+    public void retain(UUID uuid) {
+        this.retained.add(uuid);
+    }
+
+    public void release(UUID uuid) {
+        this.retained.remove(uuid);
+    }
+
     @Override
     public void run() {
         for (UUID entry : this.userManager.getAll().keySet()) {
@@ -75,7 +89,13 @@ public class UserHousekeeper implements Runnable {
 
     public void cleanup(UUID uuid) {
         // unload users which aren't online and who haven't been online (or tried to login) recently
-        if (this.recentlyUsed.contains(uuid) || this.recentlyUsedApi.contains(uuid) || this.plugin.getBootstrap().isPlayerOnline(uuid)) {
+        if (this.recentlyUsed.contains(uuid) || this.recentlyUsedApi.contains(uuid) || this.retained.contains(uuid) || this.plugin.getBootstrap().isPlayerOnline(uuid)) {
+            // the user is staying loaded - compact their data until it is next modified
+            User user = this.userManager.getIfLoaded(uuid);
+            if (user != null) {
+                user.normalData().freeze();
+                user.transientData().freeze();
+            }
             return;
         }
 
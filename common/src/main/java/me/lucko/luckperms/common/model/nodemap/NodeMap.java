@@ -159,4 +159,13 @@ public interface NodeMap {
 
     Difference<Node> addAll(Stream<? extends Node> stream);
 
+    /**
+     * Compacts the map into a read-only form, to reduce its memory usage
+     * whilst it isn't being modified.
+     *
+     * <p>The map is transparently converted back to its mutable form
+     * the next time it is modified.</p>
+     */
+    void freeze();
+
 }
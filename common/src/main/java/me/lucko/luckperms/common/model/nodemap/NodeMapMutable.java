@@ -25,6 +25,8 @@
 
 package me.lucko.luckperms.common.model.nodemap;
 
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.context.comparator.ContextSetComparator;
 import me.lucko.luckperms.common.model.InheritanceOrigin;
@@ -42,6 +44,7 @@ import net.luckperms.api.node.metadata.types.InheritanceOriginMetadata;
 import net.luckperms.api.node.types.InheritanceNode;
 
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -65,6 +68,33 @@ public class NodeMapMutable extends NodeMapBase {
         return new ConcurrentSkipListMap<>(ContextSetComparator.reverse());
     }
 
+    // Creates an empty frozen map
+    private static <N extends Node> SortedMap<ImmutableContextSet, SortedSet<N>> createFrozenMap() {
+        return ImmutableSortedMap.<ImmutableContextSet, SortedSet<N>>orderedBy(ContextSetComparator.reverse()).build();
+    }
+
+    // Copies the given map into an array-backed immutable form, dropping any empty entries
+    private static <N extends Node> SortedMap<ImmutableContextSet, SortedSet<N>> freeze(SortedMap<ImmutableContextSet, SortedSet<N>> map) {
+        ImmutableSortedMap.Builder<ImmutableContextSet, SortedSet<N>> builder = ImmutableSortedMap.orderedBy(ContextSetComparator.reverse());
+        for (Map.Entry<ImmutableContextSet, SortedSet<N>> e : map.entrySet()) {
+            if (!e.getValue().isEmpty()) {
+                builder.put(e.getKey(), ImmutableSortedSet.copyOfSorted(e.getValue()));
+            }
+        }
+        return builder.build();
+    }
+
+    // Copies the given (frozen) map back into the mutable form
+    private static <N extends Node> SortedMap<ImmutableContextSet, SortedSet<N>> thaw(SortedMap<ImmutableContextSet, SortedSet<N>> map) {
+        SortedMap<ImmutableContextSet, SortedSet<N>> copy = createMap();
+        for (Map.Entry<ImmutableContextSet, SortedSet<N>> e : map.entrySet()) {
+            SortedSet<N> nodes = new ConcurrentSkipListSet<>(NodeComparator.reverse());
+            nodes.addAll(e.getValue());
+            copy.put(e.getKey(), nodes);
+        }
+        return copy;
+    }
+
     /*
      * Nodes are inserted into the maps using Node#getContexts() as the key.
      * The context set keys are ordered according to the rules of ContextSetComparator.
@@ -76,9 +106,16 @@ public class NodeMapMutable extends NodeMapBase {
      * are performed. We do this so there's no risk that the read methods will see an inconsistent
      * state in the middle of an update from the DB. (see below comment about locking - we don't
      * lock for reads!)
+     *
+     * Whilst they aren't being modified, the maps are held in a "frozen" form - immutable
+     * array-backed copies, which use a fraction of the memory of the skip lists. Most holders
+     * are loaded from storage and then only read, so they start off (and are returned to
+     * after a full update) in this form. They are "thawed" back into the mutable form under
+     * the lock, before the first modification.
      */
-    private SortedMap<ImmutableContextSet, SortedSet<Node>> map = createMap();
-    private SortedMap<ImmutableContextSet, SortedSet<InheritanceNode>> inheritanceMap = createMap();
+    private volatile SortedMap<ImmutableContextSet, SortedSet<Node>> map = createFrozenMap();
+    private volatile SortedMap<ImmutableContextSet, SortedSet<InheritanceNode>> inheritanceMap = createFrozenMap();
+    private boolean frozen = true;
 
     /**
      * This lock is used whilst performing mutations, but *not* reads.
@@ -112,6 +149,29 @@ public class NodeMapMutable extends NodeMapBase {
         return this.holder.getPlugin().getConfiguration().get(ConfigKeys.CONTEXT_SATISFY_MODE);
     }
 
+    @Override
+    public void freeze() {
+        this.lock.lock();
+        try {
+            if (!this.frozen) {
+                this.map = freeze(this.map);
+                this.inheritanceMap = freeze(this.inheritanceMap);
+                this.frozen = true;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Converts the maps back to their mutable form - must be called whilst holding the lock
+    private void thaw() {
+        if (this.frozen) {
+            this.map = thaw(this.map);
+            this.inheritanceMap = thaw(this.inheritanceMap);
+            this.frozen = false;
+        }
+    }
+
     private Node addInheritanceOrigin(Node node) {
         Optional<InheritanceOriginMetadata> existing = node.getMetadata(InheritanceOriginMetadata.KEY);
         if (existing.isPresent() && existing.get().equals(this.inheritanceOrigin)) {
@@ -130,6 +190,7 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            thaw();
             SortedSet<Node> nodes = this.map.computeIfAbsent(context, VALUE_SET_SUPPLIER);
 
             // add the new node to the set - if it was already there, return
@@ -168,6 +229,7 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            thaw();
             SortedSet<Node> nodes = this.map.get(context);
             if (nodes == null) {
                 return result;
@@ -218,6 +280,7 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            thaw();
             SortedSet<Node> nodes = this.map.get(context);
             if (nodes == null) {
                 return result;
@@ -250,6 +313,7 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            thaw();
             for (SortedSet<Node> nodes : this.map.values()) {
                 removeMatching(nodes.iterator(), predicate, result);
             }
@@ -267,6 +331,7 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            thaw();
             SortedSet<Node> nodes = this.map.get(context);
             if (nodes == null) {
                 return result;
@@ -326,8 +391,9 @@ public class NodeMapMutable extends NodeMapBase {
 
             // replace the map - this means any client reading async won't be affected
             // by any race conditions between this call to clear and any subsequent call to setContent
-            this.map = createMap();
-            this.inheritanceMap = createMap();
+            this.map = createFrozenMap();
+            this.inheritanceMap = createFrozenMap();
+            this.frozen = true;
         } finally {
             this.lock.unlock();
         }
@@ -342,6 +408,7 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            thaw();
             SortedSet<Node> removed = this.map.remove(context);
             if (removed != null) {
                 result.recordChanges(ChangeType.REMOVE, removed);
@@ -362,6 +429,9 @@ public class NodeMapMutable extends NodeMapBase {
         try {
             result.mergeFrom(clear());
             result.mergeFrom(addAll(set));
+
+            // the content has been replaced wholesale, usually from storage - compact until it is next modified
+            freeze();
         } finally {
             this.lock.unlock();
         }
@@ -377,6 +447,9 @@ public class NodeMapMutable extends NodeMapBase {
         try {
             result.mergeFrom(clear());
             result.mergeFrom(addAll(stream));
+
+            // the content has been replaced wholesale, usually from storage - compact until it is next modified
+            freeze();
         } finally {
             this.lock.unlock();
         }
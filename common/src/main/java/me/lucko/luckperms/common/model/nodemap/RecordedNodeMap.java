@@ -165,6 +165,7 @@ public class RecordedNodeMap implements NodeMap {
 
     // just plain delegation
 
+    @Override public void freeze() { this.delegate.freeze(); }
     @Override public boolean isEmpty() { return this.delegate.isEmpty(); }
     @Override public int size() { return this.delegate.size(); }
     @Override public List<Node> asList() { return this.delegate.asList(); }
@@ -67,10 +67,10 @@ public abstract class AbstractNode<N extends ScopedNode<N, B>, B extends NodeBui
     private final int hashCode;
 
     protected AbstractNode(String key, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
-        this.key = key;
+        this.key = NodeInterner.internKey(key);
         this.value = value;
         this.expireAt = expireAt;
-        this.contexts = contexts;
+        this.contexts = NodeInterner.internContexts(contexts);
         this.metadata = ImmutableMap.copyOf(metadata);
 
         this.resolvedShorthand = this instanceof PermissionNode ? ImmutableList.copyOf(ShorthandParser.expandShorthand(this.key)) : ImmutableList.of();
@@ -0,0 +1,100 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.node;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import net.luckperms.api.context.ImmutableContextSet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deduplicates the parts of {@link AbstractNode}s which tend to be identical
+ * between many holders - the permission key and the context set.
+ *
+ * <p>Whole nodes are not interned, as the nodes held by a holder always carry
+ * their own inheritance origin metadata.</p>
+ */
+public final class NodeInterner {
+    private NodeInterner() {}
+
+    private static final Pool<String> KEYS = new Pool<>();
+    private static final Pool<ImmutableContextSet> CONTEXTS = new Pool<>();
+
+    public static String internKey(String key) {
+        return KEYS.intern(key);
+    }
+
+    public static ImmutableContextSet internContexts(ImmutableContextSet contexts) {
+        if (contexts.isEmpty()) {
+            return contexts;
+        }
+        return CONTEXTS.intern(contexts);
+    }
+
+    /**
+     * Gets the proportion of intern requests which were satisfied by an
+     * existing instance.
+     *
+     * @return the deduplication ratio, between 0 and 1
+     */
+    public static double getDeduplicationRatio() {
+        long requests = KEYS.requests.sum() + CONTEXTS.requests.sum();
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) getHitCount() / requests;
+    }
+
+    /**
+     * Gets the total number of intern requests which were satisfied by an
+     * existing instance since startup.
+     *
+     * <p>This is a cumulative count - it is not reduced when the holders using the
+     * interned instances are unloaded, so it doesn't reflect the memory currently saved.</p>
+     *
+     * @return the number of interned hits
+     */
+    public static long getHitCount() {
+        return KEYS.hits.sum() + CONTEXTS.hits.sum();
+    }
+
+    private static final class Pool<T> {
+        private final Interner<T> interner = Interners.newWeakInterner();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+
+        T intern(T value) {
+            T canonical = this.interner.intern(value);
+            this.requests.increment();
+            if (canonical != value) {
+                this.hits.increment();
+            }
+            return canonical;
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.node.types;
 
 import me.lucko.luckperms.common.node.AbstractNode;
 import me.lucko.luckperms.common.node.AbstractNodeBuilder;
+import me.lucko.luckperms.common.node.NodeInterner;
 import me.lucko.luckperms.common.node.factory.Delimiters;
 import net.luckperms.api.context.ImmutableContextSet;
 import net.luckperms.api.node.metadata.NodeMetadataKey;
@@ -60,7 +61,7 @@ public class Meta extends AbstractNode<MetaNode, MetaNode.Builder> implements Me
 
     public Meta(String metaKey, String metaValue, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
         super(key(metaKey, metaValue), value, expireAt, contexts, metadata);
-        this.metaKey = metaKey.toLowerCase(Locale.ROOT);
+        this.metaKey = NodeInterner.internKey(metaKey.toLowerCase(Locale.ROOT));
         this.metaValue = metaValue;
     }
 
@@ -142,6 +142,7 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
                 new EnvironmentVariableConfigAdapter(this),
                 configFileAdapter
         ));
+        this.verboseHandler.configure(this.configuration);
 
         // setup a bytebin instance
         this.httpClient = new OkHttpClient.Builder()
@@ -281,6 +282,9 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
             this.fileWatcher.close();
         }
 
+        // post any pending events and stop the event threads
+        this.eventDispatcher.close();
+
         // unregister api
         ApiRegistrationUtil.unregisterProvider();
 
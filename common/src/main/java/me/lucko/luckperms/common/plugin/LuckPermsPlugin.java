@@ -327,4 +327,13 @@ public interface LuckPermsPlugin {
 
     }
 
+    /**
+     * Called when the cached data of a user is invalidated.
+     *
+     * @param user the user
+     */
+    default void onUserDataInvalidated(User user) {
+
+    }
+
 }
@@ -25,8 +25,10 @@
 
 package me.lucko.luckperms.common.plugin.util;
 
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.misc.PlayerLoginResult;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.model.data.DataType;
 import net.luckperms.api.platform.Platform;
@@ -41,9 +43,17 @@ import java.util.concurrent.ConcurrentHashMap;
 public abstract class AbstractConnectionListener {
     private final LuckPermsPlugin plugin;
     private final Set<UUID> uniqueConnections = ConcurrentHashMap.newKeySet();
+    private final LoginBatcher loginBatcher;
 
     protected AbstractConnectionListener(LuckPermsPlugin plugin) {
         this.plugin = plugin;
+
+        int batchWindow = plugin.getConfiguration().get(ConfigKeys.LOGIN_BATCH_WINDOW);
+        if (batchWindow > 0) {
+            this.loginBatcher = new LoginBatcher(plugin, batchWindow, Math.max(1, plugin.getConfiguration().get(ConfigKeys.LOGIN_BATCH_MAX_SIZE)));
+        } else {
+            this.loginBatcher = null;
+        }
     }
 
     /**
@@ -59,14 +69,33 @@ public abstract class AbstractConnectionListener {
         this.uniqueConnections.add(uniqueId);
     }
 
+    /**
+     * Gets the login batcher, if logins are being batched.
+     *
+     * @return the login batcher, or null
+     */
+    public LoginBatcher getLoginBatcher() {
+        return this.loginBatcher;
+    }
+
     public User loadUser(UUID uniqueId, String username) {
         final long startTime = System.currentTimeMillis();
 
         // register with the housekeeper to avoid accidental unloads
         this.plugin.getUserManager().getHouseKeeper().registerUsage(uniqueId);
 
-        // save uuid data.
-        PlayerSaveResult saveResult = this.plugin.getStorage().savePlayerData(uniqueId, username).join();
+        // save uuid data and load the user
+        PlayerSaveResult saveResult;
+        User user;
+        if (this.loginBatcher != null) {
+            LoginBatcher.Login login = this.loginBatcher.submit(uniqueId, username).join();
+            saveResult = login.getSaveResult();
+            user = login.getUser();
+        } else {
+            PlayerLoginResult result = this.plugin.getStorage().savePlayerDataAndLoadUser(uniqueId, username).join();
+            saveResult = result.getSaveResult();
+            user = result.getUser();
+        }
 
         // fire UserFirstLogin event
         if (saveResult.includes(PlayerSaveResult.Outcome.CLEAN_INSERT)) {
@@ -98,7 +127,6 @@ public abstract class AbstractConnectionListener {
             this.plugin.getLogger().warn("See here for more info: https://luckperms.net/wiki/Network-Installation#pre-setup");
         }
 
-        User user = this.plugin.getStorage().loadUser(uniqueId, username).join();
         if (user == null) {
             throw new NullPointerException("User is null");
         }
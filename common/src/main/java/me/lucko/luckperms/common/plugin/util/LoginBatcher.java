@@ -0,0 +1,202 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.plugin.util;
+
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.misc.PlayerLoginResult;
+import net.luckperms.api.model.PlayerSaveResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces player logins which arrive within a short window, so the player data
+ * for the whole batch is saved and loaded with a single storage request each.
+ */
+public class LoginBatcher {
+    private final LuckPermsPlugin plugin;
+
+    /** How long to wait for more logins before processing a batch, in milliseconds */
+    private final long window;
+    /** The maximum number of logins to process in a single batch */
+    private final int maxBatchSize;
+
+    /** The logins waiting to be processed, guarded by 'this' */
+    private Map<UUID, Login> pending = new LinkedHashMap<>();
+    /** If a task has been scheduled to process the pending logins, guarded by 'this' */
+    private boolean scheduled = false;
+
+    // metrics
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder loginCount = new LongAdder();
+    private final LongAdder totalBatchTime = new LongAdder();
+    private final AtomicInteger largestBatch = new AtomicInteger(0);
+
+    public LoginBatcher(LuckPermsPlugin plugin, long window, int maxBatchSize) {
+        this.plugin = plugin;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Submits a login to be processed in the next batch.
+     *
+     * @param uniqueId the uuid of the player
+     * @param username the username of the player
+     * @return a future encapsulating the result of the login
+     */
+    public CompletableFuture<Login> submit(UUID uniqueId, String username) {
+        Map<UUID, Login> batch = null;
+        Login login;
+
+        synchronized (this) {
+            login = this.pending.get(uniqueId);
+            if (login != null) {
+                return login.future;
+            }
+
+            login = new Login(uniqueId, username);
+            this.pending.put(uniqueId, login);
+
+            if (this.pending.size() >= this.maxBatchSize) {
+                batch = this.pending;
+                this.pending = new LinkedHashMap<>();
+            } else if (!this.scheduled) {
+                this.scheduled = true;
+                this.plugin.getBootstrap().getScheduler().asyncLater(this::processPending, this.window, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batch != null) {
+            Map<UUID, Login> fullBatch = batch;
+            this.plugin.getBootstrap().getScheduler().async(() -> process(fullBatch));
+        }
+        return login.future;
+    }
+
+    private void processPending() {
+        Map<UUID, Login> batch;
+        synchronized (this) {
+            batch = this.pending;
+            this.pending = new LinkedHashMap<>();
+            this.scheduled = false;
+        }
+
+        if (!batch.isEmpty()) {
+            process(batch);
+        }
+    }
+
+    private void process(Map<UUID, Login> batch) {
+        long startTime = System.currentTimeMillis();
+
+        try {
+            Map<UUID, String> usernames = new LinkedHashMap<>();
+            for (Login login : batch.values()) {
+                usernames.put(login.uniqueId, login.username);
+
+                // set the username in the correct case before the user is loaded
+                this.plugin.getUserManager().getOrMake(login.uniqueId, login.username);
+            }
+
+            Map<UUID, PlayerLoginResult> results = this.plugin.getStorage().savePlayerDataAndLoadUsers(usernames).join();
+
+            for (Login login : batch.values()) {
+                PlayerLoginResult result = results.get(login.uniqueId);
+                login.saveResult = result.getSaveResult();
+                login.user = result.getUser();
+                login.future.complete(login);
+            }
+        } catch (Throwable t) {
+            for (Login login : batch.values()) {
+                login.future.completeExceptionally(t);
+            }
+        }
+
+        long time = System.currentTimeMillis() - startTime;
+        this.batchCount.increment();
+        this.loginCount.add(batch.size());
+        this.totalBatchTime.add(time);
+        this.largestBatch.accumulateAndGet(batch.size(), Math::max);
+
+        if (time >= 1000) {
+            this.plugin.getLogger().warn("Processing a batch of " + batch.size() + " logins took " + time + "ms.");
+        }
+    }
+
+    public long getBatchCount() {
+        return this.batchCount.sum();
+    }
+
+    public long getLoginCount() {
+        return this.loginCount.sum();
+    }
+
+    public int getLargestBatchSize() {
+        return this.largestBatch.get();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = this.batchCount.sum();
+        return batches == 0 ? 0 : (double) this.loginCount.sum() / batches;
+    }
+
+    public double getAverageBatchTime() {
+        long batches = this.batchCount.sum();
+        return batches == 0 ? 0 : (double) this.totalBatchTime.sum() / batches;
+    }
+
+    /**
+     * A login waiting to be processed by the batcher.
+     */
+    public static final class Login {
+        private final UUID uniqueId;
+        private final String username;
+        private final CompletableFuture<Login> future = new CompletableFuture<>();
+
+        private PlayerSaveResult saveResult;
+        private User user;
+
+        Login(UUID uniqueId, String username) {
+            this.uniqueId = uniqueId;
+            this.username = username;
+        }
+
+        public PlayerSaveResult getSaveResult() {
+            return this.saveResult;
+        }
+
+        public User getUser() {
+            return this.user;
+        }
+    }
+}
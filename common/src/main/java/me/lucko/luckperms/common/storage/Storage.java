@@ -27,6 +27,8 @@ package me.lucko.luckperms.common.storage;
 
 import com.google.common.collect.ImmutableList;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.Track;
@@ -36,6 +38,7 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.split.SplitStorage;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.PlayerLoginResult;
 import me.lucko.luckperms.common.util.Throwing;
 import net.kyori.adventure.text.Component;
 import net.luckperms.api.actionlog.Action;
@@ -55,6 +58,7 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
 
 /**
  * Provides a {@link CompletableFuture} based API for interacting with a {@link StorageImplementation}.
@@ -138,6 +142,10 @@ public class Storage {
         return future(this.implementation::getLog);
     }
 
+    public CompletableFuture<LogPage> getLogPage(LogQuery query, int pageSize, int pageNumber) {
+        return future(() -> this.implementation.getLogPage(query, pageSize, pageNumber));
+    }
+
     public CompletableFuture<Void> applyBulkUpdate(BulkUpdate bulkUpdate) {
         return future(() -> this.implementation.applyBulkUpdate(bulkUpdate));
     }
@@ -166,10 +174,23 @@ public class Storage {
         return future(() -> this.implementation.saveUser(user));
     }
 
+    public CompletableFuture<Set<UUID>> getModifiedUsers(Set<UUID> uniqueIds) {
+        return future(() -> this.implementation.getModifiedUsers(uniqueIds));
+    }
+
     public CompletableFuture<Set<UUID>> getUniqueUsers() {
         return future(this.implementation::getUniqueUsers);
     }
 
+    public CompletableFuture<Void> streamUsers(int batchSize, Throwing.Consumer<Map<UUID, User>> consumer, BiConsumer<UUID, Exception> errorHandler) {
+        return future(() -> this.implementation.streamUsers(batchSize, users -> {
+            for (User user : users.values()) {
+                this.plugin.getEventDispatcher().dispatchUserLoad(user);
+            }
+            consumer.accept(users);
+        }, errorHandler));
+    }
+
     public <N extends Node> CompletableFuture<List<NodeEntry<UUID, N>>> searchUserNodes(ConstraintNodeMatcher<N> constraint) {
         return future(() -> {
             List<NodeEntry<UUID, N>> result = this.implementation.searchUserNodes(constraint);
@@ -272,6 +293,46 @@ public class Storage {
         });
     }
 
+    public CompletableFuture<PlayerLoginResult> savePlayerDataAndLoadUser(UUID uniqueId, String username) {
+        return future(() -> {
+            PlayerLoginResult result = this.implementation.savePlayerDataAndLoadUser(uniqueId, username);
+            if (result.getSaveResult() != null) {
+                this.plugin.getEventDispatcher().dispatchPlayerDataSave(uniqueId, username, result.getSaveResult());
+            }
+            if (result.getUser() != null) {
+                this.plugin.getEventDispatcher().dispatchUserLoad(result.getUser());
+            }
+            return result;
+        });
+    }
+
+    public CompletableFuture<Map<UUID, PlayerSaveResult>> savePlayerData(Map<UUID, String> usernames) {
+        return future(() -> {
+            Map<UUID, PlayerSaveResult> results = this.implementation.savePlayerData(usernames);
+            for (Map.Entry<UUID, PlayerSaveResult> result : results.entrySet()) {
+                if (result.getValue() != null) {
+                    this.plugin.getEventDispatcher().dispatchPlayerDataSave(result.getKey(), usernames.get(result.getKey()), result.getValue());
+                }
+            }
+            return results;
+        });
+    }
+
+    public CompletableFuture<Map<UUID, PlayerLoginResult>> savePlayerDataAndLoadUsers(Map<UUID, String> usernames) {
+        return future(() -> {
+            Map<UUID, PlayerLoginResult> results = this.implementation.savePlayerDataAndLoadUsers(usernames);
+            for (Map.Entry<UUID, PlayerLoginResult> result : results.entrySet()) {
+                if (result.getValue().getSaveResult() != null) {
+                    this.plugin.getEventDispatcher().dispatchPlayerDataSave(result.getKey(), usernames.get(result.getKey()), result.getValue().getSaveResult());
+                }
+                if (result.getValue().getUser() != null) {
+                    this.plugin.getEventDispatcher().dispatchUserLoad(result.getValue().getUser());
+                }
+            }
+            return results;
+        });
+    }
+
     public CompletableFuture<Void> deletePlayerData(UUID uniqueId) {
         return future(() -> this.implementation.deletePlayerData(uniqueId));
     }
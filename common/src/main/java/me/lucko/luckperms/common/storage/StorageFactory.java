@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.storage;
 
 import com.google.common.collect.ImmutableSet;
 import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.custom.CustomStorageProviders;
@@ -40,6 +41,7 @@ import me.lucko.luckperms.common.storage.implementation.mongodb.MongoStorage;
 import me.lucko.luckperms.common.storage.implementation.split.SplitStorage;
 import me.lucko.luckperms.common.storage.implementation.split.SplitStorageType;
 import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
+import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.file.H2ConnectionFactory;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.file.SqliteConnectionFactory;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.hikari.MariaDbConnectionFactory;
@@ -93,35 +95,15 @@ public class StorageFactory {
             case CUSTOM:
                 return CustomStorageProviders.getProvider().provide(this.plugin);
             case MARIADB:
-                return new SqlStorage(
-                        this.plugin,
-                        new MariaDbConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
-                );
+                return createSqlStorage(new MariaDbConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)));
             case MYSQL:
-                return new SqlStorage(
-                        this.plugin,
-                        new MySqlConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
-                );
+                return createSqlStorage(new MySqlConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)));
             case SQLITE:
-                return new SqlStorage(
-                        this.plugin,
-                        new SqliteConnectionFactory(this.plugin.getBootstrap().getDataDirectory().resolve("luckperms-sqlite.db")),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
-                );
+                return createSqlStorage(new SqliteConnectionFactory(this.plugin.getBootstrap().getDataDirectory().resolve("luckperms-sqlite.db")));
             case H2:
-                return new SqlStorage(
-                        this.plugin,
-                        new H2ConnectionFactory(this.plugin.getBootstrap().getDataDirectory().resolve("luckperms-h2-v2")),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
-                );
+                return createSqlStorage(new H2ConnectionFactory(this.plugin.getBootstrap().getDataDirectory().resolve("luckperms-h2-v2")));
             case POSTGRESQL:
-                return new SqlStorage(
-                        this.plugin,
-                        new PostgresConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
-                );
+                return createSqlStorage(new PostgresConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)));
             case MONGODB:
                 return new MongoStorage(
                         this.plugin,
@@ -149,4 +131,13 @@ public class StorageFactory {
                 throw new RuntimeException("Unknown method: " + method);
         }
     }
+
+    private SqlStorage createSqlStorage(ConnectionFactory connectionFactory) {
+        LuckPermsConfiguration config = this.plugin.getConfiguration();
+        SqlStorage.Options options = new SqlStorage.Options()
+                .schemaVersion(config.get(ConfigKeys.SQL_SCHEMA_VERSION))
+                .userVersionStamps(config.get(ConfigKeys.SQL_USER_VERSION_STAMPS))
+                .bulkUpdateBatchSize(config.get(ConfigKeys.SQL_BULK_UPDATE_BATCH_SIZE));
+        return new SqlStorage(this.plugin, connectionFactory, config.get(ConfigKeys.SQL_TABLE_PREFIX), options);
+    }
 }
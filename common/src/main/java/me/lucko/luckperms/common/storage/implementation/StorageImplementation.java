@@ -25,7 +25,11 @@
 
 package me.lucko.luckperms.common.storage.implementation;
 
+import com.google.common.collect.Iterables;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
+import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.Track;
@@ -33,18 +37,26 @@ import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.PlayerLoginResult;
+import me.lucko.luckperms.common.util.Throwing;
 import net.kyori.adventure.text.Component;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.node.Node;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 public interface StorageImplementation {
     LuckPermsPlugin getPlugin();
@@ -63,6 +75,26 @@ public interface StorageImplementation {
 
     Log getLog() throws Exception;
 
+    /**
+     * Reads a single page of the action log, containing only the entries
+     * matched by the given query.
+     *
+     * <p>The default implementation loads and filters the whole log in memory.
+     * Implementations backed by a queryable store should override this.</p>
+     *
+     * @param query the query
+     * @param pageSize the number of entries per page
+     * @param pageNumber the page number, or {@link LogPage#LAST_PAGE}
+     * @return the page
+     * @throws Exception if an error occurs
+     */
+    default LogPage getLogPage(LogQuery query, int pageSize, int pageNumber) throws Exception {
+        List<LoggedAction> content = getLog().getContent().stream()
+                .filter(query::matches)
+                .collect(Collectors.toList());
+        return LogPage.paginate(content, pageSize, pageNumber);
+    }
+
     void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception;
 
     User loadUser(UUID uniqueId, String username) throws Exception;
@@ -71,8 +103,69 @@ public interface StorageImplementation {
 
     void saveUser(User user) throws Exception;
 
+    /**
+     * Gets which of the given users have been modified in storage since they
+     * were last loaded.
+     *
+     * @param uniqueIds the users to check
+     * @return the modified users, or null if modifications aren't tracked
+     * @throws Exception if an error occurs
+     */
+    default @Nullable Set<UUID> getModifiedUsers(Set<UUID> uniqueIds) throws Exception {
+        return null;
+    }
+
     Set<UUID> getUniqueUsers() throws Exception;
 
+    /**
+     * Loads every user in storage, passing them to the consumer in batches.
+     *
+     * <p>The default implementation lists the ids with {@link #getUniqueUsers()}
+     * and loads each batch using {@link #loadUserBatch(Set, BiConsumer)}. Implementations
+     * that can page through their data directly should override this.</p>
+     *
+     * <p>The order in which users are passed to the consumer depends on the
+     * implementation, and is not guaranteed to be sorted.</p>
+     *
+     * @param batchSize the maximum number of users in each batch
+     * @param consumer the consumer to pass each batch to
+     * @param errorHandler called for each user which could not be loaded, before continuing with the rest
+     * @throws Exception if an error occurs
+     */
+    default void streamUsers(int batchSize, Throwing.Consumer<Map<UUID, User>> consumer, BiConsumer<UUID, Exception> errorHandler) throws Exception {
+        List<UUID> uniqueIds = new ArrayList<>(getUniqueUsers());
+        uniqueIds.sort(null);
+        for (List<UUID> batch : Iterables.partition(uniqueIds, batchSize)) {
+            consumer.accept(loadUserBatch(new LinkedHashSet<>(batch), errorHandler));
+        }
+    }
+
+    /**
+     * Loads a batch of users for {@link #streamUsers(int, Throwing.Consumer, BiConsumer)}.
+     *
+     * <p>If the batch can't be loaded, the users are loaded one at a time instead,
+     * so that one user which can't be read doesn't stop the others from loading.</p>
+     *
+     * @param uniqueIds the users to load
+     * @param errorHandler called for each user which could not be loaded
+     * @return the users which were loaded
+     */
+    default Map<UUID, User> loadUserBatch(Set<UUID> uniqueIds, BiConsumer<UUID, Exception> errorHandler) {
+        try {
+            return loadUsers(uniqueIds);
+        } catch (Exception e) {
+            Map<UUID, User> users = new LinkedHashMap<>();
+            for (UUID uniqueId : uniqueIds) {
+                try {
+                    users.put(uniqueId, loadUser(uniqueId, null));
+                } catch (Exception ex) {
+                    errorHandler.accept(uniqueId, ex);
+                }
+            }
+            return users;
+        }
+    }
+
     <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception;
 
     Group createAndLoadGroup(String name) throws Exception;
@@ -99,6 +192,40 @@ public interface StorageImplementation {
 
     PlayerSaveResult savePlayerData(UUID uniqueId, String username) throws Exception;
 
+    default PlayerLoginResult savePlayerDataAndLoadUser(UUID uniqueId, String username) throws Exception {
+        PlayerSaveResult saveResult = savePlayerData(uniqueId, username);
+        User user = loadUser(uniqueId, username);
+        return new PlayerLoginResult(saveResult, user);
+    }
+
+    default Map<UUID, PlayerSaveResult> savePlayerData(Map<UUID, String> usernames) throws Exception {
+        Map<UUID, PlayerSaveResult> results = new HashMap<>();
+        for (Map.Entry<UUID, String> entry : usernames.entrySet()) {
+            results.put(entry.getKey(), savePlayerData(entry.getKey(), entry.getValue()));
+        }
+        return results;
+    }
+
+    /**
+     * Saves the player data for a batch of logins, then loads the users.
+     *
+     * <p>As with {@link #savePlayerDataAndLoadUser(UUID, String)}, users are saved
+     * again if any of their temporary nodes had expired when they were loaded.</p>
+     *
+     * @param usernames the usernames of the players logging in
+     * @return the login results
+     * @throws Exception if an error occurs
+     */
+    default Map<UUID, PlayerLoginResult> savePlayerDataAndLoadUsers(Map<UUID, String> usernames) throws Exception {
+        Map<UUID, PlayerSaveResult> saveResults = savePlayerData(usernames);
+        Map<UUID, PlayerLoginResult> results = new HashMap<>();
+        for (Map.Entry<UUID, String> entry : usernames.entrySet()) {
+            User user = loadUser(entry.getKey(), entry.getValue());
+            results.put(entry.getKey(), new PlayerLoginResult(saveResults.get(entry.getKey()), user));
+        }
+        return results;
+    }
+
     void deletePlayerData(UUID uniqueId) throws Exception;
 
     @Nullable UUID getPlayerUniqueId(String username) throws Exception;
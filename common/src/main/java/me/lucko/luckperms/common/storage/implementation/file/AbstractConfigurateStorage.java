@@ -26,8 +26,14 @@
 package me.lucko.luckperms.common.storage.implementation.file;
 
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.comparison.StandardComparison;
+import me.lucko.luckperms.common.bulkupdate.query.Query;
+import me.lucko.luckperms.common.bulkupdate.query.QueryField;
 import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
 import me.lucko.luckperms.common.context.serializer.ContextSetConfigurateSerializer;
 import me.lucko.luckperms.common.model.Group;
@@ -62,20 +68,40 @@ import ninja.leaping.configurate.Types;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
  * Abstract storage implementation using Configurate {@link ConfigurationNode}s to
  * serialize and deserialize data.
  */
 public abstract class AbstractConfigurateStorage implements StorageImplementation {
+    /** The number of holders processed by each bulk update task */
+    private static final int BULK_UPDATE_TASK_SIZE = 64;
+
+    /** The maximum number of bulk update tasks queued at once */
+    private static final int BULK_UPDATE_MAX_PENDING_TASKS = 32;
+
+    /** Permissions which are stored verbatim in the file, and so can be used to prefilter bulk updates */
+    private static final Pattern BULK_UPDATE_PREFILTER_SAFE = Pattern.compile("[a-z0-9_.*-]+");
+
     /** The plugin instance */
     protected final LuckPermsPlugin plugin;
 
@@ -96,6 +122,9 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
     /** The action logger */
     private final FileActionLogger actionLogger;
 
+    /** The worker threads used to read and write files in parallel, created when first needed */
+    private ExecutorService workerPool;
+
     protected AbstractConfigurateStorage(LuckPermsPlugin plugin, String implementationName, ConfigurateLoader loader, String dataDirectoryName) {
         this.plugin = plugin;
         this.implementationName = implementationName;
@@ -147,13 +176,37 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
         this.uuidCache.load(this.uuidCacheFile);
 
         // setup the action logger
-        this.actionLogger.init(this.dataDirectory.resolve("actions.txt"), this.dataDirectory.resolve("actions.json"));
+        this.actionLogger.init(this.dataDirectory.resolve("actions.txt"), this.dataDirectory.resolve("actions.idx"), this.dataDirectory.resolve("actions.json"));
     }
 
     @Override
     public void shutdown() {
         this.uuidCache.save(this.uuidCacheFile);
         this.actionLogger.flush();
+
+        synchronized (this) {
+            if (this.workerPool != null) {
+                this.workerPool.shutdown();
+                this.workerPool = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the pool of worker threads used to read and write files in parallel.
+     *
+     * @return the worker pool
+     */
+    protected synchronized ExecutorService getWorkerPool() {
+        if (this.workerPool == null) {
+            int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+            this.workerPool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("luckperms-file-worker-%d")
+                    .build()
+            );
+        }
+        return this.workerPool;
     }
 
     @Override
@@ -166,6 +219,11 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
         return this.actionLogger.getLog();
     }
 
+    @Override
+    public LogPage getLogPage(LogQuery query, int pageSize, int pageNumber) throws IOException {
+        return this.actionLogger.getLogPage(query, pageSize, pageNumber);
+    }
+
     @Override
     public User loadUser(UUID uniqueId, String username) throws IOException {
         User user = this.plugin.getUserManager().getOrMake(uniqueId, username);
@@ -380,6 +438,99 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
         return this.uuidCache.lookupUsername(uniqueId);
     }
 
+    /**
+     * Runs a bulk update task for each of the given items, using the worker
+     * pool. Returns once all of the tasks have completed, or once the queued
+     * tasks have completed after the bulk update was cancelled.
+     *
+     * <p>The progress of the operation is recorded in the bulk update statistics.</p>
+     *
+     * @param bulkUpdate the bulk update being applied
+     * @param items the items to process
+     * @param task the task to run for each item
+     * @param <T> the item type
+     * @throws CompletionException if any of the tasks failed, wrapping the first failure
+     */
+    protected <T> void processBulkUpdateInParallel(BulkUpdate bulkUpdate, Iterator<T> items, Consumer<T> task) {
+        ExecutorService executor = getWorkerPool();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        // limit the number of queued tasks, so the items aren't all read into memory ahead of the workers
+        Semaphore pendingTasks = new Semaphore(BULK_UPDATE_MAX_PENDING_TASKS);
+        try {
+            while (items.hasNext() && !bulkUpdate.isCancelled()) {
+                List<T> batch = new ArrayList<>(BULK_UPDATE_TASK_SIZE);
+                while (items.hasNext() && batch.size() < BULK_UPDATE_TASK_SIZE) {
+                    batch.add(items.next());
+                }
+
+                pendingTasks.acquire();
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        for (T item : batch) {
+                            task.accept(item);
+                            bulkUpdate.getStatistics().incrementProcessed(1);
+                        }
+                    } finally {
+                        pendingTasks.release();
+                    }
+                }, executor));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+
+        // wait for all of the tasks to complete, then rethrow the first failure
+        CompletionException failure = null;
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Gets the strings which must appear (ignoring case) in the raw content of a
+     * file for any of the nodes it contains to match the bulk update constraints.
+     *
+     * <p>Files which don't contain all of the terms can be skipped without parsing
+     * them. Only exact permission constraints are used, and only if the permission
+     * is written verbatim in the file.</p>
+     *
+     * @param bulkUpdate the bulk update
+     * @return the terms, lower case
+     */
+    protected static List<String> getBulkUpdatePrefilterTerms(BulkUpdate bulkUpdate) {
+        List<String> terms = new ArrayList<>();
+        for (Query query : bulkUpdate.getQueries()) {
+            if (query.getField() != QueryField.PERMISSION || query.getConstraint().getComparison() != StandardComparison.EQUAL) {
+                continue;
+            }
+
+            String term = query.getConstraint().getExpressionValue().toLowerCase(Locale.ROOT);
+
+            // parents are stored by group name, and chat meta/meta nodes are split up into separate fields
+            if (term.startsWith("group.")) {
+                term = term.substring("group.".length());
+            } else if (term.startsWith("prefix.") || term.startsWith("suffix.") || term.startsWith("meta.")) {
+                continue;
+            }
+
+            if (BULK_UPDATE_PREFILTER_SAFE.matcher(term).matches()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
     protected boolean processBulkUpdate(BulkUpdate bulkUpdate, ConfigurationNode node, HolderType holderType) {
         Set<Node> nodes = readNodes(node);
         Set<Node> results = bulkUpdate.apply(nodes, holderType);
@@ -25,42 +25,70 @@
 
 package me.lucko.luckperms.common.storage.implementation.file;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
 import me.lucko.luckperms.common.storage.implementation.file.loader.ConfigurateLoader;
 import me.lucko.luckperms.common.storage.implementation.file.watcher.FileWatcher;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
 import me.lucko.luckperms.common.util.Iterators;
+import me.lucko.luckperms.common.util.MoreFiles;
 import me.lucko.luckperms.common.util.Uuids;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.luckperms.api.node.Node;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Flat-file storage using Configurate {@link ConfigurationNode}s.
  * The data for users/groups/tracks is stored in a single shared file.
+ *
+ * <p>Rewriting the whole file for every change is expensive once the file
+ * gets large, so individual saves are instead appended to a journal next
+ * to the file. The journal is periodically compacted into the main file in
+ * the background, and replayed on startup if it wasn't compacted before the
+ * server stopped.</p>
  */
 public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
+
+    /** How often pending journal entries are compacted into the main files */
+    private static final long COMPACTION_INTERVAL_SECONDS = 10;
+
     private final String fileExtension;
 
     private CachedLoader users;
     private CachedLoader groups;
     private CachedLoader tracks;
     private FileWatcher.WatchedLocation watcher = null;
+    private SchedulerTask compactionTask = null;
 
     public CombinedConfigurateStorage(LuckPermsPlugin plugin, String implementationName, ConfigurateLoader loader, String fileExtension, String dataFolderName) {
         super(plugin, implementationName, loader, dataFolderName);
@@ -76,7 +104,7 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
 
     @Override
     protected void saveFile(StorageLocation location, String name, ConfigurationNode node) throws IOException {
-        getLoader(location).apply(true, false, root -> root.getNode(name).setValue(node));
+        getLoader(location).write(name, node);
     }
 
     private CachedLoader getLoader(StorageLocation location) {
@@ -120,22 +148,37 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
                 }
             });
         }
+
+        this.compactionTask = this.plugin.getBootstrap().getScheduler().asyncRepeating(this::compactJournals, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void compactJournals() {
+        for (CachedLoader loader : new CachedLoader[]{this.users, this.groups, this.tracks}) {
+            try {
+                loader.compact();
+            } catch (IOException e) {
+                this.plugin.getLogger().severe("Exception whilst compacting journal for " + loader.file.getFileName(), e);
+            }
+        }
     }
 
     @Override
     public void shutdown() {
+        if (this.compactionTask != null) {
+            this.compactionTask.cancel();
+        }
         try {
-            this.users.save();
+            this.users.compact();
         } catch (IOException e) {
             e.printStackTrace();
         }
         try {
-            this.groups.save();
+            this.groups.compact();
         } catch (IOException e) {
             e.printStackTrace();
         }
         try {
-            this.tracks.save();
+            this.tracks.compact();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -145,22 +188,40 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         if (bulkUpdate.getDataType().isIncludingUsers()) {
-            this.users.apply(true, true, root -> {
-                for (Map.Entry<Object, ? extends ConfigurationNode> entry : root.getChildrenMap().entrySet()) {
-                    processBulkUpdate(bulkUpdate, entry.getValue(), HolderType.USER);
-                }
-            });
+            applyBulkUpdate(this.users, bulkUpdate, HolderType.USER);
         }
 
         if (bulkUpdate.getDataType().isIncludingGroups()) {
-            this.groups.apply(true, true, root -> {
-                for (Map.Entry<Object, ? extends ConfigurationNode> entry : root.getChildrenMap().entrySet()) {
-                    processBulkUpdate(bulkUpdate, entry.getValue(), HolderType.GROUP);
-                }
-            });
+            applyBulkUpdate(this.groups, bulkUpdate, HolderType.GROUP);
         }
     }
 
+    private void applyBulkUpdate(CachedLoader loader, BulkUpdate bulkUpdate, HolderType holderType) throws IOException {
+        boolean dryRun = bulkUpdate.isDryRun();
+
+        // the entries all belong to one shared configuration node, which isn't safe
+        // to modify from multiple threads, so they are processed one at a time
+        loader.update(!dryRun, root -> {
+            List<Map.Entry<Object, ? extends ConfigurationNode>> entries = new ArrayList<>(root.getChildrenMap().entrySet());
+            bulkUpdate.getStatistics().incrementTotal(entries.size());
+
+            Set<String> changed = new HashSet<>();
+            for (Map.Entry<Object, ? extends ConfigurationNode> entry : entries) {
+                if (bulkUpdate.isCancelled()) {
+                    break;
+                }
+
+                if (dryRun) {
+                    processBulkUpdate(bulkUpdate, entry.getValue().copy(), holderType);
+                } else if (processBulkUpdate(bulkUpdate, entry.getValue(), holderType)) {
+                    changed.add(entry.getKey().toString());
+                }
+                bulkUpdate.getStatistics().incrementProcessed(1);
+            }
+            return changed;
+        });
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() throws IOException {
         return this.users.getNode().getChildrenMap().keySet().stream()
@@ -173,7 +234,7 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         List<NodeEntry<UUID, N>> held = new ArrayList<>();
-        this.users.apply(false, true, root -> {
+        this.users.apply(true, root -> {
             for (Map.Entry<Object, ? extends ConfigurationNode> entry : root.getChildrenMap().entrySet()) {
                 try {
                     UUID holder = UUID.fromString(entry.getKey().toString());
@@ -197,7 +258,7 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
     @Override
     public void loadAllGroups() throws IOException {
         List<String> groups = new ArrayList<>();
-        this.groups.apply(false, true, root -> {
+        this.groups.apply(true, root -> {
             groups.addAll(root.getChildrenMap().keySet().stream()
                     .map(Object::toString)
                     .collect(Collectors.toList()));
@@ -213,7 +274,7 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
     @Override
     public <N extends Node> List<NodeEntry<String, N>> searchGroupNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         List<NodeEntry<String, N>> held = new ArrayList<>();
-        this.groups.apply(false, true, root -> {
+        this.groups.apply(true, root -> {
             for (Map.Entry<Object, ? extends ConfigurationNode> entry : root.getChildrenMap().entrySet()) {
                 try {
                     String holder = entry.getKey().toString();
@@ -237,7 +298,7 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
     @Override
     public void loadAllTracks() throws IOException {
         List<String> tracks = new ArrayList<>();
-        this.tracks.apply(false, true, root -> {
+        this.tracks.apply(true, root -> {
             tracks.addAll(root.getChildrenMap().keySet().stream()
                     .map(Object::toString)
                     .collect(Collectors.toList()));
@@ -250,15 +311,73 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
         this.plugin.getTrackManager().retainAll(tracks);
     }
 
+    private static JsonElement toJson(Object value) {
+        return GsonProvider.normal().toJsonTree(value);
+    }
+
+    private static Object fromJson(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        if (element.isJsonObject()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                map.put(entry.getKey(), fromJson(entry.getValue()));
+            }
+            return map;
+        }
+        if (element.isJsonArray()) {
+            List<Object> list = new ArrayList<>();
+            for (JsonElement child : element.getAsJsonArray()) {
+                list.add(fromJson(child));
+            }
+            return list;
+        }
+
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean();
+        }
+        if (primitive.isNumber()) {
+            // gson doesn't keep track of the original number type, so pick the
+            // narrowest type which can hold the value
+            String number = primitive.getAsString();
+            if (number.indexOf('.') != -1 || number.indexOf('e') != -1 || number.indexOf('E') != -1) {
+                return Double.parseDouble(number);
+            }
+            long value = Long.parseLong(number);
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        }
+        return primitive.getAsString();
+    }
+
     private final class CachedLoader {
         private final Path file;
+        private final Path tempFile;
         private final ConfigurationLoader<? extends ConfigurationNode> loader;
+        private final ConfigurationLoader<? extends ConfigurationNode> tempLoader;
+
+        /** The journal which new changes are appended to */
+        private final Path journalFile;
+        /** The journal which is currently being compacted into the main file */
+        private final Path compactingJournalFile;
+
         private final ReentrantLock lock = new ReentrantLock();
+        private final ReentrantLock compactionLock = new ReentrantLock();
         private ConfigurationNode node = null;
+        /** If the in-memory node has changes which haven't been compacted into the main file */
+        private boolean dirty = false;
 
         private CachedLoader(Path file) {
             this.file = file;
+            this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            this.journalFile = file.resolveSibling(file.getFileName() + ".journal");
+            this.compactingJournalFile = file.resolveSibling(file.getFileName() + ".journal.compacting");
             this.loader = CombinedConfigurateStorage.super.loader.loader(file);
+            this.tempLoader = CombinedConfigurateStorage.super.loader.loader(this.tempFile);
             reload();
         }
 
@@ -268,11 +387,51 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
             }
         }
 
+        private ConfigurationNode load() throws IOException {
+            ConfigurationNode node = this.loader.load();
+
+            // replay any changes which weren't compacted before the last shutdown,
+            // oldest first
+            int replayed = replayJournal(this.compactingJournalFile, node) + replayJournal(this.journalFile, node);
+            if (replayed != 0) {
+                CombinedConfigurateStorage.this.plugin.getLogger().info("Recovered " + replayed + " journaled changes for " + this.file.getFileName());
+                this.dirty = true;
+            }
+
+            return node;
+        }
+
+        private int replayJournal(Path journal, ConfigurationNode root) throws IOException {
+            if (!Files.exists(journal)) {
+                return 0;
+            }
+
+            int count = 0;
+            try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+
+                    try {
+                        JsonObject entry = GsonProvider.parser().parse(line).getAsJsonObject();
+                        root.getNode(entry.get("key").getAsString()).setValue(fromJson(entry.get("value")));
+                        count++;
+                    } catch (Exception e) {
+                        // most likely a partially written entry at the end of the journal
+                        CombinedConfigurateStorage.this.plugin.getLogger().warn("Skipping unreadable journal entry in " + journal.getFileName(), e);
+                    }
+                }
+            }
+            return count;
+        }
+
         public ConfigurationNode getNode() throws IOException {
             this.lock.lock();
             try {
                 if (this.node == null) {
-                    this.node = this.loader.load();
+                    this.node = load();
                 }
 
                 return this.node;
@@ -282,10 +441,10 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
         }
 
         public void apply(Consumer<ConfigurationNode> action) throws IOException {
-            apply(false, false, action);
+            apply(false, action);
         }
 
-        public void apply(boolean save, boolean reload, Consumer<ConfigurationNode> action) throws IOException {
+        public void apply(boolean reload, Consumer<ConfigurationNode> action) throws IOException {
             this.lock.lock();
             try {
                 if (this.node == null || reload) {
@@ -293,32 +452,137 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
                 }
 
                 action.accept(this.node);
+            } finally {
+                this.lock.unlock();
+            }
+        }
 
-                if (save) {
-                    save();
+        /**
+         * Runs an action which modifies entries in the file, and appends the
+         * entries it changed to the journal before releasing the lock.
+         *
+         * @param reload if the file should be reloaded first
+         * @param action the action, returning the keys of the entries it changed
+         * @throws IOException if the changes could not be written to the journal
+         */
+        public void update(boolean reload, Function<ConfigurationNode, Collection<String>> action) throws IOException {
+            this.lock.lock();
+            try {
+                if (this.node == null || reload) {
+                    reload();
+                }
+
+                Collection<String> changed = action.apply(this.node);
+                if (!changed.isEmpty()) {
+                    appendToJournal(changed);
+                    this.dirty = true;
                 }
             } finally {
                 this.lock.unlock();
             }
         }
 
-        public void save() throws IOException {
+        /**
+         * Sets the value of a single entry in the file, and appends the change
+         * to the journal. The main file is rewritten by the next {@link #compact()}.
+         *
+         * @param name the key of the entry
+         * @param value the new value, or null to remove the entry
+         * @throws IOException if the change could not be written to the journal
+         */
+        public void write(String name, ConfigurationNode value) throws IOException {
             this.lock.lock();
             try {
-                recordChange();
-                this.loader.save(this.node);
+                getNode().getNode(name).setValue(value);
+                appendToJournal(Collections.singleton(name));
+                this.dirty = true;
             } finally {
                 this.lock.unlock();
             }
         }
 
+        // must be called whilst holding the lock
+        private void appendToJournal(Collection<String> names) throws IOException {
+            try (BufferedWriter writer = Files.newBufferedWriter(this.journalFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String name : names) {
+                    ConfigurationNode value = this.node.getNode(name);
+
+                    JsonObject entry = new JsonObject();
+                    entry.addProperty("key", name);
+                    entry.add("value", value.isVirtual() ? null : toJson(value.getValue()));
+
+                    writer.write(GsonProvider.normal().toJson(entry));
+                    writer.newLine();
+                }
+            }
+        }
+
+        /**
+         * Rewrites the main file to include all journaled changes, then
+         * discards the journal.
+         *
+         * <p>The in-memory data is copied whilst holding the lock, but is
+         * serialized and written without it, so saves aren't blocked by the
+         * rewrite.</p>
+         *
+         * @throws IOException if an io error occurs
+         */
+        public void compact() throws IOException {
+            this.compactionLock.lock();
+            try {
+                ConfigurationNode snapshot;
+
+                this.lock.lock();
+                try {
+                    if (!this.dirty || this.node == null) {
+                        return;
+                    }
+
+                    snapshot = this.node.copy();
+
+                    // move the journal aside, so new changes go into a fresh journal whilst this one is compacted.
+                    // if a previous compaction failed, its journal will still be around, so add to it instead.
+                    if (Files.exists(this.journalFile)) {
+                        if (Files.exists(this.compactingJournalFile)) {
+                            Files.write(this.compactingJournalFile, Files.readAllBytes(this.journalFile), StandardOpenOption.APPEND);
+                            Files.delete(this.journalFile);
+                        } else {
+                            Files.move(this.journalFile, this.compactingJournalFile);
+                        }
+                    }
+
+                    this.dirty = false;
+                } finally {
+                    this.lock.unlock();
+                }
+
+                try {
+                    // write to a temporary file first, so the main file is never left half written
+                    recordChange();
+                    this.tempLoader.save(snapshot);
+                    MoreFiles.moveReplacing(this.tempFile, this.file);
+                    Files.deleteIfExists(this.compactingJournalFile);
+                } catch (IOException e) {
+                    this.lock.lock();
+                    try {
+                        this.dirty = true;
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    throw e;
+                }
+            } finally {
+                this.compactionLock.unlock();
+            }
+        }
+
         public void reload() {
             this.lock.lock();
             try {
                 this.node = null;
                 try {
                     recordChange();
-                    this.node = this.loader.load();
+                    this.node = load();
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
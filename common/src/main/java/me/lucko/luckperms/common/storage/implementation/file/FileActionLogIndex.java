@@ -0,0 +1,350 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.file;
+
+import me.lucko.luckperms.common.actionlog.ActionJsonSerializer;
+import me.lucko.luckperms.common.actionlog.LogQuery;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.actionlog.Action;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An append-only index over the lines of the action log file.
+ *
+ * <p>Each line is described by a fixed size record, holding its position in the
+ * log file along with the fields the log is commonly filtered by. This allows a
+ * page of the log to be read without parsing every line in the file.</p>
+ */
+final class FileActionLogIndex {
+
+    /**
+     * offset (8) + length (4) + time (8) + actor (16) + type (1) + has target (1) + target (16) + target name hash (4)
+     */
+    private static final int RECORD_SIZE = 58;
+
+    /**
+     * Type used for lines which couldn't be parsed, so they are never matched
+     */
+    private static final byte INVALID_TYPE = -1;
+
+    private final Path file;
+
+    FileActionLogIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Checks that the index describes exactly the given content file, and rebuilds
+     * it if not (e.g. if the index is missing or a write to it failed).
+     *
+     * @param contentFile the content file
+     * @throws IOException if an i/o error occurs
+     */
+    public void validate(Path contentFile) throws IOException {
+        long contentSize = Files.exists(contentFile) ? Files.size(contentFile) : 0;
+        if (!isConsistent(contentSize)) {
+            rebuild(contentFile);
+        }
+    }
+
+    private boolean isConsistent(long contentSize) throws IOException {
+        if (!Files.exists(this.file)) {
+            return contentSize == 0;
+        }
+
+        long indexSize = Files.size(this.file);
+        if (indexSize % RECORD_SIZE != 0) {
+            return false;
+        }
+        if (indexSize == 0) {
+            return contentSize == 0;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+        try (SeekableByteChannel channel = Files.newByteChannel(this.file, StandardOpenOption.READ)) {
+            channel.position(indexSize - RECORD_SIZE);
+            if (channel.read(buf) != RECORD_SIZE) {
+                return false;
+            }
+        }
+        buf.flip();
+
+        Record last = Record.read(buf);
+        return last.offset + last.length == contentSize;
+    }
+
+    private void rebuild(Path contentFile) throws IOException {
+        Path tmp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            if (Files.exists(contentFile)) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(contentFile))) {
+                    ByteArrayOutputStream line = new ByteArrayOutputStream();
+                    long offset = 0;
+                    int b;
+                    while ((b = in.read()) != -1) {
+                        line.write(b);
+                        if (b == '\n') {
+                            out.write(encode(parse(offset, line.toByteArray())));
+                            offset += line.size();
+                            line.reset();
+                        }
+                    }
+                    if (line.size() != 0) {
+                        out.write(encode(parse(offset, line.toByteArray())));
+                    }
+                }
+            }
+        }
+
+        Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Record parse(long offset, byte[] line) {
+        try {
+            String content = new String(line, StandardCharsets.UTF_8).trim();
+            Action action = ActionJsonSerializer.deserialize(GsonProvider.parser().parse(content));
+            return Record.of(offset, line.length, action);
+        } catch (Exception e) {
+            return new Record(offset, line.length, 0, 0, 0, INVALID_TYPE, false, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Appends records to the index.
+     *
+     * @param records the records
+     * @throws IOException if an i/o error occurs
+     */
+    public void append(List<Record> records) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+        for (Record record : records) {
+            record.write(buf);
+        }
+        Files.write(this.file, buf.array(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Gets the size of the complete records currently in the index, in bytes.
+     *
+     * <p>Records appended after this call are not included when the returned
+     * value is passed to {@link #forEach(long, RecordVisitor)}.</p>
+     *
+     * @return the size
+     * @throws IOException if an i/o error occurs
+     */
+    public long size() throws IOException {
+        if (!Files.exists(this.file)) {
+            return 0;
+        }
+        long size = Files.size(this.file);
+        return size - (size % RECORD_SIZE);
+    }
+
+    /**
+     * Reads records from the index in the order they were appended, without
+     * holding them all in memory.
+     *
+     * @param size the number of bytes of the index to read, see {@link #size()}
+     * @param visitor the visitor, which can return false to stop reading
+     * @throws IOException if an i/o error occurs
+     */
+    public void forEach(long size, RecordVisitor visitor) throws IOException {
+        if (size == 0) {
+            return;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), size - position));
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, position + buf.position()) == -1) {
+                        break;
+                    }
+                }
+                buf.flip();
+
+                if (buf.remaining() < RECORD_SIZE) {
+                    return;
+                }
+                position += buf.remaining();
+
+                while (buf.remaining() >= RECORD_SIZE) {
+                    if (!visitor.visit(Record.read(buf))) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(Record record) {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE);
+        record.write(buf);
+        return buf.array();
+    }
+
+    /**
+     * Visits records read from the index.
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+
+        /**
+         * Visits a record.
+         *
+         * @param record the record
+         * @return true to continue reading, false to stop
+         * @throws IOException if an i/o error occurs
+         */
+        boolean visit(Record record) throws IOException;
+    }
+
+    /**
+     * Describes the position and key fields of a single action in the log file.
+     */
+    static final class Record {
+        static Record of(long offset, int length, Action action) {
+            UUID actor = action.getSource().getUniqueId();
+            UUID target = action.getTarget().getUniqueId().orElse(null);
+            return new Record(
+                    offset,
+                    length,
+                    action.getTimestamp().getEpochSecond(),
+                    actor.getMostSignificantBits(),
+                    actor.getLeastSignificantBits(),
+                    (byte) action.getTarget().getType().ordinal(),
+                    target != null,
+                    target == null ? 0 : target.getMostSignificantBits(),
+                    target == null ? 0 : target.getLeastSignificantBits(),
+                    action.getTarget().getName().hashCode()
+            );
+        }
+
+        private static Record read(ByteBuffer buf) {
+            return new Record(buf.getLong(), buf.getInt(), buf.getLong(), buf.getLong(), buf.getLong(), buf.get(), buf.get() != 0, buf.getLong(), buf.getLong(), buf.getInt());
+        }
+
+        private final long offset;
+        private final int length;
+        private final long time;
+        private final long actorMost;
+        private final long actorLeast;
+        private final byte type;
+        private final boolean hasTarget;
+        private final long targetMost;
+        private final long targetLeast;
+        private final int targetNameHash;
+
+        private Record(long offset, int length, long time, long actorMost, long actorLeast, byte type, boolean hasTarget, long targetMost, long targetLeast, int targetNameHash) {
+            this.offset = offset;
+            this.length = length;
+            this.time = time;
+            this.actorMost = actorMost;
+            this.actorLeast = actorLeast;
+            this.type = type;
+            this.hasTarget = hasTarget;
+            this.targetMost = targetMost;
+            this.targetLeast = targetLeast;
+            this.targetNameHash = targetNameHash;
+        }
+
+        private void write(ByteBuffer buf) {
+            buf.putLong(this.offset);
+            buf.putInt(this.length);
+            buf.putLong(this.time);
+            buf.putLong(this.actorMost);
+            buf.putLong(this.actorLeast);
+            buf.put(this.type);
+            buf.put((byte) (this.hasTarget ? 1 : 0));
+            buf.putLong(this.targetMost);
+            buf.putLong(this.targetLeast);
+            buf.putInt(this.targetNameHash);
+        }
+
+        public long getOffset() {
+            return this.offset;
+        }
+
+        public int getLength() {
+            return this.length;
+        }
+
+        public long getTime() {
+            return this.time;
+        }
+
+        /**
+         * Tests whether the action described by this record could match the query.
+         *
+         * <p>Target names are only stored as a hash, so matches for queries with a
+         * target name need to be verified against the parsed action. Free text
+         * searches can't be answered by the index at all.</p>
+         *
+         * @param query the query
+         * @return true if the action may match
+         */
+        public boolean mayMatch(LogQuery query) {
+            if (this.type == INVALID_TYPE) {
+                return false;
+            }
+
+            UUID actor = query.getActor();
+            if (actor != null && (actor.getMostSignificantBits() != this.actorMost || actor.getLeastSignificantBits() != this.actorLeast)) {
+                return false;
+            }
+            if (query.getTargetType() != null && query.getTargetType().ordinal() != this.type) {
+                return false;
+            }
+            UUID target = query.getTargetUniqueId();
+            if (target != null && (!this.hasTarget || target.getMostSignificantBits() != this.targetMost || target.getLeastSignificantBits() != this.targetLeast)) {
+                return false;
+            }
+            if (query.getTargetName() != null && query.getTargetName().hashCode() != this.targetNameHash) {
+                return false;
+            }
+            return this.time >= query.getMinTime() && this.time <= query.getMaxTime();
+        }
+    }
+}
@@ -30,19 +30,31 @@ import com.google.gson.JsonElement;
 import com.google.gson.stream.JsonReader;
 import me.lucko.luckperms.common.actionlog.ActionJsonSerializer;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
+import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.cache.BufferedRequest;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.Paginated;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.luckperms.api.actionlog.Action;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
@@ -60,6 +72,11 @@ public class FileActionLogger {
      */
     private final ReentrantLock writeLock = new ReentrantLock();
 
+    /**
+     * The index over the content file, or null if it couldn't be maintained
+     */
+    private volatile FileActionLogIndex index;
+
     /**
      * The queue of entries pending save to the file
      */
@@ -71,9 +88,17 @@ public class FileActionLogger {
         this.saveBuffer = new SaveBuffer(plugin);
     }
 
-    public void init(Path contentFile, Path legacyFile) {
+    public void init(Path contentFile, Path indexFile, Path legacyFile) {
         this.contentFile = contentFile;
 
+        FileActionLogIndex index = new FileActionLogIndex(indexFile);
+        try {
+            index.validate(contentFile);
+            this.index = index;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
         if (Files.exists(legacyFile)) {
             // migrate
             JsonArray array;
@@ -113,17 +138,36 @@ public class FileActionLogger {
                 return;
             }
 
+            List<FileActionLogIndex.Record> records = new ArrayList<>(this.entryQueue.size());
+
             try {
-                List<String> toWrite = new ArrayList<>(this.entryQueue.size());
+                ByteArrayOutputStream toWrite = new ByteArrayOutputStream();
+                long offset = Files.exists(this.contentFile) ? Files.size(this.contentFile) : 0;
 
                 // poll the queue for new entries
                 for (Action e; (e = this.entryQueue.poll()) != null; ) {
-                    toWrite.add(GsonProvider.normal().toJson(ActionJsonSerializer.serialize(e)));
+                    String json = GsonProvider.normal().toJson(ActionJsonSerializer.serialize(e));
+                    byte[] line = (json + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+                    records.add(FileActionLogIndex.Record.of(offset, line.length, e));
+                    offset += line.length;
+                    toWrite.write(line);
                 }
 
-                Files.write(this.contentFile, toWrite, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                Files.write(this.contentFile, toWrite.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
             } catch (IOException e) {
                 e.printStackTrace();
+                return;
+            }
+
+            if (this.index != null) {
+                try {
+                    this.index.append(records);
+                } catch (IOException e) {
+                    // stop using the index, it will be rebuilt next time the storage is initialised
+                    e.printStackTrace();
+                    this.index = null;
+                }
             }
         } finally {
             this.writeLock.unlock();
@@ -152,6 +196,248 @@ public class FileActionLogger {
         return log.build();
     }
 
+    public LogPage getLogPage(LogQuery query, int pageSize, int pageNumber) throws IOException {
+        if (!Files.exists(this.contentFile)) {
+            return LogPage.paginate(Collections.emptyList(), pageSize, pageNumber);
+        }
+
+        // the files are only ever appended to, so they can be read without holding the write lock.
+        // reads are limited to the data which had been written when this call started, so that
+        // each pass over the log sees the same entries.
+        FileActionLogIndex index = this.index;
+        MatchScanner scanner;
+        if (index == null || query.getSearch() != null) {
+            // free text searches can't be answered by the index
+            scanner = new ContentScanner(this.contentFile, Files.size(this.contentFile), query);
+        } else {
+            scanner = new IndexScanner(index, index.size(), query);
+        }
+
+        try (FileChannel channel = FileChannel.open(this.contentFile, StandardOpenOption.READ)) {
+            return readPage(channel, scanner, pageSize, pageNumber);
+        }
+    }
+
+    private static LogPage readPage(FileChannel channel, MatchScanner scanner, int pageSize, int pageNumber) throws IOException {
+        // count the matching entries, and check if they were written in time order
+        MatchCounter counter = new MatchCounter();
+        scanner.scan(channel, counter);
+
+        int totalEntries = counter.count;
+        int pageNo = LogPage.resolvePageNumber(totalEntries, pageSize, pageNumber);
+        if (!LogPage.isInRange(totalEntries, pageSize, pageNo)) {
+            return new LogPage(Collections.emptyList(), pageNo, pageSize, totalEntries);
+        }
+
+        int first = (pageNo - 1) * pageSize;
+        int last = Math.min(first + pageSize, totalEntries);
+
+        List<Match> matches;
+        if (counter.ordered) {
+            // stop reading as soon as the page has been filled
+            List<Match> page = new ArrayList<>(last - first);
+            int[] position = {0};
+            scanner.scan(channel, match -> {
+                if (position[0]++ >= first) {
+                    page.add(match);
+                }
+                return position[0] < last;
+            });
+            matches = page;
+        } else {
+            matches = selectPage(channel, scanner, totalEntries, first, last);
+        }
+
+        List<Paginated.Entry<LoggedAction>> entries = new ArrayList<>(matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            Match match = matches.get(i);
+            LoggedAction action = readAction(channel, match.offset, match.length);
+            if (action != null) {
+                entries.add(new Paginated.Entry<>(first + i + 1, action));
+            }
+        }
+        return new LogPage(entries, pageNo, pageSize, totalEntries);
+    }
+
+    private static List<Match> selectPage(FileChannel channel, MatchScanner scanner, int totalEntries, int first, int last) throws IOException {
+        // the entries weren't written in time order (e.g. they were migrated from the legacy format), so
+        // select the page using a heap, which only needs to hold the entries between the page and the
+        // nearest end of the log. entries with the same time are kept in the order they were written.
+        Comparator<Match> order = Comparator.<Match>comparingLong(m -> m.time).thenComparingLong(m -> m.offset);
+        boolean fromStart = last <= totalEntries - first;
+        int capacity = fromStart ? last : totalEntries - first;
+
+        PriorityQueue<Match> heap = new PriorityQueue<>(capacity + 1, fromStart ? order.reversed() : order);
+        scanner.scan(channel, match -> {
+            heap.add(match);
+            if (heap.size() > capacity) {
+                heap.poll();
+            }
+            return true;
+        });
+
+        List<Match> selected = new ArrayList<>(heap);
+        selected.sort(order);
+        return fromStart ? selected.subList(first, last) : selected.subList(0, last - first);
+    }
+
+    private static LoggedAction readAction(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        long position = offset;
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, position);
+            if (read == -1) {
+                break;
+            }
+            position += read;
+        }
+
+        return parseAction(new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8));
+    }
+
+    private static LoggedAction parseAction(String line) {
+        try {
+            return ActionJsonSerializer.deserialize(GsonProvider.parser().parse(line.trim()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * The position and time of an entry in the log file which matches a query.
+     */
+    private static final class Match {
+        private final long time;
+        private final long offset;
+        private final int length;
+
+        Match(long time, long offset, int length) {
+            this.time = time;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Visits the entries matching a query.
+     */
+    @FunctionalInterface
+    private interface MatchVisitor {
+
+        /**
+         * Visits a matching entry.
+         *
+         * @param match the match
+         * @return true to continue reading, false to stop
+         * @throws IOException if an i/o error occurs
+         */
+        boolean visit(Match match) throws IOException;
+    }
+
+    /**
+     * Reads the entries in the log file which match a query, in the order they were written.
+     */
+    private interface MatchScanner {
+        void scan(FileChannel channel, MatchVisitor visitor) throws IOException;
+    }
+
+    private static final class MatchCounter implements MatchVisitor {
+        private int count = 0;
+        private long lastTime = Long.MIN_VALUE;
+        private boolean ordered = true;
+
+        @Override
+        public boolean visit(Match match) {
+            this.count++;
+            if (match.time < this.lastTime) {
+                this.ordered = false;
+            }
+            this.lastTime = match.time;
+            return true;
+        }
+    }
+
+    /**
+     * Finds matching entries using the index.
+     */
+    private static final class IndexScanner implements MatchScanner {
+        private final FileActionLogIndex index;
+        private final long size;
+        private final LogQuery query;
+
+        IndexScanner(FileActionLogIndex index, long size, LogQuery query) {
+            this.index = index;
+            this.size = size;
+            this.query = query;
+        }
+
+        @Override
+        public void scan(FileChannel channel, MatchVisitor visitor) throws IOException {
+            this.index.forEach(this.size, record -> {
+                if (!record.mayMatch(this.query)) {
+                    return true;
+                }
+
+                if (this.query.getTargetName() != null) {
+                    // names are only indexed by their hash, so the candidates need to be checked
+                    LoggedAction action = readAction(channel, record.getOffset(), record.getLength());
+                    if (action == null || !this.query.matches(action)) {
+                        return true;
+                    }
+                }
+
+                return visitor.visit(new Match(record.getTime(), record.getOffset(), record.getLength()));
+            });
+        }
+    }
+
+    /**
+     * Finds matching entries by reading every line of the log file.
+     */
+    private static final class ContentScanner implements MatchScanner {
+        private final Path file;
+        private final long size;
+        private final LogQuery query;
+
+        ContentScanner(Path file, long size, LogQuery query) {
+            this.file = file;
+            this.size = size;
+            this.query = query;
+        }
+
+        @Override
+        public void scan(FileChannel channel, MatchVisitor visitor) throws IOException {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(this.file))) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                long offset = 0;
+                for (long position = 0; position < this.size; position++) {
+                    int b = in.read();
+                    if (b == -1) {
+                        break;
+                    }
+
+                    line.write(b);
+                    if (b != '\n') {
+                        continue;
+                    }
+
+                    // a line is only complete once its line separator has been written
+                    int length = line.size();
+                    LoggedAction action = parseAction(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                    line.reset();
+
+                    if (action != null && this.query.matches(action)) {
+                        if (!visitor.visit(new Match(action.getTimestamp().getEpochSecond(), offset, length))) {
+                            return;
+                        }
+                    }
+                    offset += length;
+                }
+            }
+        }
+    }
+
     private final class SaveBuffer extends BufferedRequest<Void> {
         public SaveBuffer(LuckPermsPlugin plugin) {
             super(2, TimeUnit.SECONDS, plugin.getBootstrap().getScheduler());
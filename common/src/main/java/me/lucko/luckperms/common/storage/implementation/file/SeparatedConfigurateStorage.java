@@ -38,22 +38,32 @@ import me.lucko.luckperms.common.storage.misc.NodeEntry;
 import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.util.Iterators;
 import me.lucko.luckperms.common.util.MoreFiles;
+import me.lucko.luckperms.common.util.Throwing;
 import me.lucko.luckperms.common.util.Uuids;
 import net.luckperms.api.node.Node;
 import ninja.leaping.configurate.ConfigurationNode;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -135,7 +145,10 @@ public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
                 return;
             }
 
-            this.loader.loader(file).save(node);
+            // write to a temporary file first, so the file is never left half written
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            this.loader.loader(tempFile).save(node);
+            MoreFiles.moveReplacing(tempFile, file);
         } finally {
             lock.unlock();
         }
@@ -212,41 +225,110 @@ public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         if (bulkUpdate.getDataType().isIncludingUsers()) {
-            try (Stream<Path> s = Files.list(getDirectory(StorageLocation.USERS))) {
-                s.filter(this.fileExtensionFilter).forEach(file -> {
-                    try {
-                        registerFileAction(StorageLocation.USERS, file);
-                        ConfigurationNode object = readFile(file);
-                        if (processBulkUpdate(bulkUpdate, object, HolderType.USER)) {
-                            saveFile(file, object);
-                        }
-                    } catch (Exception e) {
-                        this.plugin.getLogger().severe(
-                                "Exception whilst performing bulkupdate",
-                                new FileIOException(file.getFileName().toString(), e)
-                        );
-                    }
-                });
-            }
+            applyBulkUpdate(bulkUpdate, StorageLocation.USERS, HolderType.USER);
         }
 
         if (bulkUpdate.getDataType().isIncludingGroups()) {
-            try (Stream<Path> s = Files.list(getDirectory(StorageLocation.GROUPS))) {
-                s.filter(this.fileExtensionFilter).forEach(file -> {
-                    try {
-                        registerFileAction(StorageLocation.GROUPS, file);
-                        ConfigurationNode object = readFile(file);
-                        if (processBulkUpdate(bulkUpdate, object, HolderType.GROUP)) {
-                            saveFile(file, object);
-                        }
-                    } catch (Exception e) {
-                        this.plugin.getLogger().severe(
-                                "Exception whilst performing bulkupdate",
-                                new FileIOException(file.getFileName().toString(), e)
-                        );
+            applyBulkUpdate(bulkUpdate, StorageLocation.GROUPS, HolderType.GROUP);
+        }
+    }
+
+    private void applyBulkUpdate(BulkUpdate bulkUpdate, StorageLocation location, HolderType holderType) throws IOException {
+        Path directory = getDirectory(location);
+        List<String> prefilterTerms = getBulkUpdatePrefilterTerms(bulkUpdate);
+
+        // count the files first, so progress can be reported
+        try (Stream<Path> s = Files.list(directory)) {
+            bulkUpdate.getStatistics().incrementTotal((int) s.filter(this.fileExtensionFilter).count());
+        }
+
+        try (Stream<Path> s = Files.list(directory)) {
+            processBulkUpdateInParallel(bulkUpdate, s.filter(this.fileExtensionFilter).iterator(), file -> {
+                try {
+                    // skip parsing files which can't contain any matching nodes
+                    if (!prefilterTerms.isEmpty() && !containsAll(file, prefilterTerms)) {
+                        return;
                     }
-                });
+
+                    if (bulkUpdate.isDryRun()) {
+                        processBulkUpdate(bulkUpdate, readFile(file), holderType);
+                        return;
+                    }
+
+                    registerFileAction(location, file);
+                    ConfigurationNode object = readFile(file);
+                    if (processBulkUpdate(bulkUpdate, object, holderType)) {
+                        saveFile(file, object);
+                    }
+                } catch (Exception e) {
+                    this.plugin.getLogger().severe(
+                            "Exception whilst performing bulkupdate",
+                            new FileIOException(file.getFileName().toString(), e)
+                    );
+                }
+            });
+        }
+    }
+
+    private static boolean containsAll(Path file, List<String> terms) throws IOException {
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).toLowerCase(Locale.ROOT);
+        for (String term : terms) {
+            if (!content.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<UUID, User> loadUsers(Set<UUID> uniqueIds) throws IOException {
+        // each user is stored in a separate file, so they can be read in parallel
+        Map<UUID, CompletableFuture<User>> futures = new LinkedHashMap<>();
+        for (UUID uniqueId : uniqueIds) {
+            futures.put(uniqueId, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return loadUser(uniqueId, null);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, getWorkerPool()));
+        }
+
+        Map<UUID, User> map = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<UUID, CompletableFuture<User>> future : futures.entrySet()) {
+                map.put(future.getKey(), future.getValue().join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
             }
+            throw e;
+        }
+        return map;
+    }
+
+    @Override
+    public void streamUsers(int batchSize, Throwing.Consumer<Map<UUID, User>> consumer, BiConsumer<UUID, Exception> errorHandler) throws Exception {
+        List<UUID> batch = new ArrayList<>(batchSize);
+        try (Stream<Path> stream = Files.list(this.users.directory)) {
+            Iterator<UUID> it = stream.filter(this.fileExtensionFilter)
+                    .map(p -> p.getFileName().toString())
+                    .map(s -> s.substring(0, s.length() - this.fileExtension.length()))
+                    .map(Uuids::fromString)
+                    .filter(Objects::nonNull)
+                    .iterator();
+
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() >= batchSize) {
+                    consumer.accept(loadUserBatch(new LinkedHashSet<>(batch), errorHandler));
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(loadUserBatch(new LinkedHashSet<>(batch), errorHandler));
         }
     }
 
@@ -34,11 +34,26 @@ import com.mongodb.ServerAddress;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.action.DeleteAction;
+import me.lucko.luckperms.common.bulkupdate.comparison.Comparison;
+import me.lucko.luckperms.common.bulkupdate.comparison.Constraint;
+import me.lucko.luckperms.common.bulkupdate.comparison.StandardComparison;
+import me.lucko.luckperms.common.bulkupdate.query.Query;
+import me.lucko.luckperms.common.bulkupdate.query.QueryField;
 import me.lucko.luckperms.common.context.MutableContextSetImpl;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.model.Group;
@@ -51,9 +66,12 @@ import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.PlayerLoginResult;
 import me.lucko.luckperms.common.storage.misc.PlayerSaveResultImpl;
 import me.lucko.luckperms.common.storage.misc.StorageCredentials;
 import me.lucko.luckperms.common.util.Iterators;
+import me.lucko.luckperms.common.util.Paginated;
+import me.lucko.luckperms.common.util.Throwing;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.luckperms.api.actionlog.Action;
@@ -66,6 +84,8 @@ import net.luckperms.api.node.Node;
 import net.luckperms.api.node.NodeBuilder;
 import org.bson.Document;
 import org.bson.UuidRepresentation;
+import org.bson.conversions.Bson;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -73,15 +93,25 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class MongoStorage implements StorageImplementation {
+
+    /**
+     * The maximum number of writes to send to the server at once during bulk updates
+     */
+    private static final int BULK_WRITE_BATCH_SIZE = 1000;
+
     private final LuckPermsPlugin plugin;
 
     private final StorageCredentials configuration;
@@ -137,6 +167,22 @@ public class MongoStorage implements StorageImplementation {
         }
         
         this.database = this.mongoClient.getDatabase(this.configuration.getDatabase());
+
+        try {
+            MongoCollection<Document> actions = this.database.getCollection(this.prefix + "action");
+            actions.createIndex(Indexes.ascending("timestamp"));
+            actions.createIndex(Indexes.ascending("source.uniqueId"));
+            actions.createIndex(Indexes.ascending("target.uniqueId"));
+            actions.createIndex(Indexes.ascending("target.type", "target.name"));
+
+            for (String collection : new String[]{"users", "groups"}) {
+                this.database.getCollection(this.prefix + collection).createIndex(Indexes.ascending("permissions.key"));
+                this.database.getCollection(this.prefix + collection).createIndex(Indexes.ascending("permissions.permission"));
+            }
+        } catch (Exception e) {
+            // everything still works without them, just more slowly
+            this.plugin.getLogger().warn("Unable to create indexes", e);
+        }
     }
 
     @Override
@@ -211,85 +257,91 @@ public class MongoStorage implements StorageImplementation {
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "action");
         try (MongoCursor<Document> cursor = c.find().iterator()) {
             while (cursor.hasNext()) {
-                Document d = cursor.next();
+                log.add(actionFromDoc(cursor.next()));
+            }
+        }
+        return log.build();
+    }
 
-                if (d.containsKey("source")) {
-                    // new format
-                    Document source = d.get("source", Document.class);
-                    Document target = d.get("target", Document.class);
+    @Override
+    public LogPage getLogPage(LogQuery query, int pageSize, int pageNumber) {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "action");
+        Bson filter = actionFilter(query);
 
-                    UUID targetUniqueId = null;
-                    if (target.containsKey("uniqueId")) {
-                        targetUniqueId = target.get("uniqueId", UUID.class);
-                    }
+        int totalEntries = (int) c.countDocuments(filter);
+        int pageNo = LogPage.resolvePageNumber(totalEntries, pageSize, pageNumber);
+        if (!LogPage.isInRange(totalEntries, pageSize, pageNo)) {
+            return new LogPage(Collections.emptyList(), pageNo, pageSize, totalEntries);
+        }
 
-                    LoggedAction e = LoggedAction.build()
-                            .timestamp(Instant.ofEpochSecond(d.getLong("timestamp")))
-                            .source(source.get("uniqueId", UUID.class))
-                            .sourceName(source.getString("name"))
-                            .targetType(LoggedAction.parseType(target.getString("type")))
-                            .target(targetUniqueId)
-                            .targetName(target.getString("name"))
-                            .description(d.getString("description"))
-                            .build();
-
-                    log.add(e);
-                } else {
-                    // old format
-                    UUID actedUuid = null;
-                    if (d.containsKey("acted")) {
-                        actedUuid = d.get("acted", UUID.class);
-                    }
+        // select in reverse order, so the skip stays small for the (most commonly requested) later pages
+        int first = (pageNo - 1) * pageSize;
+        int limit = Math.min(pageSize, totalEntries - first);
+        int skip = totalEntries - first - limit;
 
-                    LoggedAction e = LoggedAction.build()
-                            .timestamp(Instant.ofEpochSecond(d.getLong("timestamp")))
-                            .source(d.get("actor", UUID.class))
-                            .sourceName(d.getString("actorName"))
-                            .targetType(LoggedAction.parseTypeCharacter(d.getString("type").charAt(0)))
-                            .target(actedUuid)
-                            .targetName(d.getString("actedName"))
-                            .description(d.getString("action"))
-                            .build();
-
-                    log.add(e);
-                }
+        List<LoggedAction> actions = new ArrayList<>(limit);
+        try (MongoCursor<Document> cursor = c.find(filter).sort(Sorts.descending("timestamp", "_id")).skip(skip).limit(limit).iterator()) {
+            while (cursor.hasNext()) {
+                actions.add(actionFromDoc(cursor.next()));
             }
         }
-        return log.build();
+        Collections.reverse(actions);
+
+        List<Paginated.Entry<LoggedAction>> entries = new ArrayList<>(actions.size());
+        for (int i = 0; i < actions.size(); i++) {
+            entries.add(new Paginated.Entry<>(first + i + 1, actions.get(i)));
+        }
+        return new LogPage(entries, pageNo, pageSize, totalEntries);
     }
 
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) {
         if (bulkUpdate.getDataType().isIncludingUsers()) {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
-                while (cursor.hasNext()) {
-                    Document d = cursor.next();
-                    UUID uuid = getDocumentId(d);
-                    Document results = processBulkUpdate(d, bulkUpdate, HolderType.USER);
-                    if (results != null) {
-                        c.replaceOne(new Document("_id", uuid), results);
-                    }
-                }
-            }
+            applyBulkUpdate(c, bulkUpdate, HolderType.USER);
         }
 
         if (bulkUpdate.getDataType().isIncludingGroups()) {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
-                while (cursor.hasNext()) {
-                    Document d = cursor.next();
-                    String holder = d.getString("_id");
-                    Document results = processBulkUpdate(d, bulkUpdate, HolderType.GROUP);
-                    if (results != null) {
-                        c.replaceOne(new Document("_id", holder), results);
-                    }
+            applyBulkUpdate(c, bulkUpdate, HolderType.GROUP);
+        }
+    }
+
+    private void applyBulkUpdate(MongoCollection<Document> c, BulkUpdate bulkUpdate, HolderType holderType) {
+        Bson filter = bulkUpdateFilter(bulkUpdate);
+
+        // simple deletions can be performed entirely by the server
+        Bson pullCondition = bulkUpdate.isDryRun() ? null : bulkUpdatePullCondition(bulkUpdate);
+        if (pullCondition != null) {
+            c.updateMany(filter, Updates.pull("permissions", pullCondition));
+            return;
+        }
+
+        List<WriteModel<Document>> batch = new ArrayList<>();
+        try (MongoCursor<Document> cursor = c.find(filter).projection(Projections.include("permissions")).iterator()) {
+            while (cursor.hasNext() && !bulkUpdate.isCancelled()) {
+                Document d = cursor.next();
+                List<Document> results = processBulkUpdate(d, bulkUpdate, holderType);
+                if (results != null && !bulkUpdate.isDryRun()) {
+                    batch.add(new UpdateOneModel<>(
+                            Filters.eq("_id", d.get("_id")),
+                            Updates.combine(Updates.set("permissions", results), Updates.unset("perms"))
+                    ));
+                }
+
+                if (batch.size() >= BULK_WRITE_BATCH_SIZE) {
+                    c.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+                    batch.clear();
                 }
             }
         }
+
+        if (!batch.isEmpty()) {
+            c.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+        }
     }
 
-    private Document processBulkUpdate(Document document, BulkUpdate bulkUpdate, HolderType holderType) {
+    private List<Document> processBulkUpdate(Document document, BulkUpdate bulkUpdate, HolderType holderType) {
         Set<Node> nodes = new HashSet<>(nodesFromDoc(document));
         Set<Node> results = bulkUpdate.apply(nodes, holderType);
 
@@ -297,12 +349,9 @@ public class MongoStorage implements StorageImplementation {
             return null;
         }
 
-        List<Document> newNodes = results.stream()
+        return results.stream()
                 .map(MongoStorage::nodeToDoc)
                 .collect(Collectors.toList());
-
-        document.append("permissions", newNodes).remove("perms");
-        return document;
     }
 
     @Override
@@ -310,41 +359,95 @@ public class MongoStorage implements StorageImplementation {
         User user = this.plugin.getUserManager().getOrMake(uniqueId, username);
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
         try (MongoCursor<Document> cursor = c.find(new Document("_id", user.getUniqueId())).iterator()) {
-            if (cursor.hasNext()) {
-                // User exists, let's load.
-                Document d = cursor.next();
-                String name = d.getString("name");
+            readUser(c, user, cursor.hasNext() ? cursor.next() : null);
+        }
+        return user;
+    }
 
-                user.getPrimaryGroup().setStoredValue(d.getString("primaryGroup"));
-                user.setUsername(name, true);
+    @Override
+    public Map<UUID, User> loadUsers(Set<UUID> uniqueIds) throws Exception {
+        Map<UUID, User> map = new HashMap<>();
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
+        try (MongoCursor<Document> cursor = c.find(Filters.in("_id", uniqueIds)).iterator()) {
+            while (cursor.hasNext()) {
+                Document d = cursor.next();
+                UUID uniqueId = getDocumentId(d);
+                if (uniqueIds.contains(uniqueId)) {
+                    User user = this.plugin.getUserManager().getOrMake(uniqueId);
+                    readUser(c, user, d);
+                    map.put(uniqueId, user);
+                }
+            }
+        }
 
-                user.loadNodesFromStorage(nodesFromDoc(d));
-                this.plugin.getUserManager().giveDefaultIfNeeded(user);
+        // users without a document still need to be initialised
+        for (UUID uniqueId : uniqueIds) {
+            if (!map.containsKey(uniqueId)) {
+                User user = this.plugin.getUserManager().getOrMake(uniqueId);
+                readUser(c, user, null);
+                map.put(uniqueId, user);
+            }
+        }
+        return map;
+    }
 
+    @Override
+    public void streamUsers(int batchSize, Throwing.Consumer<Map<UUID, User>> consumer, BiConsumer<UUID, Exception> errorHandler) throws Exception {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
+        Map<UUID, User> batch = new LinkedHashMap<>();
+        try (MongoCursor<Document> cursor = c.find().sort(Sorts.ascending("_id")).batchSize(batchSize).iterator()) {
+            while (cursor.hasNext()) {
+                Document d = cursor.next();
+                UUID uniqueId;
+                try {
+                    uniqueId = getDocumentId(d);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
 
-                boolean updatedUsername = user.getUsername().isPresent() && (name == null || !user.getUsername().get().equalsIgnoreCase(name));
-                if (updatedUsername | user.auditTemporaryNodes()) {
-                    c.replaceOne(new Document("_id", user.getUniqueId()), userToDoc(user));
+                User user = this.plugin.getUserManager().getOrMake(uniqueId);
+                try {
+                    readUser(c, user, d);
+                } catch (Exception e) {
+                    errorHandler.accept(uniqueId, e);
+                    continue;
                 }
-            } else {
-                if (this.plugin.getUserManager().isNonDefaultUser(user)) {
-                    user.loadNodesFromStorage(Collections.emptyList());
-                    user.getPrimaryGroup().setStoredValue(null);
-                    this.plugin.getUserManager().giveDefaultIfNeeded(user);
+                batch.put(uniqueId, user);
+
+                if (batch.size() >= batchSize) {
+                    consumer.accept(batch);
+                    batch = new LinkedHashMap<>();
                 }
             }
         }
-        return user;
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
     }
 
-    @Override
-    public Map<UUID, User> loadUsers(Set<UUID> uniqueIds) throws Exception {
-        // make this a bulk search?
-        Map<UUID, User> map = new HashMap<>();
-        for (UUID uniqueId : uniqueIds) {
-            map.put(uniqueId, loadUser(uniqueId, null));
+    private void readUser(MongoCollection<Document> c, User user, @Nullable Document d) {
+        if (d != null) {
+            // User exists, let's load.
+            String name = d.getString("name");
+
+            user.getPrimaryGroup().setStoredValue(d.getString("primaryGroup"));
+            user.setUsername(name, true);
+
+            user.loadNodesFromStorage(nodesFromDoc(d));
+            this.plugin.getUserManager().giveDefaultIfNeeded(user);
+
+
+            boolean updatedUsername = user.getUsername().isPresent() && (name == null || !user.getUsername().get().equalsIgnoreCase(name));
+            if (updatedUsername | user.auditTemporaryNodes()) {
+                c.replaceOne(new Document("_id", user.getUniqueId()), userToDoc(user));
+            }
+        } else {
+            if (this.plugin.getUserManager().isNonDefaultUser(user)) {
+                user.loadNodesFromStorage(Collections.emptyList());
+                user.getPrimaryGroup().setStoredValue(null);
+                this.plugin.getUserManager().giveDefaultIfNeeded(user);
+            }
         }
-        return map;
     }
 
     @Override
@@ -362,7 +465,7 @@ public class MongoStorage implements StorageImplementation {
     public Set<UUID> getUniqueUsers() {
         Set<UUID> uuids = new HashSet<>();
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        try (MongoCursor<Document> cursor = c.find().projection(Projections.include("_id")).iterator()) {
             while (cursor.hasNext()) {
                 try {
                     uuids.add(getDocumentId(cursor.next()));
@@ -378,7 +481,8 @@ public class MongoStorage implements StorageImplementation {
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         List<NodeEntry<UUID, N>> held = new ArrayList<>();
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        Bson filter = nodeKeyFilter(constraint.getConstraint());
+        try (MongoCursor<Document> cursor = c.find(filter).projection(Projections.include("permissions")).iterator()) {
             while (cursor.hasNext()) {
                 Document d = cursor.next();
                 UUID holder = getDocumentId(d);
@@ -460,7 +564,8 @@ public class MongoStorage implements StorageImplementation {
     public <N extends Node> List<NodeEntry<String, N>> searchGroupNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         List<NodeEntry<String, N>> held = new ArrayList<>();
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        Bson filter = nodeKeyFilter(constraint.getConstraint());
+        try (MongoCursor<Document> cursor = c.find(filter).projection(Projections.include("permissions")).iterator()) {
             while (cursor.hasNext()) {
                 Document d = cursor.next();
                 String holder = d.getString("_id");
@@ -571,6 +676,19 @@ public class MongoStorage implements StorageImplementation {
         return result;
     }
 
+    @Override
+    public Map<UUID, PlayerLoginResult> savePlayerDataAndLoadUsers(Map<UUID, String> usernames) throws Exception {
+        // users loaded in bulk are already saved if any of their temporary nodes expired
+        Map<UUID, PlayerSaveResult> saveResults = savePlayerData(usernames);
+        Map<UUID, User> users = loadUsers(new HashSet<>(usernames.keySet()));
+
+        Map<UUID, PlayerLoginResult> results = new HashMap<>();
+        for (UUID uniqueId : usernames.keySet()) {
+            results.put(uniqueId, new PlayerLoginResult(saveResults.get(uniqueId), users.get(uniqueId)));
+        }
+        return results;
+    }
+
     @Override
     public void deletePlayerData(UUID uniqueId) {
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "uuid");
@@ -714,4 +832,195 @@ public class MongoStorage implements StorageImplementation {
         return map;
     }
 
+    private static LoggedAction actionFromDoc(Document d) {
+        if (d.containsKey("source")) {
+            // new format
+            Document source = d.get("source", Document.class);
+            Document target = d.get("target", Document.class);
+
+            UUID targetUniqueId = null;
+            if (target.containsKey("uniqueId")) {
+                targetUniqueId = target.get("uniqueId", UUID.class);
+            }
+
+            return LoggedAction.build()
+                    .timestamp(Instant.ofEpochSecond(d.getLong("timestamp")))
+                    .source(source.get("uniqueId", UUID.class))
+                    .sourceName(source.getString("name"))
+                    .targetType(LoggedAction.parseType(target.getString("type")))
+                    .target(targetUniqueId)
+                    .targetName(target.getString("name"))
+                    .description(d.getString("description"))
+                    .build();
+        } else {
+            // old format
+            UUID actedUuid = null;
+            if (d.containsKey("acted")) {
+                actedUuid = d.get("acted", UUID.class);
+            }
+
+            return LoggedAction.build()
+                    .timestamp(Instant.ofEpochSecond(d.getLong("timestamp")))
+                    .source(d.get("actor", UUID.class))
+                    .sourceName(d.getString("actorName"))
+                    .targetType(LoggedAction.parseTypeCharacter(d.getString("type").charAt(0)))
+                    .target(actedUuid)
+                    .targetName(d.getString("actedName"))
+                    .description(d.getString("action"))
+                    .build();
+        }
+    }
+
+    private static Bson actionFilter(LogQuery query) {
+        // each condition has to match documents in both the new and the old format
+        List<Bson> conditions = new ArrayList<>();
+        if (query.getActor() != null) {
+            conditions.add(Filters.or(Filters.eq("source.uniqueId", query.getActor()), Filters.eq("actor", query.getActor())));
+        }
+        if (query.getTargetType() != null) {
+            conditions.add(Filters.or(
+                    Filters.eq("target.type", query.getTargetType().name()),
+                    Filters.eq("type", Character.toString(LoggedAction.getTypeCharacter(query.getTargetType())))
+            ));
+        }
+        if (query.getTargetUniqueId() != null) {
+            conditions.add(Filters.or(Filters.eq("target.uniqueId", query.getTargetUniqueId()), Filters.eq("acted", query.getTargetUniqueId())));
+        }
+        if (query.getTargetName() != null) {
+            conditions.add(Filters.or(Filters.eq("target.name", query.getTargetName()), Filters.eq("actedName", query.getTargetName())));
+        }
+        if (query.getSearch() != null) {
+            String pattern = Pattern.quote(query.getSearch());
+            conditions.add(Filters.or(
+                    Stream.of("source.name", "target.name", "description", "actorName", "actedName", "action")
+                            .map(field -> Filters.regex(field, pattern, "i"))
+                            .collect(Collectors.toList())
+            ));
+        }
+        if (query.getMinTime() != Long.MIN_VALUE) {
+            conditions.add(Filters.gte("timestamp", query.getMinTime()));
+        }
+        if (query.getMaxTime() != Long.MAX_VALUE) {
+            conditions.add(Filters.lte("timestamp", query.getMaxTime()));
+        }
+        return conditions.isEmpty() ? new Document() : Filters.and(conditions);
+    }
+
+    /**
+     * Creates a filter matching holder documents with a node whose key could satisfy the given constraint.
+     *
+     * <p>The filter is a superset of the real matches (results are always checked against
+     * the constraint), but it allows the server to skip documents which can't match.</p>
+     *
+     * @param constraint the constraint
+     * @return a filter to be applied to holder documents
+     */
+    private static Bson nodeKeyFilter(Constraint constraint) {
+        return nodeKeyFilter(Collections.singletonList(constraint));
+    }
+
+    private static Bson nodeKeyFilter(List<Constraint> constraints) {
+        // older documents store the key in a "permission" field. each branch only
+        // refers to a single indexed field, so the server can use an index for both
+        return Filters.or(
+                Filters.elemMatch("permissions", Filters.and(constraints.stream().map(c -> indexedKeyFilter("key", c)).collect(Collectors.toList()))),
+                Filters.elemMatch("permissions", Filters.and(constraints.stream().map(c -> indexedKeyFilter("permission", c)).collect(Collectors.toList())))
+        );
+    }
+
+    private static Bson indexedKeyFilter(String field, Constraint constraint) {
+        // node keys are written in lowercase, so match them case-sensitively (which unlike a
+        // case-insensitive regex, the server can use an index for). the value as given is
+        // also matched, in case it was stored with its original case.
+        String expression = constraint.getExpressionValue();
+        Set<String> expressions = new LinkedHashSet<>();
+        expressions.add(expression.toLowerCase(Locale.ROOT));
+        expressions.add(expression);
+
+        Comparison comparison = constraint.getComparison();
+        if (comparison == StandardComparison.EQUAL) {
+            return Filters.in(field, expressions);
+        } else if (comparison == StandardComparison.NOT_EQUAL) {
+            return Filters.nin(field, expressions);
+        }
+
+        // anchored and without a leading group, so the literal prefix is used as the index bounds
+        List<Pattern> patterns = expressions.stream()
+                .map(e -> Pattern.compile("^" + StandardComparison.compilePatternForLikeSyntax(e).pattern() + "$"))
+                .collect(Collectors.toList());
+
+        if (comparison == StandardComparison.SIMILAR) {
+            return Filters.in(field, patterns);
+        } else if (comparison == StandardComparison.NOT_SIMILAR) {
+            return Filters.nin(field, patterns);
+        }
+
+        // unknown comparison, match everything and let the constraint decide
+        return new Document();
+    }
+
+    /**
+     * Creates a condition matching node documents whose key satisfies the given constraint.
+     *
+     * <p>Unlike {@link #nodeKeyFilter(Constraint)}, the condition exactly matches the constraint,
+     * so is used to remove nodes server-side.</p>
+     *
+     * @param constraint the constraint
+     * @return a condition to be applied to the elements of a permissions array
+     */
+    private static Bson nodeKeyCondition(Constraint constraint) {
+        // older documents store the key in a "permission" field
+        return Filters.or(constraintFilter("key", constraint), constraintFilter("permission", constraint));
+    }
+
+    private static Bson constraintFilter(String field, Constraint constraint) {
+        Comparison comparison = constraint.getComparison();
+        Pattern pattern;
+        if (comparison == StandardComparison.EQUAL || comparison == StandardComparison.NOT_EQUAL) {
+            pattern = Pattern.compile("^" + Pattern.quote(constraint.getExpressionValue()) + "$", Pattern.CASE_INSENSITIVE);
+        } else if (comparison == StandardComparison.SIMILAR || comparison == StandardComparison.NOT_SIMILAR) {
+            Pattern like = StandardComparison.compilePatternForLikeSyntax(constraint.getExpressionValue());
+            pattern = Pattern.compile("^(?:" + like.pattern() + ")$", like.flags());
+        } else {
+            // unknown comparison, match everything and let the constraint decide
+            return new Document();
+        }
+
+        if (comparison == StandardComparison.NOT_EQUAL || comparison == StandardComparison.NOT_SIMILAR) {
+            return Filters.not(Filters.regex(field, pattern));
+        }
+        return Filters.regex(field, pattern);
+    }
+
+    private static Bson bulkUpdateFilter(BulkUpdate bulkUpdate) {
+        // only permission constraints can be checked server-side, contexts are
+        // stored in a few different formats so are left to the client
+        List<Constraint> constraints = bulkUpdate.getQueries().stream()
+                .filter(q -> q.getField() == QueryField.PERMISSION)
+                .map(Query::getConstraint)
+                .collect(Collectors.toList());
+
+        if (constraints.isEmpty()) {
+            return new Document();
+        }
+        return nodeKeyFilter(constraints);
+    }
+
+    private static Bson bulkUpdatePullCondition(BulkUpdate bulkUpdate) {
+        if (!(bulkUpdate.getAction() instanceof DeleteAction) || bulkUpdate.isTrackingStatistics() || bulkUpdate.getQueries().isEmpty()) {
+            return null;
+        }
+
+        // only possible if the filter exactly matches the constraints
+        for (Query query : bulkUpdate.getQueries()) {
+            Comparison comparison = query.getConstraint().getComparison();
+            if (query.getField() != QueryField.PERMISSION || (comparison != StandardComparison.EQUAL && comparison != StandardComparison.SIMILAR)) {
+                return null;
+            }
+        }
+
+        return Filters.and(bulkUpdate.getQueries().stream()
+                .map(q -> nodeKeyCondition(q.getConstraint()))
+                .collect(Collectors.toList()));
+    }
 }
@@ -27,6 +27,8 @@ package me.lucko.luckperms.common.storage.implementation.split;
 
 import com.google.common.collect.ImmutableMap;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.model.Group;
@@ -37,6 +39,8 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.StorageType;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.PlayerLoginResult;
+import me.lucko.luckperms.common.util.Throwing;
 import net.kyori.adventure.text.Component;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.model.PlayerSaveResult;
@@ -49,6 +53,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 public class SplitStorage implements StorageImplementation {
@@ -132,6 +137,11 @@ public class SplitStorage implements StorageImplementation {
         return implFor(SplitStorageType.LOG).getLog();
     }
 
+    @Override
+    public LogPage getLogPage(LogQuery query, int pageSize, int pageNumber) throws Exception {
+        return implFor(SplitStorageType.LOG).getLogPage(query, pageSize, pageNumber);
+    }
+
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         StorageType userType = this.types.get(SplitStorageType.USER);
@@ -160,11 +170,21 @@ public class SplitStorage implements StorageImplementation {
         implFor(SplitStorageType.USER).saveUser(user);
     }
 
+    @Override
+    public Set<UUID> getModifiedUsers(Set<UUID> uniqueIds) throws Exception {
+        return implFor(SplitStorageType.USER).getModifiedUsers(uniqueIds);
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() throws Exception {
         return implFor(SplitStorageType.USER).getUniqueUsers();
     }
 
+    @Override
+    public void streamUsers(int batchSize, Throwing.Consumer<Map<UUID, User>> consumer, BiConsumer<UUID, Exception> errorHandler) throws Exception {
+        implFor(SplitStorageType.USER).streamUsers(batchSize, consumer, errorHandler);
+    }
+
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         return implFor(SplitStorageType.USER).searchUserNodes(constraint);
@@ -230,6 +250,29 @@ public class SplitStorage implements StorageImplementation {
         return implFor(SplitStorageType.UUID).savePlayerData(uniqueId, username);
     }
 
+    @Override
+    public PlayerLoginResult savePlayerDataAndLoadUser(UUID uniqueId, String username) throws Exception {
+        StorageImplementation impl = implFor(SplitStorageType.USER);
+        if (impl == implFor(SplitStorageType.UUID)) {
+            return impl.savePlayerDataAndLoadUser(uniqueId, username);
+        }
+        return StorageImplementation.super.savePlayerDataAndLoadUser(uniqueId, username);
+    }
+
+    @Override
+    public Map<UUID, PlayerSaveResult> savePlayerData(Map<UUID, String> usernames) throws Exception {
+        return implFor(SplitStorageType.UUID).savePlayerData(usernames);
+    }
+
+    @Override
+    public Map<UUID, PlayerLoginResult> savePlayerDataAndLoadUsers(Map<UUID, String> usernames) throws Exception {
+        StorageImplementation impl = implFor(SplitStorageType.USER);
+        if (impl == implFor(SplitStorageType.UUID)) {
+            return impl.savePlayerDataAndLoadUsers(usernames);
+        }
+        return StorageImplementation.super.savePlayerDataAndLoadUsers(usernames);
+    }
+
     @Override
     public void deletePlayerData(UUID uniqueId) throws Exception {
         implFor(SplitStorageType.UUID).deletePlayerData(uniqueId);
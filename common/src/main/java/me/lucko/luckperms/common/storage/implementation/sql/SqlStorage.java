@@ -27,8 +27,11 @@ package me.lucko.luckperms.common.storage.implementation.sql;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.gson.reflect.TypeToken;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdateStatistics;
@@ -36,6 +39,7 @@ import me.lucko.luckperms.common.bulkupdate.PreparedStatementBuilder;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.context.serializer.ContextSetJsonSerializer;
 import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.model.manager.group.GroupManager;
@@ -45,23 +49,27 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.PlayerLoginResult;
 import me.lucko.luckperms.common.storage.misc.PlayerSaveResultImpl;
 import me.lucko.luckperms.common.util.Difference;
+import me.lucko.luckperms.common.util.Paginated;
+import me.lucko.luckperms.common.util.Throwing;
 import me.lucko.luckperms.common.util.Uuids;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.context.DefaultContextKeys;
-import net.luckperms.api.context.MutableContextSet;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.node.Node;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -69,14 +77,19 @@ import java.sql.Statement;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -90,7 +103,19 @@ public class SqlStorage implements StorageImplementation {
     private static final String USER_PERMISSIONS_DELETE = "DELETE FROM '{prefix}user_permissions' WHERE uuid=?";
     private static final String USER_PERMISSIONS_INSERT = "INSERT INTO '{prefix}user_permissions' (uuid, permission, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)";
     private static final String USER_PERMISSIONS_SELECT_DISTINCT = "SELECT DISTINCT uuid FROM '{prefix}user_permissions'";
+    private static final String USER_PERMISSIONS_SELECT_UUID = "SELECT uuid FROM '{prefix}user_permissions'";
+    private static final String USER_PERMISSIONS_SELECT_COUNT = "SELECT COUNT(*) FROM '{prefix}user_permissions'";
+    private static final String USER_PERMISSIONS_SELECT_ID_PAGE = "SELECT id FROM '{prefix}user_permissions' WHERE id > ? ORDER BY id LIMIT ?";
     private static final String USER_PERMISSIONS_SELECT_PERMISSION = "SELECT uuid, id, permission, value, server, world, expiry, contexts FROM '{prefix}user_permissions' WHERE ";
+    private static final String USER_PERMISSIONS_SELECT_ANY = "SELECT uuid FROM '{prefix}user_permissions' LIMIT 1";
+    private static final String USER_PERMISSIONS_SELECT_DISTINCT_RAW_FIRST = "SELECT DISTINCT uuid FROM '{prefix}user_permissions' ORDER BY uuid LIMIT ?";
+    private static final String USER_PERMISSIONS_SELECT_DISTINCT_RAW_AFTER = "SELECT DISTINCT uuid FROM '{prefix}user_permissions' WHERE uuid > ? ORDER BY uuid LIMIT ?";
+
+    private static final String USER_VERSIONS_SELECT = "SELECT version FROM '{prefix}user_versions' WHERE uuid=?";
+    private static final String USER_VERSIONS_SELECT_MULTIPLE = "SELECT uuid, version FROM '{prefix}user_versions' WHERE ";
+    private static final String USER_VERSIONS_INCREMENT = "UPDATE '{prefix}user_versions' SET version = version + 1 WHERE uuid=?";
+    private static final String USER_VERSIONS_INCREMENT_MULTIPLE = "UPDATE '{prefix}user_versions' SET version = version + 1 WHERE ";
+    private static final String USER_VERSIONS_INSERT = "INSERT INTO '{prefix}user_versions' (uuid, version) VALUES(?, 1)";
 
     private static final String PLAYER_SELECT_UUID_BY_USERNAME = "SELECT uuid FROM '{prefix}players' WHERE username=? LIMIT 1";
     private static final String PLAYER_SELECT_USERNAME_BY_UUID = "SELECT username FROM '{prefix}players' WHERE uuid=? LIMIT 1";
@@ -98,6 +123,7 @@ public class SqlStorage implements StorageImplementation {
     private static final String PLAYER_INSERT = "INSERT INTO '{prefix}players' (uuid, username, primary_group) VALUES(?, ?, ?)";
     private static final String PLAYER_DELETE = "DELETE FROM '{prefix}players' WHERE uuid=?";
     private static final String PLAYER_SELECT_ALL_UUIDS_BY_USERNAME = "SELECT uuid FROM '{prefix}players' WHERE username=? AND NOT uuid=?";
+    private static final String PLAYER_SELECT_BY_USERNAME_MULTIPLE = "SELECT uuid, username FROM '{prefix}players' WHERE username IN ";
     private static final String PLAYER_DELETE_ALL_UUIDS_BY_USERNAME = "DELETE FROM '{prefix}players' WHERE username=? AND NOT uuid=?";
     private static final String PLAYER_SELECT_BY_UUID = "SELECT username, primary_group FROM '{prefix}players' WHERE uuid=? LIMIT 1";
     private static final String PLAYER_SELECT_BY_UUID_MULTIPLE = "SELECT uuid, username, primary_group FROM '{prefix}players' WHERE ";
@@ -106,6 +132,9 @@ public class SqlStorage implements StorageImplementation {
 
     private static final String GROUP_PERMISSIONS_SELECT = "SELECT id, permission, value, server, world, expiry, contexts FROM '{prefix}group_permissions' WHERE name=?";
     private static final String GROUP_PERMISSIONS_SELECT_ALL = "SELECT name, id, permission, value, server, world, expiry, contexts FROM '{prefix}group_permissions'";
+    private static final String GROUP_PERMISSIONS_SELECT_DISTINCT = "SELECT DISTINCT name FROM '{prefix}group_permissions'";
+    private static final String GROUP_PERMISSIONS_SELECT_COUNT = "SELECT COUNT(*) FROM '{prefix}group_permissions'";
+    private static final String GROUP_PERMISSIONS_SELECT_ID_PAGE = "SELECT id FROM '{prefix}group_permissions' WHERE id > ? ORDER BY id LIMIT ?";
     private static final String GROUP_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM '{prefix}group_permissions' WHERE id=?";
     private static final String GROUP_PERMISSIONS_DELETE_SPECIFIC_PROPS = "DELETE FROM '{prefix}group_permissions' WHERE name=? AND permission=? AND value=? AND server=? AND world=? AND expiry=? AND contexts=?";
     private static final String GROUP_PERMISSIONS_DELETE = "DELETE FROM '{prefix}group_permissions' WHERE name=?";
@@ -129,16 +158,42 @@ public class SqlStorage implements StorageImplementation {
 
     private static final String ACTION_INSERT = "INSERT INTO '{prefix}actions' (time, actor_uuid, actor_name, type, acted_uuid, acted_name, action) VALUES(?, ?, ?, ?, ?, ?, ?)";
     private static final String ACTION_SELECT_ALL = "SELECT * FROM '{prefix}actions'";
+    private static final String ACTION_SELECT_COUNT = "SELECT COUNT(*) FROM '{prefix}actions'{where}";
+    private static final String ACTION_SELECT_PAGE = "SELECT * FROM '{prefix}actions'{where} ORDER BY time DESC, id DESC LIMIT ? OFFSET ?";
+
+    /** The number of users migrated from the legacy user_permissions table at a time */
+    private static final int MIGRATION_CHUNK_SIZE = 100;
+
+    /** The default number of rows covered by each statement when applying a bulk update */
+    private static final int DEFAULT_BULK_UPDATE_BATCH_SIZE = 1000;
 
     private final LuckPermsPlugin plugin;
     
     private final ConnectionFactory connectionFactory;
     private final Function<String, String> statementProcessor;
+    private final int schemaVersion;
+    private final boolean userVersionStamps;
+    private final int bulkUpdateBatchSize;
+
+    /** The version stamps of users when they were last loaded, if version stamps are enabled */
+    private final Map<UUID, Long> loadedUserVersions = new ConcurrentHashMap<>();
+
+    /** Accessor for the v2 user_nodes table, null if using the v1 schema */
+    private UserNodesTable userNodes = null;
+    /** If there are user permissions in the v1 table that still need to be migrated to v2 */
+    private volatile boolean legacyUserPermissions = false;
 
     public SqlStorage(LuckPermsPlugin plugin, ConnectionFactory connectionFactory, String tablePrefix) {
+        this(plugin, connectionFactory, tablePrefix, new Options());
+    }
+
+    public SqlStorage(LuckPermsPlugin plugin, ConnectionFactory connectionFactory, String tablePrefix, Options options) {
         this.plugin = plugin;
         this.connectionFactory = connectionFactory;
         this.statementProcessor = connectionFactory.getStatementProcessor().compose(s -> s.replace("{prefix}", tablePrefix));
+        this.schemaVersion = options.schemaVersion;
+        this.userVersionStamps = options.userVersionStamps;
+        this.bulkUpdateBatchSize = options.bulkUpdateBatchSize;
     }
 
     @Override
@@ -169,14 +224,64 @@ public class SqlStorage implements StorageImplementation {
         }
 
         if (!tableExists) {
-            applySchema();
+            applySchema("me/lucko/luckperms/schema/");
+        }
+
+        boolean actionIndexesExist;
+        try (Connection c = this.connectionFactory.getConnection()) {
+            actionIndexesExist = indexExists(c, this.statementProcessor.apply("{prefix}actions"), "time");
+        }
+
+        if (!actionIndexesExist) {
+            try {
+                applySchema("me/lucko/luckperms/schema/actions/");
+            } catch (SQLException e) {
+                // the log can still be queried without them, just more slowly
+                this.plugin.getLogger().warn("[SQL] Unable to create indexes for the actions table", e);
+            }
+        }
+
+        if (this.userVersionStamps) {
+            boolean versionsTableExists;
+            try (Connection c = this.connectionFactory.getConnection()) {
+                versionsTableExists = tableExists(c, this.statementProcessor.apply("{prefix}user_versions"));
+            }
+
+            if (!versionsTableExists) {
+                applySchema("me/lucko/luckperms/schema/versions/");
+            }
+        }
+
+        if (this.schemaVersion >= 2) {
+            boolean nodesTableExists;
+            try (Connection c = this.connectionFactory.getConnection()) {
+                nodesTableExists = tableExists(c, this.statementProcessor.apply("{prefix}user_nodes"));
+            }
+
+            if (!nodesTableExists) {
+                applySchema("me/lucko/luckperms/schema/v2/");
+            }
+
+            this.userNodes = new UserNodesTable(this.connectionFactory.getImplementationName(), this.statementProcessor);
+
+            try (Connection c = this.connectionFactory.getConnection()) {
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_SELECT_ANY))) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        this.legacyUserPermissions = rs.next();
+                    }
+                }
+            }
+
+            if (this.legacyUserPermissions) {
+                this.plugin.getBootstrap().getScheduler().async(this::migrateLegacyUserPermissions);
+            }
         }
     }
 
-    private void applySchema() throws IOException, SQLException {
+    private void applySchema(String directory) throws IOException, SQLException {
         List<String> statements;
 
-        String schemaFileName = "me/lucko/luckperms/schema/" + this.connectionFactory.getImplementationName().toLowerCase(Locale.ROOT) + ".sql";
+        String schemaFileName = directory + this.connectionFactory.getImplementationName().toLowerCase(Locale.ROOT) + ".sql";
         try (InputStream is = this.plugin.getBootstrap().getResourceStream(schemaFileName)) {
             if (is == null) {
                 throw new IOException("Couldn't locate schema file for " + this.connectionFactory.getImplementationName());
@@ -219,6 +324,83 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    /**
+     * Moves all user permissions from the v1 user_permissions table into the v2 tables.
+     *
+     * <p>Users are moved in small chunks, so the storage remains usable while the
+     * migration runs. Users that are loaded in the meantime are migrated on demand.</p>
+     */
+    private void migrateLegacyUserPermissions() {
+        this.plugin.getLogger().info("[SQL] Migrating user permissions to the v2 schema...");
+
+        int count = 0;
+        String last = null;
+        try {
+            while (true) {
+                List<String> chunk;
+                try (Connection c = this.connectionFactory.getConnection()) {
+                    chunk = selectLegacyUniqueUsers(c, last, MIGRATION_CHUNK_SIZE);
+                    if (chunk.isEmpty()) {
+                        break;
+                    }
+
+                    for (String uuidString : chunk) {
+                        UUID uuid = Uuids.fromString(uuidString);
+                        if (uuid != null) {
+                            migrateLegacyUser(c, uuid);
+                        }
+                    }
+                }
+
+                last = chunk.get(chunk.size() - 1);
+                count += chunk.size();
+                this.plugin.getLogger().info("[SQL] Migrated " + count + " users to the v2 schema");
+            }
+        } catch (Exception e) {
+            this.plugin.getLogger().severe("[SQL] Exception whilst migrating user permissions to the v2 schema, will retry on next startup", e);
+            return;
+        }
+
+        this.legacyUserPermissions = false;
+        this.plugin.getLogger().info("[SQL] Migration of user permissions to the v2 schema complete");
+    }
+
+    /**
+     * Moves the permissions of a single user from the v1 user_permissions table into the v2 tables.
+     *
+     * <p>The move happens in a single transaction. The legacy rows are deleted before the
+     * nodes are copied across, so if the user has already been migrated concurrently (e.g. by
+     * the background migration and a login at the same time), nothing is deleted and the
+     * transaction is rolled back instead of copying the nodes twice.</p>
+     *
+     * @param c the connection
+     * @param user the user to migrate
+     * @throws SQLException if an error occurs
+     */
+    private void migrateLegacyUser(Connection c, UUID user) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            List<Node> nodes = selectLegacyUserPermissions(c, user);
+            if (deleteLegacyUserPermissions(c, user) == 0) {
+                c.rollback();
+                return;
+            }
+
+            if (!nodes.isEmpty()) {
+                this.userNodes.update(c, user, nodes, Collections.emptySet());
+            }
+            c.commit();
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            // any dictionary entries created by the transaction no longer exist
+            this.userNodes.clearDictionaryCaches();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
     @Override
     public void shutdown() {
         try {
@@ -268,36 +450,116 @@ public class SqlStorage implements StorageImplementation {
         return log.build();
     }
 
+    @Override
+    public LogPage getLogPage(LogQuery query, int pageSize, int pageNumber) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String where = createActionWhereClause(query, params);
+
+        try (Connection c = this.connectionFactory.getConnection()) {
+            int totalEntries = 0;
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(ACTION_SELECT_COUNT.replace("{where}", where)))) {
+                setParameters(ps, params);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        totalEntries = rs.getInt(1);
+                    }
+                }
+            }
+
+            int pageNo = LogPage.resolvePageNumber(totalEntries, pageSize, pageNumber);
+            if (!LogPage.isInRange(totalEntries, pageSize, pageNo)) {
+                return new LogPage(Collections.emptyList(), pageNo, pageSize, totalEntries);
+            }
+
+            // the most recent entries are requested most often, so select
+            // in reverse order - the offset stays small for the later pages
+            int first = (pageNo - 1) * pageSize;
+            int limit = Math.min(pageSize, totalEntries - first);
+            int offset = totalEntries - first - limit;
+
+            List<LoggedAction> actions = new ArrayList<>(limit);
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(ACTION_SELECT_PAGE.replace("{where}", where)))) {
+                setParameters(ps, params);
+                ps.setInt(params.size() + 1, limit);
+                ps.setInt(params.size() + 2, offset);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        actions.add(readAction(rs));
+                    }
+                }
+            }
+            Collections.reverse(actions);
+
+            List<Paginated.Entry<LoggedAction>> entries = new ArrayList<>(actions.size());
+            for (int i = 0; i < actions.size(); i++) {
+                entries.add(new Paginated.Entry<>(first + i + 1, actions.get(i)));
+            }
+            return new LogPage(entries, pageNo, pageSize, totalEntries);
+        }
+    }
+
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws SQLException {
         BulkUpdateStatistics stats = bulkUpdate.getStatistics();
 
         try (Connection c = this.connectionFactory.getConnection()) {
-            if (bulkUpdate.getDataType().isIncludingUsers()) {
-                String table = this.statementProcessor.apply("{prefix}user_permissions");
-                try (PreparedStatement ps = bulkUpdate.buildAsSql().build(c, q -> q.replace("{table}", table))) {
+            if (bulkUpdate.getDataType().isIncludingUsers() && this.userNodes != null) {
+                applyUserNodesBulkUpdate(c, bulkUpdate);
+            }
 
-                    if (bulkUpdate.isTrackingStatistics()) {
-                        PreparedStatementBuilder builder = new PreparedStatementBuilder();
-                        builder.append(USER_PERMISSIONS_SELECT_DISTINCT);
-                        bulkUpdate.appendConstraintsAsSql(builder);
+            if (bulkUpdate.isDryRun()) {
+                // just count the rows which match the constraints
+                if (bulkUpdate.getDataType().isIncludingUsers() && (this.userNodes == null || this.legacyUserPermissions)) {
+                    countBulkUpdate(c, bulkUpdate, USER_PERMISSIONS_SELECT_UUID, "uuid", HolderType.USER);
+                }
+                if (bulkUpdate.getDataType().isIncludingGroups()) {
+                    countBulkUpdate(c, bulkUpdate, GROUP_PERMISSIONS_SELECT_ALL, "name", HolderType.GROUP);
+                }
+                return;
+            }
 
-                        try (PreparedStatement lookup = builder.build(c, this.statementProcessor)) {
-                            try (ResultSet rs = lookup.executeQuery()) {
-                                Set<UUID> uuids = new HashSet<>();
+            if (this.bulkUpdateBatchSize > 0) {
+                // apply the update in ranges of ids, so locks are only held on a small part of the table at a time
+                if (bulkUpdate.getDataType().isIncludingUsers() && (this.userNodes == null || this.legacyUserPermissions)) {
+                    applyBulkUpdateInBatches(c, bulkUpdate, "user_permissions", USER_PERMISSIONS_SELECT_COUNT, USER_PERMISSIONS_SELECT_ID_PAGE, USER_PERMISSIONS_SELECT_DISTINCT, "uuid", HolderType.USER);
+                }
+                if (bulkUpdate.getDataType().isIncludingGroups()) {
+                    applyBulkUpdateInBatches(c, bulkUpdate, "group_permissions", GROUP_PERMISSIONS_SELECT_COUNT, GROUP_PERMISSIONS_SELECT_ID_PAGE, GROUP_PERMISSIONS_SELECT_DISTINCT, "name", HolderType.GROUP);
+                }
+                return;
+            }
 
-                                while (rs.next()) {
-                                    uuids.add(Uuids.fromString(rs.getString("uuid")));
-                                }
-                                uuids.remove(null);
-                                stats.incrementAffectedUsers(uuids.size());
+            if (bulkUpdate.getDataType().isIncludingUsers() && (this.userNodes == null || this.legacyUserPermissions)) {
+                String table = this.statementProcessor.apply("{prefix}user_permissions");
+
+                // find the affected users first, as the update may change which rows match the constraints
+                Set<UUID> uuids = new HashSet<>();
+                if (this.userVersionStamps || bulkUpdate.isTrackingStatistics()) {
+                    PreparedStatementBuilder builder = new PreparedStatementBuilder();
+                    builder.append(USER_PERMISSIONS_SELECT_DISTINCT);
+                    bulkUpdate.appendConstraintsAsSql(builder);
+
+                    try (PreparedStatement lookup = builder.build(c, this.statementProcessor)) {
+                        try (ResultSet rs = lookup.executeQuery()) {
+                            while (rs.next()) {
+                                uuids.add(Uuids.fromString(rs.getString("uuid")));
                             }
                         }
-                        stats.incrementAffectedNodes(ps.executeUpdate());
-                    } else {
-                        ps.execute();
                     }
+                    uuids.remove(null);
                 }
+
+                try (PreparedStatement ps = bulkUpdate.buildAsSql().build(c, q -> q.replace("{table}", table))) {
+                    int rows = ps.executeUpdate();
+                    if (bulkUpdate.isTrackingStatistics()) {
+                        stats.incrementAffectedUsers(uuids.size());
+                        stats.incrementAffectedNodes(rows);
+                    }
+                }
+
+                // only bump the versions once the data has changed, so other servers
+                // which notice the new version are guaranteed to read the new data
+                incrementUserVersions(c, uuids);
             }
 
             if (bulkUpdate.getDataType().isIncludingGroups()) {
@@ -329,25 +591,196 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    private void applyBulkUpdateInBatches(Connection c, BulkUpdate bulkUpdate, String tableName, String selectCount, String selectIdPage, String selectDistinct, String holderColumn, HolderType holderType) throws SQLException {
+        BulkUpdateStatistics stats = bulkUpdate.getStatistics();
+        String table = this.statementProcessor.apply("{prefix}" + tableName);
+
+        try (Statement s = c.createStatement()) {
+            try (ResultSet rs = s.executeQuery(this.statementProcessor.apply(selectCount))) {
+                if (rs.next()) {
+                    stats.incrementTotal(rs.getInt(1));
+                }
+            }
+        }
+
+        boolean lookupHolders = bulkUpdate.isTrackingStatistics() || (holderType == HolderType.USER && this.userVersionStamps);
+        Set<String> affectedHolders = new HashSet<>();
+
+        // each batch is committed on its own, so it only holds locks on the rows in its range
+        boolean autoCommit = c.getAutoCommit();
+        if (!autoCommit) {
+            c.setAutoCommit(true);
+        }
+
+        try {
+            long last = Long.MIN_VALUE;
+            while (!bulkUpdate.isCancelled()) {
+                // page through the ids by key, so gaps in the ids don't produce empty batches
+                List<Long> ids = new ArrayList<>(this.bulkUpdateBatchSize);
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(selectIdPage))) {
+                    ps.setLong(1, last);
+                    ps.setInt(2, this.bulkUpdateBatchSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getLong(1));
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    break;
+                }
+
+                long lower = ids.get(0);
+                long upper = ids.get(ids.size() - 1) + 1;
+
+                // find the affected holders first, as the update may change which rows match the constraints
+                Set<String> holders = new HashSet<>();
+                if (lookupHolders) {
+                    PreparedStatementBuilder builder = new PreparedStatementBuilder();
+                    builder.append(selectDistinct);
+                    bulkUpdate.appendConstraintsAsSql(builder, lower, upper);
+
+                    try (PreparedStatement lookup = builder.build(c, this.statementProcessor)) {
+                        try (ResultSet rs = lookup.executeQuery()) {
+                            while (rs.next()) {
+                                holders.add(rs.getString(holderColumn));
+                            }
+                        }
+                    }
+                    holders.remove(null);
+                    affectedHolders.addAll(holders);
+                }
+
+                try (PreparedStatement ps = bulkUpdate.buildAsSql(lower, upper).build(c, q -> q.replace("{table}", table))) {
+                    stats.incrementAffectedNodes(ps.executeUpdate());
+                }
+
+                // only bump the versions once the data has changed, so other servers
+                // which notice the new version are guaranteed to read the new data
+                if (holderType == HolderType.USER && this.userVersionStamps) {
+                    incrementUserVersions(c, holders.stream()
+                            .map(Uuids::fromString)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toSet()));
+                }
+
+                stats.incrementProcessed(ids.size());
+                if (ids.size() < this.bulkUpdateBatchSize) {
+                    break;
+                }
+                last = ids.get(ids.size() - 1);
+            }
+        } finally {
+            if (!autoCommit) {
+                c.setAutoCommit(false);
+            }
+        }
+
+        if (bulkUpdate.isTrackingStatistics()) {
+            stats.incrementAffected(holderType, affectedHolders.size());
+        }
+    }
+
+    private void countBulkUpdate(Connection c, BulkUpdate bulkUpdate, String select, String holderColumn, HolderType holderType) throws SQLException {
+        PreparedStatementBuilder builder = new PreparedStatementBuilder();
+        builder.append(select);
+        bulkUpdate.appendConstraintsAsSql(builder);
+
+        try (PreparedStatement lookup = builder.build(c, this.statementProcessor)) {
+            try (ResultSet rs = lookup.executeQuery()) {
+                Set<String> holders = new HashSet<>();
+                int rows = 0;
+
+                while (rs.next()) {
+                    holders.add(rs.getString(holderColumn));
+                    rows++;
+                }
+                holders.remove(null);
+                bulkUpdate.getStatistics().incrementAffectedNodes(rows);
+                bulkUpdate.getStatistics().incrementAffected(holderType, holders.size());
+            }
+        }
+    }
+
+    private void applyUserNodesBulkUpdate(Connection c, BulkUpdate bulkUpdate) throws SQLException {
+        BulkUpdateStatistics stats = bulkUpdate.getStatistics();
+        stats.incrementTotal(this.userNodes.countUniqueUsers(c));
+
+        // the constraints can't be expressed against the normalised tables, so
+        // load each page of users and apply the update in memory
+        int batchSize = this.bulkUpdateBatchSize > 0 ? this.bulkUpdateBatchSize : DEFAULT_BULK_UPDATE_BATCH_SIZE;
+        UUID last = null;
+        while (!bulkUpdate.isCancelled()) {
+            // page through the users by key, so each batch only reads the users it updates
+            List<UUID> chunk = this.userNodes.selectUniqueUsers(c, last, batchSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            Map<UUID, List<Node>> nodesMap = this.userNodes.select(c, new HashSet<>(chunk));
+            Set<UUID> modified = new HashSet<>();
+            for (Map.Entry<UUID, List<Node>> entry : nodesMap.entrySet()) {
+                Set<Node> nodes = new HashSet<>(entry.getValue());
+                Set<Node> results = bulkUpdate.apply(nodes, HolderType.USER);
+                if (results == null || bulkUpdate.isDryRun()) {
+                    continue;
+                }
+
+                Set<Node> removed = new HashSet<>(nodes);
+                removed.removeAll(results);
+                Set<Node> added = new HashSet<>(results);
+                added.removeAll(nodes);
+                this.userNodes.update(c, entry.getKey(), added, removed);
+                modified.add(entry.getKey());
+            }
+            incrementUserVersions(c, modified);
+
+            stats.incrementProcessed(chunk.size());
+            if (chunk.size() < batchSize) {
+                break;
+            }
+            last = chunk.get(chunk.size() - 1);
+        }
+    }
+
     @Override
     public User loadUser(UUID uniqueId, String username) throws SQLException {
         List<Node> nodes;
         SqlPlayerData playerData;
 
+        Long version = null;
+
         try (Connection c = this.connectionFactory.getConnection()) {
+            // read the version first, so a concurrent change is picked up by the next sync
+            if (this.userVersionStamps) {
+                version = selectUserVersion(c, uniqueId);
+            }
             nodes = selectUserPermissions(c, uniqueId);
             playerData = selectPlayerData(c, uniqueId);
         }
 
-        return createUser(uniqueId, username, playerData, nodes, true);
+        User user = createUser(uniqueId, username, playerData, nodes, true);
+        if (version != null) {
+            this.loadedUserVersions.put(uniqueId, version);
+        }
+        return user;
     }
 
     @Override
     public Map<UUID, User> loadUsers(Set<UUID> uniqueIds) throws Exception {
+        return loadUsers(uniqueIds, false);
+    }
+
+    private Map<UUID, User> loadUsers(Set<UUID> uniqueIds, boolean saveAfterAudit) throws SQLException {
         Map<UUID, List<Node>> nodesMap;
         Map<UUID, SqlPlayerData> playerDataMap;
 
+        Map<UUID, Long> versions = null;
+
         try (Connection c = this.connectionFactory.getConnection()) {
+            if (this.userVersionStamps) {
+                versions = selectUserVersions(c, uniqueIds);
+            }
             nodesMap = selectUserPermissions(c, uniqueIds);
             playerDataMap = selectPlayerData(c, uniqueIds);
         }
@@ -356,7 +789,10 @@ public class SqlStorage implements StorageImplementation {
         for (UUID uniqueId : uniqueIds) {
             SqlPlayerData playerData = playerDataMap.get(uniqueId);
             List<Node> nodes = nodesMap.get(uniqueId);
-            users.put(uniqueId, createUser(uniqueId, null, playerData, nodes, false));
+            users.put(uniqueId, createUser(uniqueId, null, playerData, nodes, saveAfterAudit));
+            if (versions != null) {
+                this.loadedUserVersions.put(uniqueId, versions.getOrDefault(uniqueId, 0L));
+            }
         }
         return users;
     }
@@ -402,12 +838,14 @@ public class SqlStorage implements StorageImplementation {
         if (changes == null) {
             try (Connection c = this.connectionFactory.getConnection()) {
                 deleteUser(c, user.getUniqueId());
+                incrementLoadedUserVersion(c, user.getUniqueId());
             }
             return;
         }
 
         try (Connection c = this.connectionFactory.getConnection()) {
             updateUserPermissions(c, user.getUniqueId(), changes.getAdded(), changes.getRemoved());
+            incrementLoadedUserVersion(c, user.getUniqueId());
             insertPlayerData(c, user.getUniqueId(), new SqlPlayerData(
                     user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME),
                     user.getUsername().orElse("null").toLowerCase(Locale.ROOT)
@@ -415,10 +853,44 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    @Override
+    public Set<UUID> getModifiedUsers(Set<UUID> uniqueIds) throws SQLException {
+        if (!this.userVersionStamps) {
+            return null;
+        }
+
+        // forget about users that are no longer loaded
+        this.loadedUserVersions.keySet().retainAll(uniqueIds);
+        if (uniqueIds.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        Map<UUID, Long> versions;
+        try (Connection c = this.connectionFactory.getConnection()) {
+            versions = selectUserVersions(c, uniqueIds);
+        }
+
+        Set<UUID> modified = new HashSet<>();
+        for (UUID uniqueId : uniqueIds) {
+            Long loadedVersion = this.loadedUserVersions.get(uniqueId);
+            if (loadedVersion == null || loadedVersion != versions.getOrDefault(uniqueId, 0L)) {
+                modified.add(uniqueId);
+            }
+        }
+        return modified;
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() throws SQLException {
         Set<UUID> uuids = new HashSet<>();
         try (Connection c = this.connectionFactory.getConnection()) {
+            if (this.userNodes != null) {
+                uuids.addAll(this.userNodes.selectUniqueUsers(c));
+                if (!this.legacyUserPermissions) {
+                    return uuids;
+                }
+            }
+
             try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_SELECT_DISTINCT))) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
@@ -433,6 +905,84 @@ public class SqlStorage implements StorageImplementation {
         return uuids;
     }
 
+    @Override
+    public void streamUsers(int batchSize, Throwing.Consumer<Map<UUID, User>> consumer, BiConsumer<UUID, Exception> errorHandler) throws Exception {
+        if (this.userNodes != null && this.legacyUserPermissions) {
+            // users are split across both schemas until the migration completes
+            StorageImplementation.super.streamUsers(batchSize, consumer, errorHandler);
+            return;
+        }
+
+        if (this.userNodes != null) {
+            UUID last = null;
+            while (true) {
+                List<UUID> chunk;
+                try (Connection c = this.connectionFactory.getConnection()) {
+                    chunk = this.userNodes.selectUniqueUsers(c, last, batchSize);
+                }
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                consumer.accept(loadUserBatch(new LinkedHashSet<>(chunk), errorHandler));
+                if (chunk.size() < batchSize) {
+                    break;
+                }
+                last = chunk.get(chunk.size() - 1);
+            }
+        } else {
+            String last = null;
+            while (true) {
+                List<String> chunk;
+                try (Connection c = this.connectionFactory.getConnection()) {
+                    chunk = selectLegacyUniqueUsers(c, last, batchSize);
+                }
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                Set<UUID> uniqueIds = chunk.stream()
+                        .map(Uuids::fromString)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+                if (!uniqueIds.isEmpty()) {
+                    consumer.accept(loadUserBatch(uniqueIds, errorHandler));
+                }
+                if (chunk.size() < batchSize) {
+                    break;
+                }
+                last = chunk.get(chunk.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Selects the next chunk of unique users from the v1 user_permissions table,
+     * in index order.
+     *
+     * @param c the connection
+     * @param after the last uuid returned by the previous chunk, or null to start from the beginning
+     * @param limit the maximum number of users to return
+     * @return the users, as they are stored
+     * @throws SQLException if an error occurs
+     */
+    private List<String> selectLegacyUniqueUsers(Connection c, @Nullable String after, int limit) throws SQLException {
+        List<String> uuids = new ArrayList<>(limit);
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(after == null ? USER_PERMISSIONS_SELECT_DISTINCT_RAW_FIRST : USER_PERMISSIONS_SELECT_DISTINCT_RAW_AFTER))) {
+            int i = 1;
+            if (after != null) {
+                ps.setString(i++, after);
+            }
+            ps.setInt(i, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    uuids.add(rs.getString("uuid"));
+                }
+            }
+        }
+        return uuids;
+    }
+
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws SQLException {
         PreparedStatementBuilder builder = new PreparedStatementBuilder().append(USER_PERMISSIONS_SELECT_PERMISSION);
@@ -440,6 +990,13 @@ public class SqlStorage implements StorageImplementation {
 
         List<NodeEntry<UUID, N>> held = new ArrayList<>();
         try (Connection c = this.connectionFactory.getConnection()) {
+            if (this.userNodes != null) {
+                held.addAll(this.userNodes.search(c, constraint));
+                if (!this.legacyUserPermissions) {
+                    return held;
+                }
+            }
+
             try (PreparedStatement ps = builder.build(c, this.statementProcessor)) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
@@ -640,58 +1197,188 @@ public class SqlStorage implements StorageImplementation {
 
     @Override
     public PlayerSaveResult savePlayerData(UUID uniqueId, String username) throws SQLException {
-        username = username.toLowerCase(Locale.ROOT);
-        String oldUsername = null;
+        try (Connection c = this.connectionFactory.getConnection()) {
+            return savePlayerData(c, uniqueId, username.toLowerCase(Locale.ROOT), selectPlayerData(c, uniqueId));
+        }
+    }
+
+    @Override
+    public PlayerLoginResult savePlayerDataAndLoadUser(UUID uniqueId, String username) throws SQLException {
+        PlayerSaveResult saveResult;
+        SqlPlayerData playerData;
+        List<Node> nodes;
+        Long version = null;
 
         try (Connection c = this.connectionFactory.getConnection()) {
+            String lowerCaseUsername = username.toLowerCase(Locale.ROOT);
+
+            // the existing player data is used for both the save and the load
             SqlPlayerData existingPlayerData = selectPlayerData(c, uniqueId);
-            if (existingPlayerData == null) {
-                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_INSERT))) {
-                    ps.setString(1, uniqueId.toString());
-                    ps.setString(2, username);
-                    ps.setString(3, GroupManager.DEFAULT_GROUP_NAME);
+            saveResult = savePlayerData(c, uniqueId, lowerCaseUsername, existingPlayerData);
+            playerData = new SqlPlayerData(existingPlayerData == null ? GroupManager.DEFAULT_GROUP_NAME : existingPlayerData.primaryGroup, lowerCaseUsername);
+
+            if (this.userVersionStamps) {
+                version = selectUserVersion(c, uniqueId);
+            }
+            nodes = selectUserPermissions(c, uniqueId);
+        }
+
+        User user = createUser(uniqueId, username, playerData, nodes, true);
+        if (version != null) {
+            this.loadedUserVersions.put(uniqueId, version);
+        }
+        return new PlayerLoginResult(saveResult, user);
+    }
+
+    @Override
+    public Map<UUID, PlayerLoginResult> savePlayerDataAndLoadUsers(Map<UUID, String> usernames) throws SQLException {
+        Map<UUID, PlayerSaveResult> saveResults = savePlayerData(usernames);
+        Map<UUID, User> users = loadUsers(new HashSet<>(usernames.keySet()), true);
+
+        Map<UUID, PlayerLoginResult> results = new HashMap<>();
+        for (UUID uniqueId : usernames.keySet()) {
+            results.put(uniqueId, new PlayerLoginResult(saveResults.get(uniqueId), users.get(uniqueId)));
+        }
+        return results;
+    }
+
+    private PlayerSaveResult savePlayerData(Connection c, UUID uniqueId, String username, SqlPlayerData existingPlayerData) throws SQLException {
+        String oldUsername = null;
+
+        if (existingPlayerData == null) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_INSERT))) {
+                ps.setString(1, uniqueId.toString());
+                ps.setString(2, username);
+                ps.setString(3, GroupManager.DEFAULT_GROUP_NAME);
+                ps.execute();
+            }
+        } else {
+            oldUsername = existingPlayerData.username;
+            if (!username.equals(oldUsername)) {
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_UPDATE_USERNAME_FOR_UUID))) {
+                    ps.setString(1, username);
+                    ps.setString(2, uniqueId.toString());
                     ps.execute();
                 }
-            } else {
-                oldUsername = existingPlayerData.username;
-                if (!username.equals(oldUsername)) {
-                    try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_UPDATE_USERNAME_FOR_UUID))) {
-                        ps.setString(1, username);
-                        ps.setString(2, uniqueId.toString());
-                        ps.execute();
-                    }
-                }
             }
         }
 
         PlayerSaveResultImpl result = PlayerSaveResultImpl.determineBaseResult(username, oldUsername);
 
         Set<UUID> conflicting = new HashSet<>();
-        try (Connection c = this.connectionFactory.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_SELECT_ALL_UUIDS_BY_USERNAME))) {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_SELECT_ALL_UUIDS_BY_USERNAME))) {
+            ps.setString(1, username);
+            ps.setString(2, uniqueId.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    conflicting.add(UUID.fromString(rs.getString("uuid")));
+                }
+            }
+        }
+
+        if (!conflicting.isEmpty()) {
+            // remove the mappings for conflicting uuids
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_DELETE_ALL_UUIDS_BY_USERNAME))) {
                 ps.setString(1, username);
                 ps.setString(2, uniqueId.toString());
+                ps.execute();
+            }
+            result = result.withOtherUuidsPresent(conflicting);
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<UUID, PlayerSaveResult> savePlayerData(Map<UUID, String> usernames) throws SQLException {
+        Map<UUID, String> players = new HashMap<>();
+        for (Map.Entry<UUID, String> entry : usernames.entrySet()) {
+            players.put(entry.getKey(), entry.getValue().toLowerCase(Locale.ROOT));
+        }
+
+        // the conflict handling below relies on each username only appearing once
+        if (players.isEmpty() || new HashSet<>(players.values()).size() != players.size()) {
+            return StorageImplementation.super.savePlayerData(usernames);
+        }
+
+        Map<UUID, PlayerSaveResultImpl> results = new HashMap<>();
+        try (Connection c = this.connectionFactory.getConnection()) {
+            Map<UUID, SqlPlayerData> existing = selectPlayerData(c, players.keySet());
+
+            List<UUID> inserts = new ArrayList<>();
+            List<UUID> updates = new ArrayList<>();
+            for (Map.Entry<UUID, String> entry : players.entrySet()) {
+                SqlPlayerData existingPlayerData = existing.get(entry.getKey());
+                String oldUsername = existingPlayerData == null ? null : existingPlayerData.username;
+                if (existingPlayerData == null) {
+                    inserts.add(entry.getKey());
+                } else if (!entry.getValue().equals(oldUsername)) {
+                    updates.add(entry.getKey());
+                }
+                results.put(entry.getKey(), PlayerSaveResultImpl.determineBaseResult(entry.getValue(), oldUsername));
+            }
+
+            if (!inserts.isEmpty()) {
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_INSERT))) {
+                    for (UUID uniqueId : inserts) {
+                        ps.setString(1, uniqueId.toString());
+                        ps.setString(2, players.get(uniqueId));
+                        ps.setString(3, GroupManager.DEFAULT_GROUP_NAME);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            if (!updates.isEmpty()) {
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_UPDATE_USERNAME_FOR_UUID))) {
+                    for (UUID uniqueId : updates) {
+                        ps.setString(1, players.get(uniqueId));
+                        ps.setString(2, uniqueId.toString());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+
+            // find any other uuids using the same usernames
+            Map<String, Set<UUID>> uuidsByUsername = new HashMap<>();
+            String sql = PLAYER_SELECT_BY_USERNAME_MULTIPLE + players.values().stream().map(x -> "?").collect(Collectors.joining(", ", "(", ")"));
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(sql))) {
+                int i = 1;
+                for (String username : players.values()) {
+                    ps.setString(i++, username);
+                }
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        conflicting.add(UUID.fromString(rs.getString("uuid")));
+                        uuidsByUsername.computeIfAbsent(rs.getString("username"), x -> new HashSet<>()).add(UUID.fromString(rs.getString("uuid")));
                     }
                 }
             }
-        }
 
-        if (!conflicting.isEmpty()) {
-            // remove the mappings for conflicting uuids
-            try (Connection c = this.connectionFactory.getConnection()) {
+            List<UUID> conflicts = new ArrayList<>();
+            for (Map.Entry<UUID, String> entry : players.entrySet()) {
+                Set<UUID> conflicting = new HashSet<>(uuidsByUsername.getOrDefault(entry.getValue(), Collections.emptySet()));
+                conflicting.remove(entry.getKey());
+                if (!conflicting.isEmpty()) {
+                    conflicts.add(entry.getKey());
+                    results.put(entry.getKey(), results.get(entry.getKey()).withOtherUuidsPresent(conflicting));
+                }
+            }
+
+            if (!conflicts.isEmpty()) {
+                // remove the mappings for conflicting uuids
                 try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_DELETE_ALL_UUIDS_BY_USERNAME))) {
-                    ps.setString(1, username);
-                    ps.setString(2, uniqueId.toString());
-                    ps.execute();
+                    for (UUID uniqueId : conflicts) {
+                        ps.setString(1, players.get(uniqueId));
+                        ps.setString(2, uniqueId.toString());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
                 }
             }
-            result = result.withOtherUuidsPresent(conflicting);
         }
 
-        return result;
+        return new HashMap<>(results);
     }
 
     @Override
@@ -792,32 +1479,23 @@ public class SqlStorage implements StorageImplementation {
                 .build();
     }
 
-    private static String getFirstContextValue(MutableContextSet set, String key) {
-        Set<String> values = set.getValues(key);
-        String value = values.stream().sorted().findFirst().orElse(null);
-        if (value != null) {
-            set.remove(key, value);
-        } else {
-            value = "global";
-        }
-        return value;
-    }
-
     private static void writeNode(Node node, PreparedStatement ps) throws SQLException {
-        MutableContextSet contexts = node.getContexts().mutableCopy();
-        String server = getFirstContextValue(contexts, DefaultContextKeys.SERVER_KEY);
-        String world = getFirstContextValue(contexts, DefaultContextKeys.WORLD_KEY);
+        UserNodesTable.ContextRow contexts = UserNodesTable.ContextRow.of(node.getContexts());
         long expiry = node.hasExpiry() ? node.getExpiry().getEpochSecond() : 0L;
 
         ps.setString(2, node.getKey());
         ps.setBoolean(3, node.getValue());
-        ps.setString(4, server);
-        ps.setString(5, world);
+        ps.setString(4, contexts.server);
+        ps.setString(5, contexts.world);
         ps.setLong(6, expiry);
-        ps.setString(7, GsonProvider.normal().toJson(ContextSetJsonSerializer.serialize(contexts)));
+        ps.setString(7, contexts.contexts);
     }
 
     private void updateUserPermissions(Connection c, UUID user, Set<Node> add, Set<Node> delete) throws SQLException {
+        if (this.userNodes != null) {
+            this.userNodes.update(c, user, add, delete);
+            return;
+        }
         updatePermissions(c, user.toString(), add, delete, USER_PERMISSIONS_DELETE_SPECIFIC, USER_PERMISSIONS_DELETE_SPECIFIC_PROPS, USER_PERMISSIONS_INSERT);
     }
 
@@ -872,6 +1550,16 @@ public class SqlStorage implements StorageImplementation {
     }
 
     private List<Node> selectUserPermissions(Connection c, UUID user) throws SQLException {
+        if (this.userNodes != null) {
+            if (this.legacyUserPermissions) {
+                migrateLegacyUser(c, user);
+            }
+            return this.userNodes.select(c, user);
+        }
+        return selectLegacyUserPermissions(c, user);
+    }
+
+    private List<Node> selectLegacyUserPermissions(Connection c, UUID user) throws SQLException {
         List<Node> nodes = new ArrayList<>();
         try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_SELECT))) {
             ps.setString(1, user.toString());
@@ -901,6 +1589,15 @@ public class SqlStorage implements StorageImplementation {
     }
 
     private Map<UUID, List<Node>> selectUserPermissions(Connection c, Set<UUID> users) throws SQLException {
+        if (this.userNodes != null) {
+            if (this.legacyUserPermissions) {
+                for (UUID user : users) {
+                    migrateLegacyUser(c, user);
+                }
+            }
+            return this.userNodes.select(c, users);
+        }
+
         Map<UUID, List<Node>> map = new HashMap<>();
         for (UUID uuid : users) {
             map.put(uuid, new ArrayList<>());
@@ -953,9 +1650,11 @@ public class SqlStorage implements StorageImplementation {
     }
 
     private void deleteUser(Connection c, UUID user) throws SQLException {
-        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_DELETE))) {
-            ps.setString(1, user.toString());
-            ps.execute();
+        if (this.userNodes != null) {
+            this.userNodes.delete(c, user);
+        }
+        if (this.userNodes == null || this.legacyUserPermissions) {
+            deleteLegacyUserPermissions(c, user);
         }
         try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_UPDATE_PRIMARY_GROUP_BY_UUID))) {
             ps.setString(1, GroupManager.DEFAULT_GROUP_NAME);
@@ -964,6 +1663,116 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    private long selectUserVersion(Connection c, UUID user) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_VERSIONS_SELECT))) {
+            ps.setString(1, user.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong("version") : 0L;
+            }
+        }
+    }
+
+    private Map<UUID, Long> selectUserVersions(Connection c, Set<UUID> users) throws SQLException {
+        Map<UUID, Long> map = new HashMap<>();
+        if (users.isEmpty()) {
+            return map;
+        }
+
+        try (Statement s = c.createStatement()) {
+            String sql = createUserSelectWhereClause(USER_VERSIONS_SELECT_MULTIPLE, users);
+            try (ResultSet rs = s.executeQuery(sql)) {
+                while (rs.next()) {
+                    map.put(UUID.fromString(rs.getString("uuid")), rs.getLong("version"));
+                }
+            }
+        }
+        return map;
+    }
+
+    private void incrementUserVersion(Connection c, UUID user) throws SQLException {
+        if (!this.userVersionStamps) {
+            return;
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_VERSIONS_INCREMENT))) {
+            ps.setString(1, user.toString());
+            if (ps.executeUpdate() != 0) {
+                return;
+            }
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_VERSIONS_INSERT))) {
+            ps.setString(1, user.toString());
+            ps.execute();
+        } catch (SQLException e) {
+            // the row was inserted concurrently by another server, so increment it instead
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_VERSIONS_INCREMENT))) {
+                ps.setString(1, user.toString());
+                ps.execute();
+            }
+        }
+    }
+
+    /**
+     * Increments the versions of a set of users, after their data has been changed.
+     *
+     * <p>Users which already have a version are incremented using a single statement
+     * for each chunk of users.</p>
+     *
+     * @param c the connection
+     * @param users the users
+     * @throws SQLException if an error occurs
+     */
+    private void incrementUserVersions(Connection c, Set<UUID> users) throws SQLException {
+        if (!this.userVersionStamps || users.isEmpty()) {
+            return;
+        }
+
+        for (List<UUID> partition : Iterables.partition(users, MIGRATION_CHUNK_SIZE)) {
+            Set<UUID> chunk = new HashSet<>(partition);
+            Set<UUID> missing = new HashSet<>(chunk);
+            missing.removeAll(selectUserVersions(c, chunk).keySet());
+
+            try (Statement s = c.createStatement()) {
+                s.executeUpdate(createUserSelectWhereClause(USER_VERSIONS_INCREMENT_MULTIPLE, chunk));
+            }
+
+            // users without a version yet need a row to be inserted
+            for (UUID user : missing) {
+                incrementUserVersion(c, user);
+            }
+        }
+    }
+
+    /**
+     * Increments the version of a user after it has been saved by this server.
+     *
+     * <p>If the new version directly follows the version that was loaded, no
+     * other server has modified the user, so the local copy is still current.</p>
+     */
+    private void incrementLoadedUserVersion(Connection c, UUID user) throws SQLException {
+        if (!this.userVersionStamps) {
+            return;
+        }
+
+        incrementUserVersion(c, user);
+
+        Long loadedVersion = this.loadedUserVersions.get(user);
+        if (loadedVersion != null) {
+            long version = selectUserVersion(c, user);
+            if (version == loadedVersion + 1) {
+                this.loadedUserVersions.replace(user, loadedVersion, version);
+            }
+        }
+    }
+
+    private int deleteLegacyUserPermissions(Connection c, UUID user) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_DELETE))) {
+            ps.setString(1, user.toString());
+            return ps.executeUpdate();
+        }
+    }
+
     private void insertPlayerData(Connection c, UUID user, SqlPlayerData data) throws SQLException {
         boolean hasPrimaryGroupSaved;
         try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_SELECT_PRIMARY_GROUP_BY_UUID))) {
@@ -1088,6 +1897,60 @@ public class SqlStorage implements StorageImplementation {
         return tracks;
     }
 
+    private static String escapeLikePattern(String search) {
+        return search.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String createActionWhereClause(LogQuery query, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getActor() != null) {
+            conditions.add("actor_uuid = ?");
+            params.add(query.getActor().toString());
+        }
+        if (query.getTargetType() != null) {
+            conditions.add("type = ?");
+            params.add(Character.toString(LoggedAction.getTypeCharacter(query.getTargetType())));
+        }
+        if (query.getTargetUniqueId() != null) {
+            conditions.add("acted_uuid = ?");
+            params.add(query.getTargetUniqueId().toString());
+        }
+        if (query.getTargetName() != null) {
+            conditions.add("acted_name = ?");
+            params.add(query.getTargetName());
+        }
+        if (query.getSearch() != null) {
+            String pattern = "%" + escapeLikePattern(query.getSearch()) + "%";
+            // the escape character is passed as a parameter, as a '\' literal is read
+            // differently depending on the database (and the MySQL sql_mode)
+            conditions.add("(LOWER(actor_name) LIKE ? ESCAPE ? OR LOWER(acted_name) LIKE ? ESCAPE ? OR LOWER(action) LIKE ? ESCAPE ?)");
+            for (int i = 0; i < 3; i++) {
+                params.add(pattern);
+                params.add("\\");
+            }
+        }
+        if (query.getMinTime() != Long.MIN_VALUE) {
+            conditions.add("time >= ?");
+            params.add(query.getMinTime());
+        }
+        if (query.getMaxTime() != Long.MAX_VALUE) {
+            conditions.add("time <= ?");
+            params.add(query.getMaxTime());
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private static void setParameters(PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            if (param instanceof Long) {
+                ps.setLong(i + 1, (Long) param);
+            } else {
+                ps.setString(i + 1, (String) param);
+            }
+        }
+    }
+
     private static boolean tableExists(Connection connection, String table) throws SQLException {
         try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), null, "%", null)) {
             while (rs.next()) {
@@ -1099,6 +1962,30 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    private static boolean indexExists(Connection connection, String table, String firstColumn) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        List<String[]> tables = new ArrayList<>();
+        try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, "%", null)) {
+            while (rs.next()) {
+                if (rs.getString(3).equalsIgnoreCase(table)) {
+                    tables.add(new String[]{rs.getString(2), rs.getString(3)});
+                }
+            }
+        }
+
+        for (String[] t : tables) {
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), t[0], t[1], false, true)) {
+                while (rs.next()) {
+                    String column = rs.getString("COLUMN_NAME");
+                    if (rs.getShort("ORDINAL_POSITION") == 1 && column != null && column.equalsIgnoreCase(firstColumn)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     private static final class SqlPlayerData {
         private final String primaryGroup;
         private final String username;
@@ -1109,4 +1996,49 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    /**
+     * Options which control how {@link SqlStorage} stores data.
+     */
+    public static final class Options {
+        private int schemaVersion = 1;
+        private boolean userVersionStamps = false;
+        private int bulkUpdateBatchSize = DEFAULT_BULK_UPDATE_BATCH_SIZE;
+
+        /**
+         * Sets the version of the schema used to store user permissions.
+         *
+         * @param schemaVersion the schema version
+         * @return this
+         */
+        public Options schemaVersion(int schemaVersion) {
+            this.schemaVersion = schemaVersion;
+            return this;
+        }
+
+        /**
+         * Sets if version stamps should be kept for users, so syncs only reload modified users.
+         *
+         * @param userVersionStamps if version stamps should be kept
+         * @return this
+         */
+        public Options userVersionStamps(boolean userVersionStamps) {
+            this.userVersionStamps = userVersionStamps;
+            return this;
+        }
+
+        /**
+         * Sets the number of rows covered by each statement when applying a bulk update.
+         *
+         * <p>When user nodes are stored in the normalised tables, this is the number of
+         * users loaded and updated in each batch instead.</p>
+         *
+         * @param bulkUpdateBatchSize the batch size
+         * @return this
+         */
+        public Options bulkUpdateBatchSize(int bulkUpdateBatchSize) {
+            this.bulkUpdateBatchSize = bulkUpdateBatchSize;
+            return this;
+        }
+    }
+
 }
@@ -0,0 +1,553 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.sql;
+
+import com.google.common.collect.ImmutableMap;
+import me.lucko.luckperms.common.bulkupdate.PreparedStatementBuilder;
+import me.lucko.luckperms.common.context.MutableContextSetImpl;
+import me.lucko.luckperms.common.context.serializer.ContextSetJsonSerializer;
+import me.lucko.luckperms.common.node.factory.NodeBuilders;
+import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
+import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.context.ContextSet;
+import net.luckperms.api.context.DefaultContextKeys;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.context.MutableContextSet;
+import net.luckperms.api.node.Node;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Accesses user permissions stored in the "v2" SQL schema.
+ *
+ * <p>Rows in the {@code user_nodes} table are kept narrow: uuids are stored as 16 byte
+ * binary values, and permission strings and contexts are stored once in dictionary tables
+ * and referenced by integer id. The primary key covers all columns, so loading the nodes
+ * for a user is a single index range scan.</p>
+ *
+ * <p>Dictionary entries are never modified or removed once created, so they are cached
+ * in memory after the first lookup.</p>
+ */
+final class UserNodesTable {
+    private static final String USER_NODES_SELECT = "SELECT permission_id, context_id, value, expiry FROM '{prefix}user_nodes' WHERE uuid=?";
+    private static final String USER_NODES_SELECT_MULTIPLE = "SELECT uuid, permission_id, context_id, value, expiry FROM '{prefix}user_nodes' WHERE uuid IN ";
+    private static final String USER_NODES_SELECT_PERMISSION = "SELECT n.uuid, n.permission_id, n.context_id, n.value, n.expiry FROM '{prefix}user_nodes' n JOIN '{prefix}permission_dictionary' p ON n.permission_id = p.id WHERE ";
+    private static final String USER_NODES_SELECT_DISTINCT = "SELECT DISTINCT uuid FROM '{prefix}user_nodes'";
+    private static final String USER_NODES_SELECT_COUNT_DISTINCT = "SELECT COUNT(DISTINCT uuid) FROM '{prefix}user_nodes'";
+    private static final String USER_NODES_SELECT_DISTINCT_FIRST = "SELECT DISTINCT uuid FROM '{prefix}user_nodes' ORDER BY uuid LIMIT ?";
+    private static final String USER_NODES_SELECT_DISTINCT_AFTER = "SELECT DISTINCT uuid FROM '{prefix}user_nodes' WHERE uuid > ? ORDER BY uuid LIMIT ?";
+    private static final String USER_NODES_DELETE_SPECIFIC = "DELETE FROM '{prefix}user_nodes' WHERE uuid=? AND permission_id=? AND context_id=? AND value=? AND expiry=?";
+    private static final String USER_NODES_DELETE = "DELETE FROM '{prefix}user_nodes' WHERE uuid=?";
+    private static final Map<String, String> USER_NODES_INSERT = ImmutableMap.of(
+            "H2", "MERGE INTO '{prefix}user_nodes' (uuid, permission_id, context_id, value, expiry) KEY (uuid, permission_id, context_id, value, expiry) VALUES(?, ?, ?, ?, ?)",
+            "SQLite", "INSERT OR IGNORE INTO '{prefix}user_nodes' (uuid, permission_id, context_id, value, expiry) VALUES(?, ?, ?, ?, ?)",
+            "PostgreSQL", "INSERT INTO '{prefix}user_nodes' (uuid, permission_id, context_id, value, expiry) VALUES(?, ?, ?, ?, ?) ON CONFLICT DO NOTHING"
+    );
+    private static final String USER_NODES_INSERT_DEFAULT = "INSERT INTO '{prefix}user_nodes' (uuid, permission_id, context_id, value, expiry) VALUES(?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE expiry=expiry";
+
+    private static final String PERMISSION_SELECT_ID = "SELECT id FROM '{prefix}permission_dictionary' WHERE permission=?";
+    private static final String PERMISSION_SELECT_BY_ID = "SELECT permission FROM '{prefix}permission_dictionary' WHERE id=?";
+    private static final Map<String, String> PERMISSION_INSERT = ImmutableMap.of(
+            "H2", "MERGE INTO '{prefix}permission_dictionary' (permission) KEY (permission) VALUES(?)",
+            "SQLite", "INSERT OR IGNORE INTO '{prefix}permission_dictionary' (permission) VALUES(?)",
+            "PostgreSQL", "INSERT INTO '{prefix}permission_dictionary' (permission) VALUES(?) ON CONFLICT DO NOTHING"
+    );
+    private static final String PERMISSION_INSERT_DEFAULT = "INSERT INTO '{prefix}permission_dictionary' (permission) VALUES(?) ON DUPLICATE KEY UPDATE permission=permission";
+
+    private static final String CONTEXT_SELECT_ID = "SELECT id FROM '{prefix}context_dictionary' WHERE server=? AND world=? AND contexts=?";
+    private static final String CONTEXT_SELECT_BY_ID = "SELECT server, world, contexts FROM '{prefix}context_dictionary' WHERE id=?";
+    private static final Map<String, String> CONTEXT_INSERT = ImmutableMap.of(
+            "H2", "MERGE INTO '{prefix}context_dictionary' (server, world, contexts) KEY (server, world, contexts) VALUES(?, ?, ?)",
+            "SQLite", "INSERT OR IGNORE INTO '{prefix}context_dictionary' (server, world, contexts) VALUES(?, ?, ?)",
+            "PostgreSQL", "INSERT INTO '{prefix}context_dictionary' (server, world, contexts) VALUES(?, ?, ?) ON CONFLICT DO NOTHING"
+    );
+    private static final String CONTEXT_INSERT_DEFAULT = "INSERT INTO '{prefix}context_dictionary' (server, world, contexts) VALUES(?, ?, ?) ON DUPLICATE KEY UPDATE server=server";
+
+    private final Function<String, String> statementProcessor;
+    private final String userNodesInsert;
+    private final String permissionInsert;
+    private final String contextInsert;
+
+    // dictionary caches
+    private final Map<String, Integer> permissionIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> permissions = new ConcurrentHashMap<>();
+    private final Map<ContextRow, Integer> contextIds = new ConcurrentHashMap<>();
+    private final Map<Integer, ImmutableContextSet> contexts = new ConcurrentHashMap<>();
+
+    UserNodesTable(String implementationName, Function<String, String> statementProcessor) {
+        this.statementProcessor = statementProcessor;
+        this.userNodesInsert = USER_NODES_INSERT.getOrDefault(implementationName, USER_NODES_INSERT_DEFAULT);
+        this.permissionInsert = PERMISSION_INSERT.getOrDefault(implementationName, PERMISSION_INSERT_DEFAULT);
+        this.contextInsert = CONTEXT_INSERT.getOrDefault(implementationName, CONTEXT_INSERT_DEFAULT);
+    }
+
+    /**
+     * Clears the dictionary caches.
+     *
+     * <p>Called after a transaction which may have created dictionary entries is rolled back.</p>
+     */
+    public void clearDictionaryCaches() {
+        this.permissionIds.clear();
+        this.permissions.clear();
+        this.contextIds.clear();
+        this.contexts.clear();
+    }
+
+    public List<Node> select(Connection c, UUID user) throws SQLException {
+        List<StoredNode> rows = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_NODES_SELECT))) {
+            ps.setBytes(1, toBytes(user));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(readRow(rs));
+                }
+            }
+        }
+
+        List<Node> nodes = new ArrayList<>(rows.size());
+        for (StoredNode row : rows) {
+            Node node = toNode(c, row);
+            if (node != null) {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    public Map<UUID, List<Node>> select(Connection c, Set<UUID> users) throws SQLException {
+        Map<UUID, List<StoredNode>> rows = new HashMap<>();
+        for (UUID uuid : users) {
+            rows.put(uuid, new ArrayList<>());
+        }
+
+        if (!users.isEmpty()) {
+            String sql = USER_NODES_SELECT_MULTIPLE + "(" + placeholders(users.size()) + ")";
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(sql))) {
+                int i = 1;
+                for (UUID uuid : users) {
+                    ps.setBytes(i++, toBytes(uuid));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        List<StoredNode> list = rows.get(fromBytes(rs.getBytes("uuid")));
+                        if (list != null) {
+                            list.add(readRow(rs));
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<UUID, List<Node>> map = new HashMap<>();
+        for (Map.Entry<UUID, List<StoredNode>> entry : rows.entrySet()) {
+            List<Node> nodes = new ArrayList<>(entry.getValue().size());
+            for (StoredNode row : entry.getValue()) {
+                Node node = toNode(c, row);
+                if (node != null) {
+                    nodes.add(node);
+                }
+            }
+            map.put(entry.getKey(), nodes);
+        }
+        return map;
+    }
+
+    public Set<UUID> selectUniqueUsers(Connection c) throws SQLException {
+        Set<UUID> uuids = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_NODES_SELECT_DISTINCT))) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    uuids.add(fromBytes(rs.getBytes("uuid")));
+                }
+            }
+        }
+        return uuids;
+    }
+
+    public int countUniqueUsers(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_NODES_SELECT_COUNT_DISTINCT))) {
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Selects the next chunk of unique users, in index order.
+     *
+     * @param c the connection
+     * @param after the last uuid returned by the previous chunk, or null to start from the beginning
+     * @param limit the maximum number of users to return
+     * @return the users
+     * @throws SQLException if an error occurs
+     */
+    public List<UUID> selectUniqueUsers(Connection c, @Nullable UUID after, int limit) throws SQLException {
+        List<UUID> uuids = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(after == null ? USER_NODES_SELECT_DISTINCT_FIRST : USER_NODES_SELECT_DISTINCT_AFTER))) {
+            int i = 1;
+            if (after != null) {
+                ps.setBytes(i++, toBytes(after));
+            }
+            ps.setInt(i, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    uuids.add(fromBytes(rs.getBytes("uuid")));
+                }
+            }
+        }
+        return uuids;
+    }
+
+    public <N extends Node> List<NodeEntry<UUID, N>> search(Connection c, ConstraintNodeMatcher<N> constraint) throws SQLException {
+        PreparedStatementBuilder builder = new PreparedStatementBuilder().append(USER_NODES_SELECT_PERMISSION);
+        constraint.getConstraint().appendSql(builder, "p.permission");
+
+        Map<UUID, List<StoredNode>> rows = new HashMap<>();
+        try (PreparedStatement ps = builder.build(c, this.statementProcessor)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.computeIfAbsent(fromBytes(rs.getBytes("uuid")), x -> new ArrayList<>()).add(readRow(rs));
+                }
+            }
+        }
+
+        List<NodeEntry<UUID, N>> held = new ArrayList<>();
+        for (Map.Entry<UUID, List<StoredNode>> entry : rows.entrySet()) {
+            for (StoredNode row : entry.getValue()) {
+                Node node = toNode(c, row);
+                if (node == null) {
+                    continue;
+                }
+
+                N match = constraint.filterConstraintMatch(node);
+                if (match != null) {
+                    held.add(NodeEntry.of(entry.getKey(), match));
+                }
+            }
+        }
+        return held;
+    }
+
+    public void update(Connection c, UUID user, Collection<Node> add, Collection<Node> delete) throws SQLException {
+        byte[] uuid = toBytes(user);
+
+        if (!delete.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_NODES_DELETE_SPECIFIC))) {
+                for (Node node : delete) {
+                    ContextRow contextRow = ContextRow.of(node.getContexts());
+                    Integer permissionId = this.permissionIds.get(node.getKey());
+                    Integer contextId = this.contextIds.get(contextRow);
+                    if (permissionId == null) {
+                        permissionId = selectPermissionId(c, node.getKey());
+                    }
+                    if (contextId == null) {
+                        contextId = selectContextId(c, contextRow);
+                    }
+
+                    // if either isn't in the dictionary, the node can't have been stored
+                    if (permissionId == null || contextId == null) {
+                        continue;
+                    }
+
+                    ps.setBytes(1, uuid);
+                    ps.setInt(2, permissionId);
+                    ps.setInt(3, contextId);
+                    ps.setBoolean(4, node.getValue());
+                    ps.setLong(5, expiry(node));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+
+        if (!add.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(this.userNodesInsert))) {
+                for (Node node : add) {
+                    ps.setBytes(1, uuid);
+                    ps.setInt(2, getOrCreatePermissionId(c, node.getKey()));
+                    ps.setInt(3, getOrCreateContextId(c, ContextRow.of(node.getContexts())));
+                    ps.setBoolean(4, node.getValue());
+                    ps.setLong(5, expiry(node));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    public void delete(Connection c, UUID user) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_NODES_DELETE))) {
+            ps.setBytes(1, toBytes(user));
+            ps.execute();
+        }
+    }
+
+    private static StoredNode readRow(ResultSet rs) throws SQLException {
+        return new StoredNode(rs.getInt("permission_id"), rs.getInt("context_id"), rs.getBoolean("value"), rs.getLong("expiry"));
+    }
+
+    private Node toNode(Connection c, StoredNode row) throws SQLException {
+        String permission = getPermission(c, row.permissionId);
+        ImmutableContextSet contexts = getContexts(c, row.contextId);
+        if (permission == null || permission.isEmpty() || contexts == null) {
+            return null;
+        }
+
+        return NodeBuilders.determineMostApplicable(permission)
+                .value(row.value)
+                .expiry(row.expiry)
+                .withContext(contexts)
+                .build();
+    }
+
+    private String getPermission(Connection c, int id) throws SQLException {
+        String permission = this.permissions.get(id);
+        if (permission != null) {
+            return permission;
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PERMISSION_SELECT_BY_ID))) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    permission = rs.getString("permission");
+                }
+            }
+        }
+
+        if (permission != null) {
+            this.permissions.put(id, permission);
+            this.permissionIds.put(permission, id);
+        }
+        return permission;
+    }
+
+    private ImmutableContextSet getContexts(Connection c, int id) throws SQLException {
+        ImmutableContextSet contexts = this.contexts.get(id);
+        if (contexts != null) {
+            return contexts;
+        }
+
+        ContextRow row = null;
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(CONTEXT_SELECT_BY_ID))) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    row = new ContextRow(rs.getString("server"), rs.getString("world"), rs.getString("contexts"));
+                }
+            }
+        }
+
+        if (row == null) {
+            return null;
+        }
+
+        contexts = row.toContextSet();
+        this.contexts.put(id, contexts);
+        this.contextIds.put(row, id);
+        return contexts;
+    }
+
+    private Integer selectPermissionId(Connection c, String permission) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PERMISSION_SELECT_ID))) {
+            ps.setString(1, permission);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    int id = rs.getInt("id");
+                    this.permissionIds.put(permission, id);
+                    this.permissions.put(id, permission);
+                    return id;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Integer selectContextId(Connection c, ContextRow row) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(CONTEXT_SELECT_ID))) {
+            ps.setString(1, row.server);
+            ps.setString(2, row.world);
+            ps.setString(3, row.contexts);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    int id = rs.getInt("id");
+                    this.contextIds.put(row, id);
+                    return id;
+                }
+            }
+        }
+        return null;
+    }
+
+    private int getOrCreatePermissionId(Connection c, String permission) throws SQLException {
+        Integer id = this.permissionIds.get(permission);
+        if (id == null) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(this.permissionInsert))) {
+                ps.setString(1, permission);
+                ps.execute();
+            }
+            id = selectPermissionId(c, permission);
+            if (id == null) {
+                throw new SQLException("Unable to create dictionary entry for permission: " + permission);
+            }
+        }
+        return id;
+    }
+
+    private int getOrCreateContextId(Connection c, ContextRow row) throws SQLException {
+        Integer id = this.contextIds.get(row);
+        if (id == null) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(this.contextInsert))) {
+                ps.setString(1, row.server);
+                ps.setString(2, row.world);
+                ps.setString(3, row.contexts);
+                ps.execute();
+            }
+            id = selectContextId(c, row);
+            if (id == null) {
+                throw new SQLException("Unable to create dictionary entry for contexts: " + row.contexts);
+            }
+        }
+        return id;
+    }
+
+    private static long expiry(Node node) {
+        return node.hasExpiry() ? node.getExpiry().getEpochSecond() : 0L;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        return new UUID(buf.getLong(), buf.getLong());
+    }
+
+    /**
+     * A row in the user_nodes table, before the dictionary ids have been resolved.
+     */
+    private static final class StoredNode {
+        private final int permissionId;
+        private final int contextId;
+        private final boolean value;
+        private final long expiry;
+
+        StoredNode(int permissionId, int contextId, boolean value, long expiry) {
+            this.permissionId = permissionId;
+            this.contextId = contextId;
+            this.value = value;
+            this.expiry = expiry;
+        }
+    }
+
+    /**
+     * The SQL representation of a context set - the first server and world are
+     * stored in their own columns, and the rest are serialized to JSON.
+     */
+    static final class ContextRow {
+        final String server;
+        final String world;
+        final String contexts;
+
+        ContextRow(String server, String world, String contexts) {
+            this.server = server;
+            this.world = world;
+            this.contexts = contexts;
+        }
+
+        static ContextRow of(ContextSet contextSet) {
+            MutableContextSet contexts = contextSet.mutableCopy();
+            String server = removeFirstValue(contexts, DefaultContextKeys.SERVER_KEY);
+            String world = removeFirstValue(contexts, DefaultContextKeys.WORLD_KEY);
+            return new ContextRow(server, world, GsonProvider.normal().toJson(ContextSetJsonSerializer.serialize(contexts)));
+        }
+
+        private static String removeFirstValue(MutableContextSet set, String key) {
+            Set<String> values = set.getValues(key);
+            String value = values.stream().sorted().findFirst().orElse(null);
+            if (value != null) {
+                set.remove(key, value);
+            } else {
+                value = "global";
+            }
+            return value;
+        }
+
+        ImmutableContextSet toContextSet() {
+            MutableContextSet set = new MutableContextSetImpl();
+            set.add(DefaultContextKeys.SERVER_KEY, this.server == null || this.server.isEmpty() ? "global" : this.server);
+            set.add(DefaultContextKeys.WORLD_KEY, this.world == null || this.world.isEmpty() ? "global" : this.world);
+            set.addAll(ContextSetJsonSerializer.deserialize(GsonProvider.normal(), this.contexts));
+            return set.immutableCopy();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ContextRow)) return false;
+            ContextRow that = (ContextRow) o;
+            return this.server.equals(that.server) && this.world.equals(that.world) && this.contexts.equals(that.contexts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.server, this.world, this.contexts);
+        }
+    }
+
+}
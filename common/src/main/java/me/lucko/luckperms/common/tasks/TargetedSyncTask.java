@@ -0,0 +1,117 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.tasks;
+
+import me.lucko.luckperms.common.inheritance.InheritanceGraph;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Sync task which only reloads a known set of groups and tracks.
+ *
+ * <p>Unlike the {@link SyncTask}, users are not reloaded from storage. Instead,
+ * only the caches of holders which inherit from one of the changed groups are
+ * invalidated.</p>
+ */
+public class TargetedSyncTask implements Runnable {
+    private final LuckPermsPlugin plugin;
+    private final Set<String> groups;
+    private final Set<String> tracks;
+
+    public TargetedSyncTask(LuckPermsPlugin plugin, Set<String> groups, Set<String> tracks) {
+        this.plugin = plugin;
+        this.groups = new HashSet<>();
+        for (String group : groups) {
+            this.groups.add(group.toLowerCase(Locale.ROOT));
+        }
+        this.tracks = tracks;
+    }
+
+    /**
+     * Runs the update task
+     *
+     * <p>Called <b>async</b>.</p>
+     */
+    @Override
+    public void run() {
+        if (this.plugin.getEventDispatcher().dispatchPreSync(false)) {
+            return;
+        }
+
+        // Reload the changed groups
+        for (String group : this.groups) {
+            if (!this.plugin.getStorage().loadGroup(group).join().isPresent()) {
+                // the group has been deleted - we can't handle that here, so fallback to a full sync
+                // (which will dispatch its own sync events)
+                this.plugin.getSyncTaskBuffer().request();
+                return;
+            }
+        }
+
+        // Reload the changed tracks
+        for (String track : this.tracks) {
+            if (!this.plugin.getStorage().loadTrack(track).join().isPresent()) {
+                this.plugin.getSyncTaskBuffer().request();
+                return;
+            }
+        }
+
+        if (!this.groups.isEmpty()) {
+            // Invalidate the caches of any holders which inherit from the changed groups
+            InheritanceGraph graph = this.plugin.getInheritanceGraphFactory().getGraph(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL);
+            for (Group group : this.plugin.getGroupManager().getAll().values()) {
+                if (inheritsChangedGroup(graph, group)) {
+                    group.getCachedData().invalidate();
+                }
+            }
+            for (User user : this.plugin.getUserManager().getAll().values()) {
+                if (inheritsChangedGroup(graph, user)) {
+                    user.getCachedData().invalidate();
+                }
+            }
+
+            this.plugin.performPlatformDataSync();
+        }
+
+        this.plugin.getEventDispatcher().dispatchPostSync();
+    }
+
+    private boolean inheritsChangedGroup(InheritanceGraph graph, PermissionHolder holder) {
+        for (PermissionHolder inherited : graph.traverse(holder)) {
+            if (inherited instanceof Group && this.groups.contains(((Group) inherited).getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
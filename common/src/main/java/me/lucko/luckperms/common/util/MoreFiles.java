@@ -26,10 +26,12 @@
 package me.lucko.luckperms.common.util;
 
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 public final class MoreFiles {
     private MoreFiles() {}
@@ -69,6 +71,14 @@ public final class MoreFiles {
         return path;
     }
 
+    public static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     public static void deleteDirectory(Path path) throws IOException {
         if (!Files.exists(path) || !Files.isDirectory(path)) {
             return;
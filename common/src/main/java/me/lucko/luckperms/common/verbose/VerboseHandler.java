@@ -27,6 +27,8 @@ package me.lucko.luckperms.common.verbose;
 
 import me.lucko.luckperms.common.cacheddata.result.StringResult;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
 import me.lucko.luckperms.common.sender.Sender;
@@ -36,33 +38,61 @@ import me.lucko.luckperms.common.verbose.event.PermissionCheckEvent;
 import me.lucko.luckperms.common.verbose.event.VerboseEvent;
 import net.luckperms.api.query.QueryOptions;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Accepts {@link VerboseEvent}s and passes them onto registered {@link VerboseListener}s.
+ *
+ * <p>Checks can optionally be sampled, and events are tested against the listener
+ * filters before they are queued, so the cost of verbose is proportional to the
+ * number of checks actually being recorded.</p>
  */
 public class VerboseHandler implements AutoCloseable {
 
     /** A map of currently registered listeners */
     private final Map<UUID, VerboseListener> listeners;
     /** A queue of verbose events to be handled */
-    private final Queue<VerboseEvent> queue;
+    private final Queue<QueuedEvent> queue;
+    /** The number of events currently in the queue */
+    private final AtomicInteger queueSize = new AtomicInteger(0);
     /** If there are any listeners registered */
     private boolean listening = false;
     /** The tick task */
     private final SchedulerTask task;
 
+    /** Only one in every sampleRate checks is offered to listeners */
+    private int sampleRate = 1;
+    /** If a stack trace should be captured for each check */
+    private boolean captureTraces = true;
+    /** The maximum number of events to hold in the queue between flushes */
+    private int maxQueueSize = 10000;
+
     public VerboseHandler(SchedulerAdapter scheduler) {
         this.listeners = new ConcurrentHashMap<>();
         this.queue = new ConcurrentLinkedQueue<>();
         this.task = scheduler.asyncRepeating(this::tick, 100, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Applies settings from the plugin configuration.
+     *
+     * @param configuration the configuration
+     */
+    public void configure(LuckPermsConfiguration configuration) {
+        this.sampleRate = Math.max(1, configuration.get(ConfigKeys.VERBOSE_SAMPLE_RATE));
+        this.captureTraces = configuration.get(ConfigKeys.VERBOSE_CAPTURE_STACK_TRACES);
+        this.maxQueueSize = Math.max(1, configuration.get(ConfigKeys.VERBOSE_QUEUE_SIZE));
+    }
+
     /**
      * Offers permission check data to the handler, to be eventually passed onto listeners.
      *
@@ -77,16 +107,14 @@ public class VerboseHandler implements AutoCloseable {
      */
     public void offerPermissionCheckEvent(CheckOrigin origin, VerboseCheckTarget checkTarget, QueryOptions checkQueryOptions, String permission, TristateResult result) {
         // don't bother even processing the check if there are no listeners registered
-        if (!this.listening) {
+        if (!this.listening || !sample()) {
             return;
         }
 
         long time = System.currentTimeMillis();
-        Throwable trace = new Throwable();
         String thread = Thread.currentThread().getName();
 
-        // add the check data to a queue to be processed later.
-        this.queue.offer(new PermissionCheckEvent(origin, checkTarget, checkQueryOptions, time, trace, thread, permission, result));
+        offer(new PermissionCheckEvent(origin, checkTarget, checkQueryOptions, time, null, thread, permission, result));
     }
 
     /**
@@ -103,16 +131,52 @@ public class VerboseHandler implements AutoCloseable {
      */
     public void offerMetaCheckEvent(CheckOrigin origin, VerboseCheckTarget checkTarget, QueryOptions checkQueryOptions, String key, StringResult<?> result) {
         // don't bother even processing the check if there are no listeners registered
-        if (!this.listening) {
+        if (!this.listening || !sample()) {
             return;
         }
 
         long time = System.currentTimeMillis();
-        Throwable trace = new Throwable();
         String thread = Thread.currentThread().getName();
 
+        offer(new MetaCheckEvent(origin, checkTarget, checkQueryOptions, time, null, thread, key, result));
+    }
+
+    private boolean sample() {
+        int sampleRate = this.sampleRate;
+        return sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    private void offer(VerboseEvent event) {
+        // test the event against the listener filters now, so events which won't be
+        // recorded by any listener are dropped before a stack trace is captured
+        List<VerboseListener> matched = null;
+        for (VerboseListener listener : this.listeners.values()) {
+            if (listener.testEvent(event)) {
+                if (matched == null) {
+                    matched = new ArrayList<>(1);
+                }
+                matched.add(listener);
+            }
+        }
+        if (matched == null) {
+            return;
+        }
+
+        // drop the event if the queue is full, the listeners are falling behind
+        if (this.queueSize.incrementAndGet() > this.maxQueueSize) {
+            this.queueSize.decrementAndGet();
+            for (VerboseListener listener : matched) {
+                listener.recordDroppedEvent();
+            }
+            return;
+        }
+
+        if (this.captureTraces) {
+            event.setCheckTrace(new Throwable());
+        }
+
         // add the check data to a queue to be processed later.
-        this.queue.offer(new MetaCheckEvent(origin, checkTarget, checkQueryOptions, time, trace, thread, key, result));
+        this.queue.offer(new QueuedEvent(event, matched));
     }
 
     /**
@@ -158,9 +222,13 @@ public class VerboseHandler implements AutoCloseable {
      * Flushes the pending events to listeners.
      */
     public synchronized void flush() {
-        for (VerboseEvent e; (e = this.queue.poll()) != null; ) {
-            for (VerboseListener listener : this.listeners.values()) {
-                listener.acceptEvent(e);
+        for (QueuedEvent e; (e = this.queue.poll()) != null; ) {
+            this.queueSize.decrementAndGet();
+            for (VerboseListener listener : e.listeners) {
+                // skip listeners which have since been unregistered
+                if (this.listeners.get(listener.getNotifiedSender().getUniqueId()) == listener) {
+                    listener.acceptEvent(e.event);
+                }
             }
         }
     }
@@ -170,4 +238,17 @@ public class VerboseHandler implements AutoCloseable {
         this.task.cancel();
     }
 
+    /**
+     * A queued event, and the listeners whose filter it passed.
+     */
+    private static final class QueuedEvent {
+        private final VerboseEvent event;
+        private final List<VerboseListener> listeners;
+
+        QueuedEvent(VerboseEvent event, List<VerboseListener> listeners) {
+            this.event = event;
+            this.listeners = listeners;
+        }
+    }
+
 }
@@ -113,6 +113,9 @@ public class VerboseListener {
     // the number of events we have processed and accepted, based on the filter rules for this
     // listener
     private final AtomicInteger matchedCounter = new AtomicInteger(0);
+    // the number of events which passed the filter, but were dropped because the
+    // handler queue was full
+    private final AtomicInteger droppedCounter = new AtomicInteger(0);
     // the events which passed the filter, up to a max size of #DATA_TRUNCATION
     private final List<VerboseEvent> results = new ArrayList<>(DATA_TRUNCATION / 10);
 
@@ -123,19 +126,35 @@ public class VerboseListener {
     }
 
     /**
-     * Accepts and processes verbose events.
+     * Tests whether a verbose event passes the filter for this listener.
      *
-     * @param event the event to process
+     * <p>Called from the thread where the check took place, before the event is queued.</p>
+     *
+     * @param event the event to test
+     * @return true if the event should be passed to {@link #acceptEvent(VerboseEvent)}
      */
-    public void acceptEvent(VerboseEvent event) {
+    public boolean testEvent(VerboseEvent event) {
         // increment handled counter
         this.counter.incrementAndGet();
 
-        // check if the data passes our filter
-        if (!this.filter.evaluate(event)) {
-            return;
-        }
+        return this.filter.evaluate(event);
+    }
 
+    /**
+     * Records that an event was dropped before it could be processed.
+     */
+    public void recordDroppedEvent() {
+        this.droppedCounter.incrementAndGet();
+    }
+
+    /**
+     * Accepts and processes verbose events.
+     *
+     * <p>The event must have already passed {@link #testEvent(VerboseEvent)}.</p>
+     *
+     * @param event the event to process
+     */
+    public void acceptEvent(VerboseEvent event) {
         // increment the matched filter
         this.matchedCounter.incrementAndGet();
 
@@ -208,17 +227,20 @@ public class VerboseListener {
 
         hover.add(Message.VERBOSE_LOG_HOVER_THREAD.build(event.getCheckThread()));
 
-        hover.add(Message.VERBOSE_LOG_HOVER_TRACE_TITLE.build());
+        StackTraceElement[] trace = event.getCheckTrace();
+        if (trace.length != 0) {
+            hover.add(Message.VERBOSE_LOG_HOVER_TRACE_TITLE.build());
 
-        Consumer<StackTraceElement> printer = StackTracePrinter.elementToString(str -> hover.add(Message.VERBOSE_LOG_HOVER_TRACE_CONTENT.build(str)));
-        int overflow;
-        if (shouldFilterStackTrace(event)) {
-            overflow = CHAT_FILTERED_PRINTER.process(event.getCheckTrace(), printer);
-        } else {
-            overflow = CHAT_UNFILTERED_PRINTER.process(event.getCheckTrace(), printer);
-        }
-        if (overflow != 0) {
-            hover.add(Message.VERBOSE_LOG_HOVER_TRACE_OVERFLOW.build(overflow));
+            Consumer<StackTraceElement> printer = StackTracePrinter.elementToString(str -> hover.add(Message.VERBOSE_LOG_HOVER_TRACE_CONTENT.build(str)));
+            int overflow;
+            if (shouldFilterStackTrace(event)) {
+                overflow = CHAT_FILTERED_PRINTER.process(trace, printer);
+            } else {
+                overflow = CHAT_UNFILTERED_PRINTER.process(trace, printer);
+            }
+            if (overflow != 0) {
+                hover.add(Message.VERBOSE_LOG_HOVER_TRACE_OVERFLOW.build(overflow));
+            }
         }
 
         // send the message
@@ -246,7 +268,7 @@ public class VerboseListener {
         String startDate = DATE_FORMAT.format(this.startTime);
         String endDate = DATE_FORMAT.format(Instant.now());
         String duration = DurationFormatter.CONCISE.formatString(Duration.between(this.startTime, Instant.now()));
-        boolean truncated = this.matchedCounter.get() > this.results.size();
+        boolean truncated = this.matchedCounter.get() + this.droppedCounter.get() > this.results.size();
 
         JObject metadata = new JObject()
                 .add("startTime", startDate)
@@ -254,6 +276,7 @@ public class VerboseListener {
                 .add("duration", duration)
                 .add("count", new JObject()
                         .add("matched", this.matchedCounter.get())
+                        .add("dropped", this.droppedCounter.get())
                         .add("total", this.counter.get())
                 )
                 .add("uploader", new JObject()
@@ -291,4 +314,8 @@ public class VerboseListener {
     public int getMatchedCount() {
         return this.matchedCounter.get();
     }
+
+    public int getDroppedCount() {
+        return this.droppedCounter.get();
+    }
 }
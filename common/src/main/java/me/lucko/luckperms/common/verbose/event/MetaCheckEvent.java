@@ -31,6 +31,7 @@ import me.lucko.luckperms.common.node.utils.NodeJsonSerializer;
 import me.lucko.luckperms.common.util.gson.JObject;
 import me.lucko.luckperms.common.verbose.VerboseCheckTarget;
 import net.luckperms.api.query.QueryOptions;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.Locale;
 
@@ -46,7 +47,7 @@ public class MetaCheckEvent extends VerboseEvent {
      */
     private final StringResult<?> result;
 
-    public MetaCheckEvent(CheckOrigin origin, VerboseCheckTarget checkTarget, QueryOptions checkQueryOptions, long checkTime, Throwable checkTrace, String checkThread, String key, StringResult<?> result) {
+    public MetaCheckEvent(CheckOrigin origin, VerboseCheckTarget checkTarget, QueryOptions checkQueryOptions, long checkTime, @Nullable Throwable checkTrace, String checkThread, String key, StringResult<?> result) {
         super(origin, checkTarget, checkQueryOptions, checkTime, checkTrace, checkThread);
         this.key = key;
         this.result = result;
@@ -35,6 +35,7 @@ import net.luckperms.api.cacheddata.Result;
 import net.luckperms.api.context.Context;
 import net.luckperms.api.query.QueryMode;
 import net.luckperms.api.query.QueryOptions;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.Locale;
 import java.util.Objects;
@@ -44,6 +45,7 @@ import java.util.UUID;
  * Represents a verbose event.
  */
 public abstract class VerboseEvent implements VariableEvaluator {
+    private static final StackTraceElement[] NO_TRACE = new StackTraceElement[0];
 
     /**
      * The origin of the check
@@ -66,16 +68,16 @@ public abstract class VerboseEvent implements VariableEvaluator {
     private final long checkTime;
 
     /**
-     * The throwable created when the check took place
+     * The throwable created when the check took place, or null if no trace was captured
      */
-    private final Throwable checkTrace;
+    private @Nullable Throwable checkTrace;
 
     /**
      * The name of the thread where the check took place
      */
     private final String checkThread;
 
-    protected VerboseEvent(CheckOrigin origin, VerboseCheckTarget checkTarget, QueryOptions checkQueryOptions, long checkTime, Throwable checkTrace, String checkThread) {
+    protected VerboseEvent(CheckOrigin origin, VerboseCheckTarget checkTarget, QueryOptions checkQueryOptions, long checkTime, @Nullable Throwable checkTrace, String checkThread) {
         this.origin = origin;
         this.checkTarget = checkTarget;
         this.checkQueryOptions = checkQueryOptions;
@@ -103,7 +105,16 @@ public abstract class VerboseEvent implements VariableEvaluator {
     }
 
     public StackTraceElement[] getCheckTrace() {
-        return this.checkTrace.getStackTrace();
+        return this.checkTrace == null ? NO_TRACE : this.checkTrace.getStackTrace();
+    }
+
+    /**
+     * Sets the trace for the check. Must be called on the thread where the check took place.
+     *
+     * @param checkTrace the trace
+     */
+    public void setCheckTrace(Throwable checkTrace) {
+        this.checkTrace = checkTrace;
     }
 
     public String getCheckThread() {
@@ -0,0 +1,6 @@
+-- LuckPerms H2 Schema (action log indexes)
+
+CREATE INDEX ON `{prefix}actions` (`time`);
+CREATE INDEX ON `{prefix}actions` (`actor_uuid`);
+CREATE INDEX ON `{prefix}actions` (`acted_uuid`);
+CREATE INDEX ON `{prefix}actions` (`type`, `acted_name`);
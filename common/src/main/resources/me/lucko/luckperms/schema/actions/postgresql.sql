@@ -0,0 +1,6 @@
+-- LuckPerms PostgreSQL Schema (action log indexes)
+
+CREATE INDEX "{prefix}actions_time" ON "{prefix}actions" ("time");
+CREATE INDEX "{prefix}actions_actor_uuid" ON "{prefix}actions" ("actor_uuid");
+CREATE INDEX "{prefix}actions_acted_uuid" ON "{prefix}actions" ("acted_uuid");
+CREATE INDEX "{prefix}actions_type_acted_name" ON "{prefix}actions" ("type", "acted_name");
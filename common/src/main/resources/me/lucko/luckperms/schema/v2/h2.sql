@@ -0,0 +1,27 @@
+-- LuckPerms H2 Schema (v2 user permissions)
+
+CREATE TABLE `{prefix}permission_dictionary` (
+  `id`         INT AUTO_INCREMENT NOT NULL,
+  `permission` VARCHAR(200)       NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE (`permission`)
+);
+
+CREATE TABLE `{prefix}context_dictionary` (
+  `id`       INT AUTO_INCREMENT NOT NULL,
+  `server`   VARCHAR(36)        NOT NULL,
+  `world`    VARCHAR(64)        NOT NULL,
+  `contexts` VARCHAR(200)       NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE (`server`, `world`, `contexts`)
+);
+
+CREATE TABLE `{prefix}user_nodes` (
+  `uuid`          BINARY(16) NOT NULL,
+  `permission_id` INT        NOT NULL,
+  `context_id`    INT        NOT NULL,
+  `value`         BOOL       NOT NULL,
+  `expiry`        BIGINT     NOT NULL,
+  PRIMARY KEY (`uuid`, `permission_id`, `context_id`, `value`, `expiry`)
+);
+CREATE INDEX ON `{prefix}user_nodes` (`permission_id`);
@@ -0,0 +1,27 @@
+-- LuckPerms MySQL Schema (v2 user permissions)
+
+CREATE TABLE `{prefix}permission_dictionary` (
+  `id`         INT AUTO_INCREMENT NOT NULL,
+  `permission` VARCHAR(200) COLLATE utf8mb4_bin NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `{prefix}permission_dictionary_permission` (`permission`)
+) DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE `{prefix}context_dictionary` (
+  `id`       INT AUTO_INCREMENT NOT NULL,
+  `server`   VARCHAR(36) COLLATE utf8mb4_bin NOT NULL,
+  `world`    VARCHAR(64) COLLATE utf8mb4_bin NOT NULL,
+  `contexts` VARCHAR(200) COLLATE utf8mb4_bin NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `{prefix}context_dictionary_contexts` (`server`, `world`, `contexts`)
+) DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE `{prefix}user_nodes` (
+  `uuid`          BINARY(16) NOT NULL,
+  `permission_id` INT        NOT NULL,
+  `context_id`    INT        NOT NULL,
+  `value`         BOOL       NOT NULL,
+  `expiry`        BIGINT     NOT NULL,
+  PRIMARY KEY (`uuid`, `permission_id`, `context_id`, `value`, `expiry`)
+) DEFAULT CHARSET = utf8mb4;
+CREATE INDEX `{prefix}user_nodes_permission` ON `{prefix}user_nodes` (`permission_id`);
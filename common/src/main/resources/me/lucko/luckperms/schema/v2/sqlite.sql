@@ -0,0 +1,24 @@
+-- LuckPerms SQLite Schema (v2 user permissions)
+
+CREATE TABLE `{prefix}permission_dictionary` (
+  `id`         INTEGER PRIMARY KEY NOT NULL,
+  `permission` VARCHAR(200)        NOT NULL UNIQUE
+);
+
+CREATE TABLE `{prefix}context_dictionary` (
+  `id`       INTEGER PRIMARY KEY NOT NULL,
+  `server`   VARCHAR(36)         NOT NULL,
+  `world`    VARCHAR(64)         NOT NULL,
+  `contexts` VARCHAR(200)        NOT NULL,
+  UNIQUE (`server`, `world`, `contexts`)
+);
+
+CREATE TABLE `{prefix}user_nodes` (
+  `uuid`          BLOB    NOT NULL,
+  `permission_id` INTEGER NOT NULL,
+  `context_id`    INTEGER NOT NULL,
+  `value`         BOOL    NOT NULL,
+  `expiry`        BIGINT  NOT NULL,
+  PRIMARY KEY (`uuid`, `permission_id`, `context_id`, `value`, `expiry`)
+) WITHOUT ROWID;
+CREATE INDEX `{prefix}user_nodes_permission` ON `{prefix}user_nodes` (`permission_id`);
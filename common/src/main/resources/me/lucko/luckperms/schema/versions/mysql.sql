@@ -0,0 +1,7 @@
+-- LuckPerms MySQL Schema (user version stamps)
+
+CREATE TABLE `{prefix}user_versions` (
+  `uuid`    VARCHAR(36) NOT NULL,
+  `version` BIGINT      NOT NULL,
+  PRIMARY KEY (`uuid`)
+) DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,6 @@
+-- LuckPerms PostgreSQL Schema (user version stamps)
+
+CREATE TABLE "{prefix}user_versions" (
+  "uuid"    VARCHAR(36) PRIMARY KEY NOT NULL,
+  "version" BIGINT                  NOT NULL
+);
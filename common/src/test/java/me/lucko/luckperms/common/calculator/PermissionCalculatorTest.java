@@ -25,6 +25,7 @@
 
 package me.lucko.luckperms.common.calculator;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import me.lucko.luckperms.common.cacheddata.CacheMetadata;
@@ -35,6 +36,8 @@ import me.lucko.luckperms.common.calculator.processor.PermissionProcessor;
 import me.lucko.luckperms.common.calculator.processor.RegexProcessor;
 import me.lucko.luckperms.common.calculator.processor.SpongeWildcardProcessor;
 import me.lucko.luckperms.common.calculator.processor.WildcardProcessor;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.node.factory.NodeBuilders;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
@@ -50,10 +53,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -90,6 +95,8 @@ public class PermissionCalculatorTest {
             // regex
             .put("r=hello\\d+", true)
             .put("R=rege(x(es)?|xps?)[1-5]", false)
+            .put("r=opt?ional\\.(one|two)", true)
+            .put("r=alt(s)?\\.(a|b)|other", false)
 
             // override
             .put("overridetest.*", true)
@@ -101,11 +108,14 @@ public class PermissionCalculatorTest {
             ));
 
     @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsConfiguration configuration;
 
     @BeforeEach
     public void setupMocks() {
         lenient().when(this.plugin.getVerboseHandler()).thenReturn(mock(VerboseHandler.class));
         lenient().when(this.plugin.getPermissionRegistry()).thenReturn(mock(PermissionRegistry.class));
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.configuration.get(ConfigKeys.PERMISSION_CALCULATOR_CACHE_SIZE)).thenReturn(0);
     }
 
     private PermissionCalculator createCalculator(PermissionProcessor... processors) {
@@ -138,13 +148,16 @@ public class PermissionCalculatorTest {
     @ParameterizedTest
     @CsvSource({
             "one.two.three.four, true, direct",
+            "one.two.three.four.five, false, wildcard",
             "one.two.three.test, false, wildcard",
+            "one.two.three.test.test, false, wildcard",
             "one.two.three.*, false, direct",
             "one.two.three, true, direct",
             "one.two.test, false, wildcard",
             "one.two.*, false, direct",
             "one.two, true, direct",
             "one.test, false, wildcard",
+            "one.twothree.test, false, wildcard",
             "one.*, false, direct",
             "one, true, direct",
             "test, false, wildcard",
@@ -203,6 +216,13 @@ public class PermissionCalculatorTest {
             "regexes2, FALSE",
             "regexp3, FALSE",
             "regexps4, FALSE",
+            "optional.one, TRUE",
+            "opional.two, TRUE",
+            "optional.three, UNDEFINED",
+            "alts.a, FALSE",
+            "alt.b, FALSE",
+            "alt.c, UNDEFINED",
+            "other, FALSE",
     })
     public void testRegex(String node, Tristate expected) {
         PermissionCalculator calculator = createCalculator(new DirectProcessor(), new RegexProcessor());
@@ -246,4 +266,67 @@ public class PermissionCalculatorTest {
         assertSame(WildcardProcessor.class, overriddenResult.processorClass());
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {0, 100})
+    public void testLookupCache(int cacheSize) {
+        lenient().when(this.configuration.get(ConfigKeys.PERMISSION_CALCULATOR_CACHE_SIZE)).thenReturn(cacheSize);
+
+        AtomicInteger lookups = new AtomicInteger();
+        PermissionProcessor countingProcessor = (prev, permission) -> {
+            lookups.incrementAndGet();
+            return prev;
+        };
+
+        PermissionCalculator calculator = createCalculator(new DirectProcessor(), countingProcessor);
+        calculator.setSourcePermissions(EXAMPLE_PERMISSIONS);
+
+        assertEquals(Tristate.TRUE, calculator.checkPermission("test.node1", CheckOrigin.INTERNAL).result());
+        assertEquals(Tristate.TRUE, calculator.checkPermission("test.node1", CheckOrigin.INTERNAL).result());
+        assertEquals(Tristate.FALSE, calculator.checkPermission("test.node2", CheckOrigin.INTERNAL).result());
+        assertEquals(2, lookups.get());
+
+        calculator.invalidateCache();
+        calculator.checkPermission("test.node1", CheckOrigin.INTERNAL);
+        assertEquals(3, lookups.get());
+    }
+
+    @Test
+    public void testLookupCacheStats() {
+        lenient().when(this.configuration.get(ConfigKeys.PERMISSION_CALCULATOR_CACHE_SIZE)).thenReturn(2);
+
+        PermissionCalculator calculator = createCalculator(new DirectProcessor());
+        calculator.setSourcePermissions(EXAMPLE_PERMISSIONS);
+
+        calculator.checkPermission("test.node1", CheckOrigin.INTERNAL);
+        calculator.checkPermission("test.node1", CheckOrigin.INTERNAL);
+        calculator.checkPermission("test.node1", CheckOrigin.INTERNAL);
+        calculator.checkPermission("test.node2", CheckOrigin.INTERNAL);
+
+        CacheStats stats = calculator.getCacheStats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(0, stats.evictionCount());
+
+        // exceed the size bound of the cache
+        calculator.checkPermission("test.node3", CheckOrigin.INTERNAL);
+        calculator.checkPermission("test.node4", CheckOrigin.INTERNAL);
+        calculator.checkPermission("test.node5", CheckOrigin.INTERNAL);
+
+        stats = calculator.getCacheStats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(5, stats.missCount());
+        assertEquals(3, stats.evictionCount());
+    }
+
+    @Test
+    public void testLookupCacheStatsUnbounded() {
+        PermissionCalculator calculator = createCalculator(new DirectProcessor());
+        calculator.setSourcePermissions(EXAMPLE_PERMISSIONS);
+
+        calculator.checkPermission("test.node1", CheckOrigin.INTERNAL);
+        calculator.checkPermission("test.node1", CheckOrigin.INTERNAL);
+
+        assertEquals(CacheStats.empty(), calculator.getCacheStats());
+    }
+
 }
@@ -0,0 +1,65 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SubscriptionStatisticsTest {
+
+    @Test
+    public void testRecord() {
+        SubscriptionStatistics stats = new SubscriptionStatistics();
+        stats.record(TimeUnit.MICROSECONDS.toNanos(50));
+        stats.record(TimeUnit.MILLISECONDS.toNanos(1));
+        stats.record(TimeUnit.MILLISECONDS.toNanos(7));
+        stats.record(TimeUnit.MILLISECONDS.toNanos(200));
+
+        assertEquals(4, stats.getInvocations());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), stats.getMaxNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(208050), stats.getTotalNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(208050) / 4, stats.getAverageNanos());
+        assertArrayEquals(new long[]{1, 1, 0, 1, 0, 1}, stats.getHistogram());
+    }
+
+    @Test
+    public void testReset() {
+        SubscriptionStatistics stats = new SubscriptionStatistics();
+        stats.record(TimeUnit.MILLISECONDS.toNanos(3));
+        stats.reset();
+
+        assertEquals(0, stats.getInvocations());
+        assertEquals(0, stats.getTotalNanos());
+        assertEquals(0, stats.getMaxNanos());
+        assertEquals(0, stats.getAverageNanos());
+        assertArrayEquals(new long[6], stats.getHistogram());
+    }
+
+}
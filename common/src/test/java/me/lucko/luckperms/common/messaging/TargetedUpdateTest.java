@@ -0,0 +1,218 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonObject;
+import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
+import me.lucko.luckperms.common.calculator.PermissionCalculator;
+import me.lucko.luckperms.common.calculator.processor.DirectProcessor;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.graph.TraversalAlgorithm;
+import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
+import me.lucko.luckperms.common.messaging.message.TargetedUpdateMessageImpl;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.PrimaryGroupHolder;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.model.manager.user.StandardUserManager;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import me.lucko.luckperms.common.storage.Storage;
+import me.lucko.luckperms.common.tasks.SyncTask;
+import me.lucko.luckperms.common.tasks.TargetedSyncTask;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.messenger.Messenger;
+import net.luckperms.api.messenger.MessengerProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TargetedUpdateTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsBootstrap bootstrap;
+    @Mock private LuckPermsConfiguration configuration;
+    @Mock private EventDispatcher eventDispatcher;
+    @Mock private SchedulerAdapter scheduler;
+    @Mock private Storage storage;
+    @Mock private SyncTask.Buffer syncTaskBuffer;
+
+    private StandardGroupManager groupManager;
+    private StandardUserManager userManager;
+
+    @BeforeEach
+    public void setupMocks() {
+        this.groupManager = new StandardGroupManager(this.plugin);
+        this.userManager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        lenient().when(this.plugin.getGroupManager()).thenReturn((GroupManager) this.groupManager);
+        //noinspection unchecked,rawtypes
+        lenient().when(this.plugin.getUserManager()).thenReturn((UserManager) this.userManager);
+        lenient().when(this.plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(this.plugin));
+        lenient().when(this.plugin.getCalculatorFactory()).thenReturn((queryOptions, metadata) ->
+                new PermissionCalculator(this.plugin, metadata, ImmutableList.of(new DirectProcessor())));
+        lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.plugin.getEventDispatcher()).thenReturn(this.eventDispatcher);
+        lenient().when(this.plugin.getLogger()).thenReturn(mock(PluginLogger.class));
+        lenient().when(this.plugin.getStorage()).thenReturn(this.storage);
+        lenient().when(this.plugin.getSyncTaskBuffer()).thenReturn(this.syncTaskBuffer);
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(this.scheduler);
+
+        lenient().when(this.configuration.get(ConfigKeys.APPLYING_SHORTHAND)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.SHARED_GROUP_PERMISSION_LAYERS)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.PERMISSION_CALCULATOR_CACHE_SIZE)).thenReturn(0);
+        lenient().when(this.configuration.get(ConfigKeys.CONTEXT_SATISFY_MODE)).thenReturn(ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY);
+        lenient().when(this.configuration.get(ConfigKeys.GROUP_WEIGHTS)).thenReturn(Collections.emptyMap());
+        lenient().when(this.configuration.get(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM)).thenReturn(TraversalAlgorithm.DEPTH_FIRST_PRE_ORDER);
+        lenient().when(this.configuration.get(ConfigKeys.POST_TRAVERSAL_INHERITANCE_SORT)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.AllParentsByWeight::new);
+        lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION_METHOD)).thenReturn("parents-by-weight");
+    }
+
+    @Test
+    public void testEncodeAndDecode() {
+        UUID id = UUID.randomUUID();
+        TargetedUpdateMessageImpl message = new TargetedUpdateMessageImpl(id, ImmutableSet.of("admin", "default"), ImmutableSet.of("staff"));
+
+        JsonObject json = GsonProvider.normal().fromJson(message.asEncodedString(), JsonObject.class);
+        assertEquals(id.toString(), json.get("id").getAsString());
+        assertEquals(TargetedUpdateMessageImpl.TYPE, json.get("type").getAsString());
+
+        TargetedUpdateMessageImpl decoded = TargetedUpdateMessageImpl.decode(json.get("content"), id);
+        assertEquals(id, decoded.getId());
+        assertEquals(ImmutableSet.of("admin", "default"), decoded.getGroups());
+        assertEquals(ImmutableSet.of("staff"), decoded.getTracks());
+
+        // missing lists are treated as empty
+        TargetedUpdateMessageImpl empty = TargetedUpdateMessageImpl.decode(new JsonObject(), id);
+        assertEquals(ImmutableSet.of(), empty.getGroups());
+        assertEquals(ImmutableSet.of(), empty.getTracks());
+    }
+
+    @Test
+    public void testIncomingMessageSchedulesTargetedSync() {
+        MessengerProvider provider = mock(MessengerProvider.class);
+        when(provider.obtain(any())).thenReturn(mock(Messenger.class));
+        LuckPermsMessagingService service = new LuckPermsMessagingService(this.plugin, provider);
+
+        String encoded = new TargetedUpdateMessageImpl(UUID.randomUUID(), ImmutableSet.of("admin"), ImmutableSet.of()).asEncodedString();
+        assertTrue(service.consumeIncomingMessageAsString(encoded));
+
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.scheduler).async(task.capture());
+        assertInstanceOf(TargetedSyncTask.class, task.getValue());
+        verify(this.syncTaskBuffer, never()).request();
+
+        // the same message shouldn't be processed twice
+        assertFalse(service.consumeIncomingMessageAsString(encoded));
+    }
+
+    @Test
+    public void testTargetedSyncInvalidatesInheritingHolders() {
+        Group member = this.groupManager.getOrMake("member");
+        member.normalData().add(Permission.builder().permission("member.perm").build());
+        Group vip = this.groupManager.getOrMake("vip");
+        vip.normalData().add(Inheritance.builder().group("member").build());
+        this.groupManager.getOrMake("admin");
+
+        User vipUser = this.userManager.getOrMake(UUID.randomUUID());
+        vipUser.normalData().add(Inheritance.builder().group("vip").build());
+        User adminUser = this.userManager.getOrMake(UUID.randomUUID());
+        adminUser.normalData().add(Inheritance.builder().group("admin").build());
+
+        PermissionCache vipData = vipUser.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL);
+        PermissionCache adminData = adminUser.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL);
+
+        when(this.storage.loadGroup("member")).thenReturn(CompletableFuture.completedFuture(Optional.of(member)));
+        new TargetedSyncTask(this.plugin, ImmutableSet.of("Member"), ImmutableSet.of()).run();
+
+        // only users which inherit from the changed group are refreshed
+        assertNotSame(vipData, vipUser.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL));
+        assertSame(adminData, adminUser.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_NON_CONTEXTUAL));
+
+        verify(this.plugin).performPlatformDataSync();
+        verify(this.syncTaskBuffer, never()).request();
+        verify(this.eventDispatcher).dispatchPreSync(false);
+        verify(this.eventDispatcher).dispatchPostSync();
+    }
+
+    @Test
+    public void testTargetedSyncCancelled() {
+        when(this.eventDispatcher.dispatchPreSync(false)).thenReturn(true);
+        new TargetedSyncTask(this.plugin, ImmutableSet.of("member"), ImmutableSet.of()).run();
+
+        verify(this.storage, never()).loadGroup(any());
+        verify(this.plugin, never()).performPlatformDataSync();
+        verify(this.eventDispatcher, never()).dispatchPostSync();
+    }
+
+    @Test
+    public void testTargetedSyncFallsBackToFullSync() {
+        when(this.storage.loadGroup("deleted")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        new TargetedSyncTask(this.plugin, ImmutableSet.of("deleted"), ImmutableSet.of()).run();
+
+        verify(this.syncTaskBuffer).request();
+        verify(this.plugin, never()).performPlatformDataSync();
+        verify(this.eventDispatcher, never()).dispatchPostSync();
+    }
+
+}
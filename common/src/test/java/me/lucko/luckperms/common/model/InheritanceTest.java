@@ -25,6 +25,9 @@
 
 package me.lucko.luckperms.common.model;
 
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.calculator.PermissionCalculator;
+import me.lucko.luckperms.common.calculator.processor.DirectProcessor;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.event.EventDispatcher;
@@ -33,11 +36,15 @@ import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
 import me.lucko.luckperms.common.model.manager.group.GroupManager;
 import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
 import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
 import me.lucko.luckperms.common.node.types.Weight;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.query.QueryOptionsImpl;
 import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -46,7 +53,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -126,6 +136,88 @@ public class InheritanceTest {
         assertEquals(expectedList, groups);
     }
 
+    @Test
+    public void testInheritanceTreeInvalidation() {
+        when(this.configuration.get(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM)).thenReturn(TraversalAlgorithm.DEPTH_FIRST_PRE_ORDER);
+        when(this.configuration.get(ConfigKeys.POST_TRAVERSAL_INHERITANCE_SORT)).thenReturn(false);
+
+        Group member = this.groupManager.getOrMake("member");
+        Group vip = createGroup("vip", 5, member);
+        Group mod = createGroup("mod", 10, member);
+
+        PermissionHolder testHolder = this.groupManager.getOrMake("test");
+        testHolder.normalData().add(Inheritance.builder().group(vip.getName()).build());
+        testHolder.normalData().add(Inheritance.builder().group(mod.getName()).build());
+
+        assertEquals(Arrays.asList("mod", "member", "vip"), resolveInheritanceTree(testHolder));
+
+        // changing the weight of a group should change the order it is sorted into
+        vip.unsetNode(DataType.NORMAL, Weight.builder().weight(5).build());
+        vip.setNode(DataType.NORMAL, Weight.builder().weight(15).build(), false);
+        assertEquals(Arrays.asList("vip", "member", "mod"), resolveInheritanceTree(testHolder));
+
+        // changing the parents of a group should change its successors
+        Group admin = createGroup("admin", 20, member);
+        testHolder.setNode(DataType.NORMAL, Inheritance.builder().group(admin.getName()).build(), false);
+        assertEquals(Arrays.asList("admin", "member", "vip", "mod"), resolveInheritanceTree(testHolder));
+
+        testHolder.unsetNode(DataType.NORMAL, Inheritance.builder().group(vip.getName()).build());
+        assertEquals(Arrays.asList("admin", "member", "mod"), resolveInheritanceTree(testHolder));
+    }
+
+    @Test
+    public void testSharedPermissionLayers() {
+        when(this.configuration.get(ConfigKeys.SHARED_GROUP_PERMISSION_LAYERS)).thenReturn(true);
+        when(this.configuration.get(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM)).thenReturn(TraversalAlgorithm.DEPTH_FIRST_PRE_ORDER);
+        when(this.configuration.get(ConfigKeys.POST_TRAVERSAL_INHERITANCE_SORT)).thenReturn(false);
+        when(this.configuration.get(ConfigKeys.APPLYING_SHORTHAND)).thenReturn(true);
+        lenient().when(this.configuration.get(ConfigKeys.PERMISSION_CALCULATOR_CACHE_SIZE)).thenReturn(0);
+        lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.AllParentsByWeight::new);
+        lenient().when(this.plugin.getCalculatorFactory()).thenReturn((queryOptions, metadata) ->
+                new PermissionCalculator(this.plugin, metadata, ImmutableList.of(new DirectProcessor())));
+
+        Group member = this.groupManager.getOrMake("member");
+        member.normalData().add(Permission.builder().permission("member.perm").build());
+        member.normalData().add(Permission.builder().permission("shorthand.(a|b)").build());
+
+        Group vip = createGroup("vip", 5, member);
+        vip.normalData().add(Permission.builder().permission("vip.perm").build());
+        vip.normalData().add(Permission.builder().permission("member.perm").value(false).build());
+
+        Group mod = createGroup("mod", 10, member);
+        mod.normalData().add(Permission.builder().permission("shorthand.a").value(false).build());
+
+        User user = new User(UUID.randomUUID(), this.plugin);
+        user.normalData().add(Permission.builder().permission("Test.Perm").build());
+        user.normalData().add(Inheritance.builder().group(vip.getName()).build());
+        user.normalData().add(Inheritance.builder().group(mod.getName()).build());
+
+        assertEquals(exportPermissions(user), cachedPermissions(user));
+        assertEquals(Boolean.FALSE, cachedPermissions(user).get("member.perm"));
+        assertEquals(Boolean.FALSE, cachedPermissions(user).get("shorthand.a"));
+        assertEquals(Boolean.TRUE, cachedPermissions(user).get("shorthand.b"));
+
+        // the shared layers should be refreshed when an inherited group changes
+        member.setNode(DataType.NORMAL, Permission.builder().permission("member.other").build(), false);
+        user.getCachedData().invalidate();
+        assertEquals(exportPermissions(user), cachedPermissions(user));
+        assertEquals(Boolean.TRUE, cachedPermissions(user).get("member.other"));
+    }
+
+    private static Map<String, Boolean> exportPermissions(PermissionHolder holder) {
+        Map<String, Node> nodes = holder.exportPermissions(HashMap::new, QueryOptionsImpl.DEFAULT_CONTEXTUAL, true, true);
+        return nodes.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().getValue()));
+    }
+
+    private static Map<String, Boolean> cachedPermissions(PermissionHolder holder) {
+        return new HashMap<>(holder.getCachedData().getPermissionData(QueryOptionsImpl.DEFAULT_CONTEXTUAL).getPermissionMap());
+    }
+
+    private static List<String> resolveInheritanceTree(PermissionHolder holder) {
+        return holder.resolveInheritanceTree(QueryOptionsImpl.DEFAULT_CONTEXTUAL)
+                .stream().map(Group::getName).collect(Collectors.toList());
+    }
+
     private Group createGroup(String name, int weight, Group parent) {
         Group group = this.groupManager.getOrMake(name);
         group.normalData().add(Inheritance.builder().group(parent.getName()).build());
@@ -110,6 +110,34 @@ public class NodeMapTest {
         assertEquals(DataType.NORMAL, origin.getDataType());
     }
 
+    @Test
+    public void testFreezeAndThaw() {
+        NodeMapMutable map = new NodeMapMutable(this.mockHolder, DataType.NORMAL);
+
+        Node node = makeNode("test");
+        Node group = makeNode("group.test");
+        map.addAll(ImmutableList.of(node, group));
+        map.freeze();
+
+        assertEquals(2, map.size());
+        assertEquals(ImmutableSet.of(node, group), map.asSet());
+        assertEquals(ImmutableSet.of(group), map.inheritanceAsSet());
+
+        // modifying a frozen map should thaw it
+        Node other = makeNode("other");
+        assertEquals(ImmutableSet.of(other), map.add(other).getAdded());
+        assertEquals(ImmutableSet.of(group), map.remove(group).getRemoved());
+        assertEquals(ImmutableSet.of(node, other), map.asSet());
+        assertEquals(ImmutableSet.of(), map.inheritanceAsSet());
+
+        // setContent leaves the map frozen
+        map.setContent(ImmutableList.of(group));
+        assertEquals(ImmutableSet.of(group), map.asSet());
+        assertEquals(ImmutableSet.of(node), map.add(node).getAdded());
+        assertEquals(ImmutableSet.of(group), map.inheritanceAsSet());
+        assertEquals(2, map.size());
+    }
+
     @ParameterizedTest
     @CsvSource({
             "test, true, false",
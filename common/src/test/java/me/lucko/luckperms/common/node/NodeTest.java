@@ -41,6 +41,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -134,4 +135,26 @@ public class NodeTest {
         assertThrows(IllegalStateException.class, () -> node.metadata(key4));
     }
 
+    @Test
+    public void testInterning() {
+        NodeMetadataKey<String> key = NodeMetadataKey.of("test", String.class);
+
+        Node first = Permission.builder()
+                .permission(new String("hello.world"))
+                .withContext("server", "survival")
+                .withMetadata(key, "first")
+                .build();
+        Node second = Permission.builder()
+                .permission(new String("hello.world"))
+                .withContext("server", "survival")
+                .withMetadata(key, "second")
+                .build();
+
+        // the key and contexts are shared, but each node keeps its own metadata
+        assertSame(first.getKey(), second.getKey());
+        assertSame(first.getContexts(), second.getContexts());
+        assertEquals("first", first.metadata(key));
+        assertEquals("second", second.metadata(key));
+    }
+
 }
@@ -25,37 +25,64 @@
 
 package me.lucko.luckperms.common.storage;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateBuilder;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateStatistics;
+import me.lucko.luckperms.common.bulkupdate.DataType;
+import me.lucko.luckperms.common.bulkupdate.action.DeleteAction;
+import me.lucko.luckperms.common.bulkupdate.comparison.Constraint;
+import me.lucko.luckperms.common.bulkupdate.comparison.StandardComparison;
+import me.lucko.luckperms.common.bulkupdate.query.Query;
+import me.lucko.luckperms.common.bulkupdate.query.QueryField;
 import me.lucko.luckperms.common.event.EventDispatcher;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.manager.group.GroupManager;
 import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.matcher.StandardNodeMatchers;
 import me.lucko.luckperms.common.node.types.Permission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
 import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.file.NonClosableConnection;
+import me.lucko.luckperms.common.storage.misc.NodeEntry;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.model.PlayerSaveResult.Outcome;
 import net.luckperms.api.node.Node;
+import org.h2.api.Trigger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -63,6 +90,7 @@ import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.AdditionalAnswers.answer;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
@@ -109,6 +137,55 @@ public class SqlStorageTest {
         assertEquals(action, log.getContent().first());
     }
 
+    @Test
+    public void testActionLogPage() throws Exception {
+        UUID actor = UUID.randomUUID();
+        for (int i = 0; i < 25; i++) {
+            this.storage.logAction(LoggedAction.build()
+                    .timestamp(Instant.ofEpochSecond(1000 + i))
+                    .source(i % 2 == 0 ? actor : UUID.randomUUID())
+                    .sourceName("Test Source")
+                    .targetType(Action.Target.Type.GROUP)
+                    .targetName(i < 10 ? "admin" : "default")
+                    .description("set test." + i + " true")
+                    .build());
+        }
+
+        LogPage page = this.storage.getLogPage(LogQuery.all(), 10, LogPage.LAST_PAGE);
+        assertEquals(3, page.getPageNumber());
+        assertEquals(3, page.getMaxPages());
+        assertEquals(5, page.getContent().size());
+        assertEquals(21, page.getContent().get(0).position());
+        assertEquals(1020, page.getContent().get(0).value().getTimestamp().getEpochSecond());
+        assertEquals(1024, page.getContent().get(4).value().getTimestamp().getEpochSecond());
+
+        page = this.storage.getLogPage(LogQuery.all(), 10, 1);
+        assertEquals(10, page.getContent().size());
+        assertEquals(1000, page.getContent().get(0).value().getTimestamp().getEpochSecond());
+
+        page = this.storage.getLogPage(LogQuery.actor(actor), 10, LogPage.LAST_PAGE);
+        assertEquals(13, page.getTotalEntries());
+        assertTrue(page.getContent().stream().allMatch(e -> e.value().getSource().getUniqueId().equals(actor)));
+
+        page = this.storage.getLogPage(LogQuery.group("admin"), 10, LogPage.LAST_PAGE);
+        assertEquals(10, page.getTotalEntries());
+
+        page = this.storage.getLogPage(LogQuery.search("TEST.1"), 10, LogPage.LAST_PAGE);
+        assertEquals(11, page.getTotalEntries());
+
+        // LIKE wildcards in the search are matched literally
+        page = this.storage.getLogPage(LogQuery.search("test_1"), 10, LogPage.LAST_PAGE);
+        assertEquals(0, page.getTotalEntries());
+        page = this.storage.getLogPage(LogQuery.search("test%true"), 10, LogPage.LAST_PAGE);
+        assertEquals(0, page.getTotalEntries());
+
+        page = this.storage.getLogPage(LogQuery.all().between(1005, 1009), 10, LogPage.LAST_PAGE);
+        assertEquals(5, page.getTotalEntries());
+
+        page = this.storage.getLogPage(LogQuery.all(), 10, 4);
+        assertTrue(page.getContent().isEmpty());
+    }
+
     @Test
     public void testSavePlayerData() throws Exception {
         UUID uniqueId = UUID.randomUUID();
@@ -140,6 +217,32 @@ public class SqlStorageTest {
         assertNull(r2.getPreviousUsername());
     }
 
+    @Test
+    public void testSavePlayerDataBatch() throws Exception {
+        UUID uniqueId1 = UUID.randomUUID();
+        UUID uniqueId2 = UUID.randomUUID();
+        UUID uniqueId3 = UUID.randomUUID();
+        this.storage.savePlayerData(uniqueId1, "Player1");
+        this.storage.savePlayerData(uniqueId2, "Player2");
+
+        Map<UUID, String> usernames = ImmutableMap.of(
+                uniqueId1, "Player1",
+                uniqueId2, "Player2Renamed",
+                uniqueId3, "Player1Other"
+        );
+        Map<UUID, PlayerSaveResult> results = this.storage.savePlayerData(usernames);
+        assertEquals(ImmutableSet.of(Outcome.NO_CHANGE), results.get(uniqueId1).getOutcomes());
+        assertEquals(ImmutableSet.of(Outcome.USERNAME_UPDATED), results.get(uniqueId2).getOutcomes());
+        assertEquals(ImmutableSet.of(Outcome.CLEAN_INSERT), results.get(uniqueId3).getOutcomes());
+
+        // a different uuid connecting with an existing username
+        UUID uniqueId4 = UUID.randomUUID();
+        Map<UUID, PlayerSaveResult> conflict = this.storage.savePlayerData(ImmutableMap.of(uniqueId4, "Player1"));
+        assertEquals(ImmutableSet.of(Outcome.CLEAN_INSERT, Outcome.OTHER_UNIQUE_IDS_PRESENT_FOR_USERNAME), conflict.get(uniqueId4).getOutcomes());
+        assertEquals(ImmutableSet.of(uniqueId1), conflict.get(uniqueId4).getOtherUniqueIds());
+        assertEquals(uniqueId4, this.storage.getPlayerUniqueId("Player1"));
+    }
+
     @Test
     public void testGetPlayerUniqueIdAndName() throws Exception {
         UUID uniqueId = UUID.randomUUID();
@@ -197,6 +300,186 @@ public class SqlStorageTest {
         assertEquals(nodes, loaded.normalData().asSet());
     }
 
+    @Test
+    public void testGetModifiedUsers() throws Exception {
+        UUID uniqueId = UUID.randomUUID();
+        assertNull(this.storage.getModifiedUsers(ImmutableSet.of(uniqueId)));
+
+        SqlStorage tracking = new SqlStorage(this.plugin, new TestH2ConnectionFactory(), "luckperms_", new SqlStorage.Options().userVersionStamps(true));
+        tracking.init();
+
+        try {
+            // users that haven't been loaded are always considered modified
+            assertEquals(ImmutableSet.of(uniqueId), tracking.getModifiedUsers(ImmutableSet.of(uniqueId)));
+            assertEquals(ImmutableSet.of(), tracking.getModifiedUsers(ImmutableSet.of()));
+        } finally {
+            tracking.shutdown();
+        }
+    }
+
+    @Test
+    public void testMigrateUserPermissionsToV2() throws Exception {
+        SchedulerAdapter scheduler = mock(SchedulerAdapter.class);
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(scheduler);
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(scheduler).async(any(Runnable.class));
+        lenient().when(this.plugin.getLogger()).thenReturn(mock(PluginLogger.class));
+
+        UUID uniqueId = UUID.randomUUID();
+        try (Connection c = this.storage.getConnectionFactory().getConnection()) {
+            try (Statement s = c.createStatement()) {
+                s.execute("INSERT INTO `luckperms_user_permissions` (uuid, permission, `value`, server, world, expiry, contexts) VALUES('" + uniqueId + "', 'test.1', TRUE, 'test', 'global', 0, '{}')");
+                s.execute("INSERT INTO `luckperms_user_permissions` (uuid, permission, `value`, server, world, expiry, contexts) VALUES('" + uniqueId + "', 'test.2', FALSE, 'global', 'global', 0, '{\"hello\":\"test\"}')");
+            }
+        }
+
+        SqlStorage v2 = new SqlStorage(this.plugin, new TestH2ConnectionFactory(), "luckperms_", new SqlStorage.Options().schemaVersion(2));
+        v2.init();
+
+        try {
+            assertEquals(ImmutableSet.of(uniqueId), v2.getUniqueUsers());
+
+            Set<Node> expected = ImmutableSet.of(
+                    Permission.builder().permission("test.1").withContext("server", "test").build(),
+                    Permission.builder().permission("test.2").value(false).withContext("hello", "test").build()
+            );
+            Set<Node> found = v2.searchUserNodes(StandardNodeMatchers.keyStartsWith("test.")).stream()
+                    .peek(e -> assertEquals(uniqueId, e.getHolder()))
+                    .map(NodeEntry::getNode)
+                    .collect(Collectors.toSet());
+            assertEquals(expected, found);
+
+            // each node should only have been copied across once
+            assertEquals(expected.size(), v2.searchUserNodes(StandardNodeMatchers.keyStartsWith("test.")).size());
+
+            // the legacy table should now be empty
+            try (Connection c = v2.getConnectionFactory().getConnection()) {
+                try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM `luckperms_user_permissions`")) {
+                    assertTrue(rs.next());
+                    assertEquals(0, rs.getInt(1));
+                }
+            }
+        } finally {
+            v2.shutdown();
+        }
+    }
+
+    @Test
+    public void testApplyBulkUpdateInBatches() throws Exception {
+        try (Connection c = this.storage.getConnectionFactory().getConnection()) {
+            try (Statement s = c.createStatement()) {
+                for (int i = 0; i < 5; i++) {
+                    s.execute("INSERT INTO `luckperms_group_permissions` (name, permission, `value`, server, world, expiry, contexts) VALUES('group" + i + "', 'test.remove', TRUE, 'global', 'global', 0, '{}')");
+                    s.execute("INSERT INTO `luckperms_group_permissions` (name, permission, `value`, server, world, expiry, contexts) VALUES('group" + i + "', 'test.keep', TRUE, 'global', 'global', 0, '{}')");
+                }
+            }
+        }
+
+        SqlStorage batched = new SqlStorage(this.plugin, new TestH2ConnectionFactory(), "luckperms_", new SqlStorage.Options().bulkUpdateBatchSize(3));
+        batched.init();
+
+        try {
+            BulkUpdate bulkUpdate = BulkUpdateBuilder.create()
+                    .dataType(DataType.GROUPS)
+                    .action(DeleteAction.create())
+                    .query(Query.of(QueryField.PERMISSION, Constraint.of(StandardComparison.EQUAL, "test.remove")))
+                    .trackStatistics(true)
+                    .build();
+            batched.applyBulkUpdate(bulkUpdate);
+
+            BulkUpdateStatistics stats = bulkUpdate.getStatistics();
+            assertEquals(5, stats.getAffectedNodes());
+            assertEquals(5, stats.getAffectedGroups());
+            assertEquals(10, stats.getProcessed());
+            assertEquals(10, stats.getTotal());
+
+            try (Connection c = batched.getConnectionFactory().getConnection()) {
+                try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery("SELECT permission FROM `luckperms_group_permissions`")) {
+                    int rows = 0;
+                    while (rs.next()) {
+                        assertEquals("test.keep", rs.getString(1));
+                        rows++;
+                    }
+                    assertEquals(5, rows);
+                }
+            }
+        } finally {
+            batched.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 3})
+    public void testBulkUpdateIncrementsUserVersionsAfterUpdate(int batchSize) throws Exception {
+        SqlStorage tracking = new SqlStorage(this.plugin, new TestH2ConnectionFactory(), "luckperms_", new SqlStorage.Options().userVersionStamps(true).bulkUpdateBatchSize(batchSize));
+        tracking.init();
+
+        UUID existing = UUID.randomUUID();
+        UUID unversioned = UUID.randomUUID();
+        try (Connection c = tracking.getConnectionFactory().getConnection()) {
+            try (Statement s = c.createStatement()) {
+                for (UUID uniqueId : ImmutableList.of(existing, unversioned)) {
+                    s.execute("INSERT INTO `luckperms_user_permissions` (uuid, permission, `value`, server, world, expiry, contexts) VALUES('" + uniqueId + "', 'test.remove', TRUE, 'global', 'global', 0, '{}')");
+                }
+                s.execute("INSERT INTO `luckperms_user_versions` (uuid, version) VALUES('" + existing + "', 5)");
+                s.execute("CREATE TRIGGER `luckperms_user_versions_check` AFTER INSERT, UPDATE ON `luckperms_user_versions` FOR EACH ROW CALL '" + VersionCheckTrigger.class.getName() + "'");
+            }
+        }
+
+        try {
+            VersionCheckTrigger.REMAINING_ROWS.clear();
+
+            BulkUpdate bulkUpdate = BulkUpdateBuilder.create()
+                    .dataType(DataType.USERS)
+                    .action(DeleteAction.create())
+                    .query(Query.of(QueryField.PERMISSION, Constraint.of(StandardComparison.EQUAL, "test.remove")))
+                    .trackStatistics(true)
+                    .build();
+            tracking.applyBulkUpdate(bulkUpdate);
+
+            assertEquals(2, bulkUpdate.getStatistics().getAffectedUsers());
+
+            // when each version was bumped, the user's data should already have been changed
+            assertEquals(ImmutableMap.of(existing.toString(), 0, unversioned.toString(), 0), VersionCheckTrigger.REMAINING_ROWS);
+
+            try (Connection c = tracking.getConnectionFactory().getConnection()) {
+                try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery("SELECT version FROM `luckperms_user_versions` WHERE uuid = '" + existing + "'")) {
+                    assertTrue(rs.next());
+                    assertEquals(6, rs.getLong(1));
+                }
+            }
+        } finally {
+            try (Connection c = tracking.getConnectionFactory().getConnection()) {
+                try (Statement s = c.createStatement()) {
+                    s.execute("DROP TRIGGER `luckperms_user_versions_check`");
+                }
+            }
+            tracking.shutdown();
+        }
+    }
+
+    /**
+     * Records how many rows each user has in the user_permissions table at
+     * the point their version is changed.
+     */
+    public static final class VersionCheckTrigger implements Trigger {
+        static final Map<String, Integer> REMAINING_ROWS = new ConcurrentHashMap<>();
+
+        @Override
+        public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+            String uniqueId = (String) newRow[0];
+            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM `luckperms_user_permissions` WHERE uuid = ?")) {
+                ps.setString(1, uniqueId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    REMAINING_ROWS.put(uniqueId, rs.getInt(1));
+                }
+            }
+        }
+    }
+
     private static class TestH2ConnectionFactory implements ConnectionFactory {
         private final NonClosableConnection connection;
 
@@ -0,0 +1,204 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.file;
+
+import com.google.common.collect.ImmutableSet;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateBuilder;
+import me.lucko.luckperms.common.bulkupdate.DataType;
+import me.lucko.luckperms.common.bulkupdate.action.DeleteAction;
+import me.lucko.luckperms.common.bulkupdate.comparison.Constraint;
+import me.lucko.luckperms.common.bulkupdate.comparison.StandardComparison;
+import me.lucko.luckperms.common.bulkupdate.query.Query;
+import me.lucko.luckperms.common.bulkupdate.query.QueryField;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.storage.implementation.file.loader.JsonLoader;
+import net.luckperms.api.node.Node;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class CombinedConfigurateStorageTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsBootstrap bootstrap;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setupMocks() {
+        lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
+        lenient().when(this.plugin.getLogger()).thenReturn(mock(PluginLogger.class));
+        lenient().when(this.bootstrap.getDataDirectory()).thenReturn(this.directory);
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(mock(SchedulerAdapter.class));
+    }
+
+    private CombinedConfigurateStorage createStorage() throws Exception {
+        CombinedConfigurateStorage storage = new CombinedConfigurateStorage(this.plugin, "JSON Combined", new JsonLoader(), ".json", "json-storage");
+        storage.init();
+        return storage;
+    }
+
+    private Path file(String name) {
+        return this.directory.resolve("json-storage").resolve(name);
+    }
+
+    private static ConfigurationNode group(String... permissions) {
+        ConfigurationNode node = ConfigurationNode.root();
+        for (String permission : permissions) {
+            node.getNode("permissions").appendListNode().setValue(permission);
+        }
+        return node;
+    }
+
+    private static Set<String> permissions(ConfigurationNode node) {
+        return AbstractConfigurateStorage.readNodes(node).stream()
+                .map(Node::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testSavesAreJournaled() throws Exception {
+        CombinedConfigurateStorage storage = createStorage();
+        storage.saveFile(StorageLocation.GROUPS, "admin", group("test.admin"));
+
+        // the change is only in the journal until the next compaction
+        assertTrue(Files.exists(file("groups.json.journal")));
+        assertFalse(Files.exists(file("groups.json")));
+
+        storage.shutdown();
+
+        // compacted into the main file on shutdown
+        assertFalse(Files.exists(file("groups.json.journal")));
+        assertTrue(Files.exists(file("groups.json")));
+
+        CombinedConfigurateStorage reloaded = createStorage();
+        assertEquals(ImmutableSet.of("test.admin"), permissions(reloaded.readFile(StorageLocation.GROUPS, "admin")));
+        reloaded.shutdown();
+    }
+
+    @Test
+    public void testJournalReplay() throws Exception {
+        CombinedConfigurateStorage storage = createStorage();
+        storage.saveFile(StorageLocation.GROUPS, "admin", group("test.admin"));
+        storage.saveFile(StorageLocation.GROUPS, "mod", group("test.mod"));
+        storage.saveFile(StorageLocation.GROUPS, "admin", group("test.admin", "test.other"));
+        storage.saveFile(StorageLocation.GROUPS, "mod", null);
+
+        // simulate a crash - no shutdown, so the journal is never compacted
+        CombinedConfigurateStorage recovered = createStorage();
+        assertEquals(ImmutableSet.of("test.admin", "test.other"), permissions(recovered.readFile(StorageLocation.GROUPS, "admin")));
+        assertNull(recovered.readFile(StorageLocation.GROUPS, "mod"));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testRecoveryFromInterruptedCompaction() throws Exception {
+        CombinedConfigurateStorage storage = createStorage();
+        storage.saveFile(StorageLocation.GROUPS, "admin", group("test.old"));
+
+        // simulate a crash part way through a compaction - the journal has been
+        // moved aside, but the main file hasn't been rewritten yet
+        Files.move(file("groups.json.journal"), file("groups.json.journal.compacting"));
+        storage.saveFile(StorageLocation.GROUPS, "admin", group("test.new"));
+        storage.saveFile(StorageLocation.GROUPS, "default", group("test.default"));
+
+        // the older journal is replayed first
+        CombinedConfigurateStorage recovered = createStorage();
+        assertEquals(ImmutableSet.of("test.new"), permissions(recovered.readFile(StorageLocation.GROUPS, "admin")));
+        assertNotNull(recovered.readFile(StorageLocation.GROUPS, "default"));
+
+        recovered.shutdown();
+        assertFalse(Files.exists(file("groups.json.journal.compacting")));
+        assertFalse(Files.exists(file("groups.json.journal")));
+    }
+
+    @Test
+    public void testPartialJournalEntryIsSkipped() throws Exception {
+        CombinedConfigurateStorage storage = createStorage();
+        storage.saveFile(StorageLocation.GROUPS, "admin", group("test.admin"));
+
+        // simulate a crash whilst an entry was being written
+        Files.write(file("groups.json.journal"), "{\"key\":\"mod\",\"val".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        CombinedConfigurateStorage recovered = createStorage();
+        assertEquals(ImmutableSet.of("test.admin"), permissions(recovered.readFile(StorageLocation.GROUPS, "admin")));
+        assertNull(recovered.readFile(StorageLocation.GROUPS, "mod"));
+        recovered.shutdown();
+    }
+
+    @Test
+    public void testBulkUpdateIsJournaled() throws Exception {
+        CombinedConfigurateStorage storage = createStorage();
+        storage.saveFile(StorageLocation.GROUPS, "admin", group("test.remove", "test.keep"));
+        storage.saveFile(StorageLocation.GROUPS, "default", group("test.keep"));
+        storage.shutdown();
+
+        storage = createStorage();
+        BulkUpdate bulkUpdate = BulkUpdateBuilder.create()
+                .dataType(DataType.GROUPS)
+                .action(DeleteAction.create())
+                .query(Query.of(QueryField.PERMISSION, Constraint.of(StandardComparison.EQUAL, "test.remove")))
+                .build();
+        storage.applyBulkUpdate(bulkUpdate);
+
+        // only the changed entry is journaled
+        List<String> journal = Files.readAllLines(file("groups.json.journal"), StandardCharsets.UTF_8);
+        assertEquals(1, journal.size());
+
+        // simulate a crash before the next compaction
+        CombinedConfigurateStorage recovered = createStorage();
+        assertEquals(ImmutableSet.of("test.keep"), permissions(recovered.readFile(StorageLocation.GROUPS, "admin")));
+        assertEquals(ImmutableSet.of("test.keep"), permissions(recovered.readFile(StorageLocation.GROUPS, "default")));
+        recovered.shutdown();
+    }
+
+}
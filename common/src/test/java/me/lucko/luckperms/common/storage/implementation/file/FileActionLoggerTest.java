@@ -0,0 +1,151 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.file;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.actionlog.LogPage;
+import me.lucko.luckperms.common.actionlog.LogQuery;
+import me.lucko.luckperms.common.actionlog.LoggedAction;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import net.luckperms.api.actionlog.Action;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class FileActionLoggerTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsBootstrap bootstrap;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setupMocks() {
+        lenient().when(this.plugin.getBootstrap()).thenReturn(this.bootstrap);
+        lenient().when(this.bootstrap.getScheduler()).thenReturn(mock(SchedulerAdapter.class));
+    }
+
+    private FileActionLogger createLogger() {
+        FileActionLogger logger = new FileActionLogger(this.plugin);
+        logger.init(this.directory.resolve("actions.txt"), this.directory.resolve("actions.idx"), this.directory.resolve("actions.json"));
+        return logger;
+    }
+
+    private static LoggedAction action(long time, UUID source, String targetName) {
+        return LoggedAction.build()
+                .timestamp(Instant.ofEpochSecond(time))
+                .source(source)
+                .sourceName("Test Source")
+                .targetType(Action.Target.Type.GROUP)
+                .targetName(targetName)
+                .description("set test." + time + " true")
+                .build();
+    }
+
+    private static List<Long> times(LogPage page) {
+        return page.getContent().stream()
+                .map(e -> e.value().getTimestamp().getEpochSecond())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testLogPage() throws Exception {
+        FileActionLogger logger = createLogger();
+        UUID actor = UUID.randomUUID();
+        for (int i = 0; i < 25; i++) {
+            logger.logAction(action(1000 + i, i % 2 == 0 ? actor : UUID.randomUUID(), i < 10 ? "admin" : "default"));
+        }
+        logger.flush();
+
+        LogPage page = logger.getLogPage(LogQuery.all(), 10, LogPage.LAST_PAGE);
+        assertEquals(3, page.getPageNumber());
+        assertEquals(25, page.getTotalEntries());
+        assertEquals(21, page.getContent().get(0).position());
+        assertEquals(ImmutableList.of(1020L, 1021L, 1022L, 1023L, 1024L), times(page));
+
+        page = logger.getLogPage(LogQuery.all(), 10, 2);
+        assertEquals(11, page.getContent().get(0).position());
+        assertEquals(1010L, times(page).get(0));
+        assertEquals(1019L, times(page).get(9));
+
+        page = logger.getLogPage(LogQuery.actor(actor), 10, LogPage.LAST_PAGE);
+        assertEquals(13, page.getTotalEntries());
+        assertTrue(page.getContent().stream().allMatch(e -> e.value().getSource().getUniqueId().equals(actor)));
+
+        page = logger.getLogPage(LogQuery.group("admin"), 10, LogPage.LAST_PAGE);
+        assertEquals(10, page.getTotalEntries());
+
+        page = logger.getLogPage(LogQuery.search("TEST.101"), 10, LogPage.LAST_PAGE);
+        assertEquals(10, page.getTotalEntries());
+        assertEquals(1010L, times(page).get(0));
+
+        page = logger.getLogPage(LogQuery.all(), 10, 4);
+        assertTrue(page.getContent().isEmpty());
+    }
+
+    @Test
+    public void testLogPageOutOfOrder() throws Exception {
+        FileActionLogger logger = createLogger();
+        UUID actor = UUID.randomUUID();
+        for (int i = 0; i < 25; i++) {
+            // written in the order 1024, 1000, 1023, 1001, ...
+            long time = i % 2 == 0 ? 1024 - i / 2 : 1000 + i / 2;
+            logger.logAction(action(time, actor, "admin"));
+        }
+        logger.flush();
+
+        LogPage page = logger.getLogPage(LogQuery.all(), 10, 1);
+        assertEquals(25, page.getTotalEntries());
+        assertEquals(ImmutableList.of(1000L, 1001L, 1002L, 1003L, 1004L, 1005L, 1006L, 1007L, 1008L, 1009L), times(page));
+
+        page = logger.getLogPage(LogQuery.all(), 10, LogPage.LAST_PAGE);
+        assertEquals(ImmutableList.of(1020L, 1021L, 1022L, 1023L, 1024L), times(page));
+
+        page = logger.getLogPage(LogQuery.search("test"), 10, 2);
+        assertEquals(11, page.getContent().get(0).position());
+        assertEquals(1010L, times(page).get(0));
+        assertEquals(1019L, times(page).get(9));
+    }
+
+}
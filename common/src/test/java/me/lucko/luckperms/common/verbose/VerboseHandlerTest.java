@@ -0,0 +1,134 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.verbose;
+
+import me.lucko.luckperms.common.cacheddata.result.TristateResult;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.verbose.event.CheckOrigin;
+import net.luckperms.api.util.Tristate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class VerboseHandlerTest {
+
+    private static final VerboseCheckTarget TARGET = VerboseCheckTarget.of(VerboseCheckTarget.USER_TYPE, "Player1");
+
+    @Mock private SchedulerAdapter scheduler;
+    @Mock private LuckPermsConfiguration configuration;
+
+    private VerboseHandler handler;
+
+    @BeforeEach
+    public void setupMocks() {
+        // the tick task is never run, so events stay queued until the test flushes them
+        lenient().when(this.scheduler.asyncRepeating(any(), anyLong(), any())).thenReturn(mock(SchedulerTask.class));
+        lenient().when(this.configuration.get(ConfigKeys.VERBOSE_SAMPLE_RATE)).thenReturn(1);
+        lenient().when(this.configuration.get(ConfigKeys.VERBOSE_CAPTURE_STACK_TRACES)).thenReturn(true);
+        lenient().when(this.configuration.get(ConfigKeys.VERBOSE_QUEUE_SIZE)).thenReturn(10000);
+
+        this.handler = new VerboseHandler(this.scheduler);
+    }
+
+    private static Sender mockSender() {
+        Sender sender = mock(Sender.class);
+        when(sender.getUniqueId()).thenReturn(UUID.randomUUID());
+        return sender;
+    }
+
+    private void offerChecks(String permission, int count) {
+        for (int i = 0; i < count; i++) {
+            this.handler.offerPermissionCheckEvent(CheckOrigin.INTERNAL, TARGET, QueryOptionsImpl.DEFAULT_CONTEXTUAL, permission, TristateResult.forMonitoredResult(Tristate.TRUE));
+        }
+    }
+
+    @Test
+    public void testRecordsEveryCheck() {
+        this.handler.configure(this.configuration);
+
+        Sender sender = mockSender();
+        this.handler.registerListener(sender, VerboseFilter.acceptAll(), false);
+        offerChecks("luckperms.user.info", 100);
+
+        VerboseListener listener = this.handler.unregisterListener(sender);
+        assertEquals(100, listener.getMatchedCount());
+        assertEquals(0, listener.getDroppedCount());
+    }
+
+    @Test
+    public void testSampling() {
+        when(this.configuration.get(ConfigKeys.VERBOSE_SAMPLE_RATE)).thenReturn(4);
+        this.handler.configure(this.configuration);
+
+        Sender sender = mockSender();
+        this.handler.registerListener(sender, VerboseFilter.acceptAll(), false);
+        offerChecks("luckperms.user.info", 10000);
+
+        // roughly one in every four checks should be recorded
+        int matched = this.handler.unregisterListener(sender).getMatchedCount();
+        assertTrue(matched > 2000 && matched < 3000, "matched " + matched);
+    }
+
+    @Test
+    public void testQueueDrops() throws InvalidFilterException {
+        when(this.configuration.get(ConfigKeys.VERBOSE_QUEUE_SIZE)).thenReturn(10);
+        this.handler.configure(this.configuration);
+
+        Sender matchingSender = mockSender();
+        Sender otherSender = mockSender();
+        this.handler.registerListener(matchingSender, VerboseFilter.compile("luckperms"), false);
+        this.handler.registerListener(otherSender, VerboseFilter.compile("nametags"), false);
+        offerChecks("luckperms.user.info", 25);
+
+        // events over the queue size are dropped, and only counted against listeners they matched
+        VerboseListener matching = this.handler.unregisterListener(matchingSender);
+        assertEquals(10, matching.getMatchedCount());
+        assertEquals(15, matching.getDroppedCount());
+
+        VerboseListener other = this.handler.unregisterListener(otherSender);
+        assertEquals(0, other.getMatchedCount());
+        assertEquals(0, other.getDroppedCount());
+    }
+
+}
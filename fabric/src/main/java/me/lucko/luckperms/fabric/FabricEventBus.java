@@ -35,6 +35,14 @@ public class FabricEventBus extends AbstractEventBus<ModContainer> {
         super(plugin, apiProvider);
     }
 
+    @Override
+    public String getPluginName(Object mod) {
+        if (mod instanceof ModContainer) {
+            return ((ModContainer) mod).getMetadata().getId();
+        }
+        return super.getPluginName(mod);
+    }
+
     @Override
     protected ModContainer checkPlugin(Object mod) throws IllegalArgumentException {
         if (mod instanceof ModContainer) {
@@ -36,6 +36,15 @@ public class ForgeEventBus extends AbstractEventBus<ModContainer> {
         super(plugin, apiProvider);
     }
 
+    @Override
+    public String getPluginName(Object mod) {
+        ModContainer modContainer = ModList.get().getModContainerByObject(mod).orElse(null);
+        if (modContainer != null) {
+            return modContainer.getModId();
+        }
+        return super.getPluginName(mod);
+    }
+
     @Override
     protected ModContainer checkPlugin(Object mod) throws IllegalArgumentException {
         ModContainer modContainer = ModList.get().getModContainerByObject(mod).orElse(null);
@@ -35,6 +35,17 @@ public class SpongeEventBus extends AbstractEventBus<PluginContainer> {
         super(plugin, apiProvider);
     }
 
+    @Override
+    public String getPluginName(Object plugin) {
+        PluginContainer pluginContainer = plugin instanceof PluginContainer
+                ? (PluginContainer) plugin
+                : Sponge.pluginManager().fromInstance(plugin).orElse(null);
+        if (pluginContainer != null) {
+            return pluginContainer.metadata().id();
+        }
+        return super.getPluginName(plugin);
+    }
+
     @Override
     protected PluginContainer checkPlugin(Object plugin) throws IllegalArgumentException {
         if (plugin instanceof PluginContainer) {
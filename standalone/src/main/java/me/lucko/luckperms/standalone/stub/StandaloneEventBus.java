@@ -34,6 +34,11 @@ public class StandaloneEventBus extends AbstractEventBus<Object> {
         super(plugin, apiProvider);
     }
 
+    @Override
+    public String getPluginName(Object plugin) {
+        return plugin.getClass().getSimpleName();
+    }
+
     @Override
     protected Object checkPlugin(Object plugin) throws IllegalArgumentException {
         return plugin;
@@ -37,6 +37,17 @@ public class VelocityEventBus extends AbstractEventBus<PluginContainer> {
         this.plugin = plugin;
     }
 
+    @Override
+    public String getPluginName(Object plugin) {
+        PluginContainer pluginContainer = plugin instanceof PluginContainer
+                ? (PluginContainer) plugin
+                : this.plugin.getBootstrap().getProxy().getPluginManager().fromInstance(plugin).orElse(null);
+        if (pluginContainer != null) {
+            return pluginContainer.getDescription().getId();
+        }
+        return super.getPluginName(plugin);
+    }
+
     @Override
     protected PluginContainer checkPlugin(Object plugin) throws IllegalArgumentException {
         if (plugin instanceof PluginContainer) {